@@ -1,11 +1,16 @@
 # -*- coding: utf-8 -*-
 
 import os
+import sys
+import traceback
+try:
+    from StringIO import StringIO
+except ImportError:
+    from io import StringIO
 
 import click
-import pandas as pd
 
-from .utils import read_unit_commitment, read_model
+from .utils import read_model, parse_model
 from .model import build_model
 
 
@@ -25,6 +30,71 @@ def run(**kwargs):
     return None
 
 
+def run_sced(uc, data, output):
+    """Solve the SCED for the unit commitment and model data files, and
+    write the results to output."""
+
+    results = solve_sced(read_model(data.strip("'")))
+    with open(output.strip("'"), 'w') as f:
+        f.write(results)
+
+
+def solve_sced(c):
+    """Solve the SCED for the model data c, and return the text of its
+    results file."""
+
+    # TODO : Fixme. The model does not use the unit commitment yet.
+    model = build_model(c)
+    model.solve(solver='xpress')
+
+    results = StringIO()
+    write_sced_results(model, results)
+    return results.getvalue()
+
+
+def write_sced_results(model, f):
+    """Write the SCED results in the format read by AMES' PSSTSCED."""
+    f.write("LMP\n")
+    for h, r in model.results.lmp.iterrows():
+        bn = 1
+        for _, lmp in r.iteritems():
+            f.write(str(bn) + ' : ' + str(h) +' : ' + str(lmp) +"\n")
+            bn = bn + 1
+    f.write("END_LMP\n")
+
+    f.write("GenCoResults\n")
+    instance = model._model
+    for g in instance.Generators.value:
+        f.write("%s" % str(g).ljust(8))
+        for t in instance.TimePeriods:
+            f.write("Hour: {}".format(str(t)))
+            f.write("\tPowerGenerated: {}".format(instance.PowerGenerated[g, t]()))
+            f.write("\tProductionCost: {}".format(instance.ProductionCost[g, t]()))
+            f.write("\tStartupCost: {}".format(instance.StartupCost[g, t]()))
+            f.write("\tShutdownCost: {}".format(instance.ShutdownCost[g, t]()))
+    f.write("END_GenCoResults\n")
+    f.write("VOLTAGE_ANGLES\n")
+    for bus in sorted(instance.Buses):
+        for t in instance.TimePeriods:
+            print >> f, str(bus), str(t), ":", str(instance.Angle[bus, t]())
+            #print >>f, "\t %s,  : %6.2f"
+    f.write("END_VOLTAGE_ANGLES\n")
+    # Write out the Daily LMP
+    f.write("DAILY_BRANCH_LMP\n")
+    f.write("END_DAILY_BRANCH_LMP\n")
+    # Write out the Daily Price Sensitive Demand
+    f.write("DAILY_PRICE_SENSITIVE_DEMAND\n")
+    f.write("END_DAILY_PRICE_SENSITIVE_DEMAND\n")
+    # Write out which hour has a solution
+    f.write("HAS_SOLUTION\n")
+    h = 0
+    max_hour = 24 #FIXME: Hard-coded number of hours.
+    while h < max_hour:
+        f.write("1\t") #FIXME: Hard-coded every hour has a solution.
+        h += 1
+    f.write("\nEND_HAS_SOLUTION\n")
+
+
 @cli.command()
 @click.option('--uc', default=None, type=click.Path(), help='Path to unit commitment file')
 @click.option('--data', default=None, type=click.Path(), help='Path to model data')
@@ -32,54 +102,62 @@ def run(**kwargs):
 def sced(uc, data, output):
 
     click.echo("Running SCED using PSST")
+    run_sced(uc, data, output)
 
-    # TODO : Fixme
-    uc_df = pd.DataFrame(read_unit_commitment(uc.strip("'")))
 
-    c = read_model(data.strip("'"))
-    model = build_model(c)
-    model.solve(solver='xpress')
-
-    with open(output.strip("'"), 'w') as f:
-        f.write("LMP\n")
-        for h, r in model.results.lmp.iterrows():
-            bn = 1
-            for _, lmp in r.iteritems():
-                f.write(str(bn) + ' : ' + str(h) +' : ' + str(lmp) +"\n")
-                bn = bn + 1
-        f.write("END_LMP\n")
-
-        f.write("GenCoResults\n")
-        instance = model._model
-        for g in instance.Generators.value:
-            f.write("%s" % str(g).ljust(8))
-            for t in instance.TimePeriods:
-                f.write("Hour: {}".format(str(t)))
-                f.write("\tPowerGenerated: {}".format(instance.PowerGenerated[g, t]()))
-                f.write("\tProductionCost: {}".format(instance.ProductionCost[g, t]()))
-                f.write("\tStartupCost: {}".format(instance.StartupCost[g, t]()))
-                f.write("\tShutdownCost: {}".format(instance.ShutdownCost[g, t]()))
-        f.write("END_GenCoResults\n")
-        f.write("VOLTAGE_ANGLES\n")
-        for bus in sorted(instance.Buses):
-            for t in instance.TimePeriods:
-                print >> f, str(bus), str(t), ":", str(instance.Angle[bus, t]())
-                #print >>f, "\t %s,  : %6.2f"
-        f.write("END_VOLTAGE_ANGLES\n")
-        # Write out the Daily LMP
-        f.write("DAILY_BRANCH_LMP\n")
-        f.write("END_DAILY_BRANCH_LMP\n")
-        # Write out the Daily Price Sensitive Demand
-        f.write("DAILY_PRICE_SENSITIVE_DEMAND\n")
-        f.write("END_DAILY_PRICE_SENSITIVE_DEMAND\n")
-        # Write out which hour has a solution
-        f.write("HAS_SOLUTION\n")
-        h = 0
-        max_hour = 24 #FIXME: Hard-coded number of hours.
-        while h < max_hour:
-            f.write("1\t") #FIXME: Hard-coded every hour has a solution.
-            h += 1
-        f.write("\nEND_HAS_SOLUTION\n")
+@cli.command()
+def worker():
+    """Serve SCED requests from stdin, one per line, until QUIT or EOF.
+
+    Requests are tab separated:
+
+        PING                          -> PONG
+        SCED <uc> <data> <output>     -> OK, or ERROR <message>
+        SCEDMEM <n_uc> <n_data>       -> RESULT <n>, or ERROR <message>
+        QUIT
+
+    SCEDMEM is followed by the n_uc bytes of the unit commitment and the
+    n_data bytes of the model data, as they would be written to the files
+    of a SCED request, and RESULT by the n bytes of the results file.
+    AMES sends and reads them as UTF-8.
+
+    Responses are written to stdout, one line each plus the results of a
+    RESULT. Anything else the model or the solver prints goes to stderr.
+    """
+    out = sys.stdout
+    sys.stdout = sys.stderr
+    while True:
+        line = sys.stdin.readline()
+        if not line:
+            break
+        request = line.rstrip('\r\n').split('\t')
+        command = request[0]
+        if command == 'PING':
+            response = 'PONG'
+        elif command == 'QUIT':
+            break
+        elif command == 'SCED' and len(request) == 4:
+            try:
+                run_sced(request[1], request[2], request[3])
+                response = 'OK'
+            except Exception as e:
+                traceback.print_exc()
+                response = 'ERROR\t' + ' '.join(str(e).split())
+        elif command == 'SCEDMEM' and len(request) == 3:
+            sys.stdin.read(int(request[1]))  # the unit commitment, see solve_sced
+            data = sys.stdin.read(int(request[2]))
+            try:
+                results = solve_sced(parse_model(data))
+                response = 'RESULT\t' + str(len(results)) + '\n' + results
+            except Exception as e:
+                traceback.print_exc()
+                response = 'ERROR\t' + ' '.join(str(e).split())
+        else:
+            response = 'ERROR\tUnknown request ' + command
+        if not response.startswith('RESULT'):
+            response = response + '\n'
+        out.write(response)
+        out.flush()
 
 
 if __name__ == "__main__":
@@ -81,6 +81,12 @@ def read_unit_commitment(uc):
     with open(uc) as f:
         data = f.read()
 
+    return parse_unit_commitment(data)
+
+
+def parse_unit_commitment(data):
+    """Unit commitment from the text of a unit commitment file."""
+
     uc_dict = dict()
     uc = None
     for l in data.splitlines():
@@ -112,6 +118,12 @@ def read_model(model_data):
     with open(model_data) as f:
         data = f.read()
 
+    return parse_model(data)
+
+
+def parse_model(data):
+    """PSSTCase from the text of a reference model (.dat) file."""
+
     from .case import PSSTCase
     c = PSSTCase(os.path.join(current_directory, '../cases/case.m'))
 
@@ -48,6 +48,7 @@ import java.util.*;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
+import amesmarket.extern.common.SolverCache;
 import amesmarket.filereaders.BadDataFileFormatException;
 import amesmarket.filereaders.IZoneIndexProvider.NamedIndexProvider;
 import amesmarket.probability.RouletteWheelSelector;
@@ -219,6 +220,16 @@ public class AMESMarket extends SimModelImpl {
 
     private final boolean deleteIntermediateFiles;
 
+    /**
+     * Where this run's solver files go. See {@link Workspace}.
+     */
+    private final Workspace workspace;
+
+    /**
+     * Results of the external solvers from earlier runs. See {@link SolverCache}.
+     */
+    private final SolverCache solverCache;
+
 // RePast required methods
 
     public String getName() {
@@ -744,6 +755,7 @@ public class AMESMarket extends SimModelImpl {
             public final void execute() {
 
                 stopCode=0;
+                final long tickStart = PhaseEvent.begin();
 
                 try {
                     announceStatusEvent(new StatusEvent(StatusEvent.UPDATE_DAY, day, AMESMarket.this));
@@ -786,6 +798,7 @@ public class AMESMarket extends SimModelImpl {
                     stopCode |= STOP_CODE_ERROR;
                     stop();
                 }
+                PhaseEvent.end(PhaseEvent.Phase.MARKET_TICK, day, hour, 0, tickStart);
 
                 if(bMaximumDay) {
                     if(bThreshold) { // Both dayMax has been reached and all GenCos are selecting a single action with probability
@@ -828,6 +841,9 @@ public class AMESMarket extends SimModelImpl {
 
                     bCalculationEnd=true;
                     iso.DayAheadMarketCheckLastDayAction();
+                    iso.closeExternalSolvers();
+                    solverCache.report();
+                    PhaseEvent.report();
 
                     Date sysDate = new Date();
                     System.out.println("Simulation End time: "+sysDate.toString()+"\n");
@@ -1644,6 +1660,20 @@ public class AMESMarket extends SimModelImpl {
         return deleteIntermediateFiles;
     }
 
+    /**
+     * @return where this run's solver files go.
+     */
+    public Workspace getWorkspace() {
+        return workspace;
+    }
+
+    /**
+     * @return the cache of the external solvers' results.
+     */
+    public SolverCache getSolverCache() {
+        return solverCache;
+    }
+
     public boolean IfCalculationEnd() {
         return bCalculationEnd;
     }
@@ -1702,6 +1732,12 @@ public class AMESMarket extends SimModelImpl {
         lastDayGenActions=new ArrayList<double[][]>();
         hasSolutionByDay=new ArrayList<int[]>();
         this.deleteIntermediateFiles = deleteIntermediateFiles;
+        try {
+            this.workspace = Workspace.fromProperties();
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to create the run's workspace", e);
+        }
+        this.solverCache = SolverCache.fromProperties();
     }
 
 
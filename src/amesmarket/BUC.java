@@ -22,6 +22,15 @@
 
 package amesmarket;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * Bid-based Unit Commitment.
@@ -84,6 +93,59 @@ public class BUC implements SCED {
 
     private final INIT init;
 
+    /**
+     * How DCOPFJ should assemble the QP. Selected with the DCOPF_FORMULATION
+     * system property ("dense", the default, "sparse" or "ptdf").
+     */
+    private final DCOPFJ.Formulation opfFormulation;
+
+    /**
+     * Whether branch flow limits are only added to the DC-OPF once violated,
+     * enabled with the DCOPF_LAZY_LINES system property. Cheaper on large
+     * grids where few lines are congested.
+     */
+    private final boolean lazyLinesOPF;
+
+    /**
+     * Whether each hour's DC-OPF is warm-started with the final active set of
+     * the previous hour, which usually binds the same line and capacity
+     * constraints. Enabled with the DCOPF_WARM_START system property.
+     */
+    private final boolean warmStartOPF;
+    /** Final active set of the last day-ahead/real-time solve, or null. */
+    private int[] lastActiveSet, lastActiveSetRT;
+
+    /**
+     * Shared by all DA and RT solves. G only depends on the cost coefficients
+     * and the grid, so its factorization is usually reused across hours.
+     */
+    private final QuadProgJSolver qpSolver;
+
+    /**
+     * Whether the QPs are solved with QuadProgJFlat, the primitive array
+     * version of QuadProgJ. Selected with the DCOPF_QP system property
+     * ("colt", the default, or "flat").
+     */
+    private final boolean flatQP;
+
+    /**
+     * Whether the 24 day-ahead DC-OPF problems are solved concurrently on a
+     * fixed thread pool, enabled with the DCOPF_PARALLEL system property. The
+     * pool size is DCOPF_THREADS, or the number of available processors.
+     * Warm starts chain one hour to the next and are not used in this mode.
+     */
+    private final boolean parallelOPF;
+    private static ExecutorService opfPool;
+
+    /**
+     * Solvers of the parallel hours that are not in use. QuadProgJSolver is
+     * not thread safe, so each hour takes one for its solve and puts it back.
+     * There are at most as many as hours solved at once, and they go away
+     * with this BUC rather than staying with the shared pool threads.
+     */
+    private final ConcurrentLinkedQueue<QuadProgJSolver> idleSolvers =
+            new ConcurrentLinkedQueue<QuadProgJSolver>();
+
     // constructor
     public BUC(ISO independentSystemOperator, AMESMarket model, INIT init) {
         if(init == null) throw new IllegalArgumentException("Null INIT parameter");
@@ -111,24 +173,65 @@ public class BUC implements SCED {
         dailyPriceSensitiveDemand = new double [H][J];
 
         bDCOPFHasSolution = new boolean[24];
+
+        String formulationProp = System.getProperty("DCOPF_FORMULATION", "dense");
+        if ("dense".equals(formulationProp)) {
+            opfFormulation = DCOPFJ.Formulation.DENSE;
+        } else if ("sparse".equals(formulationProp)) {
+            opfFormulation = DCOPFJ.Formulation.SPARSE;
+        } else if ("ptdf".equals(formulationProp)) {
+            opfFormulation = DCOPFJ.Formulation.PTDF;
+        } else {
+            throw new IllegalArgumentException("Unknown DC-OPF formulation " + formulationProp);
+        }
+        String qpProp = System.getProperty("DCOPF_QP", "colt");
+        if ("colt".equals(qpProp)) {
+            flatQP = false;
+        } else if ("flat".equals(qpProp)) {
+            flatQP = true;
+        } else {
+            throw new IllegalArgumentException("Unknown QP solver " + qpProp);
+        }
+        qpSolver = new QuadProgJSolver(flatQP);
+        lazyLinesOPF = Boolean.parseBoolean(System.getProperty("DCOPF_LAZY_LINES", "false"));
+        warmStartOPF = Boolean.parseBoolean(System.getProperty("DCOPF_WARM_START", "false"));
+        parallelOPF = Boolean.parseBoolean(System.getProperty("DCOPF_PARALLEL", "false"));
+    }
+
+    private static synchronized ExecutorService getOPFPool() {
+        if(opfPool == null) {
+            int threads = Integer.getInteger("DCOPF_THREADS",
+                    Runtime.getRuntime().availableProcessors());
+            if(threads < 1) {
+                throw new IllegalArgumentException("DCOPF_THREADS must be positive: " + threads);
+            }
+            opfPool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "dcopf-solver");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return opfPool;
     }
 
     /**
      * Solve OPF DC approximation problem by invoking DCOPFJ.
      */
-    public void solveOPF() {
+    public void solveOPF() throws AMESMarketException {
         
         genSchedule=iso.getGenScheduleAsArray();
-        
-        double [] dLoad=new double[24]; // Total Demand
-        for (int h=0; h<H; h++) {
 
-        supplyOfferByGen = iso.getSupplyOfferByGen();
+        // Inputs of each hour's DC-OPF, left null for an hour failing the
+        // capacity check. The hours are prepared here and solved afterwards,
+        // serially or in parallel (see parallelOPF).
+        double[][][] hourlySupplyOffer = new double[H][][];
+        double[][][] hourlyDemandBid = new double[H][][];
+        double[][] hourlyLoadProfile = new double[H][];
+        int[][] hourlyLoadHybridFlag = new int[H][];
 
-        // Store supplyOfferByGen to dSupplyOfferByGen for later check
-        int iRow=supplyOfferByGen.length;
-        int iCol=supplyOfferByGen[0].length;
-        
         int[] atNodeByGen = new int[I];
         for(int i=0; i<I; i++) {
             GenAgent gen = ames.getGenAgentList().get(i);
@@ -140,6 +243,15 @@ public class BUC implements SCED {
             LSEAgent lse = ames.getLSEAgentList().get(j);
             atNodeByLSE[j] = lse.getAtNode();
         }
+        
+        double [] dLoad=new double[24]; // Total Demand
+        for (int h=0; h<H; h++) {
+
+        supplyOfferByGen = iso.getSupplyOfferByGen();
+
+        // Store supplyOfferByGen to dSupplyOfferByGen for later check
+        int iRow=supplyOfferByGen.length;
+        int iCol=supplyOfferByGen[0].length;
 
         double [][] dSupplyOfferByGen=new double[iRow][iCol];
         for(int i=0; i<iRow; i++)
@@ -226,12 +338,27 @@ public class BUC implements SCED {
 
 
             if(bCheckMinMaxGenCapacityOK) {
-                //System.out.println("Check DAM:"+supplyOfferByGen[0][3]);
+                hourlySupplyOffer[h] = dSupplyOfferByGen;
+                hourlyDemandBid[h] = psDemandBidByLSE;
+                hourlyLoadProfile[h] = hourlyLoadProfileByLSE;
+                hourlyLoadHybridFlag[h] = hourlyLoadHybridFlagByLSE;
+            }
+        }
 
-                opf = new DCOPFJ(dSupplyOfferByGen, psDemandBidByLSE, hourlyLoadProfileByLSE, hourlyLoadHybridFlagByLSE,
-                                 atNodeByGen, atNodeByLSE, ames.getTransGrid(),h,false, init);
-                // System.out.println("Check DAM:"+supplyOfferByGen[0][3]);
+        DCOPFJ[] hourlyOPF;
+        if(parallelOPF) {
+            hourlyOPF = solveHoursInParallel(hourlySupplyOffer, hourlyDemandBid,
+                    hourlyLoadProfile, hourlyLoadHybridFlag, atNodeByGen, atNodeByLSE);
+        }
+        else {
+            hourlyOPF = solveHoursSerially(hourlySupplyOffer, hourlyDemandBid,
+                    hourlyLoadProfile, hourlyLoadHybridFlag, atNodeByGen, atNodeByLSE);
+        }
 
+        // Gather the results in hour order
+        for (int h=0; h<H; h++) {
+            opf = hourlyOPF[h];
+            if(opf != null) {
                 bDCOPFHasSolution[h] = opf.getIsSolutionFeasibleAndOptimal();
                 dailyDispatch[h] = opf.getCommitment();
                 /*for(int i=0;i<dailyCommitment[h].length;i++)
@@ -290,6 +417,76 @@ public class BUC implements SCED {
         System.gc();
     }
 
+    /**
+     * Solve the hours one after the other, warm-starting each from the
+     * previous hour if enabled. Hours without inputs are left null.
+     */
+    private DCOPFJ[] solveHoursSerially(double[][][] supplyOffer, double[][][] demandBid,
+            double[][] loadProfile, int[][] loadHybridFlag, int[] atNodeByGen, int[] atNodeByLSE) {
+        DCOPFJ[] hourlyOPF = new DCOPFJ[H];
+        for (int h=0; h<H; h++) {
+            if(supplyOffer[h] == null) {
+                lastActiveSet = null;
+                continue;
+            }
+            hourlyOPF[h] = new DCOPFJ(supplyOffer[h], demandBid[h], loadProfile[h], loadHybridFlag[h],
+                                      atNodeByGen, atNodeByLSE, ames.getTransGrid(),h,false, init, opfFormulation,
+                                      lazyLinesOPF, warmStartOPF ? lastActiveSet : null, qpSolver);
+            lastActiveSet = hourlyOPF[h].getIsSolutionFeasibleAndOptimal()
+                            ? hourlyOPF[h].getActiveSet() : null;
+        }
+        return hourlyOPF;
+    }
+
+    /**
+     * Solve the hours concurrently on the shared pool. DCOPFJ does not modify
+     * its inputs and only reads the TransGrid, so the hours are independent.
+     * Hours without inputs are left null.
+     */
+    private DCOPFJ[] solveHoursInParallel(final double[][][] supplyOffer, final double[][][] demandBid,
+            final double[][] loadProfile, final int[][] loadHybridFlag,
+            final int[] atNodeByGen, final int[] atNodeByLSE) throws AMESMarketException {
+        final TransGrid grid = ames.getTransGrid();
+        List<Callable<DCOPFJ>> tasks = new ArrayList<Callable<DCOPFJ>>();
+        for (int h=0; h<H; h++) {
+            final int hour = h;
+            tasks.add(new Callable<DCOPFJ>() {
+                public DCOPFJ call() {
+                    if(supplyOffer[hour] == null) {
+                        return null;
+                    }
+                    QuadProgJSolver solver = idleSolvers.poll();
+                    if(solver == null) {
+                        solver = new QuadProgJSolver(flatQP);
+                    }
+                    DCOPFJ opf = new DCOPFJ(supplyOffer[hour], demandBid[hour], loadProfile[hour],
+                                            loadHybridFlag[hour], atNodeByGen, atNodeByLSE, grid, hour, false,
+                                            init, opfFormulation, lazyLinesOPF, null, solver);
+                    // a solver whose solve failed is dropped with its state
+                    idleSolvers.add(solver);
+                    return opf;
+                }
+            });
+        }
+
+        DCOPFJ[] hourlyOPF = new DCOPFJ[H];
+        try {
+            List<Future<DCOPFJ>> results = getOPFPool().invokeAll(tasks);
+            for (int h=0; h<H; h++) {
+                try {
+                    hourlyOPF[h] = results.get(h).get();
+                } catch (ExecutionException e) {
+                    throw new AMESMarketException("DC-OPF failed at hour " + h, e.getCause());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new AMESMarketException("Interrupted while solving the DC-OPF", e);
+        }
+        lastActiveSet = null;
+        return hourlyOPF;
+    }
+
     //Real time OPF
 
     public void solveRTOPF(double [][] dc,double [] psd,int hour,int day) throws AMESMarketException{
@@ -395,9 +592,11 @@ public class BUC implements SCED {
                 check=false;
 
             opf = new DCOPFJ(dSupplyOfferByGen, psDemandBidByLSE, hourlyLoadProfileByLSE, hourlyLoadHybridFlagByLSE,
-                             atNodeByGen, atNodeByLSE, ames.getTransGrid(),0,check, init);
+                             atNodeByGen, atNodeByLSE, ames.getTransGrid(),0,check, init, opfFormulation,
+                             lazyLinesOPF, warmStartOPF ? lastActiveSetRT : null, qpSolver);
 
             boolean check = opf.getIsSolutionFeasibleAndOptimal();
+            lastActiveSetRT = check ? opf.getActiveSet() : null;
             dailyRealTimeCommitment[hour]=opf.getCommitment();
             dailyRealTimeLMP[hour]=opf.getLMP();
             dailyRealTimeBranchFlow[hour]=opf.getBranchFlow();
@@ -418,8 +617,7 @@ public class BUC implements SCED {
                 }*/
         }
         else {
-
-
+            lastActiveSetRT = null;
         }
 
     }
@@ -0,0 +1,725 @@
+/*
+ * FIXME: LICENSE
+ */
+package amesmarket;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import cern.colt.function.IntIntDoubleFunction;
+import cern.colt.matrix.DoubleMatrix1D;
+import cern.colt.matrix.DoubleMatrix2D;
+
+/**
+ * Primal-dual interior point solver for multi-period QPs in which the
+ * periods are only linked by constraints between consecutive periods, such
+ * as the ramp limits of a dispatch over a day:
+ *
+ * <pre>
+ *   min   SUM_t (0.5*x_t'*G_t*x_t + a_t'*x_t)
+ *   s.t.  Ceq_t'*x_t  = beq_t                      for each period t
+ *         Ciq_t'*x_t >= biq_t                      for each period t
+ *         c*x_t[i] + d*x_(t+1)[j] >= b             coupling constraints
+ * </pre>
+ *
+ * Each period is given in the layout of QuadProgJ. With the variables
+ * ordered by period, the Newton system of an iteration is block
+ * tridiagonal, with one block of the period's variables and equality
+ * multipliers per period. It is solved with a block LU factorization, so an
+ * iteration costs the same as the independent periods plus one Schur
+ * complement update per pair of consecutive periods, and the cost grows
+ * linearly with the number of periods. Steps follow Mehrotra's
+ * predictor-corrector method.
+ *
+ * The multipliers have the signs of QuadProgJ: G*x + a = Ceq*v + Ciq*u,
+ * with u &gt;= 0.
+ */
+public class BlockTridiagonalQP {
+
+    private static final int MAX_ITERATIONS = 100;
+    private static final double TOL = 1.0E-10;    // residuals, relative
+    private static final double MU_TOL = 1.0E-12; // complementarity gap
+    private static final double STEP = 0.995;     // fraction to the boundary
+
+    /**
+     * Data of one period. Constraint rows are held in compressed row form,
+     * row r has the values val[ptr[r]..ptr[r+1]-1] in the columns
+     * idx[ptr[r]..ptr[r+1]-1].
+     */
+    private static final class Period {
+        int n;      // number of variables
+        int meq;    // number of equality constraints
+        int miq;    // number of inequality constraints
+        int xOff;   // offset of the variables in x
+        int eqOff;  // offset of the equality constraints in y
+        int iqOff;  // offset of the inequality constraints in z and s
+        double[] G; // nxn, row-major
+        double[] a;
+        int[] eqPtr, eqIdx;
+        double[] eqVal, beq;
+        int[] iqPtr, iqIdx;
+        double[] iqVal, biq;
+
+        // Newton system block, [H_t -E_t'; -E_t 0], and its factorization
+        double[] lu;
+        int[] piv;
+        double[] Hoff; // n x n_(t+1), coupling block to the next period
+        double[] Y;    // (n+meq) x n_(t+1), D_t^{-1} times the coupling block
+    }
+
+    private final List<Period> periods = new ArrayList<Period>();
+    private int nx, ny, nz; // sizes of x, y and z
+
+    // Coupling constraints, c*x_t[i] + d*x_(t+1)[j] >= b
+    private int numCoupling;
+    private int[] cpT = new int[16];
+    private int[] cpI = new int[16];
+    private int[] cpJ = new int[16];
+    private double[] cpC = new double[16];
+    private double[] cpD = new double[16];
+    private double[] cpB = new double[16];
+
+    // Iterates: x, equality multipliers y, inequality multipliers z, slacks s
+    private double[] x, y, z, s;
+
+    private boolean isFeasibleAndOptimal;
+    private int numIterations;
+
+    /**
+     * Add the next period, in QuadProgJ's layout: G is nxn, Ceq is nxmeq and
+     * Ciq is nxmiq. Periods are added in time order.
+     *
+     * @return the index of the period.
+     */
+    public int addPeriod(DoubleMatrix2D G, DoubleMatrix1D a,
+            DoubleMatrix2D Ceq, DoubleMatrix1D beq,
+            DoubleMatrix2D Ciq, DoubleMatrix1D biq) {
+        final Period p = new Period();
+        p.n = G.rows();
+        p.meq = Ceq.columns();
+        p.miq = Ciq.columns();
+        p.xOff = nx;
+        p.eqOff = ny;
+        p.iqOff = nz;
+
+        p.G = new double[p.n * p.n];
+        G.forEachNonZero(new IntIntDoubleFunction() {
+            public double apply(int i, int j, double value) {
+                p.G[i * p.n + j] = value;
+                return value;
+            }
+        });
+        p.a = a.toArray();
+
+        p.eqPtr = new int[p.meq + 1];
+        p.eqIdx = rowIndices(Ceq, p.eqPtr);
+        p.eqVal = rowValues(Ceq, p.eqPtr, p.eqIdx);
+        p.beq = beq.toArray();
+        p.iqPtr = new int[p.miq + 1];
+        p.iqIdx = rowIndices(Ciq, p.iqPtr);
+        p.iqVal = rowValues(Ciq, p.iqPtr, p.iqIdx);
+        p.biq = biq.toArray();
+
+        periods.add(p);
+        nx += p.n;
+        ny += p.meq;
+        nz += p.miq;
+        return periods.size() - 1;
+    }
+
+    /**
+     * Add the coupling constraint c*x_t[i] + d*x_(t+1)[j] >= b between
+     * period t and the next one, which must already have been added.
+     */
+    public void addCoupling(int t, int i, double c, int j, double d, double b) {
+        if (t < 0 || t + 1 >= periods.size()) {
+            throw new IllegalArgumentException("No periods " + t + " and " + (t + 1));
+        }
+        if (numCoupling == cpT.length) {
+            int size = 2 * numCoupling;
+            cpT = Arrays.copyOf(cpT, size);
+            cpI = Arrays.copyOf(cpI, size);
+            cpJ = Arrays.copyOf(cpJ, size);
+            cpC = Arrays.copyOf(cpC, size);
+            cpD = Arrays.copyOf(cpD, size);
+            cpB = Arrays.copyOf(cpB, size);
+        }
+        cpT[numCoupling] = t;
+        cpI[numCoupling] = i;
+        cpJ[numCoupling] = j;
+        cpC[numCoupling] = c;
+        cpD[numCoupling] = d;
+        cpB[numCoupling] = b;
+        numCoupling++;
+    }
+
+    // Column j of the nxm matrix M is row j of the compressed row form
+    private static int[] rowIndices(DoubleMatrix2D M, final int[] ptr) {
+        M.forEachNonZero(new IntIntDoubleFunction() {
+            public double apply(int i, int j, double value) {
+                ptr[j + 1]++;
+                return value;
+            }
+        });
+        for (int r = 0; r + 1 < ptr.length; r++) {
+            ptr[r + 1] += ptr[r];
+        }
+        return new int[ptr[ptr.length - 1]];
+    }
+
+    private static double[] rowValues(DoubleMatrix2D M, int[] ptr, final int[] idx) {
+        final double[] val = new double[idx.length];
+        final int[] next = Arrays.copyOf(ptr, ptr.length - 1);
+        M.forEachNonZero(new IntIntDoubleFunction() {
+            public double apply(int i, int j, double value) {
+                int e = next[j]++;
+                idx[e] = i;
+                val[e] = value;
+                return value;
+            }
+        });
+        return val;
+    }
+
+    /**
+     * Solve the problem.
+     *
+     * @return true if a solution within the tolerances was found.
+     */
+    public boolean solve() {
+        final int T = periods.size();
+        final int m = nz + numCoupling;
+        x = new double[nx];
+        y = new double[ny];
+        z = new double[m];
+        s = new double[m];
+        isFeasibleAndOptimal = false;
+        numIterations = 0;
+        if (T == 0) {
+            isFeasibleAndOptimal = true;
+            return true;
+        }
+        for (int t = 0; t < T; t++) {
+            Period p = periods.get(t);
+            int b = p.n + p.meq;
+            p.lu = new double[b * b];
+            p.piv = new int[b];
+            if (t + 1 < T) {
+                int nNext = periods.get(t + 1).n;
+                p.Hoff = new double[p.n * nNext];
+                p.Y = new double[b * nNext];
+            }
+        }
+
+        double[] rd = new double[nx];
+        double[] rp = new double[ny];
+        double[] rs = new double[m];
+        double[] rc = new double[m];
+        double[] w = new double[m];
+        double[] rhs = new double[nx + ny];
+        double[] dx = new double[nx];
+        double[] dy = new double[ny];
+        double[] ds = new double[m];
+        double[] dz = new double[m];
+        double[] ds0 = new double[m];
+        double[] dz0 = new double[m];
+        double[] tmp = new double[m];
+        double[] bnd = rowBounds();
+
+        // Start from x = 0, with slacks and multipliers away from zero
+        mulA(x, tmp);
+        for (int r = 0; r < m; r++) {
+            s[r] = Math.max(tmp[r] - bnd[r], 1);
+            z[r] = 1;
+        }
+
+        double scaleD = 1 + maxAbs(allOf(true));
+        double scaleP = 1 + Math.max(maxAbs(allOf(false)), maxAbs(bnd));
+
+        for (; numIterations < MAX_ITERATIONS; numIterations++) {
+            // Residuals
+            mulG(x, rd);
+            mulEt(y, rd, -1);
+            mulAt(z, rd, -1);
+            addLinear(rd);
+            mulE(x, rp);
+            subtractEqBounds(rp);
+            mulA(x, rs);
+            double mu = 0;
+            for (int r = 0; r < m; r++) {
+                rs[r] -= s[r] + bnd[r];
+                mu += s[r] * z[r];
+            }
+            mu = m == 0 ? 0 : mu / m;
+
+            if (maxAbs(rd) <= TOL * scaleD && maxAbs(rp) <= TOL * scaleP
+                    && maxAbs(rs) <= TOL * scaleP && mu <= MU_TOL) {
+                isFeasibleAndOptimal = true;
+                break;
+            }
+
+            for (int r = 0; r < m; r++) {
+                w[r] = z[r] / s[r];
+            }
+            if (!factor(w)) {
+                break;
+            }
+
+            // Predictor (affine scaling) step
+            for (int r = 0; r < m; r++) {
+                rc[r] = s[r] * z[r];
+            }
+            newtonStep(rd, rp, rs, rc, rhs, tmp, dx, dy, ds0, dz0);
+            double alpha = maxStep(ds0, dz0);
+            double muAff = 0;
+            for (int r = 0; r < m; r++) {
+                muAff += (s[r] + alpha * ds0[r]) * (z[r] + alpha * dz0[r]);
+            }
+            muAff = m == 0 ? 0 : muAff / m;
+            double sigma = mu == 0 ? 0 : Math.pow(muAff / mu, 3);
+
+            // Corrector step
+            for (int r = 0; r < m; r++) {
+                rc[r] = s[r] * z[r] + ds0[r] * dz0[r] - sigma * mu;
+            }
+            newtonStep(rd, rp, rs, rc, rhs, tmp, dx, dy, ds, dz);
+            alpha = Math.min(1, STEP * maxStep(ds, dz));
+
+            for (int k = 0; k < nx; k++) {
+                x[k] += alpha * dx[k];
+            }
+            for (int k = 0; k < ny; k++) {
+                y[k] += alpha * dy[k];
+            }
+            for (int r = 0; r < m; r++) {
+                s[r] += alpha * ds[r];
+                z[r] += alpha * dz[r];
+            }
+        }
+        return isFeasibleAndOptimal;
+    }
+
+    /**
+     * One Newton direction, for the complementarity residual rc, with the
+     * factorization of the current iterate.
+     */
+    private void newtonStep(double[] rd, double[] rp, double[] rs, double[] rc,
+            double[] rhs, double[] tmp, double[] dx, double[] dy,
+            double[] ds, double[] dz) {
+        final int m = rc.length;
+        // (H + A'WA) dx - E' dy = -rd - A' ((rc + Z rs) / S)
+        //          - E dx       = rp
+        for (int r = 0; r < m; r++) {
+            tmp[r] = (rc[r] + z[r] * rs[r]) / s[r];
+        }
+        Arrays.fill(dx, 0);
+        mulAt(tmp, dx, -1);
+        for (int t = 0; t < periods.size(); t++) {
+            Period p = periods.get(t);
+            int o = p.xOff + p.eqOff;
+            for (int k = 0; k < p.n; k++) {
+                rhs[o + k] = dx[p.xOff + k] - rd[p.xOff + k];
+            }
+            System.arraycopy(rp, p.eqOff, rhs, o + p.n, p.meq);
+        }
+        solveBlocks(rhs);
+        for (int t = 0; t < periods.size(); t++) {
+            Period p = periods.get(t);
+            int o = p.xOff + p.eqOff;
+            System.arraycopy(rhs, o, dx, p.xOff, p.n);
+            System.arraycopy(rhs, o + p.n, dy, p.eqOff, p.meq);
+        }
+        // ds = A dx + rs, dz = -(rc + Z ds) / S
+        mulA(dx, ds);
+        for (int r = 0; r < m; r++) {
+            ds[r] += rs[r];
+            dz[r] = -(rc[r] + z[r] * ds[r]) / s[r];
+        }
+    }
+
+    /**
+     * Largest step in [0,1] that keeps s and z non-negative.
+     */
+    private double maxStep(double[] ds, double[] dz) {
+        double alpha = 1;
+        for (int r = 0; r < ds.length; r++) {
+            if (ds[r] < 0) {
+                alpha = Math.min(alpha, -s[r] / ds[r]);
+            }
+            if (dz[r] < 0) {
+                alpha = Math.min(alpha, -z[r] / dz[r]);
+            }
+        }
+        return alpha;
+    }
+
+    /**
+     * Form the blocks [G_t + A_t'WA_t, -E_t'; -E_t, 0] and the coupling
+     * blocks, and factor the block tridiagonal matrix: D_0 = B_0 and
+     * D_t = B_t - U_(t-1)' D_(t-1)^{-1} U_(t-1).
+     *
+     * @return false if a block is singular.
+     */
+    private boolean factor(double[] w) {
+        final int T = periods.size();
+        for (int t = 0; t < T; t++) {
+            Period p = periods.get(t);
+            int b = p.n + p.meq;
+            double[] D = p.lu;
+            Arrays.fill(D, 0);
+            for (int i = 0; i < p.n; i++) {
+                System.arraycopy(p.G, i * p.n, D, i * b, p.n);
+            }
+            for (int r = 0; r < p.miq; r++) {
+                double wr = w[p.iqOff + r];
+                for (int e = p.iqPtr[r]; e < p.iqPtr[r + 1]; e++) {
+                    double v = wr * p.iqVal[e];
+                    int row = p.iqIdx[e] * b;
+                    for (int f = p.iqPtr[r]; f < p.iqPtr[r + 1]; f++) {
+                        D[row + p.iqIdx[f]] += v * p.iqVal[f];
+                    }
+                }
+            }
+            for (int r = 0; r < p.meq; r++) {
+                for (int e = p.eqPtr[r]; e < p.eqPtr[r + 1]; e++) {
+                    int k = p.eqIdx[e];
+                    D[k * b + p.n + r] = -p.eqVal[e];
+                    D[(p.n + r) * b + k] = -p.eqVal[e];
+                }
+            }
+            if (p.Hoff != null) {
+                Arrays.fill(p.Hoff, 0);
+            }
+        }
+        for (int r = 0; r < numCoupling; r++) {
+            double wr = w[nz + r];
+            Period p = periods.get(cpT[r]);
+            Period q = periods.get(cpT[r] + 1);
+            int i = cpI[r];
+            int j = cpJ[r];
+            p.lu[i * (p.n + p.meq) + i] += wr * cpC[r] * cpC[r];
+            q.lu[j * (q.n + q.meq) + j] += wr * cpD[r] * cpD[r];
+            p.Hoff[i * q.n + j] += wr * cpC[r] * cpD[r];
+        }
+
+        for (int t = 0; t < T; t++) {
+            Period p = periods.get(t);
+            int b = p.n + p.meq;
+            if (t > 0) {
+                // D_t -= Hoff_(t-1)' * Y_(t-1), in the top left nxn corner
+                Period prev = periods.get(t - 1);
+                for (int k = 0; k < prev.n; k++) {
+                    for (int i = 0; i < p.n; i++) {
+                        double h = prev.Hoff[k * p.n + i];
+                        if (h == 0) {
+                            continue;
+                        }
+                        for (int j = 0; j < p.n; j++) {
+                            p.lu[i * b + j] -= h * prev.Y[k * p.n + j];
+                        }
+                    }
+                }
+            }
+            if (!luFactor(p.lu, p.piv, b)) {
+                return false;
+            }
+            if (t + 1 < T) {
+                // Y_t = D_t^{-1} * [Hoff_t; 0], column by column
+                int nNext = periods.get(t + 1).n;
+                double[] col = new double[b];
+                for (int j = 0; j < nNext; j++) {
+                    Arrays.fill(col, 0);
+                    for (int i = 0; i < p.n; i++) {
+                        col[i] = p.Hoff[i * nNext + j];
+                    }
+                    luSolve(p.lu, p.piv, b, col, 0);
+                    for (int i = 0; i < b; i++) {
+                        p.Y[i * nNext + j] = col[i];
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Solve the factored block tridiagonal system in place.
+     */
+    private void solveBlocks(double[] v) {
+        final int T = periods.size();
+        // Forward: g_t = r_t - U_(t-1)' D_(t-1)^{-1} g_(t-1)
+        for (int t = 0; t < T; t++) {
+            Period p = periods.get(t);
+            int o = p.xOff + p.eqOff;
+            luSolve(p.lu, p.piv, p.n + p.meq, v, o);
+            if (t + 1 < T) {
+                Period q = periods.get(t + 1);
+                int oq = q.xOff + q.eqOff;
+                for (int k = 0; k < p.n; k++) {
+                    double vk = v[o + k];
+                    for (int i = 0; i < q.n; i++) {
+                        v[oq + i] -= p.Hoff[k * q.n + i] * vk;
+                    }
+                }
+            }
+        }
+        // Backward: v_t = D_t^{-1} g_t - Y_t v_(t+1)
+        for (int t = T - 2; t >= 0; t--) {
+            Period p = periods.get(t);
+            Period q = periods.get(t + 1);
+            int o = p.xOff + p.eqOff;
+            int oq = q.xOff + q.eqOff;
+            int b = p.n + p.meq;
+            for (int i = 0; i < b; i++) {
+                double sum = 0;
+                for (int j = 0; j < q.n; j++) {
+                    sum += p.Y[i * q.n + j] * v[oq + j];
+                }
+                v[o + i] -= sum;
+            }
+        }
+    }
+
+    // LU factorization with partial pivoting of the bxb row-major matrix A
+    private static boolean luFactor(double[] A, int[] piv, int b) {
+        for (int k = 0; k < b; k++) {
+            int pr = k;
+            double max = Math.abs(A[k * b + k]);
+            for (int i = k + 1; i < b; i++) {
+                double v = Math.abs(A[i * b + k]);
+                if (v > max) {
+                    max = v;
+                    pr = i;
+                }
+            }
+            if (max == 0 || Double.isNaN(max)) {
+                return false;
+            }
+            piv[k] = pr;
+            if (pr != k) {
+                for (int j = 0; j < b; j++) {
+                    double tmp = A[k * b + j];
+                    A[k * b + j] = A[pr * b + j];
+                    A[pr * b + j] = tmp;
+                }
+            }
+            double d = A[k * b + k];
+            for (int i = k + 1; i < b; i++) {
+                double l = A[i * b + k] / d;
+                A[i * b + k] = l;
+                if (l != 0) {
+                    for (int j = k + 1; j < b; j++) {
+                        A[i * b + j] -= l * A[k * b + j];
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    // Solve A*u = v[off..off+b-1] in place, with A factored by luFactor
+    private static void luSolve(double[] A, int[] piv, int b, double[] v, int off) {
+        for (int k = 0; k < b; k++) {
+            int pr = piv[k];
+            if (pr != k) {
+                double tmp = v[off + k];
+                v[off + k] = v[off + pr];
+                v[off + pr] = tmp;
+            }
+        }
+        for (int i = 1; i < b; i++) {
+            double sum = v[off + i];
+            for (int j = 0; j < i; j++) {
+                sum -= A[i * b + j] * v[off + j];
+            }
+            v[off + i] = sum;
+        }
+        for (int i = b - 1; i >= 0; i--) {
+            double sum = v[off + i];
+            for (int j = i + 1; j < b; j++) {
+                sum -= A[i * b + j] * v[off + j];
+            }
+            v[off + i] = sum / A[i * b + i];
+        }
+    }
+
+    // out = G*v
+    private void mulG(double[] v, double[] out) {
+        for (Period p : periods) {
+            for (int i = 0; i < p.n; i++) {
+                double sum = 0;
+                for (int j = 0; j < p.n; j++) {
+                    sum += p.G[i * p.n + j] * v[p.xOff + j];
+                }
+                out[p.xOff + i] = sum;
+            }
+        }
+    }
+
+    private void addLinear(double[] out) {
+        for (Period p : periods) {
+            for (int i = 0; i < p.n; i++) {
+                out[p.xOff + i] += p.a[i];
+            }
+        }
+    }
+
+    // out = E*v, the equality constraint rows
+    private void mulE(double[] v, double[] out) {
+        for (Period p : periods) {
+            for (int r = 0; r < p.meq; r++) {
+                double sum = 0;
+                for (int e = p.eqPtr[r]; e < p.eqPtr[r + 1]; e++) {
+                    sum += p.eqVal[e] * v[p.xOff + p.eqIdx[e]];
+                }
+                out[p.eqOff + r] = sum;
+            }
+        }
+    }
+
+    // out += sign*E'*v
+    private void mulEt(double[] v, double[] out, double sign) {
+        for (Period p : periods) {
+            for (int r = 0; r < p.meq; r++) {
+                double vr = sign * v[p.eqOff + r];
+                for (int e = p.eqPtr[r]; e < p.eqPtr[r + 1]; e++) {
+                    out[p.xOff + p.eqIdx[e]] += p.eqVal[e] * vr;
+                }
+            }
+        }
+    }
+
+    // out = A*v, the inequality constraint rows, coupling rows last
+    private void mulA(double[] v, double[] out) {
+        for (Period p : periods) {
+            for (int r = 0; r < p.miq; r++) {
+                double sum = 0;
+                for (int e = p.iqPtr[r]; e < p.iqPtr[r + 1]; e++) {
+                    sum += p.iqVal[e] * v[p.xOff + p.iqIdx[e]];
+                }
+                out[p.iqOff + r] = sum;
+            }
+        }
+        for (int r = 0; r < numCoupling; r++) {
+            out[nz + r] = cpC[r] * v[periods.get(cpT[r]).xOff + cpI[r]]
+                    + cpD[r] * v[periods.get(cpT[r] + 1).xOff + cpJ[r]];
+        }
+    }
+
+    // out += sign*A'*v
+    private void mulAt(double[] v, double[] out, double sign) {
+        for (Period p : periods) {
+            for (int r = 0; r < p.miq; r++) {
+                double vr = sign * v[p.iqOff + r];
+                for (int e = p.iqPtr[r]; e < p.iqPtr[r + 1]; e++) {
+                    out[p.xOff + p.iqIdx[e]] += p.iqVal[e] * vr;
+                }
+            }
+        }
+        for (int r = 0; r < numCoupling; r++) {
+            double vr = sign * v[nz + r];
+            out[periods.get(cpT[r]).xOff + cpI[r]] += cpC[r] * vr;
+            out[periods.get(cpT[r] + 1).xOff + cpJ[r]] += cpD[r] * vr;
+        }
+    }
+
+    private void subtractEqBounds(double[] out) {
+        for (Period p : periods) {
+            for (int r = 0; r < p.meq; r++) {
+                out[p.eqOff + r] -= p.beq[r];
+            }
+        }
+    }
+
+    // Right hand sides of the inequality rows, coupling rows last
+    private double[] rowBounds() {
+        double[] v = new double[nz + numCoupling];
+        for (Period p : periods) {
+            System.arraycopy(p.biq, 0, v, p.iqOff, p.miq);
+        }
+        System.arraycopy(cpB, 0, v, nz, numCoupling);
+        return v;
+    }
+
+    // The linear terms (true) or equality bounds (false) of all periods
+    private double[] allOf(boolean linear) {
+        double[] v = new double[linear ? nx : ny];
+        for (Period p : periods) {
+            if (linear) {
+                System.arraycopy(p.a, 0, v, p.xOff, p.n);
+            } else {
+                System.arraycopy(p.beq, 0, v, p.eqOff, p.meq);
+            }
+        }
+        return v;
+    }
+
+    private static double maxAbs(double[] v) {
+        double max = 0;
+        for (double d : v) {
+            max = Math.max(max, Math.abs(d));
+        }
+        return max;
+    }
+
+    /************************* Get methods **************************/
+
+    public int getNumPeriods() {
+        return periods.size();
+    }
+
+    /**
+     * @return the solution of period t.
+     */
+    public double[] getMinX(int t) {
+        Period p = periods.get(t);
+        return Arrays.copyOfRange(x, p.xOff, p.xOff + p.n);
+    }
+
+    /**
+     * @return the equality multipliers of period t.
+     */
+    public double[] getEqMultipliers(int t) {
+        Period p = periods.get(t);
+        return Arrays.copyOfRange(y, p.eqOff, p.eqOff + p.meq);
+    }
+
+    /**
+     * @return the inequality multipliers of period t.
+     */
+    public double[] getIneqMultipliers(int t) {
+        Period p = periods.get(t);
+        return Arrays.copyOfRange(z, p.iqOff, p.iqOff + p.miq);
+    }
+
+    /**
+     * @return the multipliers of the coupling constraints, in the order
+     * they were added.
+     */
+    public double[] getCouplingMultipliers() {
+        return Arrays.copyOfRange(z, nz, nz + numCoupling);
+    }
+
+    public double getMinF() {
+        double f = 0;
+        for (Period p : periods) {
+            for (int i = 0; i < p.n; i++) {
+                double gx = 0;
+                for (int j = 0; j < p.n; j++) {
+                    gx += p.G[i * p.n + j] * x[p.xOff + j];
+                }
+                f += x[p.xOff + i] * (0.5 * gx + p.a[i]);
+            }
+        }
+        return f;
+    }
+
+    public int getNumIterations() {
+        return numIterations;
+    }
+
+    public boolean getIsFeasibleAndOptimal() {
+        return isFeasibleAndOptimal;
+    }
+}
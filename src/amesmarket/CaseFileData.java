@@ -258,7 +258,7 @@ public class CaseFileData {
      * programmatically set to 1, ensuring DCOPFJ, if used, behaves correctly.
      */
     public void checkLSEHybridDemandSources() {
-        if(getLSEDemandSource() == LSE_DEMAND_LOAD_CASE) {
+        if(getLSEDemandSource() == LSE_DEMAND_LOAD_CASE && lseHybridDemand != null) {
             //make sure the flags are all one
             for(int i = 0; i<lseHybridDemand.length; i++) {
                 //Start at one. Index 0 is the LSE name.
@@ -28,9 +28,11 @@ package amesmarket;
 // DC-OPF paper: Junjie Sun and Leigh Tesfatsion, (2006) "DC OPF Formulation
 //     and Solution Using QuadProgJ", ISU Econ Working Paper Series #06014
 
+import cern.colt.function.IntIntDoubleFunction;
 import cern.colt.matrix.*;
 import cern.colt.matrix.impl.*;
 import java.io.*;
+import java.util.Arrays;
 //import quadprogj.*;
 
 /**
@@ -67,13 +69,13 @@ import java.io.*;
  * ------------------------------
  * B:       supplyOffer[][1]; cost coefficient b; as appeared in matrix U
  * A:       supplyOffer[][0]; cost coefficient a
- * Wrr:     grid.getReducedVADWeight()
+ * Wrr:     grid.getReducedVADWeightMatrix()
  * II:      someFunction(atNodeByGen)
- * rBusAdm: grid.getReducedBusAdmittance()
+ * rBusAdm: grid.getReducedBusAdmittanceMatrix()
  * FDemand: someFunction(atNodeByLSE, loadProfile[]) ~ Section 4.3 in DC-OPF paper
  * Oni:     NxI zero matrix
- * Z:       grid.getDiagonalAdmittance()
- * rAdj:    grid.getReducedAdjacency()
+ * Z:       grid.getDiagonalAdmittanceMatrix()
+ * rAdj:    grid.getReducedAdjacencyMatrix()
  * Iii:     IxI identity matrix
  * Oik:     Ix(K-1) zero matrix
  * pU:      grid.getLineCap()
@@ -94,15 +96,15 @@ import java.io.*;
  * D:       psDemandBid[][1]; demand coefficient d; as appeared in matrix U
  * A:       supplyOffer[][0]; cost coefficient a
  * C:       psDemandBid[][0]; demand coefficient c
- * Wrr:     grid.getReducedVADWeight()
+ * Wrr:     grid.getReducedVADWeightMatrix()
  * II:      someFunction(atNodeByGen)
  * JJ:      someFunction(atNodeByLSE)
- * rBusAdm: grid.getReducedBusAdmittance()
+ * rBusAdm: grid.getReducedBusAdmittanceMatrix()
  * FDemand: someFunction(atNodeByLSE, loadProfile[]) ~ Section 4.3 in DC-OPF paper
  * Oni:     NxI zero matrix
  * Onj:     NxJ zero matrix
- * Z:       grid.getDiagonalAdmittance()
- * rAdj:    grid.getReducedAdjacency()
+ * Z:       grid.getDiagonalAdmittanceMatrix()
+ * rAdj:    grid.getReducedAdjacencyMatrix()
  * Iii:     IxI identity matrix
  * Oij:     IxJ zero matrix
  * Oik:     Ix(K-1) zero matrix
@@ -117,6 +119,24 @@ import java.io.*;
  */
 public class DCOPFJ {
 
+    /**
+     * How the QP is assembled.
+     * <ul>
+     * <li>DENSE: the original formulation over GenCo, price-sensitive load and
+     * voltage angle variables, with dense matrices.</li>
+     * <li>SPARSE: the same QP, assembled from TransGrid's sparse matrices.
+     * QuadProgJ keeps G, Ceq and Ciq sparse, but its Cholesky factor and
+     * inverses of G are dense, so the solve still takes O(n^2) memory and
+     * O(n^3) time in the number of variables n. Only the assembly and the
+     * inequality constraints scale with the number of branches.</li>
+     * <li>PTDF: voltage angles eliminated through the PTDF matrix of the grid,
+     * leaving only the GenCo and price-sensitive load variables, a single
+     * power balance constraint, and branch flow limits expressed with shift
+     * factors. LMPs are reconstructed from the multipliers.</li>
+     * </ul>
+     */
+    public enum Formulation { DENSE, SPARSE, PTDF }
+
     // Index for supplyOffer parameters, i.e., in the form of {a,b,capL,capU}
     private static final int A_INDEX    = 0;
     private static final int B_INDEX    = 1;
@@ -188,7 +208,37 @@ public class DCOPFJ {
     private DoubleMatrix2D Ciq;
     private DoubleMatrix1D biq;
 
-    private QuadProgJ qpj;
+    // Only valid while solving: with a flat mode QuadProgJSolver, the result
+    // is overwritten by the solver's next problem. What is needed later is
+    // copied below.
+    private QPResult qpj;
+    private boolean isFeasibleAndOptimal;
+    private int numBindingConstraints;
+    private int numIterations;
+    private int[] activeSet;
+
+    private final Formulation formulation;
+
+    // PTDF formulation only: voltage angles theta = T*x + t0 for the QP
+    // variables x, and branch flows = Hf*x + f0 (all in PU)
+    private DoubleMatrix2D T;    // (K-1)x(I+J')
+    private DoubleMatrix1D t0;   // (K-1)x1
+    private DoubleMatrix2D Hf;   // Nx(I+J')
+    private DoubleMatrix1D f0;   // Nx1
+
+    // Active set of a previous solve to warm-start QuadProgJ with, or null
+    private final int[] warmActiveSet;
+
+    // Reusable QuadProgJ solver caching the factorization of G, or null
+    private final QuadProgJSolver solver;
+
+    // If true, branch flow limits are only added to the QP once violated,
+    // see solveWithLazyLines()
+    private final boolean lazyLines;
+    // Columns of Ciq passed to the last QuadProgJ solve, or null for all
+    private int[] selectedIneq;
+    private int numLazyRounds;
+    private int numMonitoredLines;
 
     // Solution from QuadProgJ
     private double[] commitment; // power production quantity
@@ -208,18 +258,57 @@ public class DCOPFJ {
     // Constructor for hybrid demand
     public DCOPFJ(double[][] so, double[][] db, double[] lp, int [] hf, int[] ng, int[] nl,
                   TransGrid tg,int h,boolean checktemp, INIT init) {
+        this(so, db, lp, hf, ng, nl, tg, h, checktemp, init, false, null, null);
+    }
+
+    // Constructor for hybrid demand, choosing the dense or sparse formulation
+    // and optionally warm-starting QuadProgJ with the active set of a previous
+    // DCOPFJ solve (see getActiveSet()) with the same grid, GenCos and LSEs.
+    // A non-null solver is used instead of a fresh QuadProgJ, so the
+    // factorization of G is reused from the previous solve if G is unchanged.
+    public DCOPFJ(double[][] so, double[][] db, double[] lp, int [] hf, int[] ng, int[] nl,
+                  TransGrid tg,int h,boolean checktemp, INIT init, boolean sparse,
+                  int[] warmActiveSet, QuadProgJSolver solver) {
+        this(so, db, lp, hf, ng, nl, tg, h, checktemp, init,
+             sparse ? Formulation.SPARSE : Formulation.DENSE, warmActiveSet, solver);
+    }
+
+    // As above, with any of the formulations
+    public DCOPFJ(double[][] so, double[][] db, double[] lp, int [] hf, int[] ng, int[] nl,
+                  TransGrid tg,int h,boolean checktemp, INIT init, Formulation formulation,
+                  int[] warmActiveSet, QuadProgJSolver solver) {
+        this(so, db, lp, hf, ng, nl, tg, h, checktemp, init, formulation, false,
+             warmActiveSet, solver);
+    }
+
+    // As above, optionally generating the branch flow limits lazily: the QP
+    // is first solved without them, and the limits of the lines found
+    // overloaded are added until none is. With a warm active set, the lines
+    // binding in it are included from the start.
+    public DCOPFJ(double[][] so, double[][] db, double[] lp, int [] hf, int[] ng, int[] nl,
+                  TransGrid tg,int h,boolean checktemp, INIT init, Formulation formulation,
+                  boolean lazyLines, int[] warmActiveSet, QuadProgJSolver solver) {
 
         loadHybridFlag = hf; // Jx1; hybrid demand flag
         atNodeByGen = ng;  // Ix1; GenCo location on the grid
         atNodeByLSE = nl;  // Jx1; LSE location on the grid
         grid        = tg;  // Grid data
         check=checktemp;
+        this.formulation = formulation;
+        this.lazyLines = lazyLines;
+        this.warmActiveSet = warmActiveSet;
+        this.solver = solver;
         K = grid.getNumNodes();
         N = grid.getNumBranches();
         I = atNodeByGen.length;
         J = atNodeByLSE.length;
         this.init = init;
 
+        // The SI to PU conversions below work on copies, so that the caller's
+        // arrays are left untouched and can be shared between solves.
+        so = copyOf(so);
+        db = copyOf(db);
+        lp = lp.clone();
 
         //if(h==0)
         //{
@@ -287,13 +376,34 @@ public class DCOPFJ {
     }
 
 
+    private static double[][] copyOf(double[][] a) {
+        double[][] c = new double[a.length][];
+        for(int i=0; i<a.length; i++) {
+            c[i] = a[i].clone();
+        }
+        return c;
+    }
+
     private void solveDCOPF() {
-        formG();
-        forma();
-        formCeq();
-        formbeq();
-        formCiq();
-        formbiq();
+        if(formulation == Formulation.PTDF) {
+            formPTDF();
+        }
+        else if(formulation == Formulation.SPARSE) {
+            formGSparse();
+            forma();
+            formCeqSparse();
+            formbeq();
+            formCiqSparse();
+            formbiq();
+        }
+        else {
+            formG();
+            forma();
+            formCeq();
+            formbeq();
+            formCiq();
+            formbiq();
+        }
 
         if(check)
         {
@@ -366,8 +476,52 @@ public class DCOPFJ {
             System.out.println("biq: " + biq);
         */
 
-        qpj = new QuadProgJ(G,a,Ceq,beq,Ciq,biq);
+        if(lazyLines) {
+            solveWithLazyLines();
+        }
+        else if(solver != null) {
+            qpj = solver.solveQP(G,a,Ceq,beq,Ciq,biq,warmActiveSet);
+        }
+        else {
+            qpj = new QuadProgJ(G,a,Ceq,beq,Ciq,biq,warmActiveSet);
+        }
         boolean bHaveSolution=qpj.getIsFeasibleAndOptimal();
+        isFeasibleAndOptimal = bHaveSolution;
+        numBindingConstraints = qpj.getNumBC();
+        numIterations = qpj.getNumIterations();
+        activeSet = qpj.getActiveSet();
+        if(selectedIneq != null) { // back to the columns of the full Ciq
+            int meq = Ceq.columns();
+            for(int i=0; i<activeSet.length; i++) {
+                if(activeSet[i]>=meq) {
+                    activeSet[i] = meq+selectedIneq[activeSet[i]-meq];
+                }
+            }
+        }
+
+        // Solution in the layout of the angle formulations:
+        // x* = (p_G, p_L^S, delta_2...delta_K) and one multiplier per bus
+        double[] minX = null;
+        double[] eqMultipliers = null;
+        double[] ineqMultipliers = null; // one per column of the full Ciq
+        if(bHaveSolution) {
+            ineqMultipliers = qpj.getIneqMultipiers();
+            if(selectedIneq != null) {
+                ineqMultipliers = new double[Ciq.columns()];
+                for(int c=0; c<selectedIneq.length; c++) {
+                    ineqMultipliers[selectedIneq[c]] = qpj.getIneqMultipiers()[c];
+                }
+            }
+            if(formulation == Formulation.PTDF) {
+                minX = new double[I+iPriceSensitiveDemand+K-1];
+                eqMultipliers = new double[K];
+                recoverAnglesAndLMP(minX, eqMultipliers, ineqMultipliers);
+            }
+            else {
+                minX = qpj.getMinX();
+                eqMultipliers = qpj.getEqMultipliers();
+            }
+        }
 
         commitment = new double[I];   // in MWs
         voltAngle = new double[K-1];  // in radians
@@ -392,15 +546,15 @@ public class DCOPFJ {
         if(bHaveSolution) { // QuadProgJ has a solution
             // DC-OPF solution for (p_{G1},...,p_{GI}) in SI
             for(int i=0; i<I; i++) {
-                commitment[i] = qpj.getMinX()[i]*init.getBaseS();
+                commitment[i] = minX[i]*init.getBaseS();
             }
             // DC-OPF solution for (p_{L1}^S,...,p_{LJ}^S) in SI
             for(int j=I; j<I+iPriceSensitiveDemand; j++) {
-                sLoad[j-I] = qpj.getMinX()[j]*init.getBaseS();
+                sLoad[j-I] = minX[j]*init.getBaseS();
             }
             // DC-OPF solution for (delta_2,...,delta_K)
             for(int k=I+iPriceSensitiveDemand; k<I+iPriceSensitiveDemand+K-1; k++) {
-                voltAngle[k-I-iPriceSensitiveDemand] = qpj.getMinX()[k];  // voltAngle in radians
+                voltAngle[k-I-iPriceSensitiveDemand] = minX[k];  // voltAngle in radians
             }
 
             // Convert voltage angle from radian to degree
@@ -410,11 +564,11 @@ public class DCOPFJ {
 
             // lmp: locational marginal prices in SI
             for(int k=0; k<K; k++) {
-                lmp[k] = qpj.getEqMultipliers()[k]/init.getBaseS();
+                lmp[k] = eqMultipliers[k]/init.getBaseS();
             }
 
             for(int j=0; j<2*N+2*I+2*iPriceSensitiveDemand; j++) {
-                ineqMultiplier[j] = qpj.getIneqMultipiers()[j]/init.getBaseS();
+                ineqMultiplier[j] = ineqMultipliers[j]/init.getBaseS();
             }
             for(int i=0; i<I; i++) {
                 minTVC = minTVC + (A.get(i)/init.getBaseS())*commitment[i]
@@ -462,7 +616,7 @@ public class DCOPFJ {
             (fac2d.diagonal(fac1d.append(B,D).assign(F.mult(2))).toArray());
             G = new DenseDoubleMatrix2D(I+iPriceSensitiveDemand+K-1,I+iPriceSensitiveDemand+K-1);
         }
-        Wrr = new DenseDoubleMatrix2D(grid.getReducedVADWeight());
+        Wrr = grid.getReducedVADWeightMatrix(); //only read; composeDiagonal copies it
         G.assign(fac2d.composeDiagonal(U,Wrr));
 
     }
@@ -501,7 +655,7 @@ public class DCOPFJ {
                 }
             }
         }
-        rBusAdm = new DenseDoubleMatrix2D(grid.getReducedBusAdmittance());
+        rBusAdm = grid.getReducedBusAdmittanceMatrix().copy(); //negated below
 
         if (iPriceSensitiveDemand<1) {
             DoubleMatrix2D[][] parts = {{ II, rBusAdm.viewDice().assign(F.neg)}};
@@ -578,8 +732,8 @@ public class DCOPFJ {
     @SuppressWarnings("static-access")
     private void formCiq() {
         Oni   = new DenseDoubleMatrix2D(N,I);
-        Z    = new DenseDoubleMatrix2D(grid.getDiagonalAdmittance());
-        rAdj = new DenseDoubleMatrix2D(grid.getReducedAdjacency());
+        Z    = grid.getDiagonalAdmittanceMatrix(); //only read
+        rAdj = grid.getReducedAdjacencyMatrix();
         Iii = new DenseDoubleMatrix2D(I,I).assign(fac2d.identity(I));
         Oik = new DenseDoubleMatrix2D(I,K-1);
 
@@ -616,6 +770,287 @@ public class DCOPFJ {
         }
     }
 
+    // Sparse counterpart of formG(): G = blockDiag(U,Wrr) with only the
+    // diagonal of U and the non-zeros of TransGrid's sparse Wrr set.
+    private void formGSparse() {
+        int nv = I+iPriceSensitiveDemand+K-1; // number of decision variables
+        B = new DenseDoubleMatrix1D(supplyOffer.viewColumn(B_INDEX).toArray());
+        G = new SparseDoubleMatrix2D(nv,nv);
+        if (iPriceSensitiveDemand<1) {
+            B.assign(F.mult(2)); // as in formG(), B itself is doubled here
+            for(int i=0; i<I; i++) {
+                G.setQuick(i,i,B.getQuick(i));
+            }
+        }
+        else {
+            for(int i=0; i<I; i++) {
+                G.setQuick(i,i,2*B.getQuick(i));
+            }
+            double [] dSensitiveDemand = new double [iPriceSensitiveDemand];
+            int iIndex=0;
+            for(int j=0; j<J; j++) {
+                if((loadHybridFlag[j]&2)==2)
+                    dSensitiveDemand[iIndex++]=psDemandBid.get(j, D_INDEX);
+            }
+            D = new DenseDoubleMatrix1D(dSensitiveDemand);
+            for(int j=0; j<iPriceSensitiveDemand; j++) {
+                G.setQuick(I+j,I+j,2*D.getQuick(j));
+            }
+        }
+        final int offset = I+iPriceSensitiveDemand;
+        Wrr = grid.getReducedVADWeightMatrix();
+        Wrr.forEachNonZero(new IntIntDoubleFunction() {
+            public double apply(int r, int c, double value) {
+                G.setQuick(offset+r,offset+c,value);
+                return value;
+            }
+        });
+    }
+
+    // Sparse counterpart of formCeq(): Ceq = (II, -JJ, -Br')'
+    private void formCeqSparse() {
+        int nv = I+iPriceSensitiveDemand+K-1;
+        Ceq = new SparseDoubleMatrix2D(nv,K);
+        for(int i=0; i<I; i++) {
+            Ceq.setQuick(i,atNodeByGen[i]-1,1);
+        }
+        int iCount=0;
+        for(int k=0; k<K; k++) {
+            for(int j=0; j<J; j++) {
+                if((atNodeByLSE[j]==k+1)&&((loadHybridFlag[j]&2)==2)) {
+                    Ceq.setQuick(I+iCount,k,-1);
+                    iCount++;
+                }
+            }
+        }
+        final int offset = I+iPriceSensitiveDemand;
+        rBusAdm = grid.getReducedBusAdmittanceMatrix();
+        rBusAdm.forEachNonZero(new IntIntDoubleFunction() {
+            public double apply(int r, int k, double value) {
+                Ceq.setQuick(offset+r,k,-value);
+                return value;
+            }
+        });
+    }
+
+    // Sparse counterpart of formCiq(): the branch flow columns hold +/- Z*rAdj,
+    // which has at most two non-zeros per branch, followed by the +/- identity
+    // columns for the GenCo and price-sensitive load bounds.
+    private void formCiqSparse() {
+        final int nv = I+iPriceSensitiveDemand+K-1;
+        Ciq = new SparseDoubleMatrix2D(nv,2*N+2*I+2*iPriceSensitiveDemand);
+        final int offset = I+iPriceSensitiveDemand;
+        Z = grid.getDiagonalAdmittanceMatrix();
+        rAdj = grid.getReducedAdjacencyMatrix();
+        rAdj.forEachNonZero(new IntIntDoubleFunction() {
+            public double apply(int n, int r, double value) {
+                double flow = Z.getQuick(n,n)*value;
+                Ciq.setQuick(offset+r,n,flow);
+                Ciq.setQuick(offset+r,N+n,-flow);
+                return value;
+            }
+        });
+        for(int i=0; i<I; i++) {
+            Ciq.setQuick(i,2*N+i,1);
+            Ciq.setQuick(i,2*N+I+i,-1);
+        }
+        for(int j=0; j<iPriceSensitiveDemand; j++) {
+            Ciq.setQuick(I+j,2*N+2*I+j,1);
+            Ciq.setQuick(I+j,2*N+2*I+iPriceSensitiveDemand+j,-1);
+        }
+    }
+
+    // PTDF formulation over x = (p_G, p_L^S) only. With E mapping x to the
+    // net injections at buses 2..K, dr the fixed demand there, X the inverse
+    // of the reduced bus admittance and PTDF = Z*rAdj*X, the voltage angles
+    // are theta = X*(E*x - dr) = T*x + t0 and the branch flows
+    // PTDF*(E*x - dr) = Hf*x + f0. Keeping the angle penalty term gives the
+    // same solution as the angle formulations:
+    // G   = U + T'*Wrr*T;  a = (A, -C) + T'*Wrr*t0
+    // Ceq = (1...1, -1...-1)'; beq = total fixed demand
+    // Ciq = (Hf', -Hf', Iii, -Iii, Ijj, -Ijj) with zero blocks as in formCiq()
+    // biq = formbiq() with the flow limits shifted by -f0 and +f0
+    private void formPTDF() {
+        final int nv = I+iPriceSensitiveDemand;
+        forma();
+        a = a.viewPart(0,nv).copy();
+        formbeq();
+        formbiq();
+
+        DoubleMatrix2D E = new DenseDoubleMatrix2D(K-1,nv);
+        for(int i=0; i<I; i++) {
+            if(atNodeByGen[i] > 1) {
+                E.setQuick(atNodeByGen[i]-2,i,1);
+            }
+        }
+        int iIndex=0;
+        for(int j=0; j<J; j++) {
+            if((loadHybridFlag[j]&2)==2) {
+                if(atNodeByLSE[j] > 1) {
+                    E.setQuick(atNodeByLSE[j]-2,I+iIndex,-1);
+                }
+                iIndex++;
+            }
+        }
+        DoubleMatrix1D dr = FDemand.viewPart(1,K-1);
+
+        DoubleMatrix2D X = grid.getReducedBusAdmittanceInverse();
+        DoubleMatrix2D ptdf = grid.getPTDFMatrix();
+        Wrr = grid.getReducedVADWeightMatrix();
+        T = X.zMult(E,null);
+        t0 = X.zMult(dr,null).assign(F.neg);
+        Hf = ptdf.zMult(E,null);
+        f0 = ptdf.zMult(dr,null).assign(F.neg);
+
+        G = T.zMult(Wrr.zMult(T,new DenseDoubleMatrix2D(K-1,nv)),null,1,0,true,false);
+        B = new DenseDoubleMatrix1D(supplyOffer.viewColumn(B_INDEX).toArray());
+        if (iPriceSensitiveDemand<1) {
+            B.assign(F.mult(2)); // as in formG(), B itself is doubled here
+            for(int i=0; i<I; i++) {
+                G.setQuick(i,i,G.getQuick(i,i)+B.getQuick(i));
+            }
+        }
+        else {
+            for(int i=0; i<I; i++) {
+                G.setQuick(i,i,G.getQuick(i,i)+2*B.getQuick(i));
+            }
+            iIndex=0;
+            for(int j=0; j<J; j++) {
+                if((loadHybridFlag[j]&2)==2) {
+                    G.setQuick(I+iIndex,I+iIndex,
+                               G.getQuick(I+iIndex,I+iIndex)+2*psDemandBid.get(j,D_INDEX));
+                    iIndex++;
+                }
+            }
+        }
+        a.assign(T.zMult(Wrr.zMult(t0,new DenseDoubleMatrix1D(K-1)),null,1,0,true),F.plus);
+
+        Ceq = new DenseDoubleMatrix2D(nv,1);
+        for(int i=0; i<nv; i++) {
+            Ceq.setQuick(i,0,i<I ? 1 : -1);
+        }
+        beq = new DenseDoubleMatrix1D(1);
+        beq.setQuick(0,FDemand.zSum());
+
+        Ciq = new DenseDoubleMatrix2D(nv,2*N+2*I+2*iPriceSensitiveDemand);
+        for(int n=0; n<N; n++) {
+            for(int v=0; v<nv; v++) {
+                Ciq.setQuick(v,n,Hf.getQuick(n,v));
+                Ciq.setQuick(v,N+n,-Hf.getQuick(n,v));
+            }
+            biq.setQuick(n,biq.getQuick(n)-f0.getQuick(n));
+            biq.setQuick(N+n,biq.getQuick(N+n)+f0.getQuick(n));
+        }
+        for(int i=0; i<I; i++) {
+            Ciq.setQuick(i,2*N+i,1);
+            Ciq.setQuick(i,2*N+I+i,-1);
+        }
+        for(int j=0; j<iPriceSensitiveDemand; j++) {
+            Ciq.setQuick(I+j,2*N+2*I+j,1);
+            Ciq.setQuick(I+j,2*N+2*I+iPriceSensitiveDemand+j,-1);
+        }
+    }
+
+    // PTDF formulation: fill in the voltage angles theta = T*x + t0 after x,
+    // and the LMPs (in PU) from the multipliers of the power balance
+    // (lambda) and of the flow limits (mu+, mu-). From the stationarity
+    // conditions of the angle formulation on theta,
+    // LMP_1 = lambda;
+    // (LMP_2...LMP_K) = lambda + PTDF'*(mu+ - mu-) - X*Wrr*theta
+    private void recoverAnglesAndLMP(double[] minX, double[] eqMultipliers, double[] mu) {
+        final int nv = I+iPriceSensitiveDemand;
+        DoubleMatrix1D x = new DenseDoubleMatrix1D(qpj.getMinX());
+        DoubleMatrix1D theta = T.zMult(x,t0.copy(),1,1,false);
+        System.arraycopy(qpj.getMinX(),0,minX,0,nv);
+        System.arraycopy(theta.toArray(),0,minX,nv,K-1);
+
+        double lambda = qpj.getEqMultipliers()[0];
+        DoubleMatrix1D dMu = new DenseDoubleMatrix1D(N);
+        for(int n=0; n<N; n++) {
+            dMu.setQuick(n,mu[n]-mu[N+n]);
+        }
+        DoubleMatrix1D congestion = grid.getPTDFMatrix().zMult(dMu,null,1,0,true);
+        DoubleMatrix1D penalty = grid.getReducedBusAdmittanceInverse()
+                                 .zMult(Wrr.zMult(theta,new DenseDoubleMatrix1D(K-1)),null);
+        eqMultipliers[0] = lambda;
+        for(int k=1; k<K; k++) {
+            eqMultipliers[k] = lambda+congestion.getQuick(k-1)-penalty.getQuick(k-1);
+        }
+    }
+
+    // Solve with the flow limits (the first 2N columns of Ciq) of the lines
+    // binding in warmActiveSet only, then check the flows of all lines and
+    // re-solve with the limits of the overloaded ones added, until no limit
+    // is violated. The solution then satisfies all the constraints, so it is
+    // also that of the full QP. All rounds have the same G, so it is only
+    // factored once.
+    private void solveWithLazyLines() {
+        final int meq = Ceq.columns();
+        final int m = Ciq.columns();
+        QuadProgJSolver lazySolver = solver != null ? solver : new QuadProgJSolver();
+        boolean[] monitored = new boolean[N];
+        if(warmActiveSet != null) {
+            for(int c : warmActiveSet) {
+                if(c>=meq && c-meq<2*N) {
+                    monitored[(c-meq)%N] = true;
+                }
+            }
+        }
+        DoubleMatrix1D x = new DenseDoubleMatrix1D(Ciq.rows());
+        numLazyRounds = 0;
+        while(true) {
+            numLazyRounds++;
+            numMonitoredLines = 0;
+            for(int n=0; n<N; n++) {
+                if(monitored[n]) {
+                    numMonitoredLines++;
+                }
+            }
+            selectedIneq = new int[m-2*(N-numMonitoredLines)];
+            int[] position = new int[m]; // in selectedIneq, or -1
+            Arrays.fill(position,-1);
+            int sel=0;
+            for(int c=0; c<m; c++) {
+                if(c>=2*N || monitored[c%N]) {
+                    position[c] = sel;
+                    selectedIneq[sel++] = c;
+                }
+            }
+            int[] warm = null;
+            if(warmActiveSet != null) {
+                warm = new int[warmActiveSet.length];
+                int nw=0;
+                for(int c : warmActiveSet) {
+                    if(c<meq) {
+                        warm[nw++] = c;
+                    }
+                    else if(c-meq<m && position[c-meq]>=0) {
+                        warm[nw++] = meq+position[c-meq];
+                    }
+                }
+                warm = Arrays.copyOf(warm,nw);
+            }
+
+            qpj = lazySolver.solveQP(G,a,Ceq,beq,Ciq.viewSelection(null,selectedIneq).copy(),
+                                   biq.viewSelection(selectedIneq).copy(),warm);
+            if(!qpj.getIsFeasibleAndOptimal()) {
+                return; // also infeasible with more constraints
+            }
+
+            x.assign(qpj.getMinX());
+            boolean violated = false;
+            for(int c=0; c<2*N; c++) {
+                if(!monitored[c%N] && Ciq.viewColumn(c).zDotProduct(x)<biq.getQuick(c)-1.0E-9) {
+                    monitored[c%N] = true;
+                    violated = true;
+                }
+            }
+            if(!violated) {
+                return;
+            }
+        }
+    }
+
     // biq = (-pU, -pU, capL, -capU) or biq = (-pU, -pU, capL, -capU, sLoadL, -sLoadU)
     @SuppressWarnings("static-access")
     private void formbiq() {
@@ -711,13 +1146,24 @@ public class DCOPFJ {
         return sumSquaredAngleDifference;
     }
     public int getNumBindingConstraints() {
-        return qpj.getNumBC();
+        return numBindingConstraints;
     }
     public int[] getActiveSet() {
-        return qpj.getActiveSet();
+        return activeSet.clone();
+    }
+    // Number of QPs solved with lazy branch flow limits, and number of lines
+    // whose limits were in the last one
+    public int getNumLazyRounds() {
+        return numLazyRounds;
+    }
+    public int getNumMonitoredLines() {
+        return numMonitoredLines;
+    }
+    public int getNumIterations() {
+        return numIterations;
     }
     public boolean getIsSolutionFeasibleAndOptimal() {
-        return qpj.getIsFeasibleAndOptimal();
+        return isFeasibleAndOptimal;
     }
 
 
@@ -44,6 +44,7 @@ public class DefaultLPCProvider implements ILoadProfileCollectionProvider {
         System.out.println("Using master load case control file " + controlFile.getAbsolutePath());
         loadCaseControl = lccr.read(controlFile);
         loadCaseControl.setZoneNameIndexes(zoneNames);
+        loadCaseControl.readAllScenarios();
     }
 
     /**
@@ -33,6 +33,7 @@ import java.util.List;
 import java.util.Random;
 import java.util.Set;
 
+import amesmarket.PhaseEvent.Phase;
 import amesmarket.extern.coopr.DataFileWriter;
 import amesmarket.extern.coopr.PyomoSCED;
 import amesmarket.extern.coopr.CooprSCUC;
@@ -85,7 +86,7 @@ public class ISO {
     private FTRMarket ftrm;
     private ScenarioGenerator scengen;
     // private CooprSCUC scuc;
-    private PSSTSCUCSolver scuc;
+    private SCUC scuc;
     private SCED sced;
     private BUC buc;
     /**
@@ -130,10 +131,19 @@ public class ISO {
         rtm  = new RTMarket(this,ames);
         ftrm = new FTRMarket(ames);
         buc = new BUC(this,ames, init);
-        scuc = new PSSTSCUCSolver(this, ames);
 
         rtm.setBUC(buc);
 
+        String scucProp = System.getProperty("SCUC", "psst");
+        if ("psst".equals(scucProp)) {
+            scuc = new PSSTSCUCSolver(this, ames);
+        } else if ("java".equals(scucProp)) {
+            System.out.println("Using the priority list SCUC.");
+            scuc = new SCUCJ(this, ames);
+        } else {
+            throw new IllegalArgumentException("Unknown SCUC engine " + scucProp);
+        }
+
         String scedProp = System.getProperty("SCED", "pyomo");
         if ("pyomo".equals(scedProp)) {
             System.out.println("Using the external pyomo SCED.");
@@ -141,6 +151,9 @@ public class ISO {
         } else if ("dcopfj".equals(scedProp)) {
             System.out.println("Using DCOPFJ SCED.");
             sced = buc;
+        } else if ("java".equals(scedProp)) {
+            System.out.println("Using the QuadProgJ SCED.");
+            sced = new SCEDJ(this, ames);
         } else {
             //TODO-XX Better error message
             throw new IllegalArgumentException("Unknown SCED engine " + scedProp);
@@ -203,7 +216,9 @@ public class ISO {
             if(d == ames.DAY_MAX) {
                 System.out.println("\nDay max is " + (d) + ". Day Ahead Market not executing\n");
             } else {
+                long t0 = PhaseEvent.begin();
                 dam.dayAheadOperation(h, d);
+                PhaseEvent.end(Phase.DA_MARKET, d, h, I, t0);
             }
             
             loadProfileByLSE = dam.getLoadProfileByLSE();
@@ -226,10 +241,14 @@ public class ISO {
 
             //scengen.generateScenarios(d); //FIXME: DELETE ScenarioGen here!
             if (d != 1) {
+                long t0 = PhaseEvent.begin();
                 rtm.realTimeOperation(h, d);
                 rtm.evaluateRealTimeBidsOffers(genScheduleRT,
                         getRealTimeLoad(h, d), h, d);
+                PhaseEvent.end(Phase.RT_SCED, d, h, I, t0);
+                t0 = PhaseEvent.begin();
                 postRealTimeSolutions(d);
+                PhaseEvent.end(Phase.GENCO_UPDATE, d, h, I, t0);
             }
 
             sanityCheck(d);
@@ -241,8 +260,10 @@ public class ISO {
             else 
             {
             System.out.println("SCUC for DAY " + tomorrow + " executing");
+            long t0 = PhaseEvent.begin();
             scuc.calcSchedule(tomorrow);
             genSchedule = scuc.getSchedule();
+            PhaseEvent.end(Phase.SCUC, tomorrow, h, I, t0);
             }
         }
 
@@ -270,8 +291,10 @@ public class ISO {
         announceHourlyLoads(h, d);
 
         if(h==23 && (d < ames.DAY_MAX)) {
+            long t0 = PhaseEvent.begin();
             endOfDayCleanup();
             postScheduleToGenCos(tomorrow, genScheduleRT);
+            PhaseEvent.end(Phase.GENCO_UPDATE, d, h, I, t0);
         }
 
 
@@ -530,6 +553,18 @@ public class ISO {
         dam.checkGenLastDayAction();
     }
 
+    /**
+     * Stop the external solver processes kept between solves, at the end
+     * of the run.
+     */
+    public void closeExternalSolvers() {
+        try {
+            rtm.closeExternalSolvers();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
     /**
      * Read the load profile for the day and hour.
      * @param hour
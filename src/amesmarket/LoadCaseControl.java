@@ -4,17 +4,25 @@ package amesmarket;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import amesmarket.DailyLoadProfile.LoadType;
 import amesmarket.filereaders.BadDataFileFormatException;
 import amesmarket.filereaders.IZoneIndexProvider;
 import amesmarket.filereaders.LoadCaseScenarioReader;
+import amesmarket.filereaders.LoadScenarioCache;
 
 /**
  * Model of the LoadCase Control File.
@@ -67,6 +75,23 @@ public class LoadCaseControl {
 
     private IZoneIndexProvider zoneNameIndexes;
 
+    /**
+     * Threads reading the scenario files, shared by all load cases.
+     */
+    private static ExecutorService readerPool;
+
+    /**
+     * Binary copies of the scenario files read, see {@link LoadScenarioCache}.
+     */
+    private LoadScenarioCache scenarioCache = LoadScenarioCache.fromProperties();
+
+    /**
+     * If more than 0, load the profile of a day only when it is asked for,
+     * and keep this many days of each scenario. Set with -DLOAD_DAY_WINDOW.
+     * The markets look at the current and the next day at most.
+     */
+    private int dayWindow = Integer.parseInt(System.getProperty("LOAD_DAY_WINDOW", "0"));
+
     /**
      * Default constructor.
      *
@@ -326,6 +351,28 @@ public class LoadCaseControl {
         return this.zoneNameIndexes;
     }
 
+    public LoadScenarioCache getScenarioCache() {
+        return scenarioCache;
+    }
+
+    public void setScenarioCache(LoadScenarioCache scenarioCache) {
+        this.scenarioCache = scenarioCache;
+    }
+
+    public int getDayWindow() {
+        return dayWindow;
+    }
+
+    /**
+     * @param dayWindow number of days of each scenario to keep loaded,
+     * or 0 to load every day when the scenario is first read.
+     */
+    public void setDayWindow(int dayWindow) {
+        if(dayWindow < 0)
+            throw new IllegalArgumentException("Negative day window " + dayWindow);
+        this.dayWindow = dayWindow;
+    }
+
     /**
      * Set the same scenario file name for all days in this scenario.
      * @param sn
@@ -432,6 +479,11 @@ public class LoadCaseControl {
      * @throws BadDataFileFormatException
      */
     public List<LoadProfileCollection> getAllLoadScenarios() throws BadDataFileFormatException {
+        List<Integer> sns = new ArrayList<Integer>(numLoadScenarios);
+        for(int sn = 1; sn <= numLoadScenarios; sn++)
+            sns.add(sn);
+        readScenarios(sns);
+
         ArrayList<LoadProfileCollection> l = new ArrayList<LoadProfileCollection>();
         for(int sn = 1; sn <= numLoadScenarios; sn++)
             l.add(getLoadScenario(sn));
@@ -439,6 +491,106 @@ public class LoadCaseControl {
         return l;
     }
 
+    /**
+     * Read the files of every scenario, and of the expected and actual
+     * loads if the control file names them, that are not read yet.
+     *
+     * @throws BadDataFileFormatException if any of the files is bad.
+     */
+    public void readAllScenarios() throws BadDataFileFormatException {
+        List<Integer> sns = new ArrayList<Integer>(numLoadScenarios + 2);
+        for(int sn = 1; sn <= numLoadScenarios; sn++)
+            sns.add(sn);
+        if(hasExternalExpectedLoadProfile())
+            sns.add(EXPECTED_LOAD_SCEN_NUM);
+        if(hasExternalActualLoadProfiles())
+            sns.add(ACTUAL_LOAD_SCEN_NUM);
+        readScenarios(sns);
+    }
+
+    /**
+     * Read the load and wind files of the scenarios that are not read yet,
+     * and net out the wind.
+     *
+     * The scenarios are independent, so they are read concurrently, on a
+     * pool of LOAD_SCENARIO_THREADS threads (system property, default: the
+     * number of available processors). Each scenario is read as it would
+     * be on its own. Every scenario is read even if one fails, so all the
+     * bad files are reported at once.
+     *
+     * @param sns scenario numbers.
+     * @throws BadDataFileFormatException naming each scenario that could not
+     * be read, with the first error as the cause.
+     */
+    private void readScenarios(List<Integer> sns) throws BadDataFileFormatException {
+        final List<LoadScenarioInstance> toRead = new ArrayList<LoadScenarioInstance>();
+        for(int sn : sns) {
+            LoadScenarioInstance lsi = getLoadScenarioInstance(sn);
+            if(lsi.scenario == null)
+                toRead.add(lsi);
+        }
+        if(toRead.size() < 2) {
+            return; //nothing to do at the same time.
+        }
+
+        List<Future<LoadProfileCollection>> reads = new ArrayList<Future<LoadProfileCollection>>();
+        final ExecutorService pool = getReaderPool();
+        for(final LoadScenarioInstance lsi : toRead) {
+            reads.add(pool.submit(new Callable<LoadProfileCollection>() {
+                @Override
+                public LoadProfileCollection call() throws BadDataFileFormatException {
+                    return lsi.getScenario();
+                }
+            }));
+        }
+
+        StringBuilder errors = new StringBuilder();
+        Throwable firstError = null;
+        for(int i = 0; i < reads.size(); i++) {
+            try {
+                reads.get(i).get();
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if(firstError == null)
+                    firstError = cause;
+                errors.append(String.format("%n%s: %s",
+                        lpcollectionDesc(toRead.get(i).scenarioNumber), cause.getMessage()));
+            } catch (InterruptedException e) {
+                for(Future<?> f : reads) {
+                    f.cancel(true);
+                }
+                Thread.currentThread().interrupt();
+                throw new BadDataFileFormatException("Interrupted reading the load scenarios.");
+            }
+        }
+
+        if(firstError != null) {
+            BadDataFileFormatException ex = new BadDataFileFormatException(
+                    "Unable to read the load scenarios:" + errors);
+            ex.initCause(firstError);
+            throw ex;
+        }
+    }
+
+    private static synchronized ExecutorService getReaderPool() {
+        if (readerPool == null) {
+            int threads = Integer.getInteger("LOAD_SCENARIO_THREADS",
+                    Runtime.getRuntime().availableProcessors());
+            if (threads < 1) {
+                throw new IllegalArgumentException("LOAD_SCENARIO_THREADS must be positive: " + threads);
+            }
+            readerPool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "scenario-reader");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return readerPool;
+    }
+
     /**
      * Set the same probability for all days of the scenario
      * @param sn scenario number
@@ -613,6 +765,9 @@ public class LoadCaseControl {
 //        int hoursPerDay = 24;//FIXME hardcoded 24.
         int hoursPerDay = numIntervalsInSim;
         System.out.println("The number of intervals in the simulation are " + hoursPerDay);
+        if(dayWindow > 0) {
+            return computeExpectedTrueLoadOnDemand(hoursPerDay);
+        }
         double[][][] expectedTrueLoad = new double[maxDay][hoursPerDay][numZones];
         Iterator<LoadProfileCollection> scenarios = getAllLoadScenarios().iterator();
         while(scenarios.hasNext()){
@@ -702,6 +857,42 @@ public class LoadCaseControl {
         }
     }
 
+    /**
+     * The expected true load, as {@link #computeExpectedTrueLoad()},
+     * computing each day when it is asked for.
+     */
+    private LoadProfileCollection computeExpectedTrueLoadOnDemand(final int hoursPerDay)
+            throws BadDataFileFormatException {
+        final List<LoadProfileCollection> scenarios = getAllLoadScenarios();
+        List<Integer> days = new ArrayList<Integer>(maxDay);
+        for(int day = 1; day <= maxDay; day++)
+            days.add(day);
+
+        LoadProfileCollection expectedScenario = new LoadProfileCollection(caseName,
+                EXPECTED_LOAD_SCEN_NUM, days, new LoadProfileCollection.DayLoader() {
+                    @Override
+                    public DailyLoadProfile load(int day) {
+                        double[][] expectedTrueLoad = new double[hoursPerDay][numZones];
+                        for(LoadProfileCollection ls : scenarios){
+                            double p = ls.probability();
+                            DailyLoadProfile dlp = ls.get(day);
+                            for(int hour = 0; hour < hoursPerDay; hour++){
+                                double[] loadProfile = dlp.getLoadByHour(hour);
+                                for(int z = 0 ; z<numZones; z++){
+                                    expectedTrueLoad[hour][z] += p * loadProfile[z];
+                                }
+                            }
+                        }
+                        DailyLoadProfile edlp = new DailyLoadProfile(expectedTrueLoad, false);
+                        edlp.setDayNumber(day);
+                        return edlp;
+                    }
+                }, dayWindow);
+        expectedScenario.setScenarioProb(1.0);
+
+        return expectedScenario;
+    }
+
     /**
      * Struct to store common information about scenarios.
      * @author Sean L. Mooney
@@ -860,12 +1051,18 @@ public class LoadCaseControl {
                 }
 
                 //load the files
-                lcsr.setLoadType(DailyLoadProfile.LoadType.LOAD);
-                scenario = lcsr.readCompositScenario(loadFiles);
-
-                if(hasWindData){
-                    lcsr.setLoadType(LoadType.WIND);
-                    wind = lcsr.readCompositScenario(windFiles);
+                if(dayWindow > 0) {
+                    scenario = readCompositScenarioOnDemand(loadFiles, LoadType.LOAD);
+                    if(hasWindData)
+                        wind = readCompositScenarioOnDemand(windFiles, LoadType.WIND);
+                } else {
+                    lcsr.setLoadType(DailyLoadProfile.LoadType.LOAD);
+                    scenario = lcsr.readCompositScenario(loadFiles);
+
+                    if(hasWindData){
+                        lcsr.setLoadType(LoadType.WIND);
+                        wind = lcsr.readCompositScenario(windFiles);
+                    }
                 }
                 //FIXME-X: Read wind, plumb in photo. Adjust to net load.
             } else {
@@ -876,11 +1073,20 @@ public class LoadCaseControl {
                     throw new BadDataFileFormatException("No data file for " +
                             lpcollectionDesc(scenarioNumber));
                 }
-                lcsr.setLoadType(DailyLoadProfile.LoadType.LOAD);
-                scenario = lcsr.read(lsd.scenarioLoadFile);
-                if(lsd.scenarioWindFile !=null ){
-                    lcsr.setLoadType(LoadType.WIND);
-                    wind = lcsr.read(lsd.scenarioWindFile);
+                if(dayWindow > 0) {
+                    //a reader for each file, they stay with the scenarios.
+                    scenario = newScenarioReader(LoadType.LOAD)
+                            .readOnDemand(lsd.scenarioLoadFile, dayWindow);
+                    if(lsd.scenarioWindFile != null)
+                        wind = newScenarioReader(LoadType.WIND)
+                                .readOnDemand(lsd.scenarioWindFile, dayWindow);
+                } else {
+                    lcsr.setLoadType(DailyLoadProfile.LoadType.LOAD);
+                    scenario = lcsr.read(lsd.scenarioLoadFile);
+                    if(lsd.scenarioWindFile !=null ){
+                        lcsr.setLoadType(LoadType.WIND);
+                        wind = lcsr.read(lsd.scenarioWindFile);
+                    }
                 }
             }
 
@@ -892,6 +1098,44 @@ public class LoadCaseControl {
 
         }
 
+        private LoadCaseScenarioReader newScenarioReader(LoadType type) {
+            LoadCaseScenarioReader lcsr = new LoadCaseScenarioReader(LoadCaseControl.this);
+            lcsr.setExpectedScenarioNumber(scenarioNumber);
+            lcsr.setLoadType(type);
+            return lcsr;
+        }
+
+        /**
+         * Check the file of each day, then make a scenario that reads
+         * the file of a day again when it is asked for the day.
+         */
+        private LoadProfileCollection readCompositScenarioOnDemand(final Map<Integer, File> files,
+                final LoadType type) throws BadDataFileFormatException {
+            String name = null;
+            for(Entry<Integer, File> entry : files.entrySet()){
+                LoadProfileCollection ls = newScenarioReader(type)
+                        .readCompositScenario(Collections.singletonMap(entry.getKey(), entry.getValue()));
+                if(ls.get(entry.getKey()) == null) {
+                    throw new BadDataFileFormatException(
+                            String.format(
+                                    "Did not find a load profile for day %d in scenario %d.",
+                                    entry.getKey(), scenarioNumber));
+                }
+                if(name == null)
+                    name = ls.getCaseName();
+            }
+
+            return new LoadProfileCollection(name, scenarioNumber, files.keySet(),
+                    new LoadProfileCollection.DayLoader() {
+                        @Override
+                        public DailyLoadProfile load(int day) throws BadDataFileFormatException {
+                            return newScenarioReader(type)
+                                    .readCompositScenario(Collections.singletonMap(day, files.get(day)))
+                                    .get(day);
+                        }
+                    }, dayWindow);
+        }
+
         private void computeNetLoad(LoadProfileCollection load, LoadProfileCollection wind) {
             if (wind != null) {
                 load.subtractLoad(wind);
@@ -21,10 +21,16 @@ package amesmarket;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.SortedSet;
+import java.util.TreeSet;
 
 import amesmarket.filereaders.BadDataFileFormatException;
 import amesmarket.probability.IChoice;
@@ -45,9 +51,29 @@ public class LoadProfileCollection implements IChoice{
 
     /**
      * A map from a day, d,  to the load profile for the day.
+     *
+     * For a collection loaded on demand, only the profiles that were
+     * {@link #put(DailyLoadProfile)}.
      */
     private final HashMap<Integer, DailyLoadProfile> loadProfiles;
 
+    /**
+     * Days the {@link #loader} has, or null if every profile is in
+     * {@link #loadProfiles}.
+     */
+    private SortedSet<Integer> loaderDays = null;
+    private DayLoader loader = null;
+    /**
+     * Most recently used profiles from the loader.
+     */
+    private Map<Integer, DailyLoadProfile> window = null;
+    private int windowSize = 0;
+    /**
+     * Scale factors and other collections to subtract, in the order given,
+     * to apply to each profile the loader reads.
+     */
+    private List<Object> adjustments = null;
+
     /**
      *
      */
@@ -55,6 +81,45 @@ public class LoadProfileCollection implements IChoice{
         loadProfiles = new HashMap<Integer, DailyLoadProfile>();
     }
 
+    /**
+     * Construct a load scenario that loads the profile of a day when it
+     * is asked for, and keeps at most windowSize of them.
+     *
+     * @param caseName
+     * @param scenarioNumber
+     * @param days days the loader has a profile for.
+     * @param loader
+     * @param windowSize number of days to keep, at least 1.
+     */
+    public LoadProfileCollection(String caseName, int scenarioNumber,
+            Collection<Integer> days, DayLoader loader, final int windowSize){
+        this();
+        if(windowSize < 1)
+            throw new IllegalArgumentException("Window of " + windowSize + " days");
+        this.caseName = caseName;
+        this.scenarioNumber = scenarioNumber;
+        this.loaderDays = new TreeSet<Integer>(days);
+        this.loader = loader;
+        this.window = newWindow(windowSize);
+        this.windowSize = windowSize;
+        this.adjustments = new ArrayList<Object>();
+    }
+
+    /**
+     * @return a map that drops its least recently used profile when
+     * it has more than windowSize.
+     */
+    private static Map<Integer, DailyLoadProfile> newWindow(final int windowSize) {
+        return new LinkedHashMap<Integer, DailyLoadProfile>(windowSize + 1, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, DailyLoadProfile> eldest) {
+                return size() > windowSize;
+            }
+        };
+    }
+
     /**
      * Construct a full load scenario (all hours of all days in the scenario).
      *
@@ -96,12 +161,29 @@ public class LoadProfileCollection implements IChoice{
         for(Integer key : other.loadProfiles.keySet()){
             loadProfiles.put(key, new DailyLoadProfile(other.loadProfiles.get(key)));
         }
+        if(other.isLoadedOnDemand()) {
+            //share the loader, but not the loaded profiles.
+            loaderDays = other.loaderDays;
+            loader = other.loader;
+            windowSize = other.windowSize;
+            window = newWindow(windowSize);
+            synchronized (other.window) {
+                adjustments = new ArrayList<Object>(other.adjustments);
+            }
+        }
+    }
+
+    /**
+     * @return true if the profiles are loaded when they are asked for.
+     */
+    public boolean isLoadedOnDemand() {
+        return loader != null;
     }
 
     public double peakTotalLoad() {
         double peakTotalLoad = Double.MIN_NORMAL;
         // TODO MOVE UP
-        for(DailyLoadProfile dlp : loadProfiles.values()) {
+        for(DailyLoadProfile dlp : profiles()) {
             double localTotalLoad = dlp.peakHourLoad();
             peakTotalLoad = (localTotalLoad > peakTotalLoad) ? localTotalLoad : peakTotalLoad;
         }
@@ -112,17 +194,30 @@ public class LoadProfileCollection implements IChoice{
     public void scaleScenario(double scaleFactor) {
         for(DailyLoadProfile dlp : loadProfiles.values())
             dlp.scaleProfile(scaleFactor);
+        if(isLoadedOnDemand()) {
+            synchronized (window) {
+                for(DailyLoadProfile dlp : window.values())
+                    dlp.scaleProfile(scaleFactor);
+                adjustments.add(scaleFactor);
+            }
+        }
     }
 
     public void subtractLoad(LoadProfileCollection other) {
         if(other == null) return;
 
-        final HashMap<Integer, DailyLoadProfile> otherLoadProfiles = other.loadProfiles;
         for(Integer k :  loadProfiles.keySet()) {
             DailyLoadProfile l = loadProfiles.get(k);
-            DailyLoadProfile o = otherLoadProfiles.get(k);
+            DailyLoadProfile o = other.get(k);
             l.subtractFromLoad(o);
         }
+        if(isLoadedOnDemand()) {
+            synchronized (window) {
+                for(Map.Entry<Integer, DailyLoadProfile> e : window.entrySet())
+                    e.getValue().subtractFromLoad(other.get(e.getKey()));
+                adjustments.add(other);
+            }
+        }
     }
 
     /**
@@ -146,7 +241,83 @@ public class LoadProfileCollection implements IChoice{
      * @return a DailyLoadProfile, or null if no profile exists for the day.
      */
     public DailyLoadProfile get(int day) {
-        return loadProfiles.get(day);
+        DailyLoadProfile dlp = loadProfiles.get(day);
+        if(dlp == null && isLoadedOnDemand() && loaderDays.contains(day)) {
+            synchronized (window) {
+                dlp = window.get(day);
+                if(dlp == null) {
+                    dlp = load(day);
+                    window.put(day, dlp);
+                }
+            }
+        }
+        return dlp;
+    }
+
+    /**
+     * Load the profile for day, and adjust it as the profiles that are
+     * already loaded were.
+     */
+    private DailyLoadProfile load(int day) {
+        DailyLoadProfile dlp;
+        try {
+            dlp = loader.load(day);
+        } catch (BadDataFileFormatException e) {
+            //the file was read once already, so it must have changed.
+            throw new IllegalStateException("Unable to load day " + day
+                    + " of " + getCaseName() + ": " + e.getMessage(), e);
+        }
+        for(Object adj : adjustments) {
+            if(adj instanceof Double) {
+                dlp.scaleProfile((Double) adj);
+            } else {
+                dlp.subtractFromLoad(((LoadProfileCollection) adj).get(day));
+            }
+        }
+        return dlp;
+    }
+
+    /**
+     * Every profile, one after the other. Profiles from the loader are
+     * loaded as they are reached, so they need not all fit in the window.
+     */
+    private Iterable<DailyLoadProfile> profiles() {
+        if(!isLoadedOnDemand())
+            return loadProfiles.values();
+
+        final List<Integer> days = new ArrayList<Integer>(allDays());
+        return new Iterable<DailyLoadProfile>() {
+            @Override
+            public Iterator<DailyLoadProfile> iterator() {
+                final Iterator<Integer> di = days.iterator();
+                return new Iterator<DailyLoadProfile>() {
+                    @Override
+                    public boolean hasNext() {
+                        return di.hasNext();
+                    }
+
+                    @Override
+                    public DailyLoadProfile next() {
+                        return get(di.next());
+                    }
+
+                    @Override
+                    public void remove() {
+                        throw new UnsupportedOperationException();
+                    }
+                };
+            }
+        };
+    }
+
+    /**
+     * @return all the days with a profile.
+     */
+    private SortedSet<Integer> allDays() {
+        SortedSet<Integer> days = new TreeSet<Integer>(loadProfiles.keySet());
+        if(isLoadedOnDemand())
+            days.addAll(loaderDays);
+        return days;
     }
 
     /**
@@ -193,7 +364,9 @@ public class LoadProfileCollection implements IChoice{
      * @return
      */
     public List<DailyLoadProfile> getAllProfiles() {
-        List<DailyLoadProfile> dlps = new ArrayList<DailyLoadProfile>(loadProfiles.values());
+        List<DailyLoadProfile> dlps = new ArrayList<DailyLoadProfile>();
+        for(DailyLoadProfile dlp : profiles())
+            dlps.add(dlp);
 
         Collections.sort(dlps, new Comparator<DailyLoadProfile>() {
             @Override
@@ -255,7 +428,8 @@ public class LoadProfileCollection implements IChoice{
         }
 
         //correct number of days
-        if (exDays != loadProfiles.size()) {
+        final int numDays = allDays().size();
+        if (exDays != numDays) {
             String scenarioDesc = "";
             //adjust for ExpectedLoad
             if(scenarioNumber == LoadCaseControl.EXPECTED_LOAD_SCEN_NUM){
@@ -267,7 +441,7 @@ public class LoadProfileCollection implements IChoice{
             throw new BadDataFileFormatException(
                     "CaseName: " + caseName + ", " + scenarioDesc
                     + "-- Expected " + exDays
-                    + " days but found " + loadProfiles.size() + " days.");
+                    + " days but found " + numDays + " days.");
         }
     }
 
@@ -279,7 +453,8 @@ public class LoadProfileCollection implements IChoice{
 
     public void toString(StringBuilder sb) {
         double[] loads;
-        for(DailyLoadProfile dlp : getAllProfiles()) {
+        for(Integer day : allDays()) {
+            DailyLoadProfile dlp = get(day);
             sb.append(String.format("Day %d\n", dlp.getDayNumber()));
             for(int h = 0; h<dlp.getNumHours(); h++) { //FIXME: Hardcoded 24
                 sb.append(String.format("H-%d ", h+1));
@@ -298,4 +473,15 @@ public class LoadProfileCollection implements IChoice{
             }
         }
     }
+
+    /**
+     * Source of the profiles of a collection loaded on demand.
+     */
+    public interface DayLoader {
+        /**
+         * @return a new profile for day.
+         * @throws BadDataFileFormatException
+         */
+        DailyLoadProfile load(int day) throws BadDataFileFormatException;
+    }
 }
@@ -3,96 +3,127 @@ package amesmarket;
 /*
  * FIXME: LICENCE
  */
-import java.util.regex.Pattern;
 
 /**
  * A slightly more intelligent number parser than just calling Integer.parseInt
  * or Double.parseDouble. For example, it can check to see if a string is a
  * floating point, and cast it to an int if required.
  *
+ * The checks scan the characters instead of matching a regular expression.
+ * A floating point is anything Double.parseDouble accepts: an optionally
+ * signed NaN, Infinity, decimal or hexadecimal number with an optional type
+ * suffix, between optional whitespace.
+ *
  * @author Sean L. Mooney
  *
  */
 public class NumberRecognizer {
 
-    private final Pattern intPattern;
-    private final Pattern fpPattern;
-
     public NumberRecognizer() {
-        final String intRegex = "[\\+-]?\\d+";
-
-        //FROM Sun/Oracle docs
-        //http://docs.oracle.com/javase/6/docs/api/java/lang/Double.html#valueOf%28java.lang.String%29
-        final String Digits = "(\\p{Digit}+)";
-        final String HexDigits = "(\\p{XDigit}+)";
-        // an exponent is 'e' or 'E' followed by an optionally
-        // signed decimal integer.
-        final String Exp = "[eE][+-]?" + Digits;
-        final String fpRegex = ("[\\x00-\\x20]*" + // Optional leading "whitespace"
-                "[+-]?(" + // Optional sign character
-                "NaN|" + // "NaN" string
-                "Infinity|" + // "Infinity" string
-
-                // A decimal floating-point string representing a finite positive
-                // number without a leading sign has at most five basic pieces:
-                // Digits . Digits ExponentPart FloatTypeSuffix
-                //
-                // Since this method allows integer-only strings as input
-                // in addition to strings of floating-point literals, the
-                // two sub-patterns below are simplifications of the grammar
-                // productions from the Java Language Specification, 2nd
-                // edition, section 3.10.2.
-
-                // Digits ._opt Digits_opt ExponentPart_opt FloatTypeSuffix_opt
-                "(((" + Digits + "(\\.)?(" + Digits + "?)(" + Exp + ")?)|" +
-
-        // . Digits ExponentPart_opt FloatTypeSuffix_opt
-                "(\\.(" + Digits + ")(" + Exp + ")?)|" +
-
-                // Hexadecimal strings
-                "((" +
-                // 0[xX] HexDigits ._opt BinaryExponent FloatTypeSuffix_opt
-                "(0[xX]" + HexDigits + "(\\.)?)|" +
-
-                // 0[xX] HexDigits_opt . HexDigits BinaryExponent FloatTypeSuffix_opt
-                "(0[xX]" + HexDigits + "?(\\.)" + HexDigits + ")" +
-
-                ")[pP][+-]?" + Digits + "))" + "[fFdD]?))" + "[\\x00-\\x20]*");// Optional trailing "whitespace"
-
-        intPattern = Pattern.compile(intRegex);
-        fpPattern = Pattern.compile(fpRegex);
     }
 
     /**
-     * Helper method. Capture common behavior for
-     * {@link #isFloatingPoint(String)} {@link #intPattern} .
+     * Check if the string can be parsed as floating point/decimal number.
      *
-     * @param p
      * @param s
      * @return
      */
-    private boolean checkMatch(Pattern p, String s) {
-        return p.matcher(s).matches();
+    public boolean isFloatingPoint(String s) {
+        int i = 0;
+        int end = s.length();
+        while (i < end && s.charAt(i) <= ' ') {
+            i++;
+        }
+        while (end > i && s.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (i < end && (s.charAt(i) == '+' || s.charAt(i) == '-')) {
+            i++;
+        }
+        if (s.startsWith("NaN", i)) {
+            return i + 3 == end;
+        }
+        if (s.startsWith("Infinity", i)) {
+            return i + 8 == end;
+        }
+
+        boolean hex = s.startsWith("0x", i) || s.startsWith("0X", i);
+        if (hex) {
+            i += 2;
+        }
+        int start = i;
+        i = skipDigits(s, i, end, hex);
+        int numDigits = i - start;
+        if (i < end && s.charAt(i) == '.') {
+            start = ++i;
+            i = skipDigits(s, i, end, hex);
+            numDigits += i - start;
+        }
+        if (numDigits == 0) {
+            return false;
+        }
+
+        // the exponent is required for a hexadecimal number
+        if (i < end && (hex ? (s.charAt(i) == 'p' || s.charAt(i) == 'P')
+                            : (s.charAt(i) == 'e' || s.charAt(i) == 'E'))) {
+            i++;
+            if (i < end && (s.charAt(i) == '+' || s.charAt(i) == '-')) {
+                i++;
+            }
+            start = i;
+            i = skipDigits(s, i, end, false);
+            if (i == start) {
+                return false;
+            }
+        } else if (hex) {
+            return false;
+        }
+
+        if (i < end && "fFdD".indexOf(s.charAt(i)) >= 0) {
+            i++;
+        }
+        return i == end;
     }
 
     /**
-     * Check if the string can be parsed as floating point/decimal number.
-     *
-     * @param s
-     * @return
+     * @return the index of the first character from i on that is not a
+     * (hexadecimal) digit.
      */
-    public boolean isFloatingPoint(String s) {
-        return checkMatch(fpPattern, s);
+    private static int skipDigits(String s, int i, int end, boolean hex) {
+        for (; i < end; i++) {
+            char c = s.charAt(i);
+            if (!(c >= '0' && c <= '9')
+                    && !(hex && ((c >= 'a' && c <= 'f') || (c >= 'A' && c <= 'F')))) {
+                break;
+            }
+        }
+        return i;
     }
 
     /**
      * Check if the string can be parsed as an int.
      *
+     * An optional sign followed by digits. The value may still be too large
+     * for an int.
+     *
      * @param s
      * @return
      */
     public boolean isInt(String s) {
-        return checkMatch(intPattern, s);
+        int i = 0;
+        if (s.length() > 0 && (s.charAt(0) == '+' || s.charAt(0) == '-')) {
+            i++;
+        }
+        if (i == s.length()) {
+            return false;
+        }
+        for (; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
@@ -104,9 +135,9 @@ public class NumberRecognizer {
      *             point.
      */
     public double stod(String s) {
-        if (isFloatingPoint(s)) {
+        try {
             return Double.parseDouble(s);
-        } else {
+        } catch (NumberFormatException nfe) {
             throw new NumberFormatException(s + " cannot be parsed as a double");
         }
     }
@@ -123,9 +154,10 @@ public class NumberRecognizer {
     public int stoi(String s) {
         if (isInt(s)) {
             return Integer.parseInt(s);
-        } else if (isFloatingPoint(s)) {
+        }
+        try {
             return (int) Double.parseDouble(s);
-        } else {
+        } catch (NumberFormatException nfe) {
             throw new NumberFormatException(s + " cannot be parsed as an int");
         }
     }
@@ -0,0 +1,189 @@
+/*
+ * FIXME: LICENSE
+ */
+package amesmarket;
+
+import java.util.Arrays;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Timing of the phases of the market loop, for finding where the time of
+ * a simulated day goes.
+ *
+ * Code around a phase calls {@link #begin()} and then
+ * {@link #end(Phase, int, int, long, long)} with the day, the hour and a
+ * size relevant to the phase (GenCos, scenarios, bytes, ...). The ends are
+ * passed to the registered {@link Listener}s. With no listener, begin
+ * returns {@link #NOT_TIMED} without reading the clock and end returns at
+ * once, so the calls cost next to nothing and can stay in the loop.
+ *
+ * -DPHASE_STATS=true registers {@link Stats}, which prints the count,
+ * total and longest time of each phase at the end of the run. Other
+ * profilers, a Java Flight Recorder bridge for instance, can register
+ * their own listener.
+ */
+public final class PhaseEvent {
+
+    /**
+     * The phases reported.
+     */
+    public enum Phase {
+        /** One tick of the market, everything included. */
+        MARKET_TICK,
+        /** The day-ahead market, GenCo offers and LSE bids. Size: GenCos. */
+        DA_MARKET,
+        /** The day-ahead SCUC, solve and reading the schedule. Size: GenCos. */
+        SCUC,
+        /** The real-time SCED, writing its input to reading its results. Size: GenCos. */
+        RT_SCED,
+        /** Posting schedules and dispatches to the GenCos. Size: GenCos. */
+        GENCO_UPDATE,
+        /** Writing a reference model for an external solver. Size: load values. */
+        WRITE_INPUT,
+        /** An external solver program, or the psst worker. */
+        EXTERNAL_SOLVE,
+        /** Reading the results of an external solver. Size: bytes. */
+        PARSE_RESULTS
+    }
+
+    /**
+     * Told of the end of each phase.
+     */
+    public interface Listener {
+        /**
+         * @param phase phase that ended.
+         * @param day simulation day, -1 if not known.
+         * @param hour hour of the day, -1 if not known.
+         * @param size size of the work, 0 if not known.
+         * @param startNanos start, in {@link System#nanoTime()}.
+         * @param durationNanos length of the phase.
+         */
+        void phaseEnded(Phase phase, int day, int hour, long size, long startNanos, long durationNanos);
+    }
+
+    private static final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<Listener>();
+
+    /**
+     * True when there are listeners. Read on every begin/end instead of
+     * the list, to keep the disabled path to one volatile read.
+     */
+    private static volatile boolean enabled;
+
+    private static final Stats stats;
+
+    /**
+     * What {@link #begin()} returns when nobody listens. Not 0, which
+     * nanoTime may return as well as negative values.
+     */
+    public static final long NOT_TIMED = Long.MIN_VALUE;
+
+    static {
+        if (Boolean.parseBoolean(System.getProperty("PHASE_STATS", "false"))) {
+            stats = new Stats();
+            addListener(stats);
+        } else {
+            stats = null;
+        }
+    }
+
+    private PhaseEvent() {
+    }
+
+    public static void addListener(Listener l) {
+        listeners.add(l);
+        enabled = true;
+    }
+
+    public static void removeListener(Listener l) {
+        listeners.remove(l);
+        enabled = !listeners.isEmpty();
+    }
+
+    /**
+     * @return true if anyone listens.
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Start a phase.
+     *
+     * @return the start to pass to {@link #end}.
+     */
+    public static long begin() {
+        return enabled ? System.nanoTime() : NOT_TIMED;
+    }
+
+    /**
+     * End a phase started with {@link #begin()}.
+     */
+    public static void end(Phase phase, int day, int hour, long size, long start) {
+        if (!enabled || start == NOT_TIMED) {
+            return; //not timed, or a listener came after the begin.
+        }
+        long duration = System.nanoTime() - start;
+        for (Listener l : listeners) {
+            l.phaseEnded(phase, day, hour, size, start, duration);
+        }
+    }
+
+    /**
+     * Print the statistics of -DPHASE_STATS, if set. Called at the end of
+     * the run.
+     */
+    public static void report() {
+        if (stats != null) {
+            stats.print();
+        }
+    }
+
+    /**
+     * Count, total and longest time of each phase.
+     */
+    public static class Stats implements Listener {
+        private final long[] count = new long[Phase.values().length];
+        private final long[] total = new long[count.length];
+        private final long[] max = new long[count.length];
+        private final long[] size = new long[count.length];
+
+        @Override
+        public synchronized void phaseEnded(Phase phase, int day, int hour, long size,
+                long startNanos, long durationNanos) {
+            int i = phase.ordinal();
+            count[i]++;
+            total[i] += durationNanos;
+            max[i] = Math.max(max[i], durationNanos);
+            this.size[i] += size;
+        }
+
+        public synchronized long getCount(Phase phase) {
+            return count[phase.ordinal()];
+        }
+
+        public synchronized long getTotalNanos(Phase phase) {
+            return total[phase.ordinal()];
+        }
+
+        public synchronized void reset() {
+            Arrays.fill(count, 0);
+            Arrays.fill(total, 0);
+            Arrays.fill(max, 0);
+            Arrays.fill(size, 0);
+        }
+
+        public synchronized void print() {
+            System.out.println("Time by market phase:");
+            System.out.println(String.format("%1$-16s %2$8s %3$12s %4$12s %5$12s %6$14s",
+                    "Phase", "Count", "Total (ms)", "Mean (ms)", "Max (ms)", "Size"));
+            for (Phase p : Phase.values()) {
+                int i = p.ordinal();
+                if (count[i] == 0) {
+                    continue;
+                }
+                System.out.println(String.format("%1$-16s %2$8d %3$12.1f %4$12.2f %5$12.2f %6$14d",
+                        p, count[i], total[i] / 1e6, total[i] / 1e6 / count[i], max[i] / 1e6, size[i]));
+            }
+        }
+    }
+}
@@ -0,0 +1,28 @@
+/*
+ * FIXME: LICENSE
+ */
+package amesmarket;
+
+/**
+ * Solution of a QP problem as read by DCOPFJ, from either QuadProgJ or
+ * QuadProgJFlat. See QuadProgJ for the problem setup and the meaning of the
+ * values.
+ */
+interface QPResult {
+
+    double[] getMinX();
+
+    double getMinF();
+
+    double[] getEqMultipliers();
+
+    double[] getIneqMultipiers();
+
+    int[] getActiveSet();
+
+    int getNumBC();
+
+    int getNumIterations();
+
+    boolean getIsFeasibleAndOptimal();
+}
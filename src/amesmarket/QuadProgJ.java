@@ -61,7 +61,7 @@ import cern.colt.Timer;
  */
 
 
-public class QuadProgJ {
+public class QuadProgJ implements QPResult {
 
     private static final double PINF =  1.0E50; // PINF: positive infinite
     private static final double NINF = -1.0E50; // NINF: negative infinite
@@ -96,6 +96,8 @@ public class QuadProgJ {
     private DoubleFactory2D fac2 = DoubleFactory2D.dense;
     private Algebra alg = new Algebra();
     private DoubleMatrix2D L; // L: Cholesky decomp lower matrix s.t. G = L*L'
+    private DoubleMatrix2D Linv; // Linv: L^{-1}, nxn
+    private DoubleMatrix2D Ginv; // Ginv: G^{-1} = L^{-T}*L^{-1}, nxn
 
     // A is the active set whose elements are the indices of binding constraints,
     //  i.e., A = {i | 0 <= i < m = meq + miq, i-th column in C }
@@ -128,6 +130,9 @@ public class QuadProgJ {
     private DoubleMatrix1D uplus; // uplus: transitional Lagrangian multiplier,(q+1)x1
     private DoubleMatrix1D siq;   // siq = Ciq' * x - biq (to get V)
 
+    private int[] warmActiveSet; // warmActiveSet: active set of a previous solve, or null
+    private int numWarm = 0;  // # of ineq. constraints the solver was warm-started with
+
     private int numIter = 0;  // # of total iterations
     private int numAdd  = 0;  // # of ineq. constraints added to active set
     private int numDrop = 0;  // # of ineq. constraints dropped from active set
@@ -156,21 +161,75 @@ public class QuadProgJ {
     public QuadProgJ(DoubleMatrix2D GMat,   DoubleMatrix1D aVec,
                      DoubleMatrix2D CeqMat, DoubleMatrix1D beqVec,
                      DoubleMatrix2D CiqMat, DoubleMatrix1D biqVec) {
+        this(GMat, aVec, CeqMat, beqVec, CiqMat, biqVec, null);
+    }
+
+    /**
+     * Constructor that warm-starts the solver from the active set of a
+     * previously solved problem with the same constraint structure (e.g.,
+     * the DC-OPF of the previous hour), as returned by getActiveSet().
+     *
+     * The inequality constraints in warmActiveSet are made binding before the
+     * main loop starts, as long as they still form a valid S-pair; otherwise
+     * the offending constraints are left out (see startFromActiveSet()).
+     * Their multipliers are recomputed, since they are fully determined by the
+     * active set and the current (a, beq, biq). A null warmActiveSet gives
+     * the usual cold start.
+     */
+    public QuadProgJ(DoubleMatrix2D GMat,   DoubleMatrix1D aVec,
+                     DoubleMatrix2D CeqMat, DoubleMatrix1D beqVec,
+                     DoubleMatrix2D CiqMat, DoubleMatrix1D biqVec,
+                     int[] warmActiveSet) {
+        this(null, GMat, aVec, CeqMat, beqVec, CiqMat, biqVec, warmActiveSet);
+    }
+
+    /**
+     * Constructor used by QuadProgJSolver, which passes itself so that the
+     * factorization of G is taken from (and, if G has changed, stored in)
+     * its cache instead of being recomputed for each problem.
+     */
+    QuadProgJ(QuadProgJSolver solver,
+              DoubleMatrix2D GMat,   DoubleMatrix1D aVec,
+              DoubleMatrix2D CeqMat, DoubleMatrix1D beqVec,
+              DoubleMatrix2D CiqMat, DoubleMatrix1D biqVec,
+              int[] warmActiveSet) {
         time.start();
 
+        this.warmActiveSet = warmActiveSet;
+
         n   = aVec.size();
         meq = beqVec.size();
         miq = biqVec.size();
         m   = meq + miq;
 
-        G   = new DenseDoubleMatrix2D(n,n).assign(GMat);     // G: nxn
+        // Sparse G, Ceq and Ciq (e.g. from DCOPFJ's sparse formulation) are
+        // kept sparse, and so is C. This only saves the copies of the inputs:
+        // L, L^{-1}, G^{-1}, N and H are dense, so memory stays O(n^2) and
+        // the factorization O(n^3).
+        if(GMat instanceof SparseDoubleMatrix2D) {
+            G = GMat.copy();                                  // G: nxn
+        }
+        else {
+            G = new DenseDoubleMatrix2D(n,n).assign(GMat);     // G: nxn
+        }
         a   = new DenseDoubleMatrix1D(n).assign(aVec);       // a: nx1
-        Ceq = new DenseDoubleMatrix2D(n,meq).assign(CeqMat); // Ceq: nxmeq
+        if(CeqMat instanceof SparseDoubleMatrix2D) {
+            Ceq = CeqMat.copy();                              // Ceq: nxmeq
+        }
+        else {
+            Ceq = new DenseDoubleMatrix2D(n,meq).assign(CeqMat); // Ceq: nxmeq
+        }
         beq = new DenseDoubleMatrix1D(meq).assign(beqVec);   // beq: meqx1
-        Ciq = new DenseDoubleMatrix2D(n,miq).assign(CiqMat); // Ciq: nxmiq
         biq = new DenseDoubleMatrix1D(miq).assign(biqVec);   // biq: miqx1
 
-        C = fac2.appendColumns(Ceq,Ciq); // C = [Ceq,Ciq]_(nxm)
+        if(CiqMat instanceof SparseDoubleMatrix2D) {
+            Ciq = CiqMat.copy();                              // Ciq: nxmiq
+            C = DoubleFactory2D.sparse.appendColumns(Ceq,Ciq); // C = [Ceq,Ciq]_(nxm)
+        }
+        else {
+            Ciq = new DenseDoubleMatrix2D(n,miq).assign(CiqMat); // Ciq: nxmiq
+            C = fac2.appendColumns(Ceq,Ciq); // C = [Ceq,Ciq]_(nxm)
+        }
         b = fac1.append(beq,biq);        // b = [beq',biq']'_(mx1)
 
         scp = 1; // choose the most violated constraint at each iteration
@@ -178,8 +237,18 @@ public class QuadProgJ {
         isInfeasible = false;
         isFeasibleAndOptimal = false;
 
-        L = new CholeskyDecomposition(G).getL();
         // L is the lower triangular matrix of Cholesky decomposition s.t. G = L*L'
+        if(solver != null) {
+            solver.factor(G);
+            L = solver.getL();
+            Linv = solver.getLinv();
+            Ginv = solver.getGinv();
+        }
+        else {
+            L = factorL(G);
+            Linv = alg.inverse(L);
+            Ginv = Linv.viewDice().zMult(Linv, null);
+        }
 
         N = new DenseDoubleMatrix2D(n, Math.min(m, n));// N: n x min(m,n)
         // NOTE: N is initialized as a max-sized zero matrix, so later on it is
@@ -313,6 +382,9 @@ public class QuadProgJ {
         // If miq > 0, add inequality constraints if they get binding (violated)
 
         if(miq > 0) {
+            if(warmActiveSet != null) {
+                startFromActiveSet(warmActiveSet); // Step 0(c), optional
+            }
             chooseViolatedConstraint();       // Step 1
             // The 'main' loop
             while (isFeasibleAndOptimal==false && isInfeasible==false) {
@@ -328,9 +400,9 @@ public class QuadProgJ {
     }
 
     private void findUnconstrainedMin() {
-        x = alg.inverse(G).zMult(a, null).assign(F.neg); // x <- -G^{-1}*a
+        x = Ginv.zMult(a, null).assign(F.neg); // x <- -G^{-1}*a
         f = 0.5 * a.zDotProduct(x); // f <- 0.5*a'*x
-        H = alg.inverse(G).copy(); // H <- G^{-1}
+        H = Ginv.copy(); // H <- G^{-1}
         A = new int[Math.min(m, n)]; // A <- empty set (all zeros)
         q = 0; // q <- 0
     }
@@ -392,10 +464,98 @@ public class QuadProgJ {
     }
 
 
+    /** Optional Step 0(c): warm start from a given active set.
+     *
+     * Any S-pair (x, A), i.e., x minimizing f subject to the constraints in A
+     * holding as equalities, with non-negative multipliers for the inequality
+     * constraints in A, is a valid starting point for the dual method (GI
+     * 1983).  This method builds such a pair from the inequality constraints
+     * of the warm active set by solving the Lagrangian system (as in Step 0(b))
+     *
+     *        [G -N ; -N' 0] * [x u]' = [-a -bN]'
+     *
+     * where N = [Ceq, C_warm] and bN = [beq', b_warm']'. While some inequality
+     * multiplier is negative, the constraint with the most negative multiplier
+     * is left out and the system solved again.  If the system is singular
+     * (linearly dependent constraints), the warm start is abandoned and the
+     * solver continues from the Step 0(a)/0(b) solution.
+     */
+    private void startFromActiveSet(int[] warm) {
+        int maxActive = Math.min(m, n);
+        int[] cand = new int[maxActive];
+        int nc = 0; // number of candidate inequality constraints
+        boolean[] seen = new boolean[m];
+        for(int i=0; i<warm.length && meq+nc<maxActive; i++) {
+            int c = warm[i];
+            if(c>=meq && c<m && !seen[c]) {
+                seen[c] = true;
+                cand[nc++] = c;
+            }
+        }
+
+        while(nc > 0) {
+            int qw = meq + nc;
+            DoubleMatrix2D Nw = new DenseDoubleMatrix2D(n, qw);
+            DoubleMatrix1D bw = new DenseDoubleMatrix1D(qw);
+            for(int i=0; i<meq; i++) {
+                Nw.viewColumn(i).assign(C.viewColumn(i));
+                bw.setQuick(i, b.getQuick(i));
+            }
+            for(int i=0; i<nc; i++) {
+                Nw.viewColumn(meq+i).assign(C.viewColumn(cand[i]));
+                bw.setQuick(meq+i, b.getQuick(cand[i]));
+            }
+
+            DoubleMatrix2D[][] parts = {{G, Nw.copy().assign(F.neg)},
+                {Nw.copy().viewDice().assign(F.neg), null}
+            };
+            LUDecomposition lu = new LUDecomposition(fac2.compose(parts));
+            if(!lu.isNonsingular()) {
+                return; // dependent constraints: keep the cold start
+            }
+            DoubleMatrix2D rhs = new DenseDoubleMatrix2D(n+qw, 1);
+            rhs.viewColumn(0).viewPart(0,n).assign(a).assign(F.neg);
+            rhs.viewColumn(0).viewPart(n,qw).assign(bw).assign(F.neg);
+            DoubleMatrix1D wsol = lu.solve(rhs).viewColumn(0);
+            DoubleMatrix1D uw = correctRoundingError(wsol.viewPart(n,qw).copy());
+
+            // Leave out the constraint with the most negative multiplier, if any
+            int worst = -1;
+            for(int i=0; i<nc; i++) {
+                if(uw.getQuick(meq+i) < 0 &&
+                   (worst < 0 || uw.getQuick(meq+i) < uw.getQuick(meq+worst))) {
+                    worst = i;
+                }
+            }
+            if(worst >= 0) {
+                for(int i=worst; i<nc-1; i++) {
+                    cand[i] = cand[i+1];
+                }
+                nc--;
+                continue;
+            }
+
+            x = correctRoundingError(wsol.viewPart(0,n).copy());
+            u = uw;
+            f = correctRoundingError(0.5*x.zDotProduct(G.zMult(x,null)) + a.zDotProduct(x));
+            for(int i=0; i<meq; i++) {
+                A[i] = i;
+            }
+            for(int i=0; i<nc; i++) {
+                A[meq+i] = cand[i];
+            }
+            q = qw;
+            N.viewPart(0,0,n,qw).assign(Nw);
+            updateHandNstar();
+            numWarm = nc;
+            return;
+        }
+    }
+
     private void chooseViolatedConstraint() {
 
         // siq = Ciq' * x - biq
-        siq = Ciq.viewDice().zMult(x, null).copy().assign(biq, F.minus);
+        siq = Ciq.zMult(x, null, 1, 0, true).assign(biq, F.minus);
         siq.assign(correctRoundingError(siq));
 
         /*for(int i=0;i<siq.size();i++)
@@ -718,12 +878,12 @@ public class QuadProgJ {
     private void updateHandNstar() {
 
         // B = L^{-1} * N
-        DoubleMatrix2D B = alg.inverse(L).zMult(N.viewPart(0,0,n,q),null);
+        DoubleMatrix2D B = Linv.zMult(N.viewPart(0,0,n,q),null);
         // Get economy-sized Q1 and R from Colt's QR decomposition
         QRDecomposition qr = new QRDecomposition(B);
         DoubleMatrix2D Q1 = qr.getQ(); // Q1: nxq
         DoubleMatrix2D R = qr.getR();  //  R: qxq
-        DoubleMatrix2D J1 = alg.solve(L.viewDice(),Q1); //J1=L^{-T}*Q1 (nxq)
+        DoubleMatrix2D J1 = Linv.zMult(Q1,null,1,0,true,false); //J1=L^{-T}*Q1 (nxq)
 
         // Update H <- J2 * J2' == L^{-T}* Q2*Q2' * L^{-1} (H: nxn),
         //   or equivalently (as in Fletcher(1987) p.238),
@@ -735,12 +895,17 @@ public class QuadProgJ {
 
         DoubleMatrix2D Q2Q2T
         = fac2.identity(n).assign(Q1.zMult(Q1.viewDice(),null),F.minus);
-        H = alg.inverse(L.viewDice()).zMult(Q2Q2T,null).zMult(alg.inverse(L),null);
+        H = Linv.zMult(Q2Q2T,null,1,0,true,false).zMult(Linv,null);
 
         // Update Nstar <- R^{-1}*J1' or R*Nstar = J1' (Nstar: qxn)
         Nstar = new DenseDoubleMatrix2D(q,n).assign(alg.solve(R,J1.viewDice()));
     }
 
+    // Cholesky factor L of G (G = L*L'), shared with QuadProgJSolver.
+    static DoubleMatrix2D factorL(DoubleMatrix2D G) {
+        return new CholeskyDecomposition(G).getL();
+    }
+
     // correctRoundingError() corrects potential rounding error such as
     //  11.0000000000000005 to be 11.0 or -2.775558E-017 to be 0.0.
     //  Note that this method uses a tolerance value TOL to judge if the target
@@ -878,6 +1043,15 @@ public class QuadProgJ {
         return numDrop;
     }
 
+    /**
+     * Returns the number of inequality constraints taken from the warm active
+     * set at the start of the solve (0 for a cold start)
+     * @return int
+     */
+    public int getNumWarmStartConstraints() {
+        return numWarm;
+    }
+
     /**
      * Returns the number of total binding constraints in the final active set.
      * @return int
@@ -0,0 +1,962 @@
+/*
+ * FIXME: LICENSE
+ */
+package amesmarket;
+
+import java.util.Arrays;
+
+import cern.colt.function.IntIntDoubleFunction;
+import cern.colt.matrix.DoubleMatrix1D;
+import cern.colt.matrix.DoubleMatrix2D;
+import cern.colt.matrix.impl.SparseDoubleMatrix2D;
+
+/**
+ * The Goldfarb-Idnani dual active set method of QuadProgJ, on primitive
+ * arrays. See QuadProgJ for the problem setup and the steps of the method;
+ * the steps, the choice of the most violated constraint and the rounding
+ * corrections are the same, so both give the same solutions up to rounding.
+ *
+ * Dense matrices are held column-major in flat double[] arrays, M[i+j*rows],
+ * and C = [Ceq,Ciq] in compressed column form, so that sparse constraint
+ * matrices stay cheap. All work arrays are kept between solves and only
+ * grow with the problem size, so a solve allocates nothing once they are
+ * large enough. The factorization of G is also kept, and reused while G is
+ * unchanged. H and N* are updated with hand-written kernels: B = L^{-1}*N is
+ * factored as Q1*R (Householder), J1 = L^{-T}*Q1, H = G^{-1} - J1*J1' and
+ * N* = R^{-1}*J1'.
+ *
+ * A QuadProgJFlat is reused for one problem after another: the results of a
+ * solve are only valid until the next one. It is not thread safe.
+ */
+public class QuadProgJFlat implements QPResult {
+
+    private static final double PINF =  1.0E50; // PINF: positive infinite
+    private static final double TOL = 1.0E-11;  // TOL: as in QuadProgJ
+
+    private int n;   // number of decision variables
+    private int m;   // number of all constraints (m = meq + miq)
+    private int meq; // number of equality constraints
+    private int miq; // number of inequality constraints
+    private int qmax; // min(m,n)
+
+    // Problem data
+    private double[] a = new double[0];  // nx1
+    private double[] b = new double[0];  // mx1, b = [beq' biq']'
+    // C = [Ceq,Ciq]: column j has the values cVal[cPtr[j]..cPtr[j+1]-1]
+    // in the rows cRow[cPtr[j]..cPtr[j+1]-1]
+    private int[] cPtr = new int[1];
+    private int[] cRow = new int[0];
+    private double[] cVal = new double[0];
+
+    private double[] gIn = new double[0];  // G given as Colt matrix, nxn
+
+    // Factorization of G, kept while G is unchanged
+    private double[] G = new double[0];    // nxn
+    private double[] L = new double[0];    // nxn, G = L*L'
+    private double[] Linv = new double[0]; // nxn, L^{-1}
+    private double[] Ginv = new double[0]; // nxn, G^{-1}
+    private int nFactor = -1;              // n of the factorization, -1 if none
+    private int numFactorizations = 0;
+
+    // State of the method, as in QuadProgJ
+    private int[] A = new int[0];             // active set, qmax
+    private int q;
+    private int p;
+    private int k;
+    private double t, t1, t2;
+    private boolean isFullStep;
+    private boolean isInfeasible;
+    private boolean isFeasibleAndOptimal;
+    private double f;
+    private double[] x = new double[0];       // nx1
+    private double[] z = new double[0];       // nx1
+    private double[] nplus = new double[0];   // nx1, column p of C
+    private double[] r = new double[0];       // q
+    private int rLen;
+    private double[] u = new double[0];       // qmax+1
+    private int uLen;
+    private double[] uplus = new double[0];   // qmax+1
+    private int uplusLen;
+    private double[] N = new double[0];       // n x qmax
+    private double[] H = new double[0];       // nxn
+    private double[] Nstar = new double[0];   // qmax x n, row-major: Nstar[c*n+j]
+
+    // Work arrays for updateHandNstar()
+    private double[] B = new double[0];       // n x qmax, Householder QR of B in place
+    private double[] Rdiag = new double[0];   // qmax
+    private double[] Q1 = new double[0];      // n x qmax
+    private double[] J1 = new double[0];      // n x qmax
+
+    // Work arrays for the Lagrangian systems of Step 0(b) and 0(c)
+    private double[] kkt = new double[0];     // (n+qmax)x(n+qmax), LU in place
+    private double[] rhs = new double[0];     // n+qmax
+    private int[] piv = new int[0];           // n+qmax
+    private int[] cand = new int[0];          // qmax
+    private boolean[] seen = new boolean[0];  // m
+
+    private int numWarm;
+    private int numIter;
+    private int numAdd;
+    private int numDrop;
+
+    /**
+     * Solve the QP problem given as Colt matrices, as QuadProgJ does.
+     *
+     * @param warmActiveSet active set to warm-start from, or null.
+     * @return this, holding the solution.
+     */
+    public QuadProgJFlat solve(DoubleMatrix2D GMat,   DoubleMatrix1D aVec,
+                               DoubleMatrix2D CeqMat, DoubleMatrix1D beqVec,
+                               DoubleMatrix2D CiqMat, DoubleMatrix1D biqVec,
+                               int[] warmActiveSet) {
+        setSize(aVec.size(), beqVec.size(), biqVec.size());
+        gIn = grow(gIn, n*n);
+        copyDense(GMat, gIn);
+        for(int i=0; i<n; i++) {
+            a[i] = aVec.getQuick(i);
+        }
+        for(int j=0; j<meq; j++) {
+            b[j] = beqVec.getQuick(j);
+        }
+        for(int j=0; j<miq; j++) {
+            b[meq+j] = biqVec.getQuick(j);
+        }
+        setConstraints(CeqMat, CiqMat);
+        factor(gIn);
+        solve(warmActiveSet);
+        return this;
+    }
+
+    /**
+     * Solve the QP problem given as column-major arrays: G (nxn), Ceq
+     * (n x meq) and Ciq (n x miq).
+     *
+     * @param warmActiveSet active set to warm-start from, or null.
+     * @return this, holding the solution.
+     */
+    public QuadProgJFlat solve(int n, double[] G, double[] a,
+                               int meq, double[] Ceq, double[] beq,
+                               int miq, double[] Ciq, double[] biq,
+                               int[] warmActiveSet) {
+        setSize(n, meq, miq);
+        System.arraycopy(a, 0, this.a, 0, n);
+        System.arraycopy(beq, 0, b, 0, meq);
+        System.arraycopy(biq, 0, b, meq, miq);
+        int nnz = 0;
+        for(int e=0; e<n*meq; e++) {
+            if(Ceq[e] != 0) nnz++;
+        }
+        for(int e=0; e<n*miq; e++) {
+            if(Ciq[e] != 0) nnz++;
+        }
+        cRow = grow(cRow, nnz);
+        cVal = grow(cVal, nnz);
+        nnz = 0;
+        for(int j=0; j<m; j++) {
+            cPtr[j] = nnz;
+            double[] c = j<meq ? Ceq : Ciq;
+            int off = (j<meq ? j : j-meq)*n;
+            for(int i=0; i<n; i++) {
+                if(c[off+i] != 0) {
+                    cRow[nnz] = i;
+                    cVal[nnz++] = c[off+i];
+                }
+            }
+        }
+        cPtr[m] = nnz;
+        factor(G);
+        solve(warmActiveSet);
+        return this;
+    }
+
+    /**
+     * Drop the cached factorization of G.
+     */
+    public void reset() {
+        nFactor = -1;
+    }
+
+    private void setSize(int n, int meq, int miq) {
+        this.n = n;
+        this.meq = meq;
+        this.miq = miq;
+        m = meq + miq;
+        qmax = Math.min(m, n);
+        a = grow(a, n);
+        b = grow(b, m);
+        cPtr = grow(cPtr, m+1);
+        x = grow(x, n);
+        z = grow(z, n);
+        nplus = grow(nplus, n);
+        r = grow(r, qmax+1);
+        u = grow(u, qmax+1);
+        uplus = grow(uplus, qmax+1);
+        A = grow(A, qmax);
+        N = grow(N, n*qmax);
+        H = grow(H, n*n);
+        Nstar = grow(Nstar, qmax*n);
+        B = grow(B, n*qmax);
+        Rdiag = grow(Rdiag, qmax);
+        Q1 = grow(Q1, n*qmax);
+        J1 = grow(J1, n*qmax);
+        kkt = grow(kkt, (n+qmax)*(n+qmax));
+        rhs = grow(rhs, n+qmax);
+        piv = grow(piv, n+qmax);
+        cand = grow(cand, qmax);
+        if(seen.length < m) {
+            seen = new boolean[m];
+        }
+    }
+
+    private static double[] grow(double[] v, int size) {
+        return v.length >= size ? v : new double[size];
+    }
+
+    private static int[] grow(int[] v, int size) {
+        return v.length >= size ? v : new int[size];
+    }
+
+    private void copyDense(DoubleMatrix2D M, final double[] to) {
+        final int rows = M.rows();
+        if(M instanceof SparseDoubleMatrix2D) {
+            Arrays.fill(to, 0, rows*M.columns(), 0);
+            M.forEachNonZero(new IntIntDoubleFunction() {
+                public double apply(int i, int j, double value) {
+                    to[i+j*rows] = value;
+                    return value;
+                }
+            });
+        }
+        else {
+            for(int j=0; j<M.columns(); j++) {
+                for(int i=0; i<rows; i++) {
+                    to[i+j*rows] = M.getQuick(i,j);
+                }
+            }
+        }
+    }
+
+    // C = [Ceq,Ciq] in compressed column form, visiting only the non-zeros
+    // of sparse matrices
+    private void setConstraints(DoubleMatrix2D CeqMat, DoubleMatrix2D CiqMat) {
+        final int[] count = new int[m+1];
+        DoubleMatrix2D[] parts = {CeqMat, CiqMat};
+        for(int part=0; part<2; part++) {
+            final int offset = part==0 ? 0 : meq;
+            DoubleMatrix2D M = parts[part];
+            if(M instanceof SparseDoubleMatrix2D) {
+                M.forEachNonZero(new IntIntDoubleFunction() {
+                    public double apply(int i, int j, double value) {
+                        count[offset+j+1]++;
+                        return value;
+                    }
+                });
+            }
+            else {
+                for(int j=0; j<M.columns(); j++) {
+                    for(int i=0; i<n; i++) {
+                        if(M.getQuick(i,j) != 0) count[offset+j+1]++;
+                    }
+                }
+            }
+        }
+        for(int j=0; j<m; j++) {
+            count[j+1] += count[j];
+        }
+        System.arraycopy(count, 0, cPtr, 0, m+1);
+        cRow = grow(cRow, count[m]);
+        cVal = grow(cVal, count[m]);
+        for(int part=0; part<2; part++) {
+            final int offset = part==0 ? 0 : meq;
+            DoubleMatrix2D M = parts[part];
+            if(M instanceof SparseDoubleMatrix2D) {
+                M.forEachNonZero(new IntIntDoubleFunction() {
+                    public double apply(int i, int j, double value) {
+                        int e = count[offset+j]++;
+                        cRow[e] = i;
+                        cVal[e] = value;
+                        return value;
+                    }
+                });
+            }
+            else {
+                for(int j=0; j<M.columns(); j++) {
+                    for(int i=0; i<n; i++) {
+                        double value = M.getQuick(i,j);
+                        if(value != 0) {
+                            int e = count[offset+j]++;
+                            cRow[e] = i;
+                            cVal[e] = value;
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    // Make sure the cached factorization is that of Gin (nxn, column-major).
+    private void factor(double[] Gin) {
+        if(nFactor == n) {
+            boolean same = true;
+            for(int e=0; e<n*n && same; e++) {
+                same = G[e] == Gin[e];
+            }
+            if(same) {
+                return;
+            }
+        }
+        G = grow(G, n*n);
+        L = grow(L, n*n);
+        Linv = grow(Linv, n*n);
+        Ginv = grow(Ginv, n*n);
+        System.arraycopy(Gin, 0, G, 0, n*n);
+
+        // Cholesky: G = L*L'
+        for(int j=0; j<n; j++) {
+            double s = G[j+j*n];
+            for(int c=0; c<j; c++) {
+                s -= L[j+c*n]*L[j+c*n];
+            }
+            if(s <= 0) {
+                nFactor = -1;
+                throw new IllegalArgumentException("Matrix is not symmetric positive definite.");
+            }
+            double d = Math.sqrt(s);
+            L[j+j*n] = d;
+            for(int i=0; i<j; i++) {
+                L[i+j*n] = 0;
+            }
+            for(int i=j+1; i<n; i++) {
+                s = G[i+j*n];
+                for(int c=0; c<j; c++) {
+                    s -= L[i+c*n]*L[j+c*n];
+                }
+                L[i+j*n] = s/d;
+            }
+        }
+        // L^{-1}, column by column from L*y = e_j
+        for(int j=0; j<n; j++) {
+            for(int i=0; i<j; i++) {
+                Linv[i+j*n] = 0;
+            }
+            Linv[j+j*n] = 1/L[j+j*n];
+            for(int i=j+1; i<n; i++) {
+                double s = 0;
+                for(int c=j; c<i; c++) {
+                    s -= L[i+c*n]*Linv[c+j*n];
+                }
+                Linv[i+j*n] = s/L[i+i*n];
+            }
+        }
+        // G^{-1} = L^{-T}*L^{-1}
+        for(int j=0; j<n; j++) {
+            for(int i=j; i<n; i++) {
+                double s = 0;
+                for(int c=i; c<n; c++) {
+                    s += Linv[c+i*n]*Linv[c+j*n];
+                }
+                Ginv[i+j*n] = s;
+                Ginv[j+i*n] = s;
+            }
+        }
+        nFactor = n;
+        numFactorizations++;
+    }
+
+    private void solve(int[] warmActiveSet) {
+        q = 0;
+        uLen = uplusLen = rLen = 0;
+        numWarm = numIter = numAdd = numDrop = 0;
+        isInfeasible = false;
+        isFeasibleAndOptimal = false;
+        isFullStep = false;
+
+        findUnconstrainedMin();                        // Step 0(a)
+        if(meq > 0) {
+            findEqualityConstrainedMin_Lagrangian();     // Step 0(b)
+        }
+        if(miq > 0) {
+            if(warmActiveSet != null) {
+                startFromActiveSet(warmActiveSet);       // Step 0(c), optional
+            }
+            chooseViolatedConstraint();                  // Step 1
+            while (!isFeasibleAndOptimal && !isInfeasible) {
+                numIter++;
+                determineStepDirection();                // Step 2(a)
+                computeStepLength();                     // Step 2(b)
+                determineNewSpairAndTakeStep();          // Step 2(c)
+                if(isFullStep) {
+                    chooseViolatedConstraint();          // Step 1
+                }
+            }
+        }
+
+        correctRoundingError(x, n);
+        f = correctRoundingError(f);
+        if(q>0) correctRoundingError(u, uLen);
+    }
+
+    private void findUnconstrainedMin() {
+        f = 0;
+        for(int i=0; i<n; i++) {
+            double s = 0;
+            for(int j=0; j<n; j++) {
+                s += Ginv[i+j*n]*a[j];
+            }
+            x[i] = -s;
+        }
+        for(int i=0; i<n; i++) {
+            f += a[i]*x[i];
+        }
+        f = 0.5*f;
+        System.arraycopy(Ginv, 0, H, 0, n*n);
+        Arrays.fill(A, 0, qmax, 0);
+        q = 0;
+    }
+
+    private void findEqualityConstrainedMin_Lagrangian() {
+        for(int i=0; i<meq; i++) {
+            cand[i] = i;
+        }
+        if(!solveLagrangian(meq)) {
+            throw new IllegalArgumentException("Matrix is singular.");
+        }
+        System.arraycopy(rhs, 0, x, 0, n);
+        System.arraycopy(rhs, n, u, 0, meq);
+        uLen = meq;
+        f = objective();
+
+        correctRoundingError(x, n);
+        f = correctRoundingError(f);
+        if(q>0) correctRoundingError(u, uLen); // as in QuadProgJ, q is still 0
+
+        for(int i=0; i<meq; i++) {
+            A[i] = i;
+            setColumnOfN(i, i);
+        }
+        q = meq;
+        updateHandNstar();
+    }
+
+    // Step 0(c), see QuadProgJ.startFromActiveSet()
+    private void startFromActiveSet(int[] warm) {
+        int nc = 0;
+        Arrays.fill(seen, 0, m, false);
+        for(int i=0; i<warm.length && meq+nc<qmax; i++) {
+            int c = warm[i];
+            if(c>=meq && c<m && !seen[c]) {
+                seen[c] = true;
+                cand[meq+nc++] = c;
+            }
+        }
+        for(int i=0; i<meq; i++) {
+            cand[i] = i;
+        }
+
+        while(nc > 0) {
+            int qw = meq + nc;
+            if(!solveLagrangian(qw)) {
+                return; // dependent constraints: keep the cold start
+            }
+            correctRoundingError(rhs, n, qw);
+
+            int worst = -1;
+            for(int i=meq; i<qw; i++) {
+                if(rhs[n+i] < 0 && (worst < 0 || rhs[n+i] < rhs[n+worst])) {
+                    worst = i;
+                }
+            }
+            if(worst >= 0) {
+                for(int i=worst; i<qw-1; i++) {
+                    cand[i] = cand[i+1];
+                }
+                nc--;
+                continue;
+            }
+
+            System.arraycopy(rhs, 0, x, 0, n);
+            correctRoundingError(x, n);
+            System.arraycopy(rhs, n, u, 0, qw);
+            uLen = qw;
+            f = correctRoundingError(objective());
+            for(int i=0; i<qw; i++) {
+                A[i] = cand[i];
+                setColumnOfN(i, cand[i]);
+            }
+            q = qw;
+            updateHandNstar();
+            numWarm = nc;
+            return;
+        }
+    }
+
+    // Solve [G -Nw ; -Nw' 0] * [x u]' = [-a -bw]' into rhs, where Nw holds
+    // the columns cand[0..qw-1] of C. False if the system is singular.
+    private boolean solveLagrangian(int qw) {
+        int s = n+qw;
+        Arrays.fill(kkt, 0, s*s, 0);
+        for(int j=0; j<n; j++) {
+            System.arraycopy(G, j*n, kkt, j*s, n);
+        }
+        for(int c=0; c<qw; c++) {
+            int col = cand[c];
+            for(int e=cPtr[col]; e<cPtr[col+1]; e++) {
+                kkt[cRow[e]+(n+c)*s] = -cVal[e];
+                kkt[(n+c)+cRow[e]*s] = -cVal[e];
+            }
+            rhs[n+c] = -b[col];
+        }
+        for(int i=0; i<n; i++) {
+            rhs[i] = -a[i];
+        }
+
+        // LU with partial pivoting, in place
+        for(int j=0; j<s; j++) {
+            int pr = j;
+            for(int i=j+1; i<s; i++) {
+                if(Math.abs(kkt[i+j*s]) > Math.abs(kkt[pr+j*s])) pr = i;
+            }
+            piv[j] = pr;
+            if(kkt[pr+j*s] == 0) {
+                return false;
+            }
+            if(pr != j) {
+                for(int c=0; c<s; c++) {
+                    double tmp = kkt[j+c*s];
+                    kkt[j+c*s] = kkt[pr+c*s];
+                    kkt[pr+c*s] = tmp;
+                }
+            }
+            double d = kkt[j+j*s];
+            for(int i=j+1; i<s; i++) {
+                kkt[i+j*s] /= d;
+            }
+            for(int c=j+1; c<s; c++) {
+                double v = kkt[j+c*s];
+                if(v != 0) {
+                    for(int i=j+1; i<s; i++) {
+                        kkt[i+c*s] -= kkt[i+j*s]*v;
+                    }
+                }
+            }
+        }
+        for(int j=0; j<s; j++) {
+            double tmp = rhs[j];
+            rhs[j] = rhs[piv[j]];
+            rhs[piv[j]] = tmp;
+        }
+        for(int j=0; j<s; j++) {
+            for(int i=j+1; i<s; i++) {
+                rhs[i] -= kkt[i+j*s]*rhs[j];
+            }
+        }
+        for(int j=s-1; j>=0; j--) {
+            rhs[j] /= kkt[j+j*s];
+            for(int i=0; i<j; i++) {
+                rhs[i] -= kkt[i+j*s]*rhs[j];
+            }
+        }
+        return true;
+    }
+
+    // 0.5*x'*G*x + a'*x
+    private double objective() {
+        double s = 0;
+        for(int j=0; j<n; j++) {
+            double gx = 0;
+            for(int i=0; i<n; i++) {
+                gx += G[i+j*n]*x[i];
+            }
+            s += x[j]*(0.5*gx + a[j]);
+        }
+        return s;
+    }
+
+    private void setColumnOfN(int col, int c) {
+        int off = col*n;
+        Arrays.fill(N, off, off+n, 0);
+        for(int e=cPtr[c]; e<cPtr[c+1]; e++) {
+            N[off+cRow[e]] = cVal[e];
+        }
+    }
+
+    // C(:,j)'*v
+    private double dotColumn(int j, double[] v) {
+        double s = 0;
+        for(int e=cPtr[j]; e<cPtr[j+1]; e++) {
+            s += cVal[e]*v[cRow[e]];
+        }
+        return s;
+    }
+
+    private void chooseViolatedConstraint() {
+        // siq = Ciq' * x - biq; choose p as the most violated constraint,
+        // the last one of equally violated ones as in QuadProgJ
+        boolean violated = false;
+        double temp = 0;
+        for(int j=0; j<miq; j++) {
+            double s = correctRoundingError(dotColumn(meq+j, x) - b[meq+j]);
+            if(s < 0 && (!violated || s <= temp)) {
+                violated = true;
+                temp = s;
+                p = meq + j;
+            }
+        }
+        if(!violated) {
+            isFeasibleAndOptimal = true;
+            return;
+        }
+        Arrays.fill(nplus, 0, n, 0);
+        for(int e=cPtr[p]; e<cPtr[p+1]; e++) {
+            nplus[cRow[e]] = cVal[e];
+        }
+        if(q==0) {
+            uplus[0] = 0;
+            uplusLen = 1;
+            u[0] = 0;
+            uLen = 1;
+        }
+        else {
+            System.arraycopy(u, 0, uplus, 0, uLen);
+            uplus[uLen] = 0;
+            uplusLen = uLen+1;
+        }
+    }
+
+    private void determineStepDirection() {
+        // z = H*nplus
+        for(int i=0; i<n; i++) {
+            double s = 0;
+            for(int j=0; j<n; j++) {
+                s += H[i+j*n]*nplus[j];
+            }
+            z[i] = s;
+        }
+        correctRoundingError(z, n);
+        // r = Nstar*nplus
+        rLen = q;
+        for(int c=0; c<q; c++) {
+            double s = 0;
+            for(int j=0; j<n; j++) {
+                s += Nstar[c*n+j]*nplus[j];
+            }
+            r[c] = s;
+        }
+        correctRoundingError(r, rLen);
+    }
+
+    private void computeStepLength() {
+        // Step 2(b)-(i) partial step length t1
+        t1 = PINF;
+        if(q > 0) {
+            int ctbd = -1;
+            for(int j=meq; j<q; j++) {
+                if(r[j] > 0) {
+                    double tempMin = uplus[j]/r[j];
+                    if(tempMin < t1) {
+                        t1 = tempMin;
+                        ctbd = j;
+                    }
+                }
+            }
+            if(ctbd >= 0) {
+                k = A[ctbd];
+            }
+        }
+        // Step 2(b)-(ii) full step length t2
+        double zz = 0, znp = 0, npx = 0;
+        for(int i=0; i<n; i++) {
+            zz += z[i]*z[i];
+            znp += z[i]*nplus[i];
+            npx += nplus[i]*x[i];
+        }
+        if(zz == 0.0) {
+            t2 = PINF;
+        }
+        else {
+            t2 = -(npx - b[p]) / znp;
+        }
+        t = Math.min(t1,t2);
+    }
+
+    private void determineNewSpairAndTakeStep() {
+        if(t == PINF) {
+            isInfeasible = true;
+        }
+        else if(t2 == PINF) { // dual step
+            isFullStep = false;
+            stepMultipliers();
+            dropZeroMultiplierCorrespondingToConstraintK();
+            dropConstraintK();
+        }
+        else { // step in primal and dual space
+            double znp = 0;
+            for(int i=0; i<n; i++) {
+                x[i] += t*z[i];
+                znp += z[i]*nplus[i];
+            }
+            f = f + t*znp*(0.5*t + uplus[uplusLen-1]);
+            stepMultipliers();
+
+            if(t2 <= t1) { // full step
+                isFullStep = true;
+                System.arraycopy(uplus, 0, u, 0, uplusLen);
+                uLen = uplusLen;
+                addConstraintP();
+            }
+            else { // partial step
+                isFullStep = false;
+                dropZeroMultiplierCorrespondingToConstraintK();
+                dropConstraintK();
+            }
+        }
+    }
+
+    // uplus <- uplus + t*(-r 1)'
+    private void stepMultipliers() {
+        for(int i=0; i<rLen; i++) {
+            uplus[i] -= t*r[i];
+        }
+        uplus[rLen] += t;
+    }
+
+    private void addConstraintP() {
+        numAdd++;
+        A[q] = p;
+        setColumnOfN(q, p);
+        q++;
+        updateHandNstar();
+    }
+
+    private void dropConstraintK() {
+        numDrop++;
+        q--;
+        for(int i=meq; i<qmax; i++) {
+            if(A[i] == k) {
+                for(int j=i; j<q; j++) {
+                    A[j] = A[j+1];
+                    System.arraycopy(N, (j+1)*n, N, j*n, n);
+                }
+                A[q] = 0;
+                Arrays.fill(N, q*n, (q+1)*n, 0);
+                break;
+            }
+        }
+        updateHandNstar();
+    }
+
+    private void dropZeroMultiplierCorrespondingToConstraintK() {
+        for(int i=meq; i<qmax; i++) {
+            if(A[i] == k) {
+                for(int j=i; j<uplusLen-1; j++) {
+                    uplus[j] = uplus[j+1];
+                }
+                uplusLen--;
+                break;
+            }
+        }
+    }
+
+    private void updateHandNstar() {
+        if(q == 0) {
+            System.arraycopy(Ginv, 0, H, 0, n*n);
+            return;
+        }
+
+        // B = L^{-1} * N (L^{-1} is lower triangular)
+        for(int c=0; c<q; c++) {
+            for(int i=0; i<n; i++) {
+                double s = 0;
+                for(int j=0; j<=i; j++) {
+                    s += Linv[i+j*n]*N[j+c*n];
+                }
+                B[i+c*n] = s;
+            }
+        }
+
+        // Householder QR of B in place, as Colt's QRDecomposition
+        for(int kk=0; kk<q; kk++) {
+            double nrm = 0;
+            for(int i=kk; i<n; i++) {
+                nrm = hypot(nrm, B[i+kk*n]);
+            }
+            if(nrm != 0.0) {
+                if(B[kk+kk*n] < 0) nrm = -nrm;
+                for(int i=kk; i<n; i++) {
+                    B[i+kk*n] /= nrm;
+                }
+                B[kk+kk*n] += 1.0;
+                for(int j=kk+1; j<q; j++) {
+                    double s = 0.0;
+                    for(int i=kk; i<n; i++) {
+                        s += B[i+kk*n]*B[i+j*n];
+                    }
+                    s = -s/B[kk+kk*n];
+                    for(int i=kk; i<n; i++) {
+                        B[i+j*n] += s*B[i+kk*n];
+                    }
+                }
+            }
+            Rdiag[kk] = -nrm;
+        }
+        // Q1: nxq
+        for(int kk=q-1; kk>=0; kk--) {
+            for(int i=0; i<n; i++) {
+                Q1[i+kk*n] = 0.0;
+            }
+            Q1[kk+kk*n] = 1.0;
+            for(int j=kk; j<q; j++) {
+                if(B[kk+kk*n] != 0) {
+                    double s = 0.0;
+                    for(int i=kk; i<n; i++) {
+                        s += B[i+kk*n]*Q1[i+j*n];
+                    }
+                    s = -s/B[kk+kk*n];
+                    for(int i=kk; i<n; i++) {
+                        Q1[i+j*n] += s*B[i+kk*n];
+                    }
+                }
+            }
+        }
+
+        // J1 = L^{-T} * Q1
+        for(int c=0; c<q; c++) {
+            for(int i=0; i<n; i++) {
+                double s = 0;
+                for(int j=i; j<n; j++) {
+                    s += Linv[j+i*n]*Q1[j+c*n];
+                }
+                J1[i+c*n] = s;
+            }
+        }
+
+        // H = L^{-T}*(I - Q1*Q1')*L^{-1} = G^{-1} - J1*J1'
+        for(int j=0; j<n; j++) {
+            for(int i=j; i<n; i++) {
+                double s = Ginv[i+j*n];
+                for(int c=0; c<q; c++) {
+                    s -= J1[i+c*n]*J1[j+c*n];
+                }
+                H[i+j*n] = s;
+                H[j+i*n] = s;
+            }
+        }
+
+        // Nstar = R^{-1} * J1' by back substitution, R(c,d) = B(c,d) for c<d
+        for(int c=0; c<q; c++) {
+            if(Rdiag[c] == 0) {
+                throw new IllegalArgumentException("Matrix is singular.");
+            }
+        }
+        for(int j=0; j<n; j++) {
+            for(int c=q-1; c>=0; c--) {
+                double s = J1[j+c*n];
+                for(int d=c+1; d<q; d++) {
+                    s -= B[c+d*n]*Nstar[d*n+j];
+                }
+                Nstar[c*n+j] = s/Rdiag[c];
+            }
+        }
+    }
+
+    // sqrt(a^2 + b^2) without under/overflow, as in Colt's Algebra.hypot()
+    private static double hypot(double a, double b) {
+        double r;
+        if (Math.abs(a) > Math.abs(b)) {
+            r = b/a;
+            r = Math.abs(a)*Math.sqrt(1+r*r);
+        }
+        else if (b != 0) {
+            r = a/b;
+            r = Math.abs(b)*Math.sqrt(1+r*r);
+        }
+        else {
+            r = 0.0;
+        }
+        return r;
+    }
+
+    private static void correctRoundingError(double[] v, int len) {
+        correctRoundingError(v, 0, len);
+    }
+
+    // See QuadProgJ.correctRoundingError()
+    private static void correctRoundingError(double[] v, int from, int len) {
+        for(int i=from; i<from+len; i++) {
+            v[i] = correctRoundingError(v[i]);
+        }
+    }
+
+    private static double correctRoundingError(double scalar) {
+        if( Math.abs(scalar - Math.rint(scalar)) < TOL) {
+            scalar = Math.rint(scalar);
+        }
+        return scalar;
+    }
+
+    /************************* Get and set methods **************************/
+
+    public double[] getMinX() {
+        double[] minX = new double[n];
+        System.arraycopy(x, 0, minX, 0, n);
+        return minX;
+    }
+
+    public double getMinF() {
+        return f;
+    }
+
+    public double[] getAllMultipliers() {
+        double[] all = new double[uLen];
+        System.arraycopy(u, 0, all, 0, uLen);
+        return all;
+    }
+
+    public double[] getEqMultipliers() {
+        double[] eq = new double[meq];
+        System.arraycopy(u, 0, eq, 0, meq);
+        return eq;
+    }
+
+    public double[] getIneqMultipiers() {
+        double[] lambdaIneq = new double[miq];
+        for(int i=meq; i<q; i++) {
+            lambdaIneq[A[i]-meq] = u[i];
+        }
+        return lambdaIneq;
+    }
+
+    public int getNumIterations() {
+        return numIter;
+    }
+
+    public int getNumConstraintsAdded() {
+        return numAdd;
+    }
+
+    public int getNumConstraintsDropped() {
+        return numDrop;
+    }
+
+    public int getNumWarmStartConstraints() {
+        return numWarm;
+    }
+
+    public int getNumFactorizations() {
+        return numFactorizations;
+    }
+
+    public int getNumBC() {
+        return q - meq;
+    }
+
+    public int[] getActiveSet() {
+        int[] Aactive = new int[q];
+        System.arraycopy(A, 0, Aactive, 0, q);
+        return Aactive;
+    }
+
+    public boolean getIsFeasibleAndOptimal() {
+        return isFeasibleAndOptimal;
+    }
+}
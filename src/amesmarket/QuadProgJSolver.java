@@ -0,0 +1,134 @@
+/*
+ * FIXME: LICENSE
+ */
+package amesmarket;
+
+import cern.colt.matrix.DoubleMatrix1D;
+import cern.colt.matrix.DoubleMatrix2D;
+import cern.colt.matrix.impl.DenseDoubleMatrix2D;
+import cern.colt.matrix.linalg.Algebra;
+import cern.colt.matrix.linalg.Property;
+
+/**
+ * Reusable front end to QuadProgJ for a sequence of problems that mostly share
+ * the same Hessian G, such as the hourly DC-OPF problems of a market day.
+ *
+ * QuadProgJ needs the Cholesky factor L of G, L^{-1} and G^{-1}; computing
+ * them is O(n^3) and dominates the cost of small problems. This solver keeps
+ * them from the previous call and only refactors when G differs from the
+ * cached one, so a problem in which only a, beq or biq changed is solved
+ * without refactoring.
+ *
+ * A QuadProgJSolver created in flat mode solves with QuadProgJFlat instead,
+ * which keeps its own factorization and work arrays between solves.
+ *
+ * A QuadProgJSolver is not thread safe; use one per thread.
+ */
+public class QuadProgJSolver {
+
+    private final Algebra alg = new Algebra();
+    // DoubleMatrix2D.equals allows a difference of 1e-9; the factorization
+    // is only reused for exactly the same G.
+    private static final Property EXACT = new Property(0);
+
+    private DoubleMatrix2D G;    // G of the cached factorization, nxn
+    private DoubleMatrix2D L;    // L: G = L*L'
+    private DoubleMatrix2D Linv; // L^{-1}
+    private DoubleMatrix2D Ginv; // G^{-1}
+
+    private int numFactorizations = 0;
+    private int numSolves = 0;
+
+    private final QuadProgJFlat flat; // null unless in flat mode
+
+    public QuadProgJSolver() {
+        this(false);
+    }
+
+    /**
+     * @param flat whether solveQP() uses QuadProgJFlat.
+     */
+    public QuadProgJSolver(boolean flat) {
+        this.flat = flat ? new QuadProgJFlat() : null;
+    }
+
+    /**
+     * Solve the QP problem; see QuadProgJ for the problem setup.
+     *
+     * @param warmActiveSet active set to warm-start from, or null.
+     * @return the solved QuadProgJ instance.
+     */
+    public QuadProgJ solve(DoubleMatrix2D GMat,   DoubleMatrix1D aVec,
+                           DoubleMatrix2D CeqMat, DoubleMatrix1D beqVec,
+                           DoubleMatrix2D CiqMat, DoubleMatrix1D biqVec,
+                           int[] warmActiveSet) {
+        numSolves++;
+        return new QuadProgJ(this, GMat, aVec, CeqMat, beqVec, CiqMat, biqVec,
+                warmActiveSet);
+    }
+
+    /**
+     * Solve the QP problem with QuadProgJFlat in flat mode, otherwise as
+     * solve(). In flat mode the result is only valid until the next solve.
+     */
+    QPResult solveQP(DoubleMatrix2D GMat,   DoubleMatrix1D aVec,
+                     DoubleMatrix2D CeqMat, DoubleMatrix1D beqVec,
+                     DoubleMatrix2D CiqMat, DoubleMatrix1D biqVec,
+                     int[] warmActiveSet) {
+        if(flat == null) {
+            return solve(GMat, aVec, CeqMat, beqVec, CiqMat, biqVec, warmActiveSet);
+        }
+        numSolves++;
+        return flat.solve(GMat, aVec, CeqMat, beqVec, CiqMat, biqVec, warmActiveSet);
+    }
+
+    /**
+     * Make sure the cached factorization is that of GMat.
+     */
+    void factor(DoubleMatrix2D GMat) {
+        if (G != null && EXACT.equals(G, GMat)) {
+            return;
+        }
+        G = new DenseDoubleMatrix2D(GMat.rows(), GMat.columns()).assign(GMat);
+        L = QuadProgJ.factorL(G);
+        Linv = alg.inverse(L);
+        Ginv = Linv.viewDice().zMult(Linv, null);
+        numFactorizations++;
+    }
+
+    DoubleMatrix2D getL() {
+        return L;
+    }
+
+    DoubleMatrix2D getLinv() {
+        return Linv;
+    }
+
+    DoubleMatrix2D getGinv() {
+        return Ginv;
+    }
+
+    /**
+     * Drop the cached factorization.
+     */
+    public void reset() {
+        G = L = Linv = Ginv = null;
+        if(flat != null) {
+            flat.reset();
+        }
+    }
+
+    /**
+     * @return number of times G was factored.
+     */
+    public int getNumFactorizations() {
+        return flat != null ? flat.getNumFactorizations() : numFactorizations;
+    }
+
+    /**
+     * @return number of problems solved.
+     */
+    public int getNumSolves() {
+        return numSolves;
+    }
+}
@@ -27,7 +27,6 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
-import amesmarket.extern.coopr.DataFileWriter;
 import amesmarket.extern.coopr.PSSTSCED;
 import amesmarket.extern.common.CommitmentDecision;
 import amesmarket.filereaders.BadDataFileFormatException;
@@ -65,13 +64,17 @@ public class RTMarket {
     private int numHoursPerDay;
 
     BUC buc;
+    /**
+     * The external psst SCED, or null if the in-JVM SCEDJ is used instead
+     * (-DSCED=java).
+     */
     private final PSSTSCED sced;
+    private final SCEDJ scedJ;
 
-    //TODO-X : Parameterize file paths. Probably should be accessible
-    //from the AMESMarket instance.
-    private final File scedOutFile = new File("RTSCED.dat");
-    private final File rtRefModelFile = new File("SCUCresources/ScenarioData/RTRefernceModel.dat");
-    private final File unitCommitmentFile = new File("rt-unitcommitments.dat");
+    //in the run's workspace, see Workspace.
+    private final File scedOutFile;
+    private final File rtRefModelFile;
+    private final File unitCommitmentFile;
 
 
     // constructor
@@ -89,10 +92,21 @@ public class RTMarket {
 
         priceSensitiveDispatch = new double[numHoursPerDay][numLSEAgents];
 
-        sced = new PSSTSCED(model, model.getBaseS(),
-                unitCommitmentFile,
-                rtRefModelFile,
-                scedOutFile);
+        Workspace workspace = ames.getWorkspace();
+        scedOutFile = workspace.file("RTSCED.dat");
+        rtRefModelFile = workspace.file(Workspace.SCENARIO_DATA + "/RTRefernceModel.dat");
+        unitCommitmentFile = workspace.file("rt-unitcommitments.dat");
+
+        if ("java".equals(System.getProperty("SCED", "pyomo"))) {
+            sced = null;
+            scedJ = new SCEDJ(iso, model);
+        } else {
+            sced = new PSSTSCED(model, model.getBaseS(),
+                    unitCommitmentFile,
+                    rtRefModelFile,
+                    scedOutFile);
+            scedJ = null;
+        }
     }
 
     public void realTimeOperation(int h, int d) {
@@ -113,12 +127,23 @@ public class RTMarket {
             double[][] rtDemand,
             int h, int d) throws AMESMarketException {
 
+        if (scedJ != null) {
+            //no data files needed, solve in memory.
+            scedJ.setProblem(genCoCommitments, rtDemand, d);
+            scedJ.solveOPF();
 
-        DataFileWriter dfw = new DataFileWriter();
+            hasSolution  = scedJ.getHasSolution();
+            rtDispatches = scedJ.getDailyCommitment();
+            rtBranchFlow = scedJ.getDailyBranchFlow();
+            rtLMPs = scedJ.getDailyLMP();
+            rtProductionCost = scedJ.getProductionCost();
+            rtStartupCost = scedJ.getStartupCost();
+            rtShutdownCost = scedJ.getShutdownCost();
+            return;
+        }
 
-        //write the correct data files.
-        dfw.writeGenCommitments(genCoCommitments, unitCommitmentFile);
-        dfw.writeScenDatFile(rtRefModelFile, ames, d, rtDemand, ames.NUM_HOURS_PER_DAY);
+        //write the correct data files, or keep them in memory for the psst worker.
+        sced.writeInput(genCoCommitments, rtDemand, d);
 
 
         //
@@ -145,6 +170,15 @@ public class RTMarket {
 //        return priceSensitiveDispatch;
 //    }
 
+    /**
+     * Stop the external SCED process kept between solves, if any.
+     */
+    public void closeExternalSolvers() throws InterruptedException {
+        if (sced != null) {
+            sced.close();
+        }
+    }
+
     public void setBUC(BUC buc) {
         this.buc = buc;
     }
@@ -0,0 +1,641 @@
+/*
+ * FIXME: LICENSE
+ */
+package amesmarket;
+
+import java.util.Arrays;
+import java.util.List;
+
+import amesmarket.extern.common.CommitmentDecision;
+import cern.colt.function.IntIntDoubleFunction;
+import cern.colt.matrix.DoubleMatrix1D;
+import cern.colt.matrix.DoubleMatrix2D;
+import cern.colt.matrix.impl.DenseDoubleMatrix1D;
+import cern.colt.matrix.impl.SparseDoubleMatrix2D;
+
+/**
+ * SCED solved in the JVM with QuadProgJ, as an alternative to the external
+ * psst SCED (see {@link amesmarket.extern.coopr.PSSTSCED}). Selected with
+ * -DSCED=java.
+ *
+ * For each hour, given the unit commitment, it solves the DC-OPF
+ *
+ * <pre>
+ *   min   SUM_i (a_i*p_i + b_i*p_i^2)          over committed units i
+ *   s.t.  bus power balance (DC approximation)  -> LMPs
+ *         |branch flow| <= thermal limit
+ *         capMin_i <= p_i <= capMax_i
+ *         SUM_i (capMax_i - p_i) >= reserve requirement
+ * </pre>
+ *
+ * in per unit, with units that are not committed held at zero output.
+ * Production, startup and shutdown costs are reported per hour and GenCo in
+ * the same way as the psst SCED: a committed unit pays its no-load cost plus
+ * its production cost, a unit that is started pays its hot start cost if it
+ * has been off for at most twice its minimum down time (cold start cost
+ * otherwise), and a unit that is shut down pays its shutdown cost.
+ *
+ * When ramp limits are given (always the case for a problem taken from the
+ * GenAgents), the hours are coupled by the ramp constraints
+ *
+ * <pre>
+ *   -rampDown_i <= p_i(h+1) - p_i(h) <= rampUp_i   if unit i is on in h and h+1
+ *   p_i(h) <= startupRamp_i                         if unit i starts in hour h
+ *   p_i(h) <= shutdownRamp_i                        if unit i shuts down after h
+ * </pre>
+ *
+ * with hour 0 ramping from the unit's output at the end of the previous
+ * day, and the whole day is solved as one QP with BlockTridiagonalQP. A
+ * ramp limit that is not positive is taken as no limit, and startup and
+ * shutdown ramp limits below capMin as capMin.
+ *
+ * Price-sensitive demand is not modeled; the price-sensitive demand returned
+ * is all zeros.
+ */
+public class SCEDJ implements SCED {
+
+    // Index for supplyOffer parameters, i.e., in the form of {a,b,capMin,capMax}
+    private static final int A_INDEX = 0;
+    private static final int B_INDEX = 1;
+    private static final int CAP_MIN = 2;
+    private static final int CAP_MAX = 3;
+
+    // Index for genCosts parameters
+    private static final int NO_LOAD_COST    = 0;
+    private static final int COLD_START_COST = 1;
+    private static final int HOT_START_COST  = 2;
+    private static final int SHUTDOWN_COST   = 3;
+
+    // Index for rampLimits parameters
+    private static final int RAMP_UP       = 0;
+    private static final int RAMP_DOWN     = 1;
+    private static final int STARTUP_RAMP  = 2;
+    private static final int SHUTDOWN_RAMP = 3;
+
+    private final ISO iso;
+    private final AMESMarket ames;
+    private final TransGrid grid;
+    private final double baseS;
+    private final int[] atNodeByGen;
+    private final int[] atNodeByLSE;
+
+    private final int K; // numNodes
+    private final int N; // numBranches
+    private final int I; // numGenAgents
+    private final int J; // numLSEAgents
+
+    /** Reused across hours; G only changes with the set of committed units. */
+    private final QuadProgJSolver solver = new QuadProgJSolver();
+
+    // Problem data, in SI, set by setProblem()
+    private int[][] commitment;     // IxH, 1 if unit i is on in hour h
+    private double[][] loadByLSE;   // JxH
+    private double[][] supplyOffer; // Ix4
+    private double[][] genCosts;    // Ix4
+    private int[] unitOnT0;         // I, see GenAgent.getUnitOnT0State()
+    private int[] minDownTime;      // I
+    private double reserve;
+    private double[][] rampLimits;  // Ix4, null to solve the hours independently
+    private double[] powerT0;       // I, output in the hour before hour 0
+
+    private int numDayIterations;
+
+    // Solution
+    private double[][] dailyCommitment;
+    private double[][] dailyLMP;
+    private double[][] branchFlow;
+    private double[][] dailyPriceSensitiveDemand;
+    private double[][] productionCost;
+    private double[][] startupCost;
+    private double[][] shutdownCost;
+    private int[] hasSolution;
+
+    /**
+     * @param iso the ISO, which supplies the supply offers, and the day-ahead
+     * schedule and load if no problem is set before solveOPF().
+     * @param ames market instance being used.
+     */
+    public SCEDJ(ISO iso, AMESMarket ames) {
+        this(iso, ames, ames.getTransGrid(), ames.getBaseS(),
+                genNodes(ames), lseNodes(ames));
+    }
+
+    /**
+     * Constructor without a market, for which the problem must be given with
+     * the array version of setProblem.
+     */
+    SCEDJ(TransGrid grid, double baseS, int[] atNodeByGen, int[] atNodeByLSE) {
+        this(null, null, grid, baseS, atNodeByGen, atNodeByLSE);
+    }
+
+    private SCEDJ(ISO iso, AMESMarket ames, TransGrid grid, double baseS,
+            int[] atNodeByGen, int[] atNodeByLSE) {
+        this.iso = iso;
+        this.ames = ames;
+        this.grid = grid;
+        this.baseS = baseS;
+        this.atNodeByGen = atNodeByGen;
+        this.atNodeByLSE = atNodeByLSE;
+
+        K = grid.getNumNodes();
+        N = grid.getNumBranches();
+        I = atNodeByGen.length;
+        J = atNodeByLSE.length;
+    }
+
+    private static int[] genNodes(AMESMarket ames) {
+        int[] atNodeByGen = new int[ames.getNumGenAgents()];
+        for (int i = 0; i < atNodeByGen.length; i++) {
+            atNodeByGen[i] = ames.getGenAgentList().get(i).getAtNode();
+        }
+        return atNodeByGen;
+    }
+
+    private static int[] lseNodes(AMESMarket ames) {
+        int[] atNodeByLSE = new int[ames.getNumLSEAgents()];
+        for (int j = 0; j < atNodeByLSE.length; j++) {
+            atNodeByLSE[j] = ames.getLSEAgentList().get(j).getAtNode();
+        }
+        return atNodeByLSE;
+    }
+
+    /**
+     * Set the commitment and load to dispatch for. The unit data comes from
+     * the GenAgents, and the cost coefficients from the ISO's supply offers,
+     * as in the data files written for the psst SCED.
+     *
+     * @param commitments unit commitment of each GenCo.
+     * @param loadByLSE hourly load of each LSE, in MW.
+     * @param day market day, for the initial on/off state of the units.
+     */
+    public void setProblem(List<CommitmentDecision> commitments,
+            double[][] loadByLSE, int day) {
+        if (ames == null) {
+            throw new IllegalStateException("No market to take the GenCo data from");
+        }
+        List<GenAgent> gens = ames.getGenAgentList();
+        double[][] offers = iso.getSupplyOfferByGen();
+
+        int[][] uc = new int[I][];
+        for (CommitmentDecision cd : commitments) {
+            uc[cd.generatorIdx] = cd.commitmentDecisions;
+        }
+
+        double[][] so = new double[I][4];
+        double[][] costs = new double[I][4];
+        int[] onT0 = new int[I];
+        int[] minDown = new int[I];
+        double[][] ramps = new double[I][4];
+        double[] pT0 = new double[I];
+        for (int i = 0; i < I; i++) {
+            GenAgent ga = gens.get(i);
+            if (uc[i] == null) {
+                throw new IllegalArgumentException("No commitment for " + ga.getID());
+            }
+            so[i][A_INDEX] = offers[i][A_INDEX];
+            so[i][B_INDEX] = offers[i][B_INDEX];
+            so[i][CAP_MIN] = ga.getCapacityMin();
+            so[i][CAP_MAX] = ga.getCapacityMax();
+            costs[i][NO_LOAD_COST] = ga.getNoLoadCost();
+            costs[i][COLD_START_COST] = ga.getColdStartUpCost();
+            costs[i][HOT_START_COST] = ga.getHotStartUpCost();
+            costs[i][SHUTDOWN_COST] = ga.getShutDownCost();
+            onT0[i] = ga.getUnitOnT0State(day - 1);
+            minDown[i] = ga.getMinDownTime();
+            ramps[i][RAMP_UP] = ga.getNominalRampUpLim();
+            ramps[i][RAMP_DOWN] = ga.getNominalRampDownLim();
+            ramps[i][STARTUP_RAMP] = ga.getStartupRampLim();
+            ramps[i][SHUTDOWN_RAMP] = ga.getShutdownRampLim();
+            pT0[i] = ga.getPowerT0(day - 1);
+        }
+
+        setProblem(uc, loadByLSE, so, costs, onT0, minDown, ames.getReserveRequirements());
+        setRampLimits(ramps, pT0);
+    }
+
+    /**
+     * Set the problem data, in SI.
+     *
+     * @param commitment IxH, 1 if GenCo i is committed in hour h.
+     * @param loadByLSE JxH, load of each LSE.
+     * @param supplyOffer Ix4, {a, b, capMin, capMax} of each GenCo.
+     * @param genCosts Ix4, {no-load, cold start, hot start, shutdown} cost of each GenCo.
+     * @param unitOnT0 hours each GenCo has been on (positive) or off (negative) before hour 0.
+     * @param minDownTime minimum down time of each GenCo.
+     * @param reserve system reserve requirement.
+     */
+    void setProblem(int[][] commitment, double[][] loadByLSE, double[][] supplyOffer,
+            double[][] genCosts, int[] unitOnT0, int[] minDownTime, double reserve) {
+        this.commitment = commitment;
+        this.loadByLSE = loadByLSE;
+        this.supplyOffer = supplyOffer;
+        this.genCosts = genCosts;
+        this.unitOnT0 = unitOnT0;
+        this.minDownTime = minDownTime;
+        this.reserve = reserve;
+        this.rampLimits = null;
+        this.powerT0 = null;
+    }
+
+    /**
+     * Couple the hours of the problem set by the last setProblem call by the
+     * ramp limits of the GenCos, in SI.
+     *
+     * @param rampLimits Ix4, {rampUp, rampDown, startupRamp, shutdownRamp} of each GenCo.
+     * @param powerT0 output of each GenCo in the hour before hour 0.
+     */
+    void setRampLimits(double[][] rampLimits, double[] powerT0) {
+        this.rampLimits = rampLimits;
+        this.powerT0 = powerT0;
+    }
+
+    /**
+     * Solve the problem given by the last setProblem call. Without one, this
+     * dispatches the ISO's day-ahead schedule against its load forecast.
+     *
+     * @see amesmarket.SCED#solveOPF()
+     */
+    @Override
+    public void solveOPF() throws AMESMarketException {
+        if (commitment == null) {
+            if (iso == null) {
+                throw new AMESMarketException("No SCED problem to solve");
+            }
+            setProblem(iso.getGenSchedule(), iso.getLoadProfileByLSE(), 0);
+        }
+
+        final int H = commitment[0].length;
+        createSpaceForSols(H);
+
+        if (rampLimits == null) {
+            for (int h = 0; h < H; h++) {
+                solveHour(h);
+            }
+        } else {
+            solveDay(H);
+        }
+        computeCosts(H);
+
+        commitment = null; // each solve needs a fresh problem
+        rampLimits = null;
+    }
+
+    /**
+     * Allocate new space for each solution, so that results handed out
+     * earlier are not overwritten.
+     */
+    private void createSpaceForSols(int H) {
+        dailyCommitment = new double[H][I];
+        dailyLMP = new double[H][K];
+        branchFlow = new double[H][N];
+        dailyPriceSensitiveDemand = new double[H][J];
+        productionCost = new double[H][I];
+        startupCost = new double[H][I];
+        shutdownCost = new double[H][I];
+        hasSolution = new int[H];
+    }
+
+    /**
+     * DC-OPF of one hour, in PU. The decision vector is
+     * x = (p_1..p_Ic, delta_2..delta_K) for the Ic committed units.
+     */
+    private static final class HourQP {
+        int[] on;   // on[c] = GenCo index of committed unit c
+        int Ic;
+        DoubleMatrix2D G, Ceq, Ciq;
+        DoubleMatrix1D a, beq, biq;
+    }
+
+    /**
+     * Solve the DC-OPF for hour h on its own.
+     */
+    private void solveHour(int h) {
+        HourQP qp = formHour(h);
+        if (qp == null) {
+            return; // nothing to dispatch; no solution for this hour
+        }
+        QuadProgJ qpj = solver.solve(qp.G, qp.a, qp.Ceq, qp.beq, qp.Ciq, qp.biq, null);
+        if (!qpj.getIsFeasibleAndOptimal()) {
+            return;
+        }
+        storeHour(h, qp, qpj.getMinX(), qpj.getEqMultipliers());
+    }
+
+    /**
+     * Solve the DC-OPF of all hours as one QP, with the hours coupled by the
+     * ramp limits. Hours without committed units have no solution, as in
+     * solveHour(); no unit is on on both sides of such an hour, so they do
+     * not break any ramp constraint.
+     */
+    private void solveDay(int H) {
+        BlockTridiagonalQP day = new BlockTridiagonalQP();
+        HourQP[] hours = new HourQP[H];
+        int[] period = new int[H];
+        for (int h = 0; h < H; h++) {
+            hours[h] = formHour(h);
+            period[h] = hours[h] == null ? -1 : day.addPeriod(hours[h].G, hours[h].a,
+                    hours[h].Ceq, hours[h].beq, hours[h].Ciq, hours[h].biq);
+        }
+
+        for (int h = 0; h + 1 < H; h++) {
+            if (hours[h] == null || hours[h + 1] == null) {
+                continue;
+            }
+            int[] next = position(hours[h + 1]);
+            for (int c = 0; c < hours[h].Ic; c++) {
+                int i = hours[h].on[c];
+                int d = next[i];
+                if (d < 0) {
+                    continue;
+                }
+                double up = rampLimits[i][RAMP_UP];
+                double down = rampLimits[i][RAMP_DOWN];
+                if (up > 0) {
+                    // p(h) - p(h+1) >= -rampUp
+                    day.addCoupling(period[h], c, 1, d, -1, -up / baseS);
+                }
+                if (down > 0) {
+                    // p(h+1) - p(h) >= -rampDown
+                    day.addCoupling(period[h], c, -1, d, 1, -down / baseS);
+                }
+            }
+        }
+
+        boolean solved = day.solve();
+        numDayIterations = day.getNumIterations();
+        if (!solved) {
+            return;
+        }
+        for (int h = 0; h < H; h++) {
+            if (hours[h] != null) {
+                storeHour(h, hours[h], day.getMinX(period[h]),
+                        day.getEqMultipliers(period[h]));
+            }
+        }
+    }
+
+    private int[] position(HourQP qp) {
+        int[] pos = new int[I];
+        Arrays.fill(pos, -1);
+        for (int c = 0; c < qp.Ic; c++) {
+            pos[qp.on[c]] = c;
+        }
+        return pos;
+    }
+
+    /**
+     * Output limits of unit i in hour h, in SI: {capMin, capMax}, tightened
+     * by the limits of the first hour, startup and shutdown ramps if ramp
+     * limits are given.
+     */
+    private double[] outputLimits(int i, int h) {
+        double[] so = supplyOffer[i];
+        double lo = so[CAP_MIN];
+        double hi = so[CAP_MAX];
+        if (rampLimits == null) {
+            return new double[] {lo, hi};
+        }
+        double[] ramps = rampLimits[i];
+        int H = commitment[i].length;
+        boolean wasOn = h == 0 ? unitOnT0[i] > 0 : commitment[i][h - 1] == 1;
+        if (!wasOn && ramps[STARTUP_RAMP] > 0) {
+            hi = Math.min(hi, Math.max(lo, ramps[STARTUP_RAMP]));
+        }
+        if (h + 1 < H && commitment[i][h + 1] != 1 && ramps[SHUTDOWN_RAMP] > 0) {
+            hi = Math.min(hi, Math.max(lo, ramps[SHUTDOWN_RAMP]));
+        }
+        if (h == 0 && wasOn) {
+            if (ramps[RAMP_UP] > 0) {
+                hi = Math.min(hi, powerT0[i] + ramps[RAMP_UP]);
+            }
+            if (ramps[RAMP_DOWN] > 0) {
+                lo = Math.max(lo, powerT0[i] - ramps[RAMP_DOWN]);
+            }
+        }
+        return new double[] {lo, hi};
+    }
+
+    /**
+     * Form the DC-OPF for hour h, in PU.
+     *
+     * @return the QP, or null if no unit is committed in hour h.
+     */
+    private HourQP formHour(int h) {
+        final int[] on = new int[I]; // on[c] = GenCo index of committed unit c
+        int Ic = 0;
+        for (int i = 0; i < I; i++) {
+            if (commitment[i][h] == 1) {
+                on[Ic++] = i;
+            }
+        }
+        if (Ic == 0) {
+            return null;
+        }
+        final int offset = Ic;
+        final int nv = Ic + K - 1;
+
+        // G = blockDiag(diag(2B), Wrr), a = (A, 0)
+        final DoubleMatrix2D G = new SparseDoubleMatrix2D(nv, nv);
+        DoubleMatrix1D a = new DenseDoubleMatrix1D(nv);
+        for (int c = 0; c < Ic; c++) {
+            double[] so = supplyOffer[on[c]];
+            G.setQuick(c, c, 2 * so[B_INDEX] * baseS * baseS);
+            a.setQuick(c, so[A_INDEX] * baseS);
+        }
+        grid.getReducedVADWeightMatrix().forEachNonZero(new IntIntDoubleFunction() {
+            public double apply(int r, int s, double value) {
+                G.setQuick(offset + r, offset + s, value);
+                return value;
+            }
+        });
+
+        // Power balance at each bus: Ceq' * x = load
+        final DoubleMatrix2D Ceq = new SparseDoubleMatrix2D(nv, K);
+        DoubleMatrix1D beq = new DenseDoubleMatrix1D(K);
+        for (int c = 0; c < Ic; c++) {
+            Ceq.setQuick(c, atNodeByGen[on[c]] - 1, 1);
+        }
+        grid.getReducedBusAdmittanceMatrix().forEachNonZero(new IntIntDoubleFunction() {
+            public double apply(int r, int k, double value) {
+                Ceq.setQuick(offset + r, k, -value);
+                return value;
+            }
+        });
+        for (int j = 0; j < J; j++) {
+            int k = atNodeByLSE[j] - 1;
+            beq.setQuick(k, beq.getQuick(k) + loadByLSE[j][h] / baseS);
+        }
+
+        // Ciq columns: branch flow lower and upper limits (2N), capMin and
+        // capMax (2Ic), and the reserve requirement (1)
+        final int miq = 2 * N + 2 * Ic + 1;
+        final DoubleMatrix2D Ciq = new SparseDoubleMatrix2D(nv, miq);
+        DoubleMatrix1D biq = new DenseDoubleMatrix1D(miq);
+        final DoubleMatrix2D Z = grid.getDiagonalAdmittanceMatrix();
+        grid.getReducedAdjacencyMatrix().forEachNonZero(new IntIntDoubleFunction() {
+            public double apply(int n, int r, double value) {
+                double flow = Z.getQuick(n, n) * value;
+                Ciq.setQuick(offset + r, n, flow);
+                Ciq.setQuick(offset + r, N + n, -flow);
+                return value;
+            }
+        });
+        double[] lineCap = grid.getLineCap();
+        for (int n = 0; n < N; n++) {
+            biq.setQuick(n, -lineCap[n]);
+            biq.setQuick(N + n, -lineCap[n]);
+        }
+        double capacity = 0;
+        for (int c = 0; c < Ic; c++) {
+            double[] limits = outputLimits(on[c], h);
+            Ciq.setQuick(c, 2 * N + c, 1);
+            biq.setQuick(2 * N + c, limits[0] / baseS);
+            Ciq.setQuick(c, 2 * N + Ic + c, -1);
+            biq.setQuick(2 * N + Ic + c, -limits[1] / baseS);
+            Ciq.setQuick(c, miq - 1, -1);
+            capacity += supplyOffer[on[c]][CAP_MAX];
+        }
+        // -SUM p >= reserve - SUM capMax
+        biq.setQuick(miq - 1, (reserve - capacity) / baseS);
+
+        HourQP qp = new HourQP();
+        qp.on = on;
+        qp.Ic = Ic;
+        qp.G = G;
+        qp.a = a;
+        qp.Ceq = Ceq;
+        qp.beq = beq;
+        qp.Ciq = Ciq;
+        qp.biq = biq;
+        return qp;
+    }
+
+    /**
+     * Keep the solution x of hour h and its LMPs.
+     */
+    private void storeHour(int h, HourQP qp, double[] x, double[] eqMultipliers) {
+        final int[] on = qp.on;
+        final int Ic = qp.Ic;
+        final int offset = Ic;
+        hasSolution[h] = 1;
+
+        for (int c = 0; c < Ic; c++) {
+            dailyCommitment[h][on[c]] = x[c] * baseS;
+        }
+        for (int k = 0; k < K; k++) {
+            dailyLMP[h][k] = eqMultipliers[k] / baseS;
+        }
+        double[] fullVoltAngle = new double[K]; // delta_1 = 0
+        for (int k = 1; k < K; k++) {
+            fullVoltAngle[k] = x[offset + k - 1];
+        }
+        double[][] bi = grid.getBranchIndex();
+        double[] reactance = grid.getReactance();
+        for (int n = 0; n < N; n++) {
+            branchFlow[h][n] = (1 / reactance[n])
+                    * (fullVoltAngle[(int) bi[n][0] - 1] - fullVoltAngle[(int) bi[n][1] - 1]) * baseS;
+        }
+    }
+
+    /**
+     * Production, startup and shutdown cost of each GenCo, by hour.
+     */
+    private void computeCosts(int H) {
+        for (int i = 0; i < I; i++) {
+            double[] so = supplyOffer[i];
+            double[] costs = genCosts[i];
+            boolean wasOn = unitOnT0[i] > 0;
+            int hoursOff = wasOn ? 0 : -unitOnT0[i];
+            for (int h = 0; h < H; h++) {
+                boolean isOn = commitment[i][h] == 1;
+                if (isOn) {
+                    double p = dailyCommitment[h][i];
+                    productionCost[h][i] = costs[NO_LOAD_COST]
+                            + so[A_INDEX] * p + so[B_INDEX] * p * p;
+                    if (!wasOn) {
+                        startupCost[h][i] = hoursOff <= 2 * minDownTime[i]
+                                ? costs[HOT_START_COST] : costs[COLD_START_COST];
+                    }
+                    hoursOff = 0;
+                } else {
+                    if (wasOn) {
+                        shutdownCost[h][i] = costs[SHUTDOWN_COST];
+                    }
+                    hoursOff++;
+                }
+                wasOn = isOn;
+            }
+        }
+    }
+
+    ////////////////////BEGIN SCED///////////////////////////
+    /* (non-Javadoc)
+     * @see amesmarket.SCED#getDailyCommitment()
+     */
+    @Override
+    public double[][] getDailyCommitment() {
+        return dailyCommitment;
+    }
+
+    /* (non-Javadoc)
+     * @see amesmarket.SCED#getDailyLMP()
+     */
+    @Override
+    public double[][] getDailyLMP() {
+        return dailyLMP;
+    }
+
+    /* (non-Javadoc)
+     * @see amesmarket.SCED#getDailyBranchFlow()
+     */
+    @Override
+    public double[][] getDailyBranchFlow() {
+        return branchFlow;
+    }
+
+    /* (non-Javadoc)
+     * @see amesmarket.SCED#getDailyPriceSensitiveDemand()
+     */
+    @Override
+    public double[][] getDailyPriceSensitiveDemand() {
+        return dailyPriceSensitiveDemand;
+    }
+
+    /* (non-Javadoc)
+     * @see amesmarket.SCED#getHasSolution()
+     */
+    @Override
+    public int[] getHasSolution() {
+        return hasSolution;
+    }
+
+    /**
+     * @return the shutdownCost
+     */
+    public double[][] getShutdownCost() {
+        return shutdownCost;
+    }
+
+    /**
+     * @return the startupCost
+     */
+    public double[][] getStartupCost() {
+        return startupCost;
+    }
+
+    /**
+     * @return number of interior point iterations of the last solve with
+     * ramp limits.
+     */
+    public int getNumDayIterations() {
+        return numDayIterations;
+    }
+
+    /**
+     * @return the productionCost
+     */
+    public double[][] getProductionCost() {
+        return productionCost;
+    }
+    ////////////////////END SCED///////////////////////////
+}
@@ -0,0 +1,437 @@
+/*
+ * FIXME: LICENSE
+ */
+package amesmarket;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import amesmarket.extern.common.CommitmentDecision;
+
+/**
+ * Unit commitment solved in the JVM, as an alternative to the external
+ * SCUC. Selected with -DSCUC=java.
+ *
+ * A priority list heuristic followed by local search:
+ * <ol>
+ * <li>Units are ranked by their average cost at full output. Each hour,
+ * units are committed in that order until the committed capacity covers the
+ * load plus the reserve requirement.</li>
+ * <li>Minimum up and down times are repaired by extending on periods and
+ * filling short off periods, starting from each unit's UnitOnT0 state.</li>
+ * <li>Where the ramp limits keep the committed units from following the
+ * load, more units are committed in priority order.</li>
+ * <li>Starting with the most expensive unit, each on period is removed or
+ * shortened by an hour whenever that lowers the total cost (production,
+ * no-load, startup and shutdown costs) without violating the minimum up and
+ * down times, the reserve requirement or the ramp limits.</li>
+ * </ol>
+ * The cost of a schedule comes from an hour by hour economic dispatch that
+ * honors the nominal, startup and shutdown ramp limits. Transmission
+ * constraints are left to the SCED. A ramp limit that is not positive is
+ * taken as no limit.
+ */
+public class SCUCJ implements SCUC {
+
+    /** Maximum number of local search passes over all units. */
+    private static final int MAX_PASSES = 50;
+
+    /** Tolerance on MW and cost comparisons. */
+    private static final double EPS = 1.0E-6;
+
+    /** Unit data for the commitment, in SI. */
+    static final class Unit {
+        final String name;
+        final int index;
+        double a, b;            // production cost a*p + b*p^2
+        double capMin, capMax;
+        double noLoadCost, coldStartCost, hotStartCost, shutdownCost;
+        int minUp, minDown;
+        double rampUp, rampDown, startupRamp, shutdownRamp;
+        int onT0;               // see GenAgent.getUnitOnT0State()
+        double powerT0;
+
+        Unit(String name, int index) {
+            this.name = name;
+            this.index = index;
+        }
+
+        private double fullLoadCost() {
+            return (noLoadCost + a * capMax + b * capMax * capMax) / capMax;
+        }
+    }
+
+    private final AMESMarket ames;
+    private final ISO iso;
+    private List<CommitmentDecision> genSchedule;
+
+    public SCUCJ(ISO iso, AMESMarket ames) {
+        this.ames = ames;
+        this.iso = iso;
+    }
+
+    /* (non-Javadoc)
+     * @see amesmarket.SCUC#calcSchedule(int)
+     */
+    @Override
+    public void calcSchedule(int day) throws AMESMarketException {
+        List<GenAgent> gens = ames.getGenAgentList();
+        double[][] offers = iso.getSupplyOfferByGen();
+        double[][] loadByLSE = iso.getLoadProfileByLSE();
+        final int H = ames.NUM_HOURS_PER_DAY;
+
+        Unit[] units = new Unit[gens.size()];
+        for (int i = 0; i < units.length; i++) {
+            GenAgent ga = gens.get(i);
+            Unit u = new Unit(ga.getID(), ga.getIndex());
+            u.a = offers[i][0];
+            u.b = offers[i][1];
+            u.capMin = ga.getCapacityMin();
+            u.capMax = ga.getCapacityMax();
+            u.noLoadCost = ga.getNoLoadCost();
+            u.coldStartCost = ga.getColdStartUpCost();
+            u.hotStartCost = ga.getHotStartUpCost();
+            u.shutdownCost = ga.getShutDownCost();
+            u.minUp = ga.getMinUpTime();
+            u.minDown = ga.getMinDownTime();
+            u.rampUp = ga.getNominalRampUpLim();
+            u.rampDown = ga.getNominalRampDownLim();
+            u.startupRamp = ga.getStartupRampLim();
+            u.shutdownRamp = ga.getShutdownRampLim();
+            u.onT0 = ga.getUnitOnT0State(day - 1);
+            u.powerT0 = ga.getPowerT0(day - 1);
+            units[i] = u;
+        }
+
+        double[] load = new double[H];
+        for (double[] lseLoad : loadByLSE) {
+            for (int h = 0; h < H; h++) {
+                load[h] += lseLoad[h];
+            }
+        }
+
+        int[][] uc = commit(units, load, ames.getReserveRequirements());
+
+        genSchedule = new ArrayList<CommitmentDecision>();
+        for (int i = 0; i < units.length; i++) {
+            genSchedule.add(new CommitmentDecision(units[i].name, units[i].index, uc[i]));
+        }
+    }
+
+    /* (non-Javadoc)
+     * @see amesmarket.SCUC#getSchedule()
+     */
+    @Override
+    public List<CommitmentDecision> getSchedule() {
+        return genSchedule;
+    }
+
+    /**
+     * Commit the units to cover the hourly load plus reserve.
+     *
+     * @return units x hours, 1 if the unit is on.
+     */
+    static int[][] commit(final Unit[] units, double[] load, double reserve) {
+        final int I = units.length;
+        final int H = load.length;
+
+        // Hours fixed by the UnitOnT0 state: -1 free, 0 must be off, 1 must be on
+        int[][] fixed = new int[I][H];
+        for (int i = 0; i < I; i++) {
+            Arrays.fill(fixed[i], -1);
+            Unit u = units[i];
+            int mustOn = u.onT0 > 0 ? u.minUp - u.onT0 : 0;
+            int mustOff = u.onT0 < 0 ? u.minDown + u.onT0 : 0;
+            for (int h = 0; h < H && h < mustOn; h++) {
+                fixed[i][h] = 1;
+            }
+            for (int h = 0; h < H && h < mustOff; h++) {
+                fixed[i][h] = 0;
+            }
+        }
+
+        // Cheapest first
+        Integer[] order = new Integer[I];
+        for (int i = 0; i < I; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            public int compare(Integer i, Integer j) {
+                return Double.compare(units[i].fullLoadCost(), units[j].fullLoadCost());
+            }
+        });
+
+        // 1. Priority list
+        int[][] uc = new int[I][H];
+        for (int h = 0; h < H; h++) {
+            double cap = 0;
+            for (int i = 0; i < I; i++) {
+                if (fixed[i][h] == 1) {
+                    uc[i][h] = 1;
+                    cap += units[i].capMax;
+                }
+            }
+            for (int k = 0; k < I && cap < load[h] + reserve; k++) {
+                int i = order[k];
+                if (uc[i][h] == 0 && fixed[i][h] != 0) {
+                    uc[i][h] = 1;
+                    cap += units[i].capMax;
+                }
+            }
+        }
+
+        // 2. Minimum up and down times
+        for (int i = 0; i < I; i++) {
+            repairMinUpDown(units[i], uc[i], fixed[i]);
+        }
+
+        // 3. Commit more units, cheapest first, where the ramp limits keep
+        // the committed ones from following the load
+        double[] score = evaluate(units, uc, load, reserve);
+        for (int h = 0; h < H && score[0] > EPS; h++) {
+            for (int k = 0; k < I && score[0] > EPS; k++) {
+                int i = order[k];
+                if (uc[i][h] == 1 || fixed[i][h] == 0) {
+                    continue;
+                }
+                int[] saved = uc[i].clone();
+                uc[i][h] = 1;
+                repairMinUpDown(units[i], uc[i], fixed[i]);
+                double[] s = evaluate(units, uc, load, reserve);
+                if (s[0] < score[0] - EPS) {
+                    score = s;
+                } else {
+                    uc[i] = saved;
+                }
+            }
+        }
+
+        // 4. Local search, most expensive units first
+        for (int pass = 0; pass < MAX_PASSES; pass++) {
+            boolean improved = false;
+            for (int k = I - 1; k >= 0; k--) {
+                int i = order[k];
+                for (int h = 0; h < H; h++) {
+                    if (uc[i][h] == 0 || (h > 0 && uc[i][h - 1] == 1)) {
+                        continue;
+                    }
+                    int end = h; // on period [h, end]
+                    while (end + 1 < H && uc[i][end + 1] == 1) {
+                        end++;
+                    }
+                    int[][] moves = {{h, end}, {h, h}, {end, end}};
+                    for (int[] move : moves) {
+                        int[] saved = uc[i].clone();
+                        Arrays.fill(uc[i], move[0], move[1] + 1, 0);
+                        double[] s = evaluate(units, uc, load, reserve);
+                        if (isValid(units[i], uc[i], fixed[i]) && isBetter(s, score)) {
+                            score = s;
+                            improved = true;
+                            break;
+                        }
+                        uc[i] = saved;
+                    }
+                }
+            }
+            if (!improved) {
+                break;
+            }
+        }
+        return uc;
+    }
+
+    private static boolean isBetter(double[] s, double[] than) {
+        if (s[0] < than[0] - EPS) {
+            return true;
+        }
+        return s[0] <= than[0] + EPS && s[1] < than[1] - EPS;
+    }
+
+    /**
+     * Extend on periods shorter than the minimum up time and fill off
+     * periods shorter than the minimum down time, where not fixed.
+     */
+    private static void repairMinUpDown(Unit u, int[] uc, int[] fixed) {
+        final int H = uc.length;
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int h = 0; h < H; h++) {
+                boolean wasOn = h == 0 ? u.onT0 > 0 : uc[h - 1] == 1;
+                if (uc[h] == 1 && !wasOn) {
+                    // started at h: stay on for minUp hours
+                    for (int t = h; t < H && t < h + u.minUp; t++) {
+                        if (uc[t] == 0 && fixed[t] != 0) {
+                            uc[t] = 1;
+                            changed = true;
+                        }
+                    }
+                } else if (uc[h] == 0 && wasOn) {
+                    // shut down at h: if back on within minDown hours, stay on
+                    int end = h;
+                    while (end < H && uc[end] == 0) {
+                        end++;
+                    }
+                    if (end < H && end - h < u.minDown) {
+                        for (int t = h; t < end; t++) {
+                            if (fixed[t] != 0) {
+                                uc[t] = 1;
+                                changed = true;
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Whether the schedule keeps the fixed hours and the minimum up and down
+     * times. Periods that run to the end of the horizon are not checked.
+     */
+    private static boolean isValid(Unit u, int[] uc, int[] fixed) {
+        final int H = uc.length;
+        for (int h = 0; h < H; h++) {
+            if (fixed[h] != -1 && uc[h] != fixed[h]) {
+                return false;
+            }
+        }
+        int state = u.onT0 > 0 ? 1 : 0;
+        int run = Math.abs(u.onT0);
+        for (int h = 0; h < H; h++) {
+            if (uc[h] == state) {
+                run++;
+            } else {
+                if ((state == 1 && run < u.minUp) || (state == 0 && run < u.minDown)) {
+                    return false;
+                }
+                state = uc[h];
+                run = 1;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return {infeasibility, cost} of the schedule: the MW of load and
+     * reserve not covered, summed over the hours, and the total cost.
+     */
+    static double[] evaluate(Unit[] units, int[][] uc, double[] load, double reserve) {
+        final int I = units.length;
+        final int H = load.length;
+        double infeasibility = 0;
+        double cost = 0;
+
+        double[] pPrev = new double[I];
+        double[] lo = new double[I];
+        double[] hi = new double[I];
+        int[] hoursOff = new int[I];
+        for (int i = 0; i < I; i++) {
+            pPrev[i] = units[i].onT0 > 0 ? units[i].powerT0 : 0;
+            hoursOff[i] = units[i].onT0 > 0 ? 0 : -units[i].onT0;
+        }
+
+        for (int h = 0; h < H; h++) {
+            double cap = 0;
+            for (int i = 0; i < I; i++) {
+                Unit u = units[i];
+                boolean wasOn = h == 0 ? u.onT0 > 0 : uc[i][h - 1] == 1;
+                if (uc[i][h] == 0) {
+                    lo[i] = hi[i] = 0;
+                    if (wasOn) {
+                        cost += u.shutdownCost;
+                    }
+                    hoursOff[i]++;
+                    continue;
+                }
+                cap += u.capMax;
+                lo[i] = u.capMin;
+                hi[i] = u.capMax;
+                if (wasOn) {
+                    if (u.rampUp > 0) {
+                        hi[i] = Math.min(hi[i], pPrev[i] + u.rampUp);
+                    }
+                    if (u.rampDown > 0) {
+                        lo[i] = Math.max(lo[i], pPrev[i] - u.rampDown);
+                    }
+                } else {
+                    if (u.startupRamp > 0) {
+                        hi[i] = Math.min(hi[i], Math.max(u.capMin, u.startupRamp));
+                    }
+                    cost += hoursOff[i] <= 2 * u.minDown ? u.hotStartCost : u.coldStartCost;
+                }
+                if (h + 1 < H && uc[i][h + 1] == 0 && u.shutdownRamp > 0) {
+                    hi[i] = Math.min(hi[i], Math.max(u.capMin, u.shutdownRamp));
+                }
+                lo[i] = Math.min(lo[i], hi[i]);
+                hoursOff[i] = 0;
+                cost += u.noLoadCost;
+            }
+            infeasibility += Math.max(0, load[h] + reserve - cap);
+
+            double[] p = dispatch(units, lo, hi, load[h]);
+            double served = 0;
+            for (int i = 0; i < I; i++) {
+                if (uc[i][h] == 1) {
+                    cost += units[i].a * p[i] + units[i].b * p[i] * p[i];
+                }
+                served += p[i];
+                pPrev[i] = p[i];
+            }
+            infeasibility += Math.abs(load[h] - served);
+        }
+        return new double[] {infeasibility, cost};
+    }
+
+    /**
+     * Economic dispatch of one hour by bisection on the system lambda. If the
+     * bounds do not allow to serve the load exactly, the units are left at
+     * their upper (or lower) bounds.
+     */
+    static double[] dispatch(Unit[] units, double[] lo, double[] hi, double load) {
+        final int I = units.length;
+        double[] p = new double[I];
+        double lambdaLo = Double.MAX_VALUE;
+        double lambdaHi = -Double.MAX_VALUE;
+        for (int i = 0; i < I; i++) {
+            lambdaLo = Math.min(lambdaLo, units[i].a + 2 * units[i].b * lo[i]);
+            lambdaHi = Math.max(lambdaHi, units[i].a + 2 * units[i].b * hi[i]);
+        }
+        lambdaLo -= 1;
+        lambdaHi += 1;
+        for (int iter = 0; iter < 100; iter++) {
+            double lambda = 0.5 * (lambdaLo + lambdaHi);
+            if (output(units, lo, hi, lambda, p) < load) {
+                lambdaLo = lambda;
+            } else {
+                lambdaHi = lambda;
+            }
+        }
+        double total = output(units, lo, hi, lambdaHi, p);
+
+        // Units with a linear cost jump between their bounds; take back
+        // any surplus from the marginal ones.
+        double surplus = total - load;
+        for (int i = I - 1; i >= 0 && surplus > 0; i--) {
+            double d = Math.min(surplus, p[i] - lo[i]);
+            p[i] -= d;
+            surplus -= d;
+        }
+        return p;
+    }
+
+    private static double output(Unit[] units, double[] lo, double[] hi,
+            double lambda, double[] p) {
+        double total = 0;
+        for (int i = 0; i < units.length; i++) {
+            double b2 = 2 * units[i].b;
+            double q = b2 > 0 ? (lambda - units[i].a) / b2
+                    : (lambda >= units[i].a ? hi[i] : lo[i]);
+            p[i] = Math.max(lo[i], Math.min(hi[i], q));
+            total += p[i];
+        }
+        return total;
+    }
+}
@@ -61,7 +61,7 @@ public class ScenarioGenerator {
 
                 }
 
-            File fileObj=new File("DATA/Scenarios/Scenario"+s+".dat");
+            File fileObj=ames.getWorkspace().file("DATA/Scenarios/Scenario"+s+".dat");
 
             ensureParentDirExists(fileObj);
 
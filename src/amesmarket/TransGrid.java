@@ -28,6 +28,8 @@
 package amesmarket;
 
 import uchicago.src.sim.space.Object2DGrid;
+import cern.colt.list.DoubleArrayList;
+import cern.colt.list.IntArrayList;
 import cern.colt.matrix.*;
 import cern.colt.matrix.impl.*;
 
@@ -71,23 +73,28 @@ public class TransGrid {
 
     private int numNodes;                        // K   (1x1)
     private double penaltyCoeff;                 // pi  (1x1)
-    private double[][] vadWeight;                // W   (KxK)  ~ Eq(42)
+    // All KxK, NxK and NxN matrices below are held as sparse matrices: each
+    // has O(N) non-zeros, so dense storage grows quadratically with the grid.
+    private DoubleMatrix2D vadWeight;            // W   (KxK)  ~ Eq(42)
     // vad = voltage angle difference
-    private double[][] reducedVADWeight;         // Wrr (K-1)x(K-1) ~ Eq(45)
+    private DoubleMatrix2D reducedVADWeight;     // Wrr (K-1)x(K-1) ~ Eq(45)
     private int numBranches;                     // N   (1x1)
     private double[][] branchIndex;              // BI  (Nx2)
     private double[] MaxCap;                    // T   (Nx1)
-    private double[][] negativeSusceptance;      // B   (KxK)   ~ Eq(16)
-    private double[][] busAdmittance;            // B'  (KxK)   ~ Eq(50)
-    private double[][] reducedBusAdmittance;     // Br' (K-1)xK ~ Eq(51)
-    private double[][] diagonalAdmittance;       // D   (NxN)   ~ Eq(55)
-    private double[][] adjacency;                // A   (NxK)   ~ Eq(52)
-    private double[][] reducedAdjacency;         // Ar  Nx(K-1) ~ Eq(53)
+    private DoubleMatrix2D negativeSusceptance;  // B   (KxK)   ~ Eq(16)
+    private DoubleMatrix2D busAdmittance;        // B'  (KxK)   ~ Eq(50)
+    private DoubleMatrix2D reducedBusAdmittance; // Br' (K-1)xK ~ Eq(51)
+    private DoubleMatrix2D diagonalAdmittance;   // D   (NxN)   ~ Eq(55)
+    private DoubleMatrix2D adjacency;            // A   (NxK)   ~ Eq(52)
+    private DoubleMatrix2D reducedAdjacency;     // Ar  Nx(K-1) ~ Eq(53)
     private double[] reactance; //Nx1
+    // Only needed by the PTDF formulation; computed on first use, see getPTDFMatrix()
+    private DoubleMatrix2D reducedBusAdmittanceInverse; // X = Brr^-1 (K-1)x(K-1)
+    private DoubleMatrix2D ptdf;                         // Z*Ar*X  Nx(K-1)
 
     private DoubleMatrix2D ndata;  // to hold nodeData
     private DoubleMatrix2D bdata;  // to hold branchData
-    private DoubleFactory2D fac2d = DoubleFactory2D.dense;
+    private DoubleFactory2D fac2d = DoubleFactory2D.sparse;
     // for using Colt's methods e.g. diagonal(), identity(), etc.
     private cern.jet.math.Functions F = cern.jet.math.Functions.functions;
     // F: Naming shortcut to save some keystrokes for calling Colt's functions
@@ -117,17 +124,13 @@ public class TransGrid {
 
         numNodes = (int) nodeData[0][NN];
         penaltyCoeff = nodeData[0][PENALTY_COEFF];
-        vadWeight = new double[numNodes][numNodes];
-        reducedVADWeight = new double[numNodes-1][numNodes-1];
+        vadWeight = new SparseDoubleMatrix2D(numNodes,numNodes);
         numBranches = branchData.length;
         branchIndex = new double[numBranches][2];  //e.g., {{1,2},{1,4},{2,3},...}
         MaxCap = new double[numBranches];
-        negativeSusceptance = new double[numNodes][numNodes];
-        busAdmittance = new double[numNodes][numNodes];
-        reducedBusAdmittance = new double[numNodes-1][numNodes];
-        diagonalAdmittance = new double[numBranches][numBranches];
-        adjacency = new double[numBranches][numNodes];
-        reducedAdjacency = new double[numBranches][numNodes-1];
+        negativeSusceptance = new SparseDoubleMatrix2D(numNodes,numNodes);
+        busAdmittance = new SparseDoubleMatrix2D(numNodes,numNodes);
+        adjacency = new SparseDoubleMatrix2D(numBranches,numNodes);
         reactance = new double[numBranches];
 
         ndata = new DenseDoubleMatrix2D(nodeData);
@@ -169,105 +172,138 @@ public class TransGrid {
     private void setVADWeight() {
 
         for(int n=0; n<numBranches; n++) {
-            vadWeight[(int)branchIndex[n][0]-1][(int)branchIndex[n][1]-1]
-            = -2*penaltyCoeff;  //NOTE: there should be a factor 2 in front of penaltyCoeff
-            vadWeight[(int)branchIndex[n][1]-1][(int)branchIndex[n][0]-1]
-            = -2*penaltyCoeff;
+            vadWeight.setQuick((int)branchIndex[n][0]-1,(int)branchIndex[n][1]-1,
+                               -2*penaltyCoeff);  //NOTE: there should be a factor 2 in front of penaltyCoeff
+            vadWeight.setQuick((int)branchIndex[n][1]-1,(int)branchIndex[n][0]-1,
+                               -2*penaltyCoeff);
         }
+        // W_ii = -SUM_{k!=i} W_ik, accumulated over the off-diagonal non-zeros only
+        double[] diag = offDiagonalRowSums(vadWeight);
         for(int i=0; i<numNodes; i++) {
-            for(int j=0; j<numNodes; j++) {
-                if(j==i) {
-                    for(int k=0; k<numNodes; k++) {
-                        if(k!=i) {
-                            vadWeight[i][j] = vadWeight[i][j] - vadWeight[i][k];
-                        }
-                    }
-                }
-            }
+            vadWeight.setQuick(i,i,vadWeight.getQuick(i,i)-diag[i]);
         }
-        vadWeight = Support.correctRoundingError(vadWeight);
+        correctRoundingError(vadWeight);
     }
 
     private void setReducedVADWeight() {
-        for(int i=0; i<numNodes-1; i++) {
-            for(int j=0; j<numNodes-1; j++) {
-                reducedVADWeight[i][j] = vadWeight[i+1][j+1];
-            }
-        }
-
+        reducedVADWeight = sparsePart(vadWeight,1,1,numNodes-1,numNodes-1);
     }
 
     private void setLineCap() {
         MaxCap = bdata.viewColumn(LINE_CAP).toArray();
     }
     private void setNegativeSusceptance() {
+        double[] x = bdata.viewColumn(REACTANCE).toArray();
         for(int n=0; n<numBranches; n++) {
-            negativeSusceptance[(int)branchIndex[n][0]-1][(int)branchIndex[n][1]-1]
-            = 1/bdata.viewColumn(REACTANCE).toArray()[n];
-            negativeSusceptance[(int)branchIndex[n][1]-1][(int)branchIndex[n][0]-1]
-            = 1/bdata.viewColumn(REACTANCE).toArray()[n];
+            negativeSusceptance.setQuick((int)branchIndex[n][0]-1,(int)branchIndex[n][1]-1,
+                                         1/x[n]);
+            negativeSusceptance.setQuick((int)branchIndex[n][1]-1,(int)branchIndex[n][0]-1,
+                                         1/x[n]);
 
         }
     }
 
     private void setBusAdmittance() {
-        for(int i=0; i<numNodes; i++) {
-            for(int j=0; j<numNodes; j++) {
-                if(j==i) {
-                    for(int k=0; k<numNodes; k++) {
-                        if(k!=i) {
-                            busAdmittance[i][j] = busAdmittance[i][j] + negativeSusceptance[i][k];
-                        }
-                    }
-                }
-                else
-                    busAdmittance[i][j] = - negativeSusceptance[i][j];
+        IntArrayList rows = new IntArrayList();
+        IntArrayList cols = new IntArrayList();
+        DoubleArrayList vals = new DoubleArrayList();
+        negativeSusceptance.getNonZeros(rows, cols, vals);
+        for(int e=0; e<rows.size(); e++) {
+            if(rows.getQuick(e) != cols.getQuick(e)) {
+                busAdmittance.setQuick(rows.getQuick(e), cols.getQuick(e), -vals.getQuick(e));
             }
         }
+        double[] diag = offDiagonalRowSums(negativeSusceptance);
+        for(int i=0; i<numNodes; i++) {
+            busAdmittance.setQuick(i,i,diag[i]);
+        }
     }
     private void setReducedBusAdmittance() {
-        DoubleMatrix2D na = new DenseDoubleMatrix2D(busAdmittance);
-        reducedBusAdmittance = na.viewPart(1,0,numNodes-1,numNodes).toArray();
+        reducedBusAdmittance = sparsePart(busAdmittance,1,0,numNodes-1,numNodes);
     }
     private void setDiagonalAdmittance() {
         diagonalAdmittance = fac2d.diagonal(bdata.copy().viewColumn(REACTANCE)
-                                            .assign(F.inv)).toArray();
+                                            .assign(F.inv));
         //NOTE: Have to keep .copy(), otherwise reactance will be 1/reactance
     }
     private void setAdjacency() {
         for(int n=0; n<numBranches; n++) {
-            for(int k=0; k<numNodes; k++) {
-                if(k == branchIndex[n][0]-1) {
-                    adjacency[n][k] = 1;
-                }
-                else if (k == branchIndex[n][1]-1) {
-                    adjacency[n][k] = -1;
-                }
-                else {
-                    adjacency[n][k] = 0;
-                }
+            int from = (int)branchIndex[n][0]-1;
+            int to   = (int)branchIndex[n][1]-1;
+            adjacency.setQuick(n,from,1);
+            if(to != from) {
+                adjacency.setQuick(n,to,-1);
             }
         }
     }
     private void setReducedAdjacency() {
-        DoubleMatrix2D adj = new DenseDoubleMatrix2D(adjacency);
-        reducedAdjacency = adj.viewPart(0,1,numBranches,numNodes-1).toArray();
+        reducedAdjacency = sparsePart(adjacency,0,1,numBranches,numNodes-1);
     }
     private void setReactance() {
         reactance = bdata.viewColumn(REACTANCE).toArray();
     }
 
+    // Sum of the off-diagonal entries of each row of a square sparse matrix,
+    // visiting only its non-zeros.
+    private double[] offDiagonalRowSums(DoubleMatrix2D m) {
+        IntArrayList rows = new IntArrayList();
+        IntArrayList cols = new IntArrayList();
+        DoubleArrayList vals = new DoubleArrayList();
+        m.getNonZeros(rows, cols, vals);
+        double[] sums = new double[m.rows()];
+        for(int e=0; e<rows.size(); e++) {
+            if(rows.getQuick(e) != cols.getQuick(e)) {
+                sums[rows.getQuick(e)] += vals.getQuick(e);
+            }
+        }
+        return sums;
+    }
+
+    // Sparse copy of m.viewPart(row,column,height,width). Copying the view
+    // directly would visit every cell, not just the non-zeros.
+    private DoubleMatrix2D sparsePart(DoubleMatrix2D m, int row, int column,
+                                      int height, int width) {
+        DoubleMatrix2D part = new SparseDoubleMatrix2D(height,width);
+        IntArrayList rows = new IntArrayList();
+        IntArrayList cols = new IntArrayList();
+        DoubleArrayList vals = new DoubleArrayList();
+        m.getNonZeros(rows, cols, vals);
+        for(int e=0; e<rows.size(); e++) {
+            int r = rows.getQuick(e) - row;
+            int c = cols.getQuick(e) - column;
+            if(r>=0 && r<height && c>=0 && c<width) {
+                part.setQuick(r,c,vals.getQuick(e));
+            }
+        }
+        return part;
+    }
+
+    // Same as Support.correctRoundingError(double[][]), applied to the non-zeros
+    private void correctRoundingError(DoubleMatrix2D m) {
+        IntArrayList rows = new IntArrayList();
+        IntArrayList cols = new IntArrayList();
+        DoubleArrayList vals = new DoubleArrayList();
+        m.getNonZeros(rows, cols, vals);
+        for(int e=0; e<rows.size(); e++) {
+            m.setQuick(rows.getQuick(e), cols.getQuick(e),
+                       Support.correctRoundingError(vals.getQuick(e)));
+        }
+    }
+
     public int getNumNodes() {
         return numNodes;
     }
     public double getPenaltyCoeff() {
         return penaltyCoeff;
     }
+    // The double[][] getters below return a new dense copy of the sparse
+    // matrix on each call. DCOPFJ uses the DoubleMatrix2D getters further
+    // down instead, in both formulations.
     public double[][] getVADWeight() {
-        return vadWeight;
+        return vadWeight.toArray();
     }
     public double[][] getReducedVADWeight() {
-        return reducedVADWeight;
+        return reducedVADWeight.toArray();
     }
     public int getNumBranches() {
         return numBranches;
@@ -279,27 +315,82 @@ public class TransGrid {
         return MaxCap;
     }
     public double[][] getNegativeSusceptance() {
-        return negativeSusceptance;
+        return negativeSusceptance.toArray();
     }
     public double[][] getBusAdmittance() {
-        return busAdmittance;
+        return busAdmittance.toArray();
     }
     public double[][] getReducedBusAdmittance() {
-        return reducedBusAdmittance;
+        return reducedBusAdmittance.toArray();
     }
     public double[][] getDiagonalAdmittance() {
-        return diagonalAdmittance;
+        return diagonalAdmittance.toArray();
     }
     public double[][] getAdjacency() {
-        return adjacency;
+        return adjacency.toArray();
     }
     public double[][] getReducedAdjacency() {
+        return reducedAdjacency.toArray();
+    }
+
+    // Sparse views of the grid matrices. Callers must not modify them.
+    public DoubleMatrix2D getReducedVADWeightMatrix() {
+        return reducedVADWeight;
+    }
+    public DoubleMatrix2D getReducedBusAdmittanceMatrix() {
+        return reducedBusAdmittance;
+    }
+    public DoubleMatrix2D getDiagonalAdmittanceMatrix() {
+        return diagonalAdmittance;
+    }
+    public DoubleMatrix2D getReducedAdjacencyMatrix() {
         return reducedAdjacency;
     }
     public double[] getReactance() {
         return reactance;
     }
 
+    /**
+     * Inverse X of the bus admittance matrix without the row and column of
+     * the reference bus 1, so that the voltage angles of buses 2..K are
+     * X times their net injections (in PU). Dense, computed once per grid.
+     * Callers must not modify it.
+     */
+    public synchronized DoubleMatrix2D getReducedBusAdmittanceInverse() {
+        if(reducedBusAdmittanceInverse == null) {
+            DoubleMatrix2D brr = new DenseDoubleMatrix2D(numNodes-1,numNodes-1);
+            if(numNodes > 1) {
+                brr.assign(reducedBusAdmittance.viewPart(0,1,numNodes-1,numNodes-1));
+                brr = new cern.colt.matrix.linalg.Algebra().inverse(brr);
+            }
+            reducedBusAdmittanceInverse = brr;
+        }
+        return reducedBusAdmittanceInverse;
+    }
+
+    /**
+     * Power transfer distribution factors: entry (n,k-2) is the flow on
+     * branch n (from-to direction) for 1 PU injected at bus k and withdrawn
+     * at the reference bus 1. Dense Nx(K-1), computed once per grid.
+     * Callers must not modify it.
+     */
+    public synchronized DoubleMatrix2D getPTDFMatrix() {
+        if(ptdf == null) {
+            DoubleMatrix2D x = getReducedBusAdmittanceInverse();
+            ptdf = new DenseDoubleMatrix2D(numBranches,numNodes-1);
+            for(int n=0; n<numBranches; n++) {
+                int from = (int)branchIndex[n][0]-2;
+                int to   = (int)branchIndex[n][1]-2;
+                for(int k=0; k<numNodes-1; k++) {
+                    double dx = (from >= 0 ? x.getQuick(from,k) : 0)
+                                - (to >= 0 ? x.getQuick(to,k) : 0);
+                    ptdf.setQuick(n,k,dx/reactance[n]);
+                }
+            }
+        }
+        return ptdf;
+    }
+
 
     public Object2DGrid getCurrentPowerSpace() {
         return powerSpace;
@@ -0,0 +1,123 @@
+/*
+ * FIXME: LICENSE
+ */
+package amesmarket;
+
+import java.io.File;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Where a run keeps the files it exchanges with the external solvers and
+ * the scenarios it generates.
+ *
+ * The shared workspace is the current directory, with the layout AMES has
+ * always used. A private workspace (-DAMES_WORKSPACE=private) is a new
+ * directory for the run under AMES_WORKSPACE_ROOT ("runs" if not set), with
+ * the same layout inside. Several markets, in one JVM or several, can then
+ * run from the same directory without overwriting each other's solver
+ * inputs. The solver scripts and models in {@link #RESOURCES_DIR} are only
+ * read, and stay shared.
+ *
+ * Every path is resolved through {@link #file(String)}, so a class writing a
+ * file names it the same way in both kinds of workspace.
+ */
+public class Workspace {
+
+    /** Scripts and models of the external solvers, shared by all runs. */
+    public static final File RESOURCES_DIR = new File("SCUCresources");
+
+    /** Reference model and scenario files of the external SCUC and SCED. */
+    public static final String SCENARIO_DATA = "SCUCresources/ScenarioData";
+
+    /**
+     * Root of the workspace, or null for the current directory.
+     */
+    private final File dir;
+
+    /**
+     * The shared workspace, the current directory.
+     */
+    public Workspace() {
+        this.dir = null;
+    }
+
+    /**
+     * A private workspace in dir.
+     */
+    public Workspace(File dir) {
+        if (dir == null) {
+            throw new IllegalArgumentException("No workspace directory");
+        }
+        this.dir = dir;
+    }
+
+    /**
+     * The workspace selected by the AMES_WORKSPACE system property,
+     * "shared" (the default) or "private".
+     *
+     * @throws IOException if the private workspace cannot be created.
+     */
+    public static Workspace fromProperties() throws IOException {
+        String prop = System.getProperty("AMES_WORKSPACE", "shared");
+        if ("shared".equals(prop)) {
+            return new Workspace();
+        } else if ("private".equals(prop)) {
+            return createPrivate(new File(System.getProperty("AMES_WORKSPACE_ROOT", "runs")));
+        } else {
+            throw new IllegalArgumentException("Unknown AMES_WORKSPACE " + prop);
+        }
+    }
+
+    /**
+     * Create a new, empty, workspace directory under root, named after the
+     * time it was created.
+     */
+    public static Workspace createPrivate(File root) throws IOException {
+        if (!root.isDirectory() && !root.mkdirs() && !root.isDirectory()) {
+            throw new IOException("Unable to create directory " + root.getPath());
+        }
+        String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss").format(new Date());
+        for (int n = 0; n < 10000; n++) {
+            File d = new File(root, "run-" + stamp + "-" + n);
+            if (d.mkdir()) { //atomic, so concurrent runs never share a directory.
+                AMESMarket.LOGGER.info("Solver files in " + d.getPath());
+                return new Workspace(d);
+            }
+        }
+        throw new IOException("Unable to create a workspace under " + root.getPath());
+    }
+
+    /**
+     * @param path path relative to the current directory in the shared
+     * workspace.
+     * @return the file for path in this workspace.
+     */
+    public File file(String path) {
+        return dir == null ? new File(path) : new File(dir, path);
+    }
+
+    /**
+     * Directory to run a solver program in: sharedDir in the shared
+     * workspace, the workspace root in a private one. A null sharedDir
+     * is the current directory, as for {@link ProcessBuilder#directory(File)}.
+     */
+    public File processDir(File sharedDir) {
+        return dir == null ? sharedDir : dir;
+    }
+
+    /**
+     * @return the root of a private workspace, or null for the shared one.
+     */
+    public File getDir() {
+        return dir;
+    }
+
+    /**
+     * @return true for a private workspace.
+     */
+    public boolean isPrivate() {
+        return dir != null;
+    }
+}
@@ -0,0 +1,208 @@
+/*
+ * FIXME <LICENCE>
+ */
+package amesmarket.extern.common;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.util.logging.Level;
+
+import amesmarket.AMESMarket;
+
+/**
+ * Run an external solver program to completion.
+ *
+ * stdout and stderr are drained at the same time, each by its own thread,
+ * so a program that writes a lot to one of them cannot stall on a full
+ * pipe. The lines are echoed to System.out, as the extern classes always
+ * did, and the last ones are kept in a {@link LineRingBuffer} for error
+ * messages.
+ *
+ * A program that runs past its deadline is destroyed, and run() throws an
+ * IOException with the end of its output. The default deadline is
+ * -DEXTERN_TIMEOUT, in milliseconds (one hour if not set, 0 for none), and
+ * the number of lines kept is -DEXTERN_LOG_LINES (200 if not set).
+ *
+ * Each run reports how long it took to start the program, for the program
+ * to finish, and, through {@link Result#parsed(long)}, for the caller to
+ * read its results, to the AMESMarket logger.
+ */
+public class ExternalProcess {
+
+    /**
+     * Longest wait for the output to be drained after the program exits or
+     * is killed. Children the program started may keep the pipes open.
+     */
+    private static final long DRAIN_WAIT = 2000;
+
+    private final String name;
+    private final ProcessBuilder pb;
+    private long deadline = Long.parseLong(System.getProperty("EXTERN_TIMEOUT", "3600000"));
+    private int logLines = Integer.parseInt(System.getProperty("EXTERN_LOG_LINES", "200"));
+    private boolean echo = true;
+
+    /**
+     * @param name name of the program in messages.
+     * @param pb command line, directory and environment of the program.
+     */
+    public ExternalProcess(String name, ProcessBuilder pb) {
+        this.name = name;
+        this.pb = pb;
+    }
+
+    /**
+     * @param millis longest run time of the program, 0 for no limit.
+     */
+    public ExternalProcess setDeadline(long millis) {
+        deadline = millis;
+        return this;
+    }
+
+    /**
+     * @param echo whether to copy the program's output to System.out.
+     */
+    public ExternalProcess setEcho(boolean echo) {
+        this.echo = echo;
+        return this;
+    }
+
+    /**
+     * Run the program and wait until it exits.
+     *
+     * @return exit code, output and timings of the run.
+     * @throws IOException if the program cannot be started or is killed at
+     * the deadline.
+     */
+    public Result run() throws IOException, InterruptedException {
+        final Result res = new Result(name, new LineRingBuffer(logLines));
+
+        long start = System.nanoTime();
+        final Process p = pb.start();
+        long started = System.nanoTime();
+        res.spawnMillis = (started - start) / 1000000;
+
+        Thread out = drain(p.getInputStream(), res.output, name + "-stdout");
+        Thread err = drain(p.getErrorStream(), res.output, name + "-stderr");
+
+        Thread waiter = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    res.exitCode = p.waitFor();
+                } catch (InterruptedException e) {
+                    // the caller gave up on the program
+                }
+            }
+        }, name + "-wait");
+        waiter.setDaemon(true);
+        waiter.start();
+
+        try {
+            waiter.join(deadline);
+        } catch (InterruptedException e) {
+            p.destroy();
+            throw e;
+        }
+        if (waiter.isAlive()) {
+            res.timedOut = true;
+            p.destroy();
+            waiter.join(DRAIN_WAIT);
+        }
+        long drainEnd = System.currentTimeMillis() + DRAIN_WAIT;
+        out.join(DRAIN_WAIT);
+        err.join(Math.max(1, drainEnd - System.currentTimeMillis()));
+        res.solveMillis = (System.nanoTime() - started) / 1000000;
+
+        if (res.timedOut) {
+            AMESMarket.LOGGER.log(Level.SEVERE, name + " killed after " + deadline + " ms");
+            throw new IOException(name + " did not finish in " + deadline
+                    + " ms. Last output:\n" + res.output);
+        }
+        return res;
+    }
+
+    private Thread drain(final InputStream in, final LineRingBuffer buf, String threadName) {
+        Thread t = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    BufferedReader r = new BufferedReader(new InputStreamReader(in));
+                    String line;
+                    while ((line = r.readLine()) != null) {
+                        buf.add(line);
+                        if (echo) {
+                            System.out.println(line);
+                        }
+                    }
+                } catch (IOException e) {
+                    // stream closed when the program was killed
+                }
+            }
+        }, threadName);
+        t.setDaemon(true);
+        t.start();
+        return t;
+    }
+
+    /**
+     * Outcome of a run.
+     */
+    public static class Result {
+        private final String name;
+        private final LineRingBuffer output;
+        private volatile int exitCode = -1;
+        private boolean timedOut;
+        private long spawnMillis;
+        private long solveMillis;
+        private long parseMillis = -1;
+
+        private Result(String name, LineRingBuffer output) {
+            this.name = name;
+            this.output = output;
+        }
+
+        /**
+         * Record that the caller finished reading the program's results,
+         * and log the timings of the run.
+         *
+         * @param parseStart System.nanoTime() when reading started.
+         */
+        public void parsed(long parseStart) {
+            parseMillis = (System.nanoTime() - parseStart) / 1000000;
+            AMESMarket.LOGGER.log(Level.INFO, toString());
+        }
+
+        public int getExitCode() {
+            return exitCode;
+        }
+
+        /**
+         * @return the last lines of stdout and stderr.
+         */
+        public String getOutputTail() {
+            return output.toString();
+        }
+
+        public long getSpawnMillis() {
+            return spawnMillis;
+        }
+
+        public long getSolveMillis() {
+            return solveMillis;
+        }
+
+        /**
+         * @return time to read the results, or -1 if not recorded.
+         */
+        public long getParseMillis() {
+            return parseMillis;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": exit code " + exitCode
+                    + ", spawn " + spawnMillis + " ms, solve " + solveMillis
+                    + " ms, parse " + parseMillis + " ms";
+        }
+    }
+}
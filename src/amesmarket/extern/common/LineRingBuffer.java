@@ -0,0 +1,59 @@
+/*
+ * FIXME <LICENCE>
+ */
+package amesmarket.extern.common;
+
+/**
+ * The last lines written by an external program, so that a failure can be
+ * reported with the program's own messages without keeping all of its
+ * output. Safe to fill from several threads.
+ */
+public class LineRingBuffer {
+
+    private final String[] lines;
+    private int next;  // where the next line goes
+    private int count; // number of lines held
+    private long total; // number of lines ever added
+
+    /**
+     * @param capacity number of lines kept.
+     */
+    public LineRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        lines = new String[capacity];
+    }
+
+    public synchronized void add(String line) {
+        lines[next] = line;
+        next = (next + 1) % lines.length;
+        if (count < lines.length) {
+            count++;
+        }
+        total++;
+    }
+
+    /**
+     * @return number of lines added, including those no longer held.
+     */
+    public synchronized long getNumLines() {
+        return total;
+    }
+
+    /**
+     * @return the lines held, oldest first, one per line.
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        if (total > count) {
+            sb.append("... (").append(total - count).append(" lines dropped)\n");
+        }
+        int first = (next - count + lines.length) % lines.length;
+        for (int l = 0; l < count; l++) {
+            sb.append(lines[(first + l) % lines.length]).append('\n');
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,418 @@
+/*
+ * FIXME <LICENCE>
+ */
+package amesmarket.extern.common;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Comparator;
+
+import amesmarket.Support;
+
+/**
+ * Results of the external solvers, kept on disk between runs and looked up
+ * by a hash of the solver's complete input.
+ *
+ * A solver builds a {@link Key} from everything it passes to the external
+ * program (the reference model, with the offers, loads, T0 states and the
+ * network, the unit commitment, the scenario files, ...) and asks the cache
+ * before solving. Identical inputs give identical results, so a study that
+ * re-runs the same case skips every solve it has done before.
+ *
+ * The cache is off unless -DSOLVER_CACHE_DIR is set. It holds at most
+ * -DSOLVER_CACHE_MB megabytes (256 if not set); the least recently used
+ * results are removed first. Several runs may share the directory. Results
+ * of an older solver version are not told apart, so the directory should be
+ * cleared when the solver or its models change.
+ */
+public class SolverCache {
+
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String SUFFIX = ".res";
+
+    /**
+     * Directory of the cache, or null if caching is off.
+     */
+    private final File dir;
+    private final long maxBytes;
+
+    private int hits;
+    private int misses;
+    private int stores;
+    private int evictions;
+
+    /**
+     * A cache that is always empty.
+     */
+    public SolverCache() {
+        this.dir = null;
+        this.maxBytes = 0;
+    }
+
+    /**
+     * @param dir directory of the cache, created if needed.
+     * @param maxBytes size the cache is kept under.
+     */
+    public SolverCache(File dir, long maxBytes) {
+        if (dir == null) {
+            throw new IllegalArgumentException("No cache directory");
+        }
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * The cache set up by the SOLVER_CACHE_DIR and SOLVER_CACHE_MB system
+     * properties.
+     */
+    public static SolverCache fromProperties() {
+        String d = System.getProperty("SOLVER_CACHE_DIR");
+        if (d == null || d.isEmpty()) {
+            return new SolverCache();
+        }
+        long mb = Long.parseLong(System.getProperty("SOLVER_CACHE_MB", "256"));
+        return new SolverCache(new File(d), mb * 1024 * 1024);
+    }
+
+    /**
+     * @return true if results are cached.
+     */
+    public boolean isEnabled() {
+        return dir != null;
+    }
+
+    /**
+     * @return the cached results for key, or null.
+     */
+    public synchronized String get(Key key) {
+        byte[] b = read(key);
+        return b == null ? null : new String(b, UTF8);
+    }
+
+    /**
+     * Copy the cached results for key to dest.
+     *
+     * @return false, leaving dest alone, if there are none.
+     */
+    public synchronized boolean restore(Key key, File dest) {
+        byte[] b = read(key);
+        if (b == null) {
+            return false;
+        }
+        try {
+            write(dest, b);
+            return true;
+        } catch (IOException e) {
+            System.err.println("Unable to restore cached results to " + dest.getPath()
+                    + ": " + e.getMessage());
+            hits--;
+            misses++;
+            return false;
+        }
+    }
+
+    /**
+     * Cache results for key.
+     */
+    public synchronized void put(Key key, String results) {
+        store(key, results.getBytes(UTF8));
+    }
+
+    /**
+     * Cache the content of results for key.
+     */
+    public synchronized void put(Key key, File results) {
+        if (dir == null) {
+            return;
+        }
+        try {
+            store(key, readFully(results));
+        } catch (IOException e) {
+            System.err.println("Unable to cache " + results.getPath() + ": " + e.getMessage());
+        }
+    }
+
+    private byte[] read(Key key) {
+        if (dir == null) {
+            return null;
+        }
+        File f = entry(key);
+        byte[] b = null;
+        if (f.isFile()) {
+            try {
+                b = readFully(f);
+                f.setLastModified(System.currentTimeMillis());
+            } catch (IOException e) {
+                b = null; //evicted by another run, most likely.
+            }
+        }
+        if (b == null) {
+            misses++;
+        } else {
+            hits++;
+        }
+        return b;
+    }
+
+    private void store(Key key, byte[] results) {
+        if (dir == null) {
+            return;
+        }
+        try {
+            if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+                throw new IOException("Unable to create directory " + dir.getPath());
+            }
+            //write and rename, so other runs never read half an entry.
+            File tmp = File.createTempFile("put", ".tmp", dir);
+            write(tmp, results);
+            File f = entry(key);
+            if (!tmp.renameTo(f)) {
+                f.delete();
+                if (!tmp.renameTo(f)) {
+                    tmp.delete();
+                    throw new IOException("Unable to rename " + tmp.getPath());
+                }
+            }
+            stores++;
+        } catch (IOException e) {
+            System.err.println("Unable to cache solver results: " + e.getMessage());
+            return;
+        }
+        evict();
+    }
+
+    /**
+     * Remove the least recently used entries until the cache fits.
+     */
+    private void evict() {
+        File[] entries = dir.listFiles();
+        if (entries == null) {
+            return;
+        }
+        long total = 0;
+        final long[] used = new long[entries.length];
+        Integer[] order = new Integer[entries.length];
+        for (int i = 0; i < entries.length; i++) {
+            total += entries[i].length();
+            used[i] = entries[i].lastModified();
+            order[i] = i;
+        }
+        if (total <= maxBytes) {
+            return;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return used[a] < used[b] ? -1 : (used[a] == used[b] ? 0 : 1);
+            }
+        });
+        for (int i = 0; i < order.length && total > maxBytes; i++) {
+            File f = entries[order[i]];
+            if (!f.getName().endsWith(SUFFIX)) {
+                continue;
+            }
+            long len = f.length();
+            if (f.delete()) {
+                total -= len;
+                evictions++;
+            }
+        }
+    }
+
+    private File entry(Key key) {
+        return new File(dir, key.toString() + SUFFIX);
+    }
+
+    private static byte[] readFully(File f) throws IOException {
+        InputStream in = new FileInputStream(f);
+        try {
+            long len = f.length();
+            if (len > Integer.MAX_VALUE) {
+                throw new IOException(f.getPath() + " is too large");
+            }
+            byte[] b = new byte[(int) len];
+            int off = 0;
+            while (off < b.length) {
+                int n = in.read(b, off, b.length - off);
+                if (n < 0) {
+                    throw new IOException(f.getPath() + " was truncated");
+                }
+                off += n;
+            }
+            return b;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void write(File f, byte[] b) throws IOException {
+        FileOutputStream out = new FileOutputStream(f);
+        try {
+            out.write(b);
+        } finally {
+            out.close();
+        }
+    }
+
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    public synchronized int getMisses() {
+        return misses;
+    }
+
+    public synchronized int getEvictions() {
+        return evictions;
+    }
+
+    /**
+     * Print the hit and miss counts of the run, if the cache is on.
+     */
+    public synchronized void report() {
+        if (dir == null) {
+            return;
+        }
+        int lookups = hits + misses;
+        System.out.println("Solver cache " + dir.getPath() + ": " + hits + " hits, "
+                + misses + " misses"
+                + (lookups == 0 ? "" : " (" + Support.roundOff(100.0 * hits / lookups, 1) + "% hit rate)")
+                + ", " + stores + " stored, " + evictions + " evicted.");
+    }
+
+    /**
+     * SHA-256 of a solver's name and of each part of its input, in order.
+     *
+     * Lines starting with '#', the comments of the .dat files, are left
+     * out, since DataFileWriter puts the time the file was written there.
+     */
+    public static class Key {
+        private final MessageDigest md;
+        private String hex;
+
+        //state of the part being added.
+        private final byte[] out = new byte[8192];
+        private int outLen;
+        private long partLen;
+        private boolean lineStart;
+        private boolean comment;
+
+        /**
+         * @param solver name of the solver, so different solvers given the
+         * same input do not share results.
+         */
+        public Key(String solver) {
+            try {
+                md = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e); //every JRE has SHA-256
+            }
+            byte[] name = solver.getBytes(UTF8);
+            md.update(name);
+            length(name.length);
+        }
+
+        /**
+         * Add the content of a file.
+         */
+        public Key add(File f) throws IOException {
+            startPart();
+            InputStream in = new FileInputStream(f);
+            try {
+                byte[] buf = new byte[64 * 1024];
+                int n;
+                while ((n = in.read(buf)) >= 0) {
+                    update(buf, n);
+                }
+            } finally {
+                in.close();
+            }
+            endPart();
+            return this;
+        }
+
+        /**
+         * Add a string, as the UTF-8 bytes a file with the same text has.
+         */
+        public Key add(String s) {
+            startPart();
+            byte[] b = s.getBytes(UTF8);
+            update(b, b.length);
+            endPart();
+            return this;
+        }
+
+        private void startPart() {
+            check();
+            outLen = 0;
+            partLen = 0;
+            lineStart = true;
+            comment = false;
+        }
+
+        /**
+         * Hash b, without the comment lines.
+         */
+        private void update(byte[] b, int n) {
+            for (int i = 0; i < n; i++) {
+                byte c = b[i];
+                if (lineStart) {
+                    comment = c == '#';
+                }
+                lineStart = c == '\n';
+                if (comment) {
+                    continue;
+                }
+                out[outLen++] = c;
+                if (outLen == out.length) {
+                    md.update(out, 0, outLen);
+                    partLen += outLen;
+                    outLen = 0;
+                }
+            }
+        }
+
+        /**
+         * End each part with its length, so moving text from one part to
+         * the next changes the key.
+         */
+        private void endPart() {
+            md.update(out, 0, outLen);
+            partLen += outLen;
+            outLen = 0;
+            length(partLen);
+        }
+
+        private void length(long len) {
+            for (int i = 7; i >= 0; i--) {
+                md.update((byte) (len >>> (8 * i)));
+            }
+        }
+
+        private void check() {
+            if (hex != null) {
+                throw new IllegalStateException("Key already computed");
+            }
+        }
+
+        @Override
+        public String toString() {
+            if (hex == null) {
+                StringBuilder sb = new StringBuilder(64);
+                for (byte b : md.digest()) {
+                    sb.append(Character.forDigit((b >> 4) & 0xf, 16));
+                    sb.append(Character.forDigit(b & 0xf, 16));
+                }
+                hex = sb.toString();
+            }
+            return hex;
+        }
+    }
+}
@@ -92,9 +92,18 @@ public class CooprConfig {
      * @throws IOException
      */
     public Process createCooprProcess() throws IOException{
+        return createProcessBuilder().start();
+    }
+
+    /**
+     * Command line and environment of the coopr program, to be run with
+     * {@link amesmarket.extern.common.ExternalProcess}.
+     * @return
+     */
+    public ProcessBuilder createProcessBuilder() {
         ProcessBuilder pb = new ProcessBuilder(getExecCmd());
         setupEnv(pb.environment());
-        return pb.start();
+        return pb;
     }
 
     /**
@@ -12,11 +12,15 @@ import amesmarket.AMESMarketException;
 import amesmarket.GenAgent;
 import amesmarket.ISO;
 import amesmarket.LoadCaseControl;
-import amesmarket.LoadProfileCollection;
+import amesmarket.PhaseEvent;
+import amesmarket.PhaseEvent.Phase;
 import amesmarket.SCUC;
 import amesmarket.Support;
+import amesmarket.Workspace;
 import amesmarket.filereaders.BadDataFileFormatException;
 import amesmarket.extern.common.CommitmentDecision;
+import amesmarket.extern.common.ExternalProcess;
+import amesmarket.extern.common.SolverCache;
 
 /**
  *
@@ -52,6 +56,21 @@ public class CooprSCUC implements SCUC {
      */
     private final CooprConfig cooprExt;
 
+    /**
+     * Kept for the whole run, so the static parts of the reference model
+     * are only rendered once.
+     */
+    private final DataFileWriter dfw;
+
+    private final Workspace workspace;
+
+    /**
+     * Schedules of earlier solves of the same input.
+     */
+    private final SolverCache cache;
+
+    private final int scucType;
+
     public CooprSCUC(ISO independentSystemOperator, AMESMarket model) {
         ames = model;
         iso = independentSystemOperator;
@@ -59,16 +78,20 @@ public class CooprSCUC implements SCUC {
         numLSEAgents=ames.getNumLSEAgents();
         numHours = ames.NUM_HOURS_PER_DAY;
         numIntervals = ames.NUM_HOURS_PER_DAY_UC;
-        final int scucType = model.getSCUCType();
+        scucType = model.getSCUCType();
 
         //genSchedule=new int[numGenAgents][numHoursPerDay];
 
-        python_Input=new File("xfertoames.dat");
-        referenceModelDir=new File("SCUCresources/Models");
-        scenarioModelDir=new File("SCUCresources/ScenarioData");
+        //solver inputs and results in the run's workspace, models and scripts shared.
+        workspace = ames.getWorkspace();
+        python_Input=workspace.file("xfertoames.dat");
+        referenceModelDir=new File(Workspace.RESOURCES_DIR, "Models");
+        scenarioModelDir=workspace.file(Workspace.SCENARIO_DATA);
         referenceFile=new File(scenarioModelDir, "ReferenceModel.dat");
-        pyomoSolPrint=new File("SCUCresources/pyomosolprint.py");
-        runefSolPrint=new File("SCUCresources/runefsolprint.py");
+        pyomoSolPrint=new File(Workspace.RESOURCES_DIR, "pyomosolprint.py");
+        runefSolPrint=new File(Workspace.RESOURCES_DIR, "runefsolprint.py");
+        dfw = new DataFileWriter(workspace);
+        cache = ames.getSolverCache();
         //referenceModel=new File("SCUCresources/Models/ReferenceModel.py");
 
         switch(scucType) {
@@ -120,8 +143,6 @@ public class CooprSCUC implements SCUC {
             }
         }
 
-        DataFileWriter dfw = new DataFileWriter();
-
         dfw.writeScenDatFile(referenceFile, ames, day, loadProfileLSEALL, ames.NUM_HOURS_PER_DAY_UC);
 
         LoadCaseControl loadCaseControl = ames.getLoadScenarioProvider().getLoadCaseControl();
@@ -132,49 +153,21 @@ public class CooprSCUC implements SCUC {
         }
         dfw.writeScenarioStructures(loadCaseControl.getNumLoadScenarios(),scenProb);
 
-        double[][] scenarioLoadProfileLSE=new double[numLSEAgents][numHours];
-        double[][] nextDayScenarioLoadProfileLSE=new double[numLSEAgents][numHours];
-        double[][] scenarioLoadProfileLSEALL=new double[numLSEAgents][numHours+numHours];
-
-        for (int i = 0; i < loadCaseControl.getNumLoadScenarios(); i++) {
-            LoadProfileCollection scenario = loadCaseControl.getLoadScenario(i + 1);
-
-            for (int j = 0; j < numLSEAgents; j++) {
-                for (int k = 0; k < numHours; k++) {
-                    scenarioLoadProfileLSE[j][k] = scenario.get(day)
-                            .getLoadByHour(k)[j];
-                }
-
-            }
-
-            if(day<ames.DAY_MAX){
-
-                for (int j = 0; j < numLSEAgents; j++) {
-                    for (int k = 0; k < numHours; k++) {
-                        nextDayScenarioLoadProfileLSE[j][k] = scenario.get(day+1)
-                                .getLoadByHour(k)[j];
-                    }
-
-                }
+        dfw.writeScenarioDatFiles(ames, day, loadCaseControl.getAllLoadScenarios());
 
-                for (int k=0; k < loadProfileLSE.length; k++) {
-                    System.arraycopy(scenarioLoadProfileLSE[k], 0, scenarioLoadProfileLSEALL[k], 0, scenarioLoadProfileLSE[k].length);
-                    System.arraycopy(nextDayScenarioLoadProfileLSE[k], 0, scenarioLoadProfileLSEALL[k], scenarioLoadProfileLSE[k].length, nextDayScenarioLoadProfileLSE[k].length);
-                }
-            } else {
-                for (int k=0; k < loadProfileLSE.length; k++) {
-                    System.arraycopy(scenarioLoadProfileLSE[k], 0, scenarioLoadProfileLSEALL[k], 0, scenarioLoadProfileLSE[k].length);
-                }
+        ExternalProcess.Result run = null;
+        SolverCache.Key key = cacheKey(loadCaseControl.getNumLoadScenarios());
+        if (key != null && cache.restore(key, python_Input)) {
+            System.out.println("SCUC schedule from the solver cache.");
+        } else {
+            long t0 = PhaseEvent.begin();
+            run = syscall(cooprExt);
+            PhaseEvent.end(Phase.EXTERNAL_SOLVE, day, -1, 0, t0);
+            if (key != null && run.getExitCode() == 0 && python_Input.exists()) {
+                cache.put(key, python_Input);
             }
-
-
-            File fileObj = new File("SCUCresources/ScenarioData/Scen" + (i + 1)
-                    + ".dat");
-            dfw.writeScenDatFile(fileObj, ames, day, scenarioLoadProfileLSEALL, ames.NUM_HOURS_PER_DAY_UC);
         }
 
-        syscall(cooprExt);
-
 
         //Read the data file back in to get the GenCo commitments.
         if (!python_Input.exists()) {
@@ -182,6 +175,8 @@ public class CooprSCUC implements SCUC {
                     python_Input.getPath()));
         }
 
+        long parseStart = System.nanoTime();
+        long t0 = PhaseEvent.begin();
         System.out.println("Reading GenCo schedule from " + python_Input.getPath());
         java.util.Scanner raf = new Scanner(python_Input);
 
@@ -236,31 +231,47 @@ public class CooprSCUC implements SCUC {
         });
 
         raf.close();
+        PhaseEvent.end(Phase.PARSE_RESULTS, day, -1, python_Input.length(), t0);
+        if (run != null) {
+            run.parsed(parseStart);
+        }
 
         cleanup();
         //END Read in GenCo commitments
     }
 
-    public void syscall(CooprConfig runefConfig) throws IOException {
-        Process p = runefConfig.createCooprProcess();
-
-        BufferedReader stdInput = new BufferedReader(new
-                InputStreamReader(p.getInputStream()));
-
-        BufferedReader stdError = new BufferedReader(new
-                InputStreamReader(p.getErrorStream()));
-
-        // read the output from the command
-        String s = null;
-        System.out.println("Here is the standard output of the command:\n");
-        while ((s = stdInput.readLine()) != null) {
-            System.out.println(s);
+    /**
+     * Key of the SCUC input just written in the {@link SolverCache}: the
+     * reference model and, for the stochastic SCUC, the scenario files.
+     *
+     * @return null if the cache is off.
+     */
+    private SolverCache.Key cacheKey(int numScenarios) throws IOException {
+        if (!cache.isEnabled()) {
+            return null;
+        }
+        SolverCache.Key key = new SolverCache.Key("coopr-scuc-" + scucType).add(referenceFile);
+        if (scucType == SCUC_STOC) {
+            key.add(new File(scenarioModelDir, "ScenarioStructure.dat"));
+            for (int s = 1; s <= numScenarios; s++) {
+                key.add(new File(scenarioModelDir, "Scen" + s + ".dat"));
+            }
         }
+        return key;
+    }
 
-        // read any errors from the attempted command
-        System.err.println("Here is the standard error of the command (if any):\n");
-        while ((s = stdError.readLine()) != null) {
-            System.out.println(s);
+    /**
+     * Run the external SCUC, see {@link ExternalProcess}.
+     */
+    public ExternalProcess.Result syscall(CooprConfig runefConfig) throws IOException {
+        try {
+            //the solution writer puts xfertoames.dat in the working directory.
+            ProcessBuilder pb = runefConfig.createProcessBuilder();
+            pb.directory(workspace.processDir(null));
+            return new ExternalProcess("runef", pb).run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the SCUC");
         }
     }
 
@@ -5,19 +5,36 @@ package amesmarket.extern.coopr;
 
 import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import amesmarket.AMESMarket;
 import amesmarket.AMESMarketException;
+import amesmarket.DailyLoadProfile;
 import amesmarket.GenAgent;
 import amesmarket.ISO;
 import amesmarket.LSEAgent;
+import amesmarket.LoadProfileCollection;
+import amesmarket.PhaseEvent;
+import amesmarket.PhaseEvent.Phase;
+import amesmarket.Workspace;
 import amesmarket.extern.common.CommitmentDecision;
 
 /**
@@ -30,9 +47,36 @@ import amesmarket.extern.common.CommitmentDecision;
  */
 public class DataFileWriter {
 
-    //TODO-XX: make sure everywhere that writes data is using the same
-    //object, instead of hard coded paths.
-    private final File scenDir = new File("SCUCresources/ScenarioData");
+    private final File scenDir;
+
+    /**
+     * Reference model sections that do not change during a run, and the
+     * market they were rendered for. See {@link #staticSections}.
+     */
+    private String staticSections;
+    private AMESMarket staticSectionsFor;
+    /**
+     * Formatted MinimumPowerOutput..ShutdownCostCoefficient columns of the
+     * generator parameter table, by GenCo index.
+     */
+    private String[] genStaticColumns;
+
+    /** Writes the scenario files, see {@link #writeScenarioDatFiles}. */
+    private static ExecutorService scenarioPool;
+
+    /**
+     * Writer for the shared workspace.
+     */
+    public DataFileWriter() {
+        this(new Workspace());
+    }
+
+    /**
+     * @param workspace workspace of the run, for the scenario directory.
+     */
+    public DataFileWriter(Workspace workspace) {
+        scenDir = workspace.file(Workspace.SCENARIO_DATA);
+    }
 
     public void writeScenarioStructures(int noOfScenarios, double[] scenProb) throws AMESMarketException, IOException {
 
@@ -137,199 +181,329 @@ public class DataFileWriter {
      * @throws AMESMarketException
      */
     public void writeScenDatFile(File fileObj, AMESMarket ames,  int day, double [][] LoadProfileLSE, int numIntervalsInSim) throws AMESMarketException {
+        if ( !ensureFileParentExists(fileObj) ) {
+            throw new AMESMarketException("Could not create the directory for " + fileObj.getPath());
+        }
+
+        try {
+            BufferedWriter refBufferWriter = new BufferedWriter(new FileWriter(fileObj));
+            try {
+                writeScenDat(refBufferWriter, ames, day, LoadProfileLSE, numIntervalsInSim);
+            } finally {
+                refBufferWriter.close();
+            }
+        } catch (IOException e){
+            throw new AMESMarketException("Unable to write the reference model.", e);
+        }
+    }
+
+    /**
+     * Like {@link #writeScenDatFile}, but keep the reference model in memory,
+     * for an external SCED that reads it from a pipe.
+     *
+     * @return the text of the reference model file.
+     */
+    public String scenDatToString(AMESMarket ames,  int day, double [][] LoadProfileLSE, int numIntervalsInSim) {
+        StringWriter out = new StringWriter();
+        try {
+            writeScenDat(out, ames, day, LoadProfileLSE, numIntervalsInSim);
+        } catch (IOException e) {
+            throw new IllegalStateException(e); //StringWriters don't throw.
+        }
+        return out.toString();
+    }
+
+    /**
+     * Write Scen&lt;i&gt;.dat, the reference model with the load of scenario
+     * i, for each load scenario of the stochastic SCUC.
+     *
+     * The scenarios are independent, so their loads are extracted and their
+     * files rendered and written concurrently, on a pool of
+     * SCUC_SCENARIO_THREADS threads (system property, default: the number
+     * of available processors). Each file is rendered in memory and written
+     * with a single write on its channel.
+     *
+     * @param scenarios load scenarios, scenario i+1 at index i.
+     * @throws AMESMarketException if any file could not be written.
+     */
+    public void writeScenarioDatFiles(final AMESMarket ames, final int day,
+            List<LoadProfileCollection> scenarios) throws AMESMarketException {
+        final int numLSEAgents = ames.getNumLSEAgents();
+        final int numHours = ames.NUM_HOURS_PER_DAY;
+
+        if ( !ensureFileParentExists(new File(scenDir, "Scen1.dat")) ) {
+            throw new AMESMarketException("Could not create the directory for " + scenDir.getPath());
+        }
+
+        List<Future<?>> writes = new ArrayList<Future<?>>();
+        final ExecutorService pool = getScenarioPool();
+        for (int i = 0; i < scenarios.size(); i++) {
+            final LoadProfileCollection scenario = scenarios.get(i);
+            final File fileObj = new File(scenDir, "Scen" + (i + 1) + ".dat");
+            writes.add(pool.submit(new Callable<Void>() {
+                @Override
+                public Void call() throws IOException {
+                    //second day is left at zero on the last day, like the reference model.
+                    double[][] scenarioLoadProfileLSEALL = new double[numLSEAgents][numHours + numHours];
+                    copyLoad(scenario.get(day), scenarioLoadProfileLSEALL, 0, numHours);
+                    if (day < ames.DAY_MAX) {
+                        copyLoad(scenario.get(day + 1), scenarioLoadProfileLSEALL, numHours, numHours);
+                    }
+
+                    String text = scenDatToString(ames, day, scenarioLoadProfileLSEALL, ames.NUM_HOURS_PER_DAY_UC);
+                    writeFully(fileObj, text);
+                    return null;
+                }
+            }));
+        }
+
+        for (int i = 0; i < writes.size(); i++) {
+            try {
+                writes.get(i).get();
+            } catch (ExecutionException e) {
+                throw new AMESMarketException("Unable to write the load scenario " + (i + 1)
+                        + " reference model.", e.getCause());
+            } catch (InterruptedException e) {
+                for (Future<?> f : writes) {
+                    f.cancel(true);
+                }
+                Thread.currentThread().interrupt();
+                throw new AMESMarketException("Interrupted writing the load scenarios.", e);
+            }
+        }
+    }
+
+    /**
+     * Copy the hourly loads of a day into loadByLSE[lse][offset + hour].
+     */
+    private static void copyLoad(DailyLoadProfile dlp, double[][] loadByLSE, int offset, int numHours) {
+        for (int k = 0; k < numHours; k++) {
+            double[] loadByHour = dlp.getLoadByHour(k);
+            for (int j = 0; j < loadByLSE.length; j++) {
+                loadByLSE[j][offset + k] = loadByHour[j];
+            }
+        }
+    }
+
+    /**
+     * Write the whole text to the file on one channel, in the default
+     * charset like {@link FileWriter}.
+     */
+    private static void writeFully(File f, String text) throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(text.getBytes(Charset.defaultCharset()));
+        FileOutputStream out = new FileOutputStream(f);
+        try {
+            FileChannel ch = out.getChannel();
+            while (bytes.hasRemaining()) {
+                ch.write(bytes);
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static synchronized ExecutorService getScenarioPool() {
+        if (scenarioPool == null) {
+            int threads = Integer.getInteger("SCUC_SCENARIO_THREADS",
+                    Runtime.getRuntime().availableProcessors());
+            if (threads < 1) {
+                throw new IllegalArgumentException("SCUC_SCENARIO_THREADS must be positive: " + threads);
+            }
+            scenarioPool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "scenario-writer");
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+        }
+        return scenarioPool;
+    }
+
+    private void writeScenDat(Writer refBufferWriter, AMESMarket ames,  int day, double [][] LoadProfileLSE, int numIntervalsInSim) throws IOException {
         //set up all the elements we need.
         final int numHoursPerDay = ames.NUM_HOURS_PER_DAY;
 //        final int numIntervalsInSim = ames.NUM_HOURS_PER_DAY_UC;
         final ISO iso = ames.getISO();
-        final int numNodes = ames.getNumNodes();
         final double baseS = ames.getBaseS();
         final int numGenAgents = ames.getNumGenAgents();
         final int numLSEAgents = ames.getNumLSEAgents();
 
-        final double[][] branchIndex;
-        final double[][] numBranchData;
-        final double reserveRequirements;
-
-        if ( !ensureFileParentExists(fileObj) ) {
-            throw new AMESMarketException("Could not create the directory for " + fileObj.getPath());
-        }
-
-        numBranchData=ames.getBranchData();
-        reserveRequirements=ames.getReserveRequirements();
-        branchIndex=ames.getTransGrid().getBranchIndex();
+        final double reserveRequirements = ames.getReserveRequirements();
+        final long t0 = PhaseEvent.begin();
 
         //Now that we have all the parameters. Write it out.
-        try {
+        refBufferWriter.write("# Written by AMES per unit ");
+        SimpleDateFormat dateFormat = new SimpleDateFormat(
+                "MM/dd/yyyy HH:mm:ss\n\n");
+        Date date = new Date();
+        refBufferWriter.write(dateFormat.format(date));
 
+        refBufferWriter.write(staticSections(ames));
 
+        refBufferWriter.write("\nparam NumTimePeriods := " + numIntervalsInSim
+                + " ;\n\n");
 
-            BufferedWriter refBufferWriter = new BufferedWriter(new FileWriter(fileObj));
+        refBufferWriter
+                .write("param: PowerGeneratedT0 UnitOnT0State MinimumPowerOutput MaximumPowerOutput MinimumUpTime MinimumDownTime NominalRampUpLimit NominalRampDownLimit StartupRampLimit ShutdownRampLimit ColdStartCost HotStartCost ShutdownCostCoefficient :=\n");
 
-            refBufferWriter.write("# Written by AMES per unit ");
-            SimpleDateFormat dateFormat = new SimpleDateFormat(
-                    "MM/dd/yyyy HH:mm:ss\n\n");
-            Date date = new Date();
-            refBufferWriter.write(dateFormat.format(date));
 
-            refBufferWriter.write("set StageSet := FirstStage SecondStage ;\n");
+        final ArrayList<GenAgent> genagents = ames.getGenAgentList();
+        final String[] genStaticColumns = this.genStaticColumns;
+        for (int i = 0; i < numGenAgents; i++) {
+            refBufferWriter.write(genAgentToSCUCDesc(genagents.get(i), day, baseS, genStaticColumns[i]));
             refBufferWriter.write("\n");
+        }
 
-            refBufferWriter
-                    .write("set CommitmentTimeInStage[FirstStage] := 1 2 3 4 5 6 7 8 9 10 11 12 13 14 15 16 17 18 19 20 21 22 23 24 ;\n");
-            refBufferWriter
-                    .write("set CommitmentTimeInStage[SecondStage] := ;\n\n");
-
-            refBufferWriter
-                    .write("set GenerationTimeInStage[FirstStage] := ;\n");
-            refBufferWriter
-                    .write("set GenerationTimeInStage[SecondStage] := 1 2 3 4 5 6 7 8 9 10 11 12 13 14 15 16 17 18 19 20 21 22 23 24 ;\n\n");
+        refBufferWriter.write(" ;\n");
 
-            refBufferWriter.write("set Buses := ");
+        refBufferWriter.write("param: Demand :=\n");
 
+        for (int i = 0; i < numLSEAgents; i++) {
+            LSEAgent lse = ames.getLSEAgentList().get(i);
+            int lseNode = lse.getAtNode();
 
-            for (int i = 0; i < numNodes; i++) {
-                refBufferWriter.write("Bus" + (i + 1) + " ");
+            for (int h = 0; h < numIntervalsInSim; h++) {
+                refBufferWriter.write("Bus" + lseNode + " " + (h + 1) + " "
+                        + LoadProfileLSE[i][h] / baseS + "\n");
             }
-            refBufferWriter.write(";\n\n");
-
-            refBufferWriter.write("set TransmissionLines :=\n");
-
-            for (int i = 0; i < branchIndex.length; i++)
-                refBufferWriter.write("Bus" + (int) branchIndex[i][0] + " Bus"
-                        + (int) branchIndex[i][1] + "\n");
-
-            refBufferWriter.write(";\n\n");
 
-            refBufferWriter.write("param NumTransmissionLines := "
-                    + branchIndex.length + " ;\n\n");
-            
-            refBufferWriter
-                    .write("param: BusFrom BusTo ThermalLimit Reactance :=\n");
+            refBufferWriter.write("\n");
+        }
 
-            for (int i = 0; i < branchIndex.length; i++)
-                refBufferWriter.write((i + 1) + " Bus"
-                        + (int) numBranchData[i][0] + " Bus"
-                        + (int) numBranchData[i][1] + " " + numBranchData[i][2]
-                        + " " + numBranchData[i][3] + "\n");
+        refBufferWriter.write("; \n");
 
-            refBufferWriter.write(";\n\n");
+        refBufferWriter.write("param: ReserveRequirement := \n");
 
-            refBufferWriter.write("set ThermalGenerators := ");
+        for (int h = 0; h < numIntervalsInSim; h++) {
+            refBufferWriter.write((h + 1) + " " + reserveRequirements
+                    / baseS + "\n");
+        }
 
-            for (GenAgent gc : ames.getGenAgentList())
-                refBufferWriter.write(gc.getID() + " ");
+        refBufferWriter.write("; \n");
 
-            refBufferWriter.write(";\n\n");
+        refBufferWriter
+                .write("param: ProductionCostA0 ProductionCostA1 ProductionCostA2 :=\n");
 
-            GenAgent[][] genNodeBusTable = new GenAgent[numNodes][numGenAgents];
-            for (int i = 0; i < numNodes; i++) {
-                for (int j = 0; j < numGenAgents; j++) {
-                    GenAgent gen = (GenAgent) ames.getGenAgentList().get(j);
-                    //System.out.println(gen.getAtNode());
+        double[][] supplyOfferByGen = iso.getSupplyOfferByGen();
 
-                    if (gen.getAtNode() - 1 == i)
-                        genNodeBusTable[i][j] = gen;
-                    else
-                        genNodeBusTable[i][j] = null;
-                }
-            }
+        for (int i = 0; i < numGenAgents; i++){
+            GenAgent ga = genagents.get(i);
+            refBufferWriter.write(
+                    ga.getID() + " " + //ga.getSupplyOffer()[0] + " "
+                    + ga.getNoLoadCost() + " " + //FIXME: Is this supposed be part of the getSupplyOffer?
+                    + supplyOfferByGen[i][0] * baseS + " "
+                    + supplyOfferByGen[i][1] * baseS
+                    * baseS + " " + "\n");
+        }
 
-            for (int i = 0; i < numNodes; i++) {
-                refBufferWriter.write("set ThermalGeneratorsAtBus[Bus"
-                        + (i + 1) + "] := ");
+        refBufferWriter.write("; \n");
+        PhaseEvent.end(Phase.WRITE_INPUT, day, -1, (long) numLSEAgents * numIntervalsInSim, t0);
+    }
 
-                for (int j = 0; j < numGenAgents; j++) {
-                    if (genNodeBusTable[i][j] != null)
-                        refBufferWriter.write(genNodeBusTable[i][j].getID() + " ");
+    /**
+     * The sets and parameters of the reference model that stay the same for
+     * the whole run: the stages, the network and the fleet. They are
+     * rendered on the first write and reused for every day and scenario.
+     */
+    private synchronized String staticSections(AMESMarket ames) {
+        if (staticSections != null && staticSectionsFor == ames) {
+            return staticSections;
+        }
 
-                }
+        final int numNodes = ames.getNumNodes();
+        final double baseS = ames.getBaseS();
+        final double[][] branchIndex = ames.getTransGrid().getBranchIndex();
+        final double[][] numBranchData = ames.getBranchData();
+        final StringBuilder out = new StringBuilder();
 
-                refBufferWriter.write(" ;\n");
-            }
+        out.append("set StageSet := FirstStage SecondStage ;\n");
+        out.append("\n");
 
-            refBufferWriter.write("\nparam NumTimePeriods := " + numIntervalsInSim
-                    + " ;\n\n");
+        out.append("set CommitmentTimeInStage[FirstStage] := 1 2 3 4 5 6 7 8 9 10 11 12 13 14 15 16 17 18 19 20 21 22 23 24 ;\n");
+        out.append("set CommitmentTimeInStage[SecondStage] := ;\n\n");
 
-            refBufferWriter
-                    .write("param: PowerGeneratedT0 UnitOnT0State MinimumPowerOutput MaximumPowerOutput MinimumUpTime MinimumDownTime NominalRampUpLimit NominalRampDownLimit StartupRampLimit ShutdownRampLimit ColdStartCost HotStartCost ShutdownCostCoefficient :=\n");
+        out.append("set GenerationTimeInStage[FirstStage] := ;\n");
+        out.append("set GenerationTimeInStage[SecondStage] := 1 2 3 4 5 6 7 8 9 10 11 12 13 14 15 16 17 18 19 20 21 22 23 24 ;\n\n");
 
+        out.append("set Buses := ");
 
-            for(GenAgent ga : ames.getGenAgentList()) {
-                refBufferWriter.write(genAgentToSCUCDesc(ga, day, baseS));
-                refBufferWriter.write("\n");
-            }
 
-            refBufferWriter.write(" ;\n");
+        for (int i = 0; i < numNodes; i++) {
+            out.append("Bus" + (i + 1) + " ");
+        }
+        out.append(";\n\n");
 
-            refBufferWriter.write("param: Demand :=\n");
+        out.append("set TransmissionLines :=\n");
 
-            for (int i = 0; i < numLSEAgents; i++) {
-                LSEAgent lse = ames.getLSEAgentList().get(i);
-                int lseNode = lse.getAtNode();
+        for (int i = 0; i < branchIndex.length; i++)
+            out.append("Bus" + (int) branchIndex[i][0] + " Bus"
+                    + (int) branchIndex[i][1] + "\n");
 
-                for (int h = 0; h < numIntervalsInSim; h++) {
-                    refBufferWriter.write("Bus" + lseNode + " " + (h + 1) + " "
-                            + LoadProfileLSE[i][h] / baseS + "\n");
-                }
+        out.append(";\n\n");
 
-                refBufferWriter.write("\n");
-            }
+        out.append("param NumTransmissionLines := "
+                + branchIndex.length + " ;\n\n");
+        
+        out.append("param: BusFrom BusTo ThermalLimit Reactance :=\n");
 
-            refBufferWriter.write("; \n");
+        for (int i = 0; i < branchIndex.length; i++)
+            out.append((i + 1) + " Bus"
+                    + (int) numBranchData[i][0] + " Bus"
+                    + (int) numBranchData[i][1] + " " + numBranchData[i][2]
+                    + " " + numBranchData[i][3] + "\n");
 
-            refBufferWriter.write("param: ReserveRequirement := \n");
-
-            for (int h = 0; h < numIntervalsInSim; h++) {
-                refBufferWriter.write((h + 1) + " " + reserveRequirements
-                        / baseS + "\n");
-            }
+        out.append(";\n\n");
 
-            refBufferWriter.write("; \n");
+        out.append("set ThermalGenerators := ");
 
-            refBufferWriter
-                    .write("param: ProductionCostA0 ProductionCostA1 ProductionCostA2 :=\n");
+        for (GenAgent gc : ames.getGenAgentList())
+            out.append(gc.getID() + " ");
 
-            double[][] supplyOfferByGen = iso.getSupplyOfferByGen();
+        out.append(";\n\n");
 
-            final ArrayList<GenAgent> genagents = ames.getGenAgentList();
-            for (int i = 0; i < numGenAgents; i++){
-                GenAgent ga = genagents.get(i);
-                refBufferWriter.write(
-                        ga.getID() + " " + //ga.getSupplyOffer()[0] + " "
-                        + ga.getNoLoadCost() + " " + //FIXME: Is this supposed be part of the getSupplyOffer?
-                        + supplyOfferByGen[i][0] * baseS + " "
-                        + supplyOfferByGen[i][1] * baseS
-                        * baseS + " " + "\n");
-            }
+        //one pass over the gencos, keeping their order at each bus.
+        StringBuilder[] gensAtBus = new StringBuilder[numNodes];
+        for (int i = 0; i < numNodes; i++) {
+            gensAtBus[i] = new StringBuilder();
+        }
+        for (GenAgent gen : ames.getGenAgentList()) {
+            gensAtBus[gen.getAtNode() - 1].append(gen.getID()).append(' ');
+        }
 
-            refBufferWriter.write("; \n");
+        for (int i = 0; i < numNodes; i++) {
+            out.append("set ThermalGeneratorsAtBus[Bus"
+                    + (i + 1) + "] := ");
+            out.append(gensAtBus[i].toString());
+            out.append(" ;\n");
+        }
 
-            refBufferWriter.close();
-        } catch (IOException e){
-            throw new AMESMarketException("Unable to write the reference model.", e);
+        final ArrayList<GenAgent> genagents = ames.getGenAgentList();
+        genStaticColumns = new String[genagents.size()];
+        for (int i = 0; i < genagents.size(); i++) {
+            genStaticColumns[i] = genAgentStaticColumns(genagents.get(i), baseS);
         }
+
+        staticSections = out.toString();
+        staticSectionsFor = ames;
+        return staticSections;
     }
 
     /**
      * Get a string to write into the SCUC input file describing the genco.
      * @param ga
      * @param baseS
+     * @param staticColumns the columns from {@link #genAgentStaticColumns}.
      * @return a string with all of the parameters, or an empty string if the ga parameter is null.
      */
-    private String genAgentToSCUCDesc(GenAgent ga, int day, double baseS) {
+    private String genAgentToSCUCDesc(GenAgent ga, int day, double baseS, String staticColumns) {
         if(ga == null) return "";
 
         //do all the conversions
         double powerT0          = ga.getPowerT0(day - 1) / baseS;
         double capMin           = ga.getCapacityMin() / baseS;
         double capMax           = ga.getCapacityMax() / baseS;
-        double nominalUp        = ga.getNominalRampUpLim() / baseS;
-        double nominalDown      = ga.getNominalRampDownLim() / baseS;
-        double startupramplimit = ga.getStartupRampLim() / baseS ;
-        double shutdownramplimit= ga.getShutdownRampLim() / baseS ;
-        double coldstartupcost  = ga.getColdStartUpCost() ;
-        double hotstartupcost  = ga.getHotStartUpCost()  ;
-        double shutdowncost     = ga.getShutDownCost()  ;
 
         //some rounding checks
         if (powerT0 < capMin) {
@@ -347,23 +521,50 @@ public class DataFileWriter {
         }
 
         return String.format(
-                // 1     2          3       4       5       6       7       8               9               10          11
-                //Name, powerTO, On/OffT0, MinPow, MaxPow, MinUp, MinDown, NominalRampUP, NominalRampDown, StartupLim, ShutdownLim, ColdStartupCost, HotStartupCost, ShutDownCost
-                "%1$s %2$f %3$d %4$f %5$f %6$d %7$d %8$f %9$f %10$f %11$f %12$f %13$f %14$f" //TODO-XX Decimal precision.
+                // 1     2          3
+                //Name, powerTO, On/OffT0, then the static columns.
+                "%1$s %2$f %3$d %4$s" //TODO-XX Decimal precision.
                 , ga.getID() //1
                 , powerT0 //2
                 , ga.getUnitOnT0State(day - 1) //3
-                , capMin //4
-                , capMax//5
-                , ga.getMinUpTime()           //6
-                , ga.getMinDownTime()         //7
-                , nominalUp //8
-                , nominalDown//9
-                , startupramplimit //10
-                , shutdownramplimit //11
-                , coldstartupcost //12
-                , hotstartupcost //13
-                , shutdowncost //14
+                , staticColumns //4
+                );
+    }
+
+    /**
+     * The columns of the genco's row in the SCUC input file that do not change
+     * from day to day.
+     * @param ga
+     * @param baseS
+     * @return MinimumPowerOutput through ShutdownCostCoefficient.
+     */
+    private String genAgentStaticColumns(GenAgent ga, double baseS) {
+        //do all the conversions
+        double capMin           = ga.getCapacityMin() / baseS;
+        double capMax           = ga.getCapacityMax() / baseS;
+        double nominalUp        = ga.getNominalRampUpLim() / baseS;
+        double nominalDown      = ga.getNominalRampDownLim() / baseS;
+        double startupramplimit = ga.getStartupRampLim() / baseS ;
+        double shutdownramplimit= ga.getShutdownRampLim() / baseS ;
+        double coldstartupcost  = ga.getColdStartUpCost() ;
+        double hotstartupcost  = ga.getHotStartUpCost()  ;
+        double shutdowncost     = ga.getShutDownCost()  ;
+
+        return String.format(
+                // 1       2       3       4       5               6               7           8
+                //MinPow, MaxPow, MinUp, MinDown, NominalRampUP, NominalRampDown, StartupLim, ShutdownLim, ColdStartupCost, HotStartupCost, ShutDownCost
+                "%1$f %2$f %3$d %4$d %5$f %6$f %7$f %8$f %9$f %10$f %11$f" //TODO-XX Decimal precision.
+                , capMin //1
+                , capMax//2
+                , ga.getMinUpTime()           //3
+                , ga.getMinDownTime()         //4
+                , nominalUp //5
+                , nominalDown//6
+                , startupramplimit //7
+                , shutdownramplimit //8
+                , coldstartupcost //9
+                , hotstartupcost //10
+                , shutdowncost //11
                 );
     }
 
@@ -385,32 +586,7 @@ public class DataFileWriter {
         PrintWriter out = null;
         try {
             out = new PrintWriter(new FileWriter(ucVectorFile));
-
-            final String eol = System.getProperty("line.separator");
-            final String indent = "\t";
-            //strings for whether or not the unit is committed.
-            final String ucOn = "1";
-            final String ucOff = "0";
-
-            for (CommitmentDecision cd : gencoCommitments) {
-                out.println(cd.generatorName); //FIXME: ?BUG?
-                StringBuilder sb = new StringBuilder();
-
-                int[] commitmentVector = cd.commitmentDecisions;
-                //Boolean[] commitmentVector = gencoCommitments.get(g);
-                if(commitmentVector == null) { //yes, I'm being very cautious.
-                    System.err.println("[Warning External SCED] No commit vector for " + cd.generatorName);
-                    continue;
-                }
-
-                for(int b : commitmentVector) {
-                    sb.append(indent);
-                    sb.append((b == 1 ? ucOn : ucOff)); //convert boolean to the format the external SCED expects.
-                    sb.append(eol);
-                }
-                out.print(sb.toString());
-            }
-
+            writeGenCommitments(gencoCommitments, out);
             out.close();
         } catch (IOException e) {
             throw new AMESMarketException("Unable to write the generator commitment schedule.", e);
@@ -421,6 +597,51 @@ public class DataFileWriter {
         }
     }
 
+    /**
+     * Like {@link #writeGenCommitments(List, File)}, but keep the
+     * commitments in memory, for an external SCED that reads them from a pipe.
+     *
+     * @return the text of the unit commitment file.
+     * @throws IllegalArgumentException if gencoCommitments is null.
+     */
+    public String genCommitmentsToString(List<CommitmentDecision> gencoCommitments) {
+        if (gencoCommitments == null)
+            throw new IllegalArgumentException();
+
+        StringWriter sw = new StringWriter();
+        PrintWriter out = new PrintWriter(sw);
+        writeGenCommitments(gencoCommitments, out);
+        out.flush();
+        return sw.toString();
+    }
+
+    private void writeGenCommitments(List<CommitmentDecision> gencoCommitments, PrintWriter out) {
+        final String eol = System.getProperty("line.separator");
+        final String indent = "\t";
+        //strings for whether or not the unit is committed.
+        final String ucOn = "1";
+        final String ucOff = "0";
+
+        for (CommitmentDecision cd : gencoCommitments) {
+            out.println(cd.generatorName); //FIXME: ?BUG?
+            StringBuilder sb = new StringBuilder();
+
+            int[] commitmentVector = cd.commitmentDecisions;
+            //Boolean[] commitmentVector = gencoCommitments.get(g);
+            if(commitmentVector == null) { //yes, I'm being very cautious.
+                System.err.println("[Warning External SCED] No commit vector for " + cd.generatorName);
+                continue;
+            }
+
+            for(int b : commitmentVector) {
+                sb.append(indent);
+                sb.append((b == 1 ? ucOn : ucOff)); //convert boolean to the format the external SCED expects.
+                sb.append(eol);
+            }
+            out.print(sb.toString());
+        }
+    }
+
     private boolean ensureFileParentExists(File f) {
         File parent = f.getParentFile();
         if( parent == null ) return true; //no parent file. nothing to be done
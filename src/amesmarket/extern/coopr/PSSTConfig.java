@@ -78,9 +78,18 @@ public class PSSTConfig {
      * @throws IOException
      */
     public Process createPSSTProcess() throws IOException{
+        return createProcessBuilder().start();
+    }
+
+    /**
+     * Command line and environment of the PSST program, to be run with
+     * {@link amesmarket.extern.common.ExternalProcess}.
+     * @return
+     */
+    public ProcessBuilder createProcessBuilder() {
         ProcessBuilder pb = new ProcessBuilder(getExecCmd());
         setupEnv(pb.environment());
-        return pb.start();
+        return pb;
     }
 
     /**
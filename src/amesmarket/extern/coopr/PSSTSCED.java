@@ -3,23 +3,23 @@
  */
 package amesmarket.extern.coopr;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.Reader;
 import java.util.Arrays;
 import java.util.List;
 
 import amesmarket.AMESMarket;
 import amesmarket.AMESMarketException;
-import amesmarket.GenAgent;
 import amesmarket.INIT;
+import amesmarket.PhaseEvent;
+import amesmarket.PhaseEvent.Phase;
 import amesmarket.SCED;
 import amesmarket.Support;
+import amesmarket.extern.common.CommitmentDecision;
+import amesmarket.extern.common.ExternalProcess;
+import amesmarket.extern.common.SolverCache;
 import amesmarket.TransGrid;
-import amesmarket.filereaders.AbstractConfigFileReader;
+import amesmarket.Workspace;
 import amesmarket.filereaders.BadDataFileFormatException;
 
 /**
@@ -33,12 +33,21 @@ import amesmarket.filereaders.BadDataFileFormatException;
 public class PSSTSCED implements SCED {
 
     //TODO-XX : Make this client configurable
-    private final File scedResourcesDir = new File("SCUCresources");
+    private final File scedResourcesDir = Workspace.RESOURCES_DIR;
     private final File scedScript = new File("SCED.py");
     private final File ucVectorFile;
     private final File refModelFile;
     private final File scedFile;
 
+    /**
+     * Reads the results file into the solution arrays, kept for the whole
+     * run so its buffer is reused.
+     */
+    private final SCEDResultsParser resultsParser;
+
+    /** Name of this solver in the {@link SolverCache} keys. */
+    private static final String CACHE_NAME = "psst-sced";
+
     private final AMESMarket ames;
 
     /**
@@ -69,6 +78,52 @@ public class PSSTSCED implements SCED {
     private final int H;
     private final boolean deleteFiles;
 
+    /**
+     * The last run of the external SCED, null if there is none yet or the
+     * SCED was solved by the psst worker.
+     */
+    private ExternalProcess.Result lastRun;
+
+    /**
+     * Long-lived psst process (-DPSST_WORKER=true), or null to start
+     * 'psst sced' for each solve.
+     */
+    private final PSSTWorker worker;
+
+    /**
+     * Exchange the SCED input and results with the worker through its pipe
+     * instead of files (-DPSST_EXCHANGE=pipe).
+     */
+    private final boolean pipeExchange;
+
+    /**
+     * Unit commitment and reference model for the next solve, when they are
+     * exchanged through the pipe.
+     */
+    private String ucVectorText;
+    private String refModelText;
+
+    /**
+     * Day of the input written last, for the {@link PhaseEvent}s.
+     */
+    private int day = -1;
+
+    /**
+     * Kept for the whole run, so the static parts of the reference model
+     * are only rendered once.
+     */
+    private final DataFileWriter dfw;
+
+    /**
+     * Working directory of 'psst sced' and the psst worker.
+     */
+    private final File processDir;
+
+    /**
+     * Results of earlier solves of the same input.
+     */
+    private final SolverCache cache;
+
     /**
      * @param ames market instance begin used.
      * @param init init instance -- used to get the BaseS for PU/SI conversions.
@@ -105,6 +160,29 @@ public class PSSTSCED implements SCED {
         H = hoursPerDay; //shorter name for local refs.
 
         deleteFiles = ames.isDeleteIntermediateFiles();
+        resultsParser = new SCEDResultsParser(ames);
+
+        dfw = new DataFileWriter(ames.getWorkspace());
+        processDir = ames.getWorkspace().processDir(scedResourcesDir);
+        cache = ames.getSolverCache();
+
+        String exchange = System.getProperty("PSST_EXCHANGE", "file");
+        if ("pipe".equals(exchange)) {
+            pipeExchange = true;
+        } else if ("file".equals(exchange)) {
+            pipeExchange = false;
+        } else {
+            throw new IllegalArgumentException("Unknown PSST_EXCHANGE " + exchange);
+        }
+
+        //the pipe exchange needs the worker.
+        if (pipeExchange || Boolean.parseBoolean(System.getProperty("PSST_WORKER", "false"))) {
+            System.out.println("Using a persistent psst worker for the SCED.");
+            worker = new PSSTWorker(processDir,
+                    Long.parseLong(System.getProperty("PSST_WORKER_TIMEOUT", "600000")));
+        } else {
+            worker = null;
+        }
     }
 
     /**
@@ -124,6 +202,8 @@ public class PSSTSCED implements SCED {
 
 
         hasSolution = new int[H];
+        resultsParser.setOutput(dailyLMP, dailyCommitment, productionCost, startupCost,
+                shutdownCost, voltageAngles, hasSolution);
     }
 
     /**
@@ -180,6 +260,26 @@ public class PSSTSCED implements SCED {
         c.convertM(dailyPriceSensitiveDemand, baseS);
     }
 
+    /**
+     * Write the unit commitment and the reference model for the next solve,
+     * to the files or, with -DPSST_EXCHANGE=pipe, to memory.
+     *
+     * @param genCoCommitments commitment of each GenCo, by hour.
+     * @param demand load by LSE and hour.
+     * @param day day of the simulation.
+     */
+    public void writeInput(List<CommitmentDecision> genCoCommitments, double[][] demand, int day)
+            throws AMESMarketException {
+        this.day = day;
+        if (pipeExchange) {
+            ucVectorText = dfw.genCommitmentsToString(genCoCommitments);
+            refModelText = dfw.scenDatToString(ames, day, demand, hoursPerDay);
+        } else {
+            dfw.writeGenCommitments(genCoCommitments, ucVectorFile);
+            dfw.writeScenDatFile(refModelFile, ames, day, demand, hoursPerDay);
+        }
+    }
+
     /* (non-Javadoc)
      * @see amesmarket.SCED#solveOPF()
      */
@@ -192,14 +292,31 @@ public class PSSTSCED implements SCED {
         //allocate new arrays for this solution.
         createSpaceForSols();
 
+        if (pipeExchange) {
+            solveThroughPipe();
+            return;
+        }
+
         //Bootstrap system call to run the SCED.py
         try {
-            int resCode = runPSSTSCED();
-            System.out.println("SCED Result code: " + resCode);
-            if (resCode != 0) {
-                throw new RuntimeException(
-                        "External SCEC exited with non-zero result code "
-                                + resCode);
+            SolverCache.Key key = null;
+            if (cache.isEnabled()) {
+                key = new SolverCache.Key(CACHE_NAME).add(ucVectorFile).add(refModelFile);
+            }
+            if (key != null && cache.restore(key, scedFile)) {
+                System.out.println("SCED results from the solver cache.");
+                lastRun = null;
+            } else {
+                int resCode = runPSSTSCED();
+                System.out.println("SCED Result code: " + resCode);
+                if (resCode != 0) {
+                    throw new RuntimeException(
+                            "External SCEC exited with non-zero result code "
+                                    + resCode + ". Last output:\n" + lastRun.getOutputTail());
+                }
+                if (key != null) {
+                    cache.put(key, scedFile);
+                }
             }
         } catch (IOException e1) {
             throw new AMESMarketException(e1);
@@ -208,6 +325,7 @@ public class PSSTSCED implements SCED {
         }
 
         //read result file
+        long parseStart = System.nanoTime();
         try {
             readResults(scedFile);
             computeBranchFlow();
@@ -215,13 +333,69 @@ public class PSSTSCED implements SCED {
         } catch (Exception e) {
             throw new AMESMarketException(e); //FIXME handle the exception sensibly.
         }
+        if (lastRun != null) {
+            lastRun.parsed(parseStart);
+        }
 
         cleanup();
     }
 
 
 
+    /**
+     * Solve with the input written by {@link #writeInput}, passing it to the
+     * worker and reading the results back without touching the disk.
+     */
+    private void solveThroughPipe() throws AMESMarketException {
+        if (ucVectorText == null || refModelText == null) {
+            throw new IllegalStateException("No SCED input written");
+        }
+        lastRun = null;
+        SolverCache.Key key = null;
+        String results = null;
+        if (cache.isEnabled()) {
+            key = new SolverCache.Key(CACHE_NAME).add(ucVectorText).add(refModelText);
+            results = cache.get(key);
+        }
+        if (results != null) {
+            System.out.println("SCED results from the solver cache.");
+        } else {
+            try {
+                long t0 = PhaseEvent.begin();
+                results = worker.sced(ucVectorText, refModelText);
+                PhaseEvent.end(Phase.EXTERNAL_SOLVE, day, -1, 0, t0);
+            } catch (IOException e) {
+                throw new AMESMarketException(e);
+            } catch (InterruptedException e) {
+                throw new AMESMarketException(e);
+            }
+            if (key != null) {
+                cache.put(key, results);
+            }
+        }
+        ucVectorText = null;
+        refModelText = null;
+
+        try {
+            long t0 = PhaseEvent.begin();
+            resultsParser.read(results);
+            PhaseEvent.end(Phase.PARSE_RESULTS, day, -1, results.length(), t0);
+            computeBranchFlow();
+            convertToSI();
+        } catch (Exception e) {
+            throw new AMESMarketException(e);
+        }
+    }
+
     private int runPSSTSCED() throws IOException, InterruptedException {
+        long t0 = PhaseEvent.begin();
+        if (worker != null) {
+            lastRun = null;
+            worker.sced(ucVectorFile, refModelFile, scedFile);
+            PhaseEvent.end(Phase.EXTERNAL_SOLVE, day, -1, 0, t0);
+            return 0;
+        }
+
         //Process Builder.
         ProcessBuilder pb = new ProcessBuilder(
                 "psst",
@@ -230,32 +404,20 @@ public class PSSTSCED implements SCED {
                 "--data", "'" + refModelFile.getAbsolutePath() + "'",
                 "--output", "'" + scedFile.getAbsolutePath() + "'"
         );
-        pb.directory(scedResourcesDir);
-
-        Process p = pb.start();
+        pb.directory(processDir);
 
-        BufferedReader stdInput = new BufferedReader(new
-                InputStreamReader(p.getInputStream()));
-
-        BufferedReader stdError = new BufferedReader(new
-                InputStreamReader(p.getErrorStream()));
-
-        // read the output from the command
-        String s = null;
-        System.out.println("Here is the standard output of the command:\n");
-        while ((s = stdInput.readLine()) != null) {
-            System.out.println(s);
-        }
+        lastRun = new ExternalProcess("psst sced", pb).run();
+        PhaseEvent.end(Phase.EXTERNAL_SOLVE, day, -1, 0, t0);
+        return lastRun.getExitCode();
+    }
 
-        // read any errors from the attempted command
-        System.err.println("Here is the standard error of the command (if any):\n");
-        while ((s = stdError.readLine()) != null) {
-            System.out.println(s);
+    /**
+     * Stop the psst worker, if there is one. Called at the end of the run.
+     */
+    public void close() throws InterruptedException {
+        if (worker != null) {
+            worker.close();
         }
-
-        int resCode = p.waitFor();
-
-        return resCode;
     }
 
     private void cleanup() {
@@ -286,8 +448,9 @@ public class PSSTSCED implements SCED {
     }
 
     private void readResults(File in) throws BadDataFileFormatException {
-        SCEDReader scedr = new SCEDReader();
-        scedr.read(in);
+        long t0 = PhaseEvent.begin();
+        resultsParser.read(in);
+        PhaseEvent.end(Phase.PARSE_RESULTS, day, -1, in.length(), t0);
     }
 
     /**
@@ -380,268 +543,4 @@ public class PSSTSCED implements SCED {
         return productionCost;
     }
     ////////////////////END SCED///////////////////////////
-
-    /**
-     * Helper class to read the data file. It modifies the
-     * fields of the its parent class as it reads.
-     * @author Sean L. Mooney
-     */
-    private class SCEDReader extends AbstractConfigFileReader<Void> {
-
-        /**
-         * Read the LMPs for each zone. Will need to divide by the baseS parameter to get these values to sensible $/MWh.
-         */
-        private void readLMP() throws BadDataFileFormatException {
-            double[][] lmp = dailyLMP; //don't lookup the parent reference all the time.
-            do {
-                move(true);
-                if(endOfSection(LMP)) break;
-
-                //This section is formatted a little differently than the gencos.
-                String[] p = currentLine.split(DELIM);
-                Support.trimAllStrings(p);
-
-                //assume p[0] looks like 'BusN'
-                // TODO - fix below for more than 9 buses
-                p[0] = p[0].substring(p[0].length() - 1, p[0].length());
-                int h = stoi(p[1]) - 1; //adjust for array index
-                int b = stoi(p[0]) - 1;
-                //deal with the current line to find the lmp.
-                lmp[h][b] = stod(p[2]);
-                //sced.lmp[branch][hour] ?or the other way around = value
-            }while(true);
-        }
-
-        /**
-         * Read the dispatch level, in PU from PSST.
-         */
-        private void readGenCoResults() throws BadDataFileFormatException {
-            double[][] dispatch = dailyCommitment; //don't lookup the parent reference all the time.
-            double[][] shutdownCost = PSSTSCED.this.shutdownCost;
-            double[][] startupCost = PSSTSCED.this.startupCost;
-            double[][] productionCost = PSSTSCED.this.productionCost;
-
-
-            //key/value indexes for the data in this section.
-            final int KIDX = 0;
-            final int VIDX = 1;
-            int curGenCoIdx = 0;
-            int curHour = 0;
-
-            do {
-                move(true);
-                if(endOfSection(GENCO_RESULTS))
-                    break;
-
-                //first check for a 'new' genco line
-                //Assume the list of commitments for each GenCo is
-                // GenCoX where x is the index in the array/genco number
-                // followed by a list of genco elements.
-
-                if(currentLine.startsWith(GEN_CO_LABEL)){
-                    //lookup the label's idx
-                    GenAgent ga = ames.getGenAgentByName(currentLine);
-
-                    if(ga == null) {
-                        throw new BadDataFileFormatException(
-                                "Unknown GenCo " + currentLine + " in " + sourceFile.getPath());
-                    }
-
-                    curGenCoIdx = ga.getIndex();
-                } else {
-                    //should find either Hour, PowerGenerated, ProductionCost, StartupCost, or ShutdownCost.
-                    //these are all label ':' value
-                    String[] keyAndValue = splitKeyValue(DELIM, currentLine, true);
-                    try{
-                        if(HOUR.equals(keyAndValue[KIDX])) {
-                            curHour = Integer.parseInt(keyAndValue[VIDX]);
-                            if( curHour > 0 && curHour <= hoursPerDay )
-                                curHour = curHour -1; //adjust for array index repr.
-                            else
-                                throw new BadDataFileFormatException(lineNum,
-                                        "Invalid hour for GenCo" + curGenCoIdx +
-                                        " Encountered hour " + curHour);
-                        } else if (POWER_GEN.equals(keyAndValue[KIDX])) {  //PowerGenerated
-                            dispatch[curHour][curGenCoIdx] = Double.parseDouble(keyAndValue[VIDX]);
-                        } else if (PRODUCTION_COST.equals(keyAndValue[KIDX])) { //Production Cost
-                            productionCost[curHour][curGenCoIdx] = Double.parseDouble(keyAndValue[VIDX]);
-                        } else if (STARTUP_COST.equals(keyAndValue[KIDX])) { //Startup Cost
-                            startupCost[curHour][curGenCoIdx] = Double.parseDouble(keyAndValue[VIDX]);
-                        } else if (SHUTDOWN_COST.equals(keyAndValue[KIDX])) { //Shutdown Cost
-                            shutdownCost[curHour][curGenCoIdx] = Double.parseDouble(keyAndValue[VIDX]);
-                        } else {
-                            throw new BadDataFileFormatException(lineNum, "Unknown label " + keyAndValue[KIDX]);
-                        }
-                    } catch(NumberFormatException nfe) {
-                        //the only thing that throws a NumberFormatExecption is parsing the value of the key/value pairs.
-                        throw new BadDataFileFormatException(lineNum,
-                                "Invalid value " + keyAndValue[VIDX]);
-                    }
-                }
-
-            }while(true);
-        }
-
-        /**
-         * Read the voltage angle at each Bus, for each Hour, in radians.
-         */
-        private void readVoltageAngles() throws BadDataFileFormatException {
-            final int BUS_LEN = 3; //length of the word Bus
-
-            do {
-                int busNum = -1;
-                int hour = -1;
-                double voltageAngle = 0;
-
-                move(true);
-                if(endOfSection(VOLTAGE_ANGLES))
-                    break;
-
-                String[] p = currentLine.split(":");
-                Support.trimAllStrings(p);
-
-                if(p.length != 2){
-                    throw new BadDataFileFormatException("Expected BusX <hour> : <angle>. Found " + currentLine);
-                }
-
-                String[] busAndHour = p[0].split(WS_REG_EX);
-                Support.trimAllStrings(busAndHour);
-                if(busAndHour.length != 2) {
-                    throw new BadDataFileFormatException("Could not find and bus and hour in" + p[0] + ".");
-                }
-
-                //assume that each bus starts with the word Bus
-                try {
-                    busNum = Integer.parseInt(
-                            busAndHour[0].substring(BUS_LEN)
-                            );
-                } catch(NumberFormatException nfe){
-                    throw new BadDataFileFormatException(nfe);
-                }
-
-                //parse the hour
-                try {
-                    hour = Integer.parseInt( busAndHour[1] );
-                    hour = hour - 1; //adjust for the 1-24 representation in the data file.
-                } catch(NumberFormatException nfe){
-                    throw new BadDataFileFormatException(nfe);
-                }
-
-                //parse the actual angle.
-                try {
-                    voltageAngle = Double.parseDouble( p[1] );
-                } catch(NumberFormatException nfe){
-                    throw new BadDataFileFormatException(nfe);
-                }
-
-                voltageAngles[hour][busNum] = voltageAngle;
-            }while(true);
-        }
-
-        private void readBranchLMP() throws BadDataFileFormatException {
-            do {
-                move(true);
-                //deal with the current line to find the lmp.
-                //sced.lmp[branch][hour] ?or the other way around = value
-            }while(!endOfSection(BRANCH_LMP));
-        }
-
-        private void readPriceSensitiveDemand() throws BadDataFileFormatException {
-            do {
-                move(true);
-                //deal with the current line to find the lmp.
-                //sced.lmp[branch][hour] ?or the other way around = value
-            }while(!endOfSection(PRICE_SENSITIVE_DEMAND));
-        }
-
-        private void readHasSolution() throws BadDataFileFormatException {
-            int[] hasSols = hasSolution; //local copy.
-            move(true);
-            //assume the next line is vector with 1 entry for each hour.
-            String[] vs = currentLine.split("\\s+");
-            if(vs.length != hasSols.length)
-                throw new BadDataFileFormatException(
-                        String.format("Expected %d found %d in hasSolution vector from the external SCED.",
-                                hasSols.length, vs.length
-                                ));
-
-            //now that we know there are the expected number of hasSolution elems in vs.
-            for(int i = 0; i<hasSols.length; i++){
-                try{
-                    int s = Integer.parseInt(vs[i]);
-
-                    if(!(s == 0 || s==1)){
-                        throw new BadDataFileFormatException(lineNum,
-                                "Invalid hasSolution marker. Expected 0/1, got " + vs[i]);
-                    }
-
-                    hasSolution[i] = s;
-                }catch(NumberFormatException nfe){
-                    throw new BadDataFileFormatException(lineNum,
-                            "Invalid hasSolution marker. Expected 0/1, got " + vs[i]);
-                }
-
-            }
-
-            //Look for the section end marker
-            move(true);
-            if(!endOfSection(HAS_SOLUTION)){
-                throw new BadDataFileFormatException(lineNum,
-                        "Expected END" + HAS_SOLUTION + ". Found " + currentLine + "."
-                        );
-            }
-        }
-
-        private boolean endOfSection(String secName){
-            return (END + secName).equals(currentLine);
-        }
-
-        @Override
-        protected Void read() throws BadDataFileFormatException {
-
-            while (true) {
-                move(false);
-                if (currentLine == null)
-                    break;
-
-                if (LMP.equals(currentLine)) {
-                    readLMP();
-                } else if (GENCO_RESULTS.equals(currentLine)){
-                    readGenCoResults();
-                } else if (VOLTAGE_ANGLES.equals(currentLine)) {
-                    readVoltageAngles();
-                } else if (BRANCH_LMP.equals(currentLine)) {
-                    readBranchLMP();
-                } else if (PRICE_SENSITIVE_DEMAND.equals(currentLine)) {
-                    readPriceSensitiveDemand();
-                } else if (HAS_SOLUTION.equals(currentLine)) {
-                    readHasSolution();
-                } else {
-                    throw new BadDataFileFormatException(lineNum, currentLine);
-                }
-            }
-
-
-            return null;
-        }
-
-        private static final String LMP = "LMP";
-        private static final String GENCO_RESULTS = "GenCoResults";
-        private static final String VOLTAGE_ANGLES = "VOLTAGE_ANGLES";
-        private static final String BRANCH_LMP = "DAILY_BRANCH_LMP";
-        private static final String PRICE_SENSITIVE_DEMAND = "DAILY_PRICE_SENSITIVE_DEMAND";
-        private static final String HAS_SOLUTION = "HAS_SOLUTION";
-        private static final String HOUR = "Hour";
-        private static final String DELIM = ":";
-        //GenCo data labels/tokens
-        private static final String GEN_CO_LABEL = "GenCo";
-        private static final String POWER_GEN = "PowerGenerated";
-        private static final String PRODUCTION_COST = "ProductionCost";
-        private static final String STARTUP_COST = "StartupCost";
-        private static final String SHUTDOWN_COST = "ShutdownCost";
-        //End GenCo data labels.
-        private static final String END = "END_"; //section end marker
-
-    }
 }
-
@@ -12,11 +12,12 @@ import amesmarket.AMESMarketException;
 import amesmarket.GenAgent;
 import amesmarket.ISO;
 import amesmarket.LoadCaseControl;
-import amesmarket.LoadProfileCollection;
 import amesmarket.SCUC;
 import amesmarket.Support;
+import amesmarket.Workspace;
 import amesmarket.filereaders.BadDataFileFormatException;
 import amesmarket.extern.common.CommitmentDecision;
+import amesmarket.extern.common.ExternalProcess;
 
 /**
  *
@@ -52,6 +53,14 @@ public class PSSTSCUC implements SCUC {
      */
     private final PSSTConfig PSSTExt;
 
+    /**
+     * Kept for the whole run, so the static parts of the reference model
+     * are only rendered once.
+     */
+    private final DataFileWriter dfw;
+
+    private final Workspace workspace;
+
     public PSSTSCUC(ISO independentSystemOperator, AMESMarket model) {
         ames = model;
         iso = independentSystemOperator;
@@ -63,12 +72,15 @@ public class PSSTSCUC implements SCUC {
 
         //genSchedule=new int[numGenAgents][numHoursPerDay];
 
-        python_Input=new File("xfertoames.dat");
-        referenceModelDir=new File("SCUCresources/Models");
-        scenarioModelDir=new File("SCUCresources/ScenarioData");
+        //solver inputs and results in the run's workspace, models and scripts shared.
+        workspace = ames.getWorkspace();
+        python_Input=workspace.file("xfertoames.dat");
+        referenceModelDir=new File(Workspace.RESOURCES_DIR, "Models");
+        scenarioModelDir=workspace.file(Workspace.SCENARIO_DATA);
         referenceFile=new File(scenarioModelDir, "ReferenceModel.dat");
-        pyomoSolPrint=new File("SCUCresources/pyomosolprint.py");
-        runefSolPrint=new File("SCUCresources/runefsolprint.py");
+        pyomoSolPrint=new File(Workspace.RESOURCES_DIR, "pyomosolprint.py");
+        runefSolPrint=new File(Workspace.RESOURCES_DIR, "runefsolprint.py");
+        dfw = new DataFileWriter(workspace);
         //referenceModel=new File("SCUCresources/Models/ReferenceModel.py");
 
         switch(scucType) {
@@ -120,8 +132,6 @@ public class PSSTSCUC implements SCUC {
             }
         }
 
-        DataFileWriter dfw = new DataFileWriter();
-
         dfw.writeScenDatFile(referenceFile, ames, day, loadProfileLSEALL, ames.NUM_HOURS_PER_DAY_UC);
 
         LoadCaseControl loadCaseControl = ames.getLoadScenarioProvider().getLoadCaseControl();
@@ -132,48 +142,9 @@ public class PSSTSCUC implements SCUC {
         }
         dfw.writeScenarioStructures(loadCaseControl.getNumLoadScenarios(),scenProb);
 
-        double[][] scenarioLoadProfileLSE=new double[numLSEAgents][numHours];
-        double[][] nextDayScenarioLoadProfileLSE=new double[numLSEAgents][numHours];
-        double[][] scenarioLoadProfileLSEALL=new double[numLSEAgents][numHours+numHours];
-
-        for (int i = 0; i < loadCaseControl.getNumLoadScenarios(); i++) {
-            LoadProfileCollection scenario = loadCaseControl.getLoadScenario(i + 1);
-
-            for (int j = 0; j < numLSEAgents; j++) {
-                for (int k = 0; k < numHours; k++) {
-                    scenarioLoadProfileLSE[j][k] = scenario.get(day)
-                            .getLoadByHour(k)[j];
-                }
-
-            }
-
-            if(day<ames.DAY_MAX){
-
-                for (int j = 0; j < numLSEAgents; j++) {
-                    for (int k = 0; k < numHours; k++) {
-                        nextDayScenarioLoadProfileLSE[j][k] = scenario.get(day+1)
-                                .getLoadByHour(k)[j];
-                    }
-
-                }
-
-                for (int k=0; k < loadProfileLSE.length; k++) {
-                    System.arraycopy(scenarioLoadProfileLSE[k], 0, scenarioLoadProfileLSEALL[k], 0, scenarioLoadProfileLSE[k].length);
-                    System.arraycopy(nextDayScenarioLoadProfileLSE[k], 0, scenarioLoadProfileLSEALL[k], scenarioLoadProfileLSE[k].length, nextDayScenarioLoadProfileLSE[k].length);
-                }
-            } else {
-                for (int k=0; k < loadProfileLSE.length; k++) {
-                    System.arraycopy(scenarioLoadProfileLSE[k], 0, scenarioLoadProfileLSEALL[k], 0, scenarioLoadProfileLSE[k].length);
-                }
-            }
-
-
-            File fileObj = new File("SCUCresources/ScenarioData/Scen" + (i + 1)
-                    + ".dat");
-            dfw.writeScenDatFile(fileObj, ames, day, scenarioLoadProfileLSEALL, ames.NUM_HOURS_PER_DAY_UC);
-        }
+        dfw.writeScenarioDatFiles(ames, day, loadCaseControl.getAllLoadScenarios());
 
-        syscall(PSSTExt);
+        ExternalProcess.Result run = syscall(PSSTExt);
 
 
         //Read the data file back in to get the GenCo commitments.
@@ -182,6 +153,7 @@ public class PSSTSCUC implements SCUC {
                     python_Input.getPath()));
         }
 
+        long parseStart = System.nanoTime();
         System.out.println("Reading GenCo schedule from " + python_Input.getPath());
         java.util.Scanner raf = new Scanner(python_Input);
 
@@ -236,31 +208,24 @@ public class PSSTSCUC implements SCUC {
         });
 
         raf.close();
+        run.parsed(parseStart);
 
         cleanup();
         //END Read in GenCo commitments
     }
 
-    public void syscall(PSSTConfig runefConfig) throws IOException {
-        Process p = runefConfig.createPSSTProcess();
-
-        BufferedReader stdInput = new BufferedReader(new
-                InputStreamReader(p.getInputStream()));
-
-        BufferedReader stdError = new BufferedReader(new
-                InputStreamReader(p.getErrorStream()));
-
-        // read the output from the command
-        String s = null;
-        System.out.println("Here is the standard output of the command:\n");
-        while ((s = stdInput.readLine()) != null) {
-            System.out.println(s);
-        }
-
-        // read any errors from the attempted command
-        System.err.println("Here is the standard error of the command (if any):\n");
-        while ((s = stdError.readLine()) != null) {
-            System.out.println(s);
+    /**
+     * Run the external SCUC, see {@link ExternalProcess}.
+     */
+    public ExternalProcess.Result syscall(PSSTConfig runefConfig) throws IOException {
+        try {
+            //the solution writer puts xfertoames.dat in the working directory.
+            ProcessBuilder pb = runefConfig.createProcessBuilder();
+            pb.directory(workspace.processDir(null));
+            return new ExternalProcess("psst scuc", pb).run();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for the SCUC");
         }
     }
 
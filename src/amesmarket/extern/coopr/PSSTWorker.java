@@ -0,0 +1,401 @@
+/*
+ * FIXME <LICENCE>
+ */
+package amesmarket.extern.coopr;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import amesmarket.extern.common.ExternalProcess;
+import amesmarket.extern.common.LineRingBuffer;
+
+/**
+ * A long-lived 'psst worker' process, which solves one SCED after another
+ * so that Python, Pyomo and the solver are only started once per run
+ * instead of once per SCED.
+ *
+ * Requests and responses are tab separated lines on the worker's stdin and
+ * stdout (see the worker command of psst/cli.py). Everything the worker
+ * prints on stderr is passed on to System.out, and the last lines are kept
+ * for error messages (-DEXTERN_LOG_LINES, as for {@link ExternalProcess}).
+ *
+ * The worker is started on the first request. Before each SCED it is
+ * checked with a PING; a worker that has exited or does not answer in time
+ * is killed and started again. If the worker dies during a SCED, the SCED is
+ * retried once on a new worker.
+ *
+ * {@link #sced(String, String)} sends the unit commitment and the reference
+ * model through the pipe and gets the results back the same way, so nothing
+ * is written to disk on either side. Everything on the pipe is UTF-8, and
+ * the lengths of the texts that follow a request or a response are in bytes.
+ */
+public class PSSTWorker {
+
+    private static final String PING = "PING";
+    private static final String PONG = "PONG";
+    private static final String SCED = "SCED";
+    private static final String SCEDMEM = "SCEDMEM";
+    private static final String RESULT = "RESULT";
+    private static final String QUIT = "QUIT";
+    private static final String OK = "OK";
+    private static final String SEP = "\t";
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final byte[] NO_PAYLOAD = new byte[0];
+
+    /** Put on the response queue when the worker's stdout is closed. */
+    private static final String EOF = new String("EOF");
+
+    private final File dir;
+    private final List<String> command;
+    private final long pingTimeout;
+    private final long solveTimeout;
+
+    private volatile Process process; // killed by the shutdown hook too
+    private OutputStream toWorker;
+    private BlockingQueue<String> responses;
+    private Thread shutdownHook;
+    private final LineRingBuffer stderrTail = new LineRingBuffer(
+            Integer.parseInt(System.getProperty("EXTERN_LOG_LINES", "200")));
+
+    private int numStarts;
+    private int numRequests;
+
+    /**
+     * Worker running 'psst worker' in dir.
+     *
+     * @param dir working directory of the worker.
+     * @param solveTimeout longest wait for a SCED, in milliseconds.
+     */
+    public PSSTWorker(File dir, long solveTimeout) {
+        this(dir, Arrays.asList("psst", "worker"), 10000, solveTimeout);
+    }
+
+    /**
+     * @param dir working directory of the worker.
+     * @param command command line that starts the worker.
+     * @param pingTimeout longest wait for the answer to a PING, in milliseconds.
+     * @param solveTimeout longest wait for a SCED, in milliseconds.
+     */
+    public PSSTWorker(File dir, List<String> command, long pingTimeout, long solveTimeout) {
+        this.dir = dir;
+        this.command = new ArrayList<String>(command);
+        this.pingTimeout = pingTimeout;
+        this.solveTimeout = solveTimeout;
+    }
+
+    /**
+     * Solve the SCED, as 'psst sced --uc ucFile --data dataFile --output outFile'
+     * would.
+     *
+     * @throws IOException if the worker could not be started, reports an
+     * error, or fails twice.
+     */
+    public synchronized void sced(File ucFile, File dataFile, File outFile)
+            throws IOException, InterruptedException {
+        String request = SCED + SEP + ucFile.getAbsolutePath()
+                + SEP + dataFile.getAbsolutePath()
+                + SEP + outFile.getAbsolutePath();
+        String response = solve(request, NO_PAYLOAD);
+        if (!OK.equals(response)) {
+            throw error(response);
+        }
+    }
+
+    /**
+     * Solve the SCED for the text of a unit commitment file and of a
+     * reference model file, without going through files.
+     *
+     * @return text of the results file 'psst sced' would write.
+     * @throws IOException if the worker could not be started, reports an
+     * error, or fails twice.
+     */
+    public synchronized String sced(String uc, String data)
+            throws IOException, InterruptedException {
+        byte[] ucBytes = uc.getBytes(UTF8);
+        byte[] dataBytes = data.getBytes(UTF8);
+        byte[] payload = new byte[ucBytes.length + dataBytes.length];
+        System.arraycopy(ucBytes, 0, payload, 0, ucBytes.length);
+        System.arraycopy(dataBytes, 0, payload, ucBytes.length, dataBytes.length);
+        String request = SCEDMEM + SEP + ucBytes.length + SEP + dataBytes.length;
+        String response = solve(request, payload);
+        if (!response.startsWith(RESULT + SEP)) {
+            throw error(response);
+        }
+        return response.substring(RESULT.length() + SEP.length());
+    }
+
+    /**
+     * Send a SCED request, retrying once on a new worker if the worker fails.
+     */
+    private String solve(String request, byte[] payload)
+            throws IOException, InterruptedException {
+        try {
+            ensureHealthy();
+            return request(request, payload, solveTimeout);
+        } catch (WorkerFailure e) {
+            System.out.println("psst worker failed (" + e.getMessage() + "). Restarting it.");
+            restart();
+            return request(request, payload, solveTimeout);
+        }
+    }
+
+    private IOException error(String response) {
+        return new IOException("psst worker: " + response.replace(SEP, " ")
+                + ". Last output:\n" + stderrTail);
+    }
+
+    /**
+     * @return true if the worker is running and answers a PING.
+     */
+    public synchronized boolean ping() throws InterruptedException {
+        if (!isAlive()) {
+            return false;
+        }
+        try {
+            return PONG.equals(request(PING, NO_PAYLOAD, pingTimeout));
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Start the worker if it is not running, and restart it if it does not
+     * answer a PING.
+     */
+    private void ensureHealthy() throws IOException, InterruptedException {
+        if (!ping()) {
+            restart();
+            if (!PONG.equals(request(PING, NO_PAYLOAD, pingTimeout))) {
+                throw new IOException("psst worker does not answer");
+            }
+        }
+    }
+
+    private void restart() throws IOException {
+        kill();
+        start();
+    }
+
+    private void start() throws IOException {
+        ProcessBuilder pb = new ProcessBuilder(command);
+        pb.directory(dir);
+        final Process p = pb.start();
+        numStarts++;
+
+        final BlockingQueue<String> queue = new LinkedBlockingQueue<String>();
+        Thread out = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    InputStream in = new BufferedInputStream(p.getInputStream());
+                    String line;
+                    while ((line = readLine(in)) != null) {
+                        if (line.startsWith(RESULT + SEP)) {
+                            line = RESULT + SEP + readBytes(in,
+                                    Integer.parseInt(line.substring(RESULT.length() + SEP.length())));
+                        }
+                        queue.add(line);
+                    }
+                } catch (IOException e) {
+                    // the worker is gone
+                } catch (NumberFormatException e) {
+                    // garbled response, treat as gone
+                }
+                queue.add(EOF);
+            }
+        }, "psst-worker-stdout");
+        out.setDaemon(true);
+        out.start();
+        Thread err = new Thread(new Runnable() {
+            public void run() {
+                echo(p.getErrorStream(), stderrTail);
+            }
+        }, "psst-worker-stderr");
+        err.setDaemon(true);
+        err.start();
+
+        process = p;
+        toWorker = new BufferedOutputStream(p.getOutputStream());
+        responses = queue;
+
+        if (shutdownHook == null) {
+            shutdownHook = new Thread() {
+                @Override
+                public void run() {
+                    kill();
+                }
+            };
+            Runtime.getRuntime().addShutdownHook(shutdownHook);
+        }
+    }
+
+    /**
+     * Read a line, without its line terminator.
+     *
+     * @return the line, or null at the end of the stream.
+     */
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        int c;
+        while ((c = in.read()) != '\n') {
+            if (c < 0) {
+                if (line.size() == 0) {
+                    return null;
+                }
+                break;
+            }
+            line.write(c);
+        }
+        byte[] bytes = line.toByteArray();
+        int len = bytes.length;
+        if (len > 0 && bytes[len - 1] == '\r') {
+            len--;
+        }
+        return new String(bytes, 0, len, UTF8);
+    }
+
+    /**
+     * Read exactly n bytes.
+     */
+    private static String readBytes(InputStream in, int n) throws IOException {
+        byte[] buf = new byte[n];
+        int off = 0;
+        while (off < n) {
+            int len = in.read(buf, off, n - off);
+            if (len < 0) {
+                throw new EOFException();
+            }
+            off += len;
+        }
+        return new String(buf, UTF8);
+    }
+
+    private static void echo(InputStream in, LineRingBuffer tail) {
+        try {
+            BufferedReader r = new BufferedReader(new InputStreamReader(in));
+            String line;
+            while ((line = r.readLine()) != null) {
+                tail.add(line);
+                System.out.println(line);
+            }
+        } catch (IOException e) {
+            // the worker is gone
+        }
+    }
+
+    /**
+     * Send one request, followed by payload, and wait for the response.
+     *
+     * @throws WorkerFailure if the worker exits or does not answer in time,
+     * in which case it is killed.
+     */
+    private String request(String request, byte[] payload, long timeout)
+            throws WorkerFailure, InterruptedException {
+        numRequests++;
+        try {
+            toWorker.write((request + "\n").getBytes(UTF8));
+            toWorker.write(payload);
+            toWorker.flush();
+        } catch (IOException e) {
+            kill();
+            throw new WorkerFailure("cannot send request: " + e.getMessage());
+        }
+        String response = responses.poll(timeout, TimeUnit.MILLISECONDS);
+        if (response == null) {
+            kill();
+            throw new WorkerFailure("no response in " + timeout + " ms");
+        }
+        if (response == EOF) {
+            kill();
+            throw new WorkerFailure("worker exited");
+        }
+        return response;
+    }
+
+    private boolean isAlive() {
+        if (process == null) {
+            return false;
+        }
+        try {
+            process.exitValue();
+            return false;
+        } catch (IllegalThreadStateException e) {
+            return true;
+        }
+    }
+
+    private void kill() {
+        Process p = process;
+        if (p != null) {
+            p.destroy();
+            process = null;
+        }
+    }
+
+    /**
+     * Ask the worker to quit, and kill it if it does not within the PING
+     * timeout.
+     */
+    public synchronized void close() throws InterruptedException {
+        if (isAlive()) {
+            try {
+                toWorker.write((QUIT + "\n").getBytes(UTF8));
+                toWorker.flush();
+            } catch (IOException e) {
+                // already gone
+            }
+            long deadline = System.currentTimeMillis() + pingTimeout;
+            while (isAlive() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+        }
+        kill();
+        if (shutdownHook != null) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // shutting down already
+            }
+            shutdownHook = null;
+        }
+    }
+
+    /**
+     * @return number of times a worker process was started.
+     */
+    public int getNumStarts() {
+        return numStarts;
+    }
+
+    /**
+     * @return number of requests sent, PINGs included.
+     */
+    public int getNumRequests() {
+        return numRequests;
+    }
+
+    /**
+     * The worker exited or did not answer in time.
+     */
+    private static class WorkerFailure extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        WorkerFailure(String msg) {
+            super(msg);
+        }
+    }
+}
@@ -3,23 +3,21 @@
  */
 package amesmarket.extern.coopr;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.Reader;
 import java.util.Arrays;
 import java.util.List;
 
 import amesmarket.AMESMarket;
 import amesmarket.AMESMarketException;
-import amesmarket.GenAgent;
 import amesmarket.INIT;
+import amesmarket.PhaseEvent;
+import amesmarket.PhaseEvent.Phase;
 import amesmarket.SCED;
 import amesmarket.Support;
+import amesmarket.extern.common.ExternalProcess;
 import amesmarket.TransGrid;
-import amesmarket.filereaders.AbstractConfigFileReader;
+import amesmarket.Workspace;
 import amesmarket.filereaders.BadDataFileFormatException;
 
 /**
@@ -37,11 +35,17 @@ import amesmarket.filereaders.BadDataFileFormatException;
 public class PyomoSCED implements SCED {
 
     //TODO-XX : Make this client configurable
-    private final File scedResourcesDir = new File("SCUCresources");
+    private final File scedResourcesDir = Workspace.RESOURCES_DIR;
     private final File scedScript = new File("SCED.py");
     private final File ucVectorFile;
     private final File refModelFile;
     private final File scedFile;
+
+    /**
+     * Reads the results file into the solution arrays, kept for the whole
+     * run so its buffer is reused.
+     */
+    private final SCEDResultsParser resultsParser;
     
     private final AMESMarket ames;
 
@@ -73,6 +77,12 @@ public class PyomoSCED implements SCED {
     private final int H;
     private final boolean deleteFiles;
 
+    /**
+     * The last run of the external SCED, null if there is none yet or the
+     * SCED was solved by the psst worker.
+     */
+    private ExternalProcess.Result lastRun;
+
     /**
      * @param ames market instance begin used.
      * @param init init instance -- used to get the BaseS for PU/SI conversions.
@@ -109,6 +119,7 @@ public class PyomoSCED implements SCED {
         H = hoursPerDay; //shorter name for local refs.
 
         deleteFiles = ames.isDeleteIntermediateFiles();
+        resultsParser = new SCEDResultsParser(ames);
     }
 
     /**
@@ -128,6 +139,8 @@ public class PyomoSCED implements SCED {
 
 
         hasSolution = new int[H];
+        resultsParser.setOutput(dailyLMP, dailyCommitment, productionCost, startupCost,
+                shutdownCost, voltageAngles, hasSolution);
     }
 
     /**
@@ -203,7 +216,7 @@ public class PyomoSCED implements SCED {
             if (resCode != 0) {
                 throw new RuntimeException(
                         "External SCEC exited with non-zero result code "
-                                + resCode);
+                                + resCode + ". Last output:\n" + lastRun.getOutputTail());
             }
         } catch (IOException e1) {
             throw new AMESMarketException(e1);
@@ -212,6 +225,7 @@ public class PyomoSCED implements SCED {
         }
 
         //read result file
+        long parseStart = System.nanoTime();
         try {
             readResults(scedFile);
             computeBranchFlow();
@@ -219,6 +233,9 @@ public class PyomoSCED implements SCED {
         } catch (Exception e) {
             throw new AMESMarketException(e); //FIXME handle the exception sensibly.
         }
+        if (lastRun != null) {
+            lastRun.parsed(parseStart);
+        }
 
         cleanup();
     }
@@ -229,37 +246,17 @@ public class PyomoSCED implements SCED {
         //Process Builder.
         ProcessBuilder pb = new ProcessBuilder(
                 getPythonExec(),
-                scedScript.getPath(),
+                new File(scedResourcesDir, scedScript.getPath()).getAbsolutePath(),
                 "-f", "'" + ucVectorFile.getAbsolutePath() + "'",
                 "-r", "'" + refModelFile.getAbsolutePath() + "'",
                 "-o", "'" + scedFile.getAbsolutePath() + "'"
         );
-        pb.directory(scedResourcesDir);
-        
-        Process p = pb.start();
-
-        BufferedReader stdInput = new BufferedReader(new
-                InputStreamReader(p.getInputStream()));
-
-        BufferedReader stdError = new BufferedReader(new
-                InputStreamReader(p.getErrorStream()));
-        
-        // read the output from the command
-        String s = null;
-        System.out.println("Here is the standard output of the command:\n");
-        while ((s = stdInput.readLine()) != null) {
-            System.out.println(s);
-        }
+        pb.directory(ames.getWorkspace().processDir(scedResourcesDir));
 
-        // read any errors from the attempted command
-        System.err.println("Here is the standard error of the command (if any):\n");
-        while ((s = stdError.readLine()) != null) {
-            System.out.println(s);
-        }
-        
-        int resCode = p.waitFor();
-
-        return resCode;
+        long t0 = PhaseEvent.begin();
+        lastRun = new ExternalProcess("SCED.py", pb).run();
+        PhaseEvent.end(Phase.EXTERNAL_SOLVE, -1, -1, 0, t0);
+        return lastRun.getExitCode();
     }
 
     private void cleanup() {
@@ -290,8 +287,9 @@ public class PyomoSCED implements SCED {
     }
 
     private void readResults(File in) throws BadDataFileFormatException {
-        SCEDReader scedr = new SCEDReader();
-        scedr.read(in);
+        long t0 = PhaseEvent.begin();
+        resultsParser.read(in);
+        PhaseEvent.end(Phase.PARSE_RESULTS, -1, -1, in.length(), t0);
     }
 
     private String getPythonExec() {
@@ -397,267 +395,4 @@ public class PyomoSCED implements SCED {
         return productionCost;
     }
     ////////////////////END SCED///////////////////////////
-
-    /**
-     * Helper class to read the data file. It modifies the
-     * fields of the its parent class as it reads.
-     * @author Sean L. Mooney
-     */
-    private class SCEDReader extends AbstractConfigFileReader<Void> {
-
-        /**
-         * Read the LMPs for each zone. Will need to divide by the baseS parameter to get these values to sensible $/MWh.
-         */
-        private void readLMP() throws BadDataFileFormatException {
-            double[][] lmp = dailyLMP; //don't lookup the parent reference all the time.
-            do {
-                move(true);
-                if(endOfSection(LMP)) break;
-
-                //This section is formatted a little differently than the gencos.
-                String[] p = currentLine.split(DELIM);
-                Support.trimAllStrings(p);
-
-                //assume p[0] looks like 'BusN' 
-                // TODO - fix below for more than 9 buses
-                p[0] = p[0].substring(p[0].length() - 1, p[0].length());
-                int h = stoi(p[1]) - 1; //adjust for array index
-                int b = stoi(p[0]) - 1;
-                //deal with the current line to find the lmp.
-                lmp[h][b] = stod(p[2]);
-                //sced.lmp[branch][hour] ?or the other way around = value
-            }while(true);
-        }
-
-        /**
-         * Read the dispatch level, in PU from pyomo.
-         */
-        private void readGenCoResults() throws BadDataFileFormatException {
-            double[][] dispatch = dailyCommitment; //don't lookup the parent reference all the time.
-            double[][] shutdownCost = PyomoSCED.this.shutdownCost;
-            double[][] startupCost = PyomoSCED.this.startupCost;
-            double[][] productionCost = PyomoSCED.this.productionCost;
-
-
-            //key/value indexes for the data in this section.
-            final int KIDX = 0;
-            final int VIDX = 1;
-            int curGenCoIdx = 0;
-            int curHour = 0;
-
-            do {
-                move(true);
-                if(endOfSection(GENCO_RESULTS))
-                    break;
-
-                //first check for a 'new' genco line
-                //Assume the list of commitments for each GenCo is
-                // GenCoX where x is the index in the array/genco number
-                // followed by a list of genco elements.
-
-                if(currentLine.startsWith(GEN_CO_LABEL)){
-                    //lookup the label's idx
-                    GenAgent ga = ames.getGenAgentByName(currentLine);
-
-                    if(ga == null) {
-                        throw new BadDataFileFormatException(
-                                "Unknown GenCo " + currentLine + " in " + sourceFile.getPath());
-                    }
-
-                    curGenCoIdx = ga.getIndex();
-                } else {
-                    //should find either Hour, PowerGenerated, ProductionCost, StartupCost, or ShutdownCost.
-                    //these are all label ':' value
-                    String[] keyAndValue = splitKeyValue(DELIM, currentLine, true);
-                    try{
-                        if(HOUR.equals(keyAndValue[KIDX])) {
-                            curHour = Integer.parseInt(keyAndValue[VIDX]);
-                            if( curHour > 0 && curHour <= hoursPerDay )
-                                curHour = curHour -1; //adjust for array index repr.
-                            else
-                                throw new BadDataFileFormatException(lineNum,
-                                        "Invalid hour for GenCo" + curGenCoIdx +
-                                        " Encountered hour " + curHour);
-                        } else if (POWER_GEN.equals(keyAndValue[KIDX])) {  //PowerGenerated
-                            dispatch[curHour][curGenCoIdx] = Double.parseDouble(keyAndValue[VIDX]);
-                        } else if (PRODUCTION_COST.equals(keyAndValue[KIDX])) { //Production Cost
-                            productionCost[curHour][curGenCoIdx] = Double.parseDouble(keyAndValue[VIDX]);
-                        } else if (STARTUP_COST.equals(keyAndValue[KIDX])) { //Startup Cost
-                            startupCost[curHour][curGenCoIdx] = Double.parseDouble(keyAndValue[VIDX]);
-                        } else if (SHUTDOWN_COST.equals(keyAndValue[KIDX])) { //Shutdown Cost
-                            shutdownCost[curHour][curGenCoIdx] = Double.parseDouble(keyAndValue[VIDX]);
-                        } else {
-                            throw new BadDataFileFormatException(lineNum, "Unknown label " + keyAndValue[KIDX]);
-                        }
-                    } catch(NumberFormatException nfe) {
-                        //the only thing that throws a NumberFormatExecption is parsing the value of the key/value pairs.
-                        throw new BadDataFileFormatException(lineNum,
-                                "Invalid value " + keyAndValue[VIDX]);
-                    }
-                }
-
-            }while(true);
-        }
-
-        /**
-         * Read the voltage angle at each Bus, for each Hour, in radians.
-         */
-        private void readVoltageAngles() throws BadDataFileFormatException {
-            final int BUS_LEN = 3; //length of the word Bus
-
-            do {
-                int busNum = -1;
-                int hour = -1;
-                double voltageAngle = 0;
-
-                move(true);
-                if(endOfSection(VOLTAGE_ANGLES))
-                    break;
-
-                String[] p = currentLine.split(":");
-                Support.trimAllStrings(p);
-
-                if(p.length != 2){
-                    throw new BadDataFileFormatException("Expected BusX <hour> : <angle>. Found " + currentLine);
-                }
-
-                String[] busAndHour = p[0].split(WS_REG_EX);
-                Support.trimAllStrings(busAndHour);
-                if(busAndHour.length != 2) {
-                    throw new BadDataFileFormatException("Could not find and bus and hour in" + p[0] + ".");
-                }
-
-                //assume that each bus starts with the word Bus
-                try {
-                    busNum = Integer.parseInt(
-                            busAndHour[0].substring(BUS_LEN)
-                            );
-                } catch(NumberFormatException nfe){
-                    throw new BadDataFileFormatException(nfe);
-                }
-
-                //parse the hour
-                try {
-                    hour = Integer.parseInt( busAndHour[1] );
-                    hour = hour - 1; //adjust for the 1-24 representation in the data file.
-                } catch(NumberFormatException nfe){
-                    throw new BadDataFileFormatException(nfe);
-                }
-
-                //parse the actual angle.
-                try {
-                    voltageAngle = Double.parseDouble( p[1] );
-                } catch(NumberFormatException nfe){
-                    throw new BadDataFileFormatException(nfe);
-                }
-
-                voltageAngles[hour][busNum] = voltageAngle;
-            }while(true);
-        }
-
-        private void readBranchLMP() throws BadDataFileFormatException {
-            do {
-                move(true);
-                //deal with the current line to find the lmp.
-                //sced.lmp[branch][hour] ?or the other way around = value
-            }while(!endOfSection(BRANCH_LMP));
-        }
-
-        private void readPriceSensitiveDemand() throws BadDataFileFormatException {
-            do {
-                move(true);
-                //deal with the current line to find the lmp.
-                //sced.lmp[branch][hour] ?or the other way around = value
-            }while(!endOfSection(PRICE_SENSITIVE_DEMAND));
-        }
-
-        private void readHasSolution() throws BadDataFileFormatException {
-            int[] hasSols = hasSolution; //local copy.
-            move(true);
-            //assume the next line is vector with 1 entry for each hour.
-            String[] vs = currentLine.split("\\s+");
-            if(vs.length != hasSols.length)
-                throw new BadDataFileFormatException(
-                        String.format("Expected %d found %d in hasSolution vector from the external SCED.",
-                                hasSols.length, vs.length
-                                ));
-
-            //now that we know there are the expected number of hasSolution elems in vs.
-            for(int i = 0; i<hasSols.length; i++){
-                try{
-                    int s = Integer.parseInt(vs[i]);
-
-                    if(!(s == 0 || s==1)){
-                        throw new BadDataFileFormatException(lineNum,
-                                "Invalid hasSolution marker. Expected 0/1, got " + vs[i]);
-                    }
-
-                    hasSolution[i] = s;
-                }catch(NumberFormatException nfe){
-                    throw new BadDataFileFormatException(lineNum,
-                            "Invalid hasSolution marker. Expected 0/1, got " + vs[i]);
-                }
-
-            }
-
-            //Look for the section end marker
-            move(true);
-            if(!endOfSection(HAS_SOLUTION)){
-                throw new BadDataFileFormatException(lineNum,
-                        "Expected END" + HAS_SOLUTION + ". Found " + currentLine + "."
-                        );
-            }
-        }
-
-        private boolean endOfSection(String secName){
-            return (END + secName).equals(currentLine);
-        }
-
-        @Override
-        protected Void read() throws BadDataFileFormatException {
-
-            while (true) {
-                move(false);
-                if (currentLine == null)
-                    break;
-
-                if (LMP.equals(currentLine)) {
-                    readLMP();
-                } else if (GENCO_RESULTS.equals(currentLine)){
-                    readGenCoResults();
-                } else if (VOLTAGE_ANGLES.equals(currentLine)) {
-                    readVoltageAngles();
-                } else if (BRANCH_LMP.equals(currentLine)) {
-                    readBranchLMP();
-                } else if (PRICE_SENSITIVE_DEMAND.equals(currentLine)) {
-                    readPriceSensitiveDemand();
-                } else if (HAS_SOLUTION.equals(currentLine)) {
-                    readHasSolution();
-                } else {
-                    throw new BadDataFileFormatException(lineNum, currentLine);
-                }
-            }
-
-
-            return null;
-        }
-
-        private static final String LMP = "LMP";
-        private static final String GENCO_RESULTS = "GenCoResults";
-        private static final String VOLTAGE_ANGLES = "VOLTAGE_ANGLES";
-        private static final String BRANCH_LMP = "DAILY_BRANCH_LMP";
-        private static final String PRICE_SENSITIVE_DEMAND = "DAILY_PRICE_SENSITIVE_DEMAND";
-        private static final String HAS_SOLUTION = "HAS_SOLUTION";
-        private static final String HOUR = "Hour";
-        private static final String DELIM = ":";
-        //GenCo data labels/tokens
-        private static final String GEN_CO_LABEL = "GenCo";
-        private static final String POWER_GEN = "PowerGenerated";
-        private static final String PRODUCTION_COST = "ProductionCost";
-        private static final String STARTUP_COST = "StartupCost";
-        private static final String SHUTDOWN_COST = "ShutdownCost";
-        //End GenCo data labels.
-        private static final String END = "END_"; //section end marker
-
-    }
 }
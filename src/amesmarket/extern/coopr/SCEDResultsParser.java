@@ -0,0 +1,551 @@
+/*
+ * FIXME <LICENCE>
+ */
+package amesmarket.extern.coopr;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+
+import amesmarket.AMESMarket;
+import amesmarket.GenAgent;
+import amesmarket.filereaders.BadDataFileFormatException;
+import amesmarket.filereaders.IZoneIndexProvider;
+import amesmarket.filereaders.LineTokenizer;
+
+/**
+ * Reads the results file of the external SCED (see write_sced_results in
+ * SCED.py and psst) straight into the result arrays of the SCED.
+ *
+ * The file is read into a direct buffer, kept between solves, and decoded
+ * byte by byte: no line, token or key/value Strings are created, except
+ * for the name of each GenCo. The numbers are read in place by
+ * {@link LineTokenizer#parseDouble}, and are always the ones
+ * Double.parseDouble gives.
+ *
+ * The format is the one AbstractConfigFileReader read before: one item
+ * per line, '//' comments, blank lines ignored.
+ * <pre>
+ * LMP
+ * &lt;bus&gt; : &lt;hour&gt; : &lt;lmp&gt;
+ * END_LMP
+ * GenCoResults
+ * GenCo1
+ * Hour: 1
+ * PowerGenerated: 10.00
+ * ProductionCost: ..., StartupCost: ..., ShutdownCost: ...
+ * END_GenCoResults
+ * VOLTAGE_ANGLES
+ * Bus&lt;n&gt; &lt;hour&gt; : &lt;angle&gt;
+ * END_VOLTAGE_ANGLES
+ * DAILY_BRANCH_LMP ... END_DAILY_BRANCH_LMP              (ignored)
+ * DAILY_PRICE_SENSITIVE_DEMAND ... END_DAILY_PRICE_SENSITIVE_DEMAND (ignored)
+ * HAS_SOLUTION
+ * 1 1 ... 1
+ * END_HAS_SOLUTION
+ * </pre>
+ * Hours are 1-based in the file.
+ */
+public class SCEDResultsParser {
+
+    private static final Charset LATIN1 = Charset.forName("ISO-8859-1");
+
+    private static final byte[] LMP = bytes("LMP");
+    private static final byte[] GENCO_RESULTS = bytes("GenCoResults");
+    private static final byte[] VOLTAGE_ANGLES = bytes("VOLTAGE_ANGLES");
+    private static final byte[] BRANCH_LMP = bytes("DAILY_BRANCH_LMP");
+    private static final byte[] PRICE_SENSITIVE_DEMAND = bytes("DAILY_PRICE_SENSITIVE_DEMAND");
+    private static final byte[] HAS_SOLUTION = bytes("HAS_SOLUTION");
+    private static final byte[] HOUR = bytes("Hour");
+    //GenCo data labels/tokens
+    private static final byte[] GEN_CO_LABEL = bytes("GenCo");
+    private static final byte[] POWER_GEN = bytes("PowerGenerated");
+    private static final byte[] PRODUCTION_COST = bytes("ProductionCost");
+    private static final byte[] STARTUP_COST = bytes("StartupCost");
+    private static final byte[] SHUTDOWN_COST = bytes("ShutdownCost");
+    private static final byte[] BUS = bytes("Bus");
+    private static final byte[] END = bytes("END_"); //section end marker
+
+    /** GenCo index by name. */
+    private final IZoneIndexProvider genCoIndex;
+
+    private double[][] lmp;
+    private double[][] dispatch;
+    private double[][] productionCost;
+    private double[][] startupCost;
+    private double[][] shutdownCost;
+    private double[][] voltageAngles;
+    private int[] hasSolution;
+
+    /** Kept for the next file, and grown when a file does not fit. */
+    private ByteBuffer fileBuf;
+
+    //state of the current read.
+    private ByteBuffer buf;
+    private File source;
+    private int lineNum;
+    private int pos;       //start of the next line
+    private int lineStart; //current line, trimmed and without comment
+    private int lineEnd;
+    private int p;         //position in the current line
+
+    /**
+     * @param ames market, to look the GenCos up by name.
+     */
+    public SCEDResultsParser(final AMESMarket ames) {
+        this(new IZoneIndexProvider() {
+            @Override
+            public int get(String name) {
+                GenAgent ga = ames.getGenAgentByName(name);
+                return ga == null ? -1 : ga.getIndex();
+            }
+
+            @Override
+            public boolean hasIndexForName(String name) {
+                return ames.getGenAgentByName(name) != null;
+            }
+
+            @Override
+            public int getNumZones() {
+                return ames.getNumGenAgents();
+            }
+        });
+    }
+
+    /**
+     * @param genCoIndex array index of each GenCo, by name.
+     */
+    public SCEDResultsParser(IZoneIndexProvider genCoIndex) {
+        this.genCoIndex = genCoIndex;
+    }
+
+    /**
+     * Set the arrays the next read fills, indexed by hour and then by
+     * bus or GenCo index.
+     */
+    public void setOutput(double[][] lmp, double[][] dispatch, double[][] productionCost,
+            double[][] startupCost, double[][] shutdownCost, double[][] voltageAngles,
+            int[] hasSolution) {
+        this.lmp = lmp;
+        this.dispatch = dispatch;
+        this.productionCost = productionCost;
+        this.startupCost = startupCost;
+        this.shutdownCost = shutdownCost;
+        this.voltageAngles = voltageAngles;
+        this.hasSolution = hasSolution;
+    }
+
+    /**
+     * Read a results file.
+     */
+    public void read(File in) throws BadDataFileFormatException {
+        FileInputStream fin = null;
+        try {
+            fin = new FileInputStream(in);
+            FileChannel ch = fin.getChannel();
+            long size = ch.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new BadDataFileFormatException(in, 0, "File too large");
+            }
+            if (fileBuf == null || fileBuf.capacity() < size) {
+                fileBuf = ByteBuffer.allocateDirect((int) Math.max(size, 64 * 1024));
+            }
+            fileBuf.clear();
+            fileBuf.limit((int) size);
+            while (fileBuf.hasRemaining()) {
+                if (ch.read(fileBuf) < 0) {
+                    break; //truncated while reading, parse what is there.
+                }
+            }
+            fileBuf.flip();
+        } catch (IOException e) {
+            throw new BadDataFileFormatException(in, 0, e);
+        } finally {
+            if (fin != null) {
+                try {
+                    fin.close();
+                } catch (IOException e) {
+                    //nothing left to read.
+                }
+            }
+        }
+        read(fileBuf, in);
+    }
+
+    /**
+     * Read the text of a results file, as the psst worker returns it.
+     */
+    public void read(String text) throws BadDataFileFormatException {
+        read(ByteBuffer.wrap(text.getBytes(LATIN1)), null);
+    }
+
+    private void read(ByteBuffer b, File src) throws BadDataFileFormatException {
+        if (lmp == null) {
+            throw new IllegalStateException("No output arrays set");
+        }
+        buf = b;
+        source = src;
+        lineNum = 0;
+        pos = b.position();
+        try {
+            while (nextLine()) {
+                if (lineIs(LMP)) {
+                    readLMP();
+                } else if (lineIs(GENCO_RESULTS)) {
+                    readGenCoResults();
+                } else if (lineIs(VOLTAGE_ANGLES)) {
+                    readVoltageAngles();
+                } else if (lineIs(BRANCH_LMP)) {
+                    skipSection(BRANCH_LMP);
+                } else if (lineIs(PRICE_SENSITIVE_DEMAND)) {
+                    skipSection(PRICE_SENSITIVE_DEMAND);
+                } else if (lineIs(HAS_SOLUTION)) {
+                    readHasSolution();
+                } else {
+                    throw error(line());
+                }
+            }
+        } finally {
+            buf = null;
+        }
+    }
+
+    /**
+     * Read the LMPs for each zone. Will need to divide by the baseS parameter to get these values to sensible $/MWh.
+     */
+    private void readLMP() throws BadDataFileFormatException {
+        while (nextSectionLine(LMP)) {
+            //the bus is the number at the end of the first field, 'N' or 'BusN'.
+            int colon = indexOf(':');
+            int end = colon;
+            while (end > p && isSpace(buf.get(end - 1))) {
+                end--;
+            }
+            int start = end;
+            while (start > p && isDigit(buf.get(start - 1))) {
+                start--;
+            }
+            if (start == end) {
+                throw error("Expected a bus number in " + line());
+            }
+            int b = parseInt(start, end) - 1;
+            p = colon + 1;
+            int h = nextInt() - 1; //adjust for array index
+            expect(':');
+            double v = nextDouble();
+            check(h, lmp.length, "hour");
+            check(b, lmp[h].length, "bus");
+            lmp[h][b] = v;
+        }
+    }
+
+    /**
+     * Read the dispatch level, in PU, and the costs of each GenCo.
+     */
+    private void readGenCoResults() throws BadDataFileFormatException {
+        int curGenCoIdx = 0;
+        int curHour = 0;
+        while (nextSectionLine(GENCO_RESULTS)) {
+            //a GenCo name starts the results of each GenCo.
+            if (startsWith(GEN_CO_LABEL)) {
+                String name = line();
+                curGenCoIdx = genCoIndex.get(name);
+                if (curGenCoIdx < 0) {
+                    throw error("Unknown GenCo " + name);
+                }
+                continue;
+            }
+
+            //label ':' value
+            int colon = indexOf(':');
+            int keyEnd = colon;
+            while (keyEnd > p && isSpace(buf.get(keyEnd - 1))) {
+                keyEnd--;
+            }
+            p = colon + 1;
+            if (regionIs(lineStart, keyEnd, HOUR)) {
+                curHour = nextInt();
+                if (curHour <= 0 || curHour > dispatch.length) {
+                    throw error("Invalid hour for GenCo" + curGenCoIdx
+                            + " Encountered hour " + curHour);
+                }
+                curHour = curHour - 1; //adjust for array index repr.
+                endOfLine();
+                continue;
+            }
+            double[][] target;
+            if (regionIs(lineStart, keyEnd, POWER_GEN)) {
+                target = dispatch;
+            } else if (regionIs(lineStart, keyEnd, PRODUCTION_COST)) {
+                target = productionCost;
+            } else if (regionIs(lineStart, keyEnd, STARTUP_COST)) {
+                target = startupCost;
+            } else if (regionIs(lineStart, keyEnd, SHUTDOWN_COST)) {
+                target = shutdownCost;
+            } else {
+                throw error("Unknown label " + string(lineStart, keyEnd));
+            }
+            double v = nextDouble();
+            endOfLine();
+            check(curGenCoIdx, target[curHour].length, "GenCo");
+            target[curHour][curGenCoIdx] = v;
+        }
+    }
+
+    /**
+     * Read the voltage angle at each Bus, for each Hour, in radians.
+     */
+    private void readVoltageAngles() throws BadDataFileFormatException {
+        while (nextSectionLine(VOLTAGE_ANGLES)) {
+            //assume that each bus starts with the word Bus
+            if (!startsWith(BUS)) {
+                throw error("Expected BusX <hour> : <angle>. Found " + line());
+            }
+            p += BUS.length;
+            int busNum = nextInt();
+            int hour = nextInt() - 1; //adjust for the 1-24 representation in the data file.
+            expect(':');
+            double angle = nextDouble();
+            endOfLine();
+            check(hour, voltageAngles.length, "hour");
+            check(busNum, voltageAngles[hour].length, "bus");
+            voltageAngles[hour][busNum] = angle;
+        }
+    }
+
+    private void readHasSolution() throws BadDataFileFormatException {
+        int[] hasSols = hasSolution; //local copy.
+        //assume the next line is vector with 1 entry for each hour.
+        if (!nextLine()) {
+            throw error("Unexpected end of file");
+        }
+        int n = 0;
+        skipSpace();
+        while (p < lineEnd) {
+            int s = nextInt();
+            if (n >= hasSols.length) {
+                n++;
+                break;
+            }
+            if (!(s == 0 || s == 1)) {
+                throw error("Invalid hasSolution marker. Expected 0/1, got " + s);
+            }
+            hasSols[n++] = s;
+            skipSpace();
+        }
+        if (n != hasSols.length) {
+            throw error(String.format(
+                    "Expected %d found %d in hasSolution vector from the external SCED.",
+                    hasSols.length, n));
+        }
+
+        //Look for the section end marker
+        if (!nextLine() || !isEnd(HAS_SOLUTION)) {
+            throw error("Expected END_HAS_SOLUTION.");
+        }
+    }
+
+    private void skipSection(byte[] name) throws BadDataFileFormatException {
+        while (nextSectionLine(name)) {
+            //nothing in these sections is used.
+        }
+    }
+
+    /**
+     * Move to the next line of a section.
+     *
+     * @return false at the end of the section.
+     */
+    private boolean nextSectionLine(byte[] name) throws BadDataFileFormatException {
+        if (!nextLine()) {
+            throw error("Unexpected end of file");
+        }
+        return !isEnd(name);
+    }
+
+    /**
+     * Move to the next line that is not blank once comments and white space
+     * are removed.
+     *
+     * @return false at the end of the input.
+     */
+    private boolean nextLine() {
+        int limit = buf.limit();
+        while (pos < limit) {
+            lineNum++;
+            int start = pos;
+            int end = start;
+            while (end < limit && buf.get(end) != '\n') {
+                end++;
+            }
+            pos = end + 1;
+            //remove a comment
+            for (int i = start; i + 1 < end; i++) {
+                if (buf.get(i) == '/' && buf.get(i + 1) == '/') {
+                    end = i;
+                    break;
+                }
+            }
+            while (start < end && isSpace(buf.get(start))) {
+                start++;
+            }
+            while (end > start && isSpace(buf.get(end - 1))) {
+                end--;
+            }
+            if (start < end) {
+                lineStart = start;
+                lineEnd = end;
+                p = start;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean lineIs(byte[] s) {
+        return regionIs(lineStart, lineEnd, s);
+    }
+
+    private boolean isEnd(byte[] name) {
+        return lineEnd - lineStart == END.length + name.length
+                && regionStarts(lineStart, END)
+                && regionStarts(lineStart + END.length, name);
+    }
+
+    private boolean startsWith(byte[] s) {
+        return lineEnd - lineStart >= s.length && regionStarts(lineStart, s);
+    }
+
+    private boolean regionIs(int start, int end, byte[] s) {
+        return end - start == s.length && regionStarts(start, s);
+    }
+
+    private boolean regionStarts(int start, byte[] s) {
+        for (int i = 0; i < s.length; i++) {
+            if (buf.get(start + i) != s[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int indexOf(char c) throws BadDataFileFormatException {
+        for (int i = p; i < lineEnd; i++) {
+            if (buf.get(i) == c) {
+                return i;
+            }
+        }
+        throw error("Expected '" + c + "' in " + line());
+    }
+
+    private void expect(char c) throws BadDataFileFormatException {
+        skipSpace();
+        if (p >= lineEnd || buf.get(p) != c) {
+            throw error("Expected '" + c + "' in " + line());
+        }
+        p++;
+    }
+
+    private void endOfLine() throws BadDataFileFormatException {
+        skipSpace();
+        if (p != lineEnd) {
+            throw error("Unexpected " + string(p, lineEnd) + " in " + line());
+        }
+    }
+
+    private void skipSpace() {
+        while (p < lineEnd && isSpace(buf.get(p))) {
+            p++;
+        }
+    }
+
+    private int nextInt() throws BadDataFileFormatException {
+        skipSpace();
+        int start = p;
+        if (p < lineEnd && (buf.get(p) == '-' || buf.get(p) == '+')) {
+            p++;
+        }
+        while (p < lineEnd && isDigit(buf.get(p))) {
+            p++;
+        }
+        return parseInt(start, p);
+    }
+
+    private int parseInt(int start, int end) throws BadDataFileFormatException {
+        boolean neg = false;
+        int i = start;
+        if (i < end && (buf.get(i) == '-' || buf.get(i) == '+')) {
+            neg = buf.get(i) == '-';
+            i++;
+        }
+        if (i == end || end - i > 9) {
+            throw error("Expected \"" + string(start, end) + "\" to be an integer");
+        }
+        int v = 0;
+        for (; i < end; i++) {
+            v = v * 10 + (buf.get(i) - '0');
+        }
+        return neg ? -v : v;
+    }
+
+    /**
+     * Read the next number, up to white space, ':' or the end of the line.
+     */
+    private double nextDouble() throws BadDataFileFormatException {
+        skipSpace();
+        int start = p;
+        while (p < lineEnd && !isSpace(buf.get(p)) && buf.get(p) != ':') {
+            p++;
+        }
+        int end = p;
+        if (start == end) {
+            throw error("Expected a decimal in " + line());
+        }
+        try {
+            return LineTokenizer.parseDouble(buf, start, end, LATIN1);
+        } catch (NumberFormatException nfe) {
+            throw new BadDataFileFormatException(source, lineNum, "Expected \""
+                    + string(start, end) + "\" to be a decimal", nfe);
+        }
+    }
+
+    private void check(int idx, int length, String what) throws BadDataFileFormatException {
+        if (idx < 0 || idx >= length) {
+            throw error("Invalid " + what + " in " + line());
+        }
+    }
+
+    private String line() {
+        return string(lineStart, lineEnd);
+    }
+
+    private String string(int start, int end) {
+        byte[] b = new byte[end - start];
+        for (int i = 0; i < b.length; i++) {
+            b[i] = buf.get(start + i);
+        }
+        return new String(b, LATIN1);
+    }
+
+    private BadDataFileFormatException error(String msg) {
+        return new BadDataFileFormatException(source, lineNum, msg);
+    }
+
+    private static boolean isDigit(byte c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * White space as String.trim sees it.
+     */
+    private static boolean isSpace(byte c) {
+        return (c & 0xff) <= ' ';
+    }
+
+    private static byte[] bytes(String s) {
+        return s.getBytes(LATIN1);
+    }
+}
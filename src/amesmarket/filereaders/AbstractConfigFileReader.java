@@ -3,9 +3,9 @@ package amesmarket.filereaders;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.Reader;
-import java.util.Scanner;
 
 import amesmarket.Support;
 
@@ -40,7 +40,7 @@ public abstract class AbstractConfigFileReader<T> {
     protected static final String WS_REG_EX = "\\s+";
 
 
-    private Scanner loadProfileReader;
+    private LineTokenizer tokens;
     private String commentMarker = "//";
 
     /**
@@ -89,15 +89,14 @@ public abstract class AbstractConfigFileReader<T> {
 
         try {
             this.sourceFile = file;
-            initialize(new Scanner(file));
+            initialize(new LineTokenizer(file));
             return read();
         } catch(FileNotFoundException fnfe){
             throw new BadDataFileFormatException("Could not find " + file.getPath());
+        } catch(IOException ioe){
+            throw new BadDataFileFormatException(file, 0, ioe);
         } catch (IllegalArgumentException il) {
             throw new BadDataFileFormatException(lineNum, currentLine, il);
-        } finally {
-            if(loadProfileReader != null)
-                loadProfileReader.close();
         }
     }
 
@@ -114,10 +113,11 @@ public abstract class AbstractConfigFileReader<T> {
             throw new IllegalArgumentException("InputStream may not be null");
         }
 
-        initialize(new Scanner(loadProfileStream));
-
         try{
+            initialize(LineTokenizer.of(loadProfileStream));
             return read();
+        }catch (IOException ioe) {
+            throw new BadDataFileFormatException(ioe);
         }catch (IllegalArgumentException il) {
             throw new BadDataFileFormatException(lineNum, currentLine, il);
         }
@@ -136,7 +136,11 @@ public abstract class AbstractConfigFileReader<T> {
             throw new IllegalArgumentException("InputStream may not be null");
         }
 
-        initialize(new Scanner(loadProfileStream));
+        try {
+            initialize(LineTokenizer.of(loadProfileStream));
+        } catch (IOException ioe) {
+            throw new BadDataFileFormatException(ioe);
+        }
 
         return read();
     }
@@ -147,14 +151,30 @@ public abstract class AbstractConfigFileReader<T> {
      *
      * And sub types with state that needs to be initialized before
      * reading a file <i>must</i> override this method to reset it's state
-     * and <i>must</i> call s.initialize(Scanner) to correctly
+     * and <i>must</i> call s.initialize(LineTokenizer) to correctly
      * initialize the parent class's (AbstractConfigFileReader) state.
      * @param s
      */
-    private void initialize(Scanner s){
+    private void initialize(LineTokenizer s){
         currentLine = null; //make sure we don't get old data on reuse
         lineNum = 0;
-        loadProfileReader = s;
+        s.setCommentMarker(commentMarker);
+        tokens = s;
+    }
+
+    /**
+     * Go on reading from another tokenizer, such as a part of the file
+     * read again. The line numbers are the tokenizer's; null drops the
+     * input, e.g. so that it is not kept in memory.
+     *
+     * @param s
+     */
+    protected void resume(LineTokenizer s) {
+        currentLine = null;
+        if (s != null) {
+            s.setCommentMarker(commentMarker);
+        }
+        tokens = s;
     }
 
     /**
@@ -176,27 +196,52 @@ public abstract class AbstractConfigFileReader<T> {
      */
     protected void move(boolean failOnEOF) throws BadDataFileFormatException {
         currentLine = null;
-        if(loadProfileReader.hasNextLine()){
-            do{ //read until we have non-blank line, or encounter the end of the file/stream.
-                ++lineNum;
-                currentLine = trimLine(loadProfileReader.nextLine());
-            }while( "".equals(currentLine) && loadProfileReader.hasNextLine() );
-
-            //See if we ran out file while reading for the next
-            //non-whitespace only line.
-            if( "".equals(currentLine) ){
-                currentLine = null;
+        while (tokens.nextLine()) { //read until we have non-blank line, or encounter the end of the file/stream.
+            lineNum = tokens.getLineNumber();
+            currentLine = trimLine(tokens.line());
+            if (!"".equals(currentLine)) {
+                break;
             }
-        }
-        else {
+            //ran out file while reading for the next non-whitespace only line.
             currentLine = null;
-       }
+        }
 
         if(currentLine == null && failOnEOF){
             throw new BadDataFileFormatException(sourceFile, lineNum, UNEXPECTED_EOF);
         }
     }
 
+    /**
+     * Move to the next non-blank line, like {@link #move(boolean)}, but
+     * without making a String of it. {@link #currentLine} is set to null;
+     * the line is read with the {@link #tokens()} methods.
+     *
+     * For the data lines of large files.
+     *
+     * @param failOnEOF if true, throw an exception if the end of file is
+     *            encountered.
+     * @return false at the end of the file.
+     * @throws BadDataFileFormatException if EOF encountered and should not have
+     *             been.
+     */
+    protected boolean moveToData(boolean failOnEOF) throws BadDataFileFormatException {
+        currentLine = null;
+        boolean found = tokens.nextNonBlankLine();
+        lineNum = tokens.getLineNumber();
+        if (!found && failOnEOF) {
+            throw new BadDataFileFormatException(sourceFile, lineNum, UNEXPECTED_EOF);
+        }
+        return found;
+    }
+
+    /**
+     * @return the tokenizer of the input being read, positioned on the
+     * current line.
+     */
+    protected LineTokenizer tokens() {
+        return tokens;
+    }
+
     /**
      * Parse a key/value pair line, where the key and value are seperated by a delim.
      *
@@ -23,22 +23,22 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.Reader;
-import java.io.StringReader;
 import java.util.ArrayList;
-import java.util.Map;
-import java.util.Scanner;
 
 import amesmarket.CaseFileData;
 import amesmarket.DefaultSimulationParameters;
 import amesmarket.CaseFileData.GenData;
 import amesmarket.NumberRecognizer;
 import amesmarket.SCUC;
-import amesmarket.Support;
 
 
 /**
  * Parse a case file.
  *
+ * The file is read in place with a {@link LineTokenizer}: the numbers of
+ * the data sections are parsed where they are, with no String made for
+ * them, and put in the tables of the {@link CaseFileData}.
+ *
  * TODO-XXX Make an instance of AbstractConfigFileReader.
  * @author Sean L. Mooney
  *
@@ -85,16 +85,20 @@ public class CaseFileReader {
     private static final String GEN_COST_START = "#GenCostStart";
     private static final String GEN_COST_END = "#GenCostEnd";
 
-
+    private static final String COMMENT = "//";
     private static final String WS_REG_EX = "\\s+";
+    private static final String TABLE_FORMAT = "%1$15.4f";
 
-    private SimpleLineReader inputReader;
+    private LineTokenizer tokens;
+    /**
+     * File being read, for the error messages. Null when reading a Reader.
+     */
+    private File sourceFile = null;
     /**
      * If opening from a file (instead of a reader) name of file.
      * Non absolute paths in the test case are relative to this file if not null.
      */
     private File testCaseFile = null;
-    private String currentLine = null;
 
     /**
      * Use this to convert int/doubles strings. It will handle
@@ -109,7 +113,8 @@ public class CaseFileReader {
      * @throws BadDataFileFormatException
      */
     public CaseFileData loadCaseFileData(final File testCaseFile) throws FileNotFoundException, IOException, BadDataFileFormatException {
-        inputReader = new SimpleLineReader(testCaseFile);
+        tokens = new LineTokenizer(testCaseFile);
+        sourceFile = testCaseFile;
         this.testCaseFile = testCaseFile;
         return loadCaseFileData(true);
     }
@@ -135,14 +140,19 @@ public class CaseFileReader {
      * @throws BadDataFileFormatException
      */
     protected CaseFileData loadCaseFileData(final Reader testCaseInput, boolean doFinishActions) throws BadDataFileFormatException {
-        inputReader = new SimpleLineReader(testCaseInput);
+        try {
+            tokens = LineTokenizer.of(testCaseInput);
+        } catch (IOException e) {
+            throw new BadDataFileFormatException(e);
+        }
+        sourceFile = null;
         return loadCaseFileData(doFinishActions);
     }
 
     /**
      * Load the case file data.
      *
-     * Assumes the internal inputReader has been initialized.
+     * Assumes the internal tokenizer has been initialized.
      * @param doFinishActions whether or not to run the {@link #finish(CaseFileData)} method.
      *        Should not be turned off for production. Useful for testing.
      * @throws BadDataFileFormatException
@@ -150,74 +160,84 @@ public class CaseFileReader {
     private CaseFileData loadCaseFileData(boolean doFinishActions) throws BadDataFileFormatException {
         CaseFileData testConf = new CaseFileData();
 
-        parseDataFile(testConf, doFinishActions);
+        try {
+            parseDataFile(testConf, doFinishActions);
+        } finally {
+            tokens = null; //let go of the mapping.
+        }
 
-        inputReader.close();
         return testConf;
     }
 
+    /**
+     * Move to the next line that is neither blank nor a comment.
+     * @return false at the end of the input.
+     */
     private boolean move() {
-        currentLine = inputReader.nextLine();
-        return currentLine != null;
+        while (tokens.nextNonBlankLine()) {
+            if (!tokens.startsWith(COMMENT)) {
+                return true;
+            }
+        }
+        return false;
     }
 
     private void match(String expected) throws BadDataFileFormatException {
-        if(!expected.equals(currentLine)) throw new BadDataFileFormatException(
-                inputReader.sourceFile, inputReader.lineNum,
-                "Expected " + expected + ". Found" + currentLine);
+        if(!move() || !tokens.is(expected)) throw bad(
+                "Expected " + expected + ". Found" + tokens.text());
     }
 
     private void parseDataFile(CaseFileData testConf, boolean doFinishActions) throws BadDataFileFormatException {
 
-        while (inputReader.hasNext() && move()) {
-            if(currentLine.startsWith(BASE_S)) {
+        while (move()) {
+            if(tokens.startsWith(BASE_S)) {
                 parseBASE_S(testConf);
-            } else if(currentLine.startsWith(MAX_DAY)) {
+            } else if(tokens.startsWith(MAX_DAY)) {
                 parseMaxDay(testConf);
-            } else if(currentLine.startsWith(RANDOM_SEED)) {
+            } else if(tokens.startsWith(RANDOM_SEED)) {
                 parseRandomSeed(testConf);
-            } else if(currentLine.startsWith(CAP_MARGIN)) {
+            } else if(tokens.startsWith(CAP_MARGIN)) {
                 parseReserveMargin(testConf);
-            } else if(currentLine.startsWith(SCUC_TYPE)) {
+            } else if(tokens.startsWith(SCUC_TYPE)) {
                 parseScucType(testConf);
-            } else if(currentLine.startsWith(LSE_DATA_SOURCE)) {
+            } else if(tokens.startsWith(LSE_DATA_SOURCE)) {
                 parseLSEDataSource(testConf);
-            } else if(currentLine.startsWith(LOAD_CASE_CONTROL)) {
+            } else if(tokens.startsWith(LOAD_CASE_CONTROL)) {
                 parseLoadCaseControlFile(testConf);
-            } else if(currentLine.startsWith(THRESH_PROB)) {
+            } else if(tokens.startsWith(THRESH_PROB)) {
                 parseThreshholdProbability(testConf);
-            } else if(currentLine.startsWith(BASE_V)) {
+            } else if(tokens.startsWith(BASE_V)) {
                 parseBASE_V(testConf);
-            } else if(currentLine.equals(NODE_DATA_START)) {
+            } else if(tokens.is(NODE_DATA_START)) {
                 parseNodeData(testConf);
-            } else if(currentLine.equals(BRANCH_DATA_START)) {
+            } else if(tokens.is(BRANCH_DATA_START)) {
                 parseBranchData(testConf);
-            } else if(currentLine.equals(GEN_DATA_START)) {
+            } else if(tokens.is(GEN_DATA_START)) {
                 parseGenData(testConf);
-            } else if(currentLine.equals(ALERT_GEN_START)) {
+            } else if(tokens.is(ALERT_GEN_START)) {
                 parseAlertGenCos(testConf);
-            } else if(currentLine.equals(SCUC_INPUT_DATA_START)) {
+            } else if(tokens.is(SCUC_INPUT_DATA_START)) {
                 parseScucInputData(testConf);
-            } else if(currentLine.equals(LSE_DATA_FIXED_DEM_START)) {
+            } else if(tokens.is(LSE_DATA_FIXED_DEM_START)) {
                 parseLSEFixedDemand(testConf);
-            } else if(currentLine.equals(LSE_DATA_PRICE_SENS_DEM_START)) {
+            } else if(tokens.is(LSE_DATA_PRICE_SENS_DEM_START)) {
                 parseLSEPSensDemand(testConf);
-            } else if(currentLine.equals(LSE_DATA_HYBRID_DEM_START)) {
+            } else if(tokens.is(LSE_DATA_HYBRID_DEM_START)) {
                 parseLSEHybDemand(testConf);
-            } else if(currentLine.equals(GEN_LEARNING_DATA_START)) {
+            } else if(tokens.is(GEN_LEARNING_DATA_START)) {
                 testConf.setHasGenLearningData(true);
                 parseGenLearningData(testConf);
-            } else if(currentLine.equals(ZONE_NAMES_START)){
+            } else if(tokens.is(ZONE_NAMES_START)){
                 parseZoneNames(testConf);
-            } else if(currentLine.equals(GEN_COST_START)) {
+            } else if(tokens.is(GEN_COST_START)) {
                 parseGenCoCosts(testConf);
-            } else if(currentLine.startsWith(RESERVE_REQUIREMENTS)) {
+            } else if(tokens.startsWith(RESERVE_REQUIREMENTS)) {
                 parseReserveRequirements(testConf);
-            } else if(currentLine.equals(GEN_FUELTYPE_START)) {
+            } else if(tokens.is(GEN_FUELTYPE_START)) {
                 parseGenCoFuelType(testConf);
             }
             else {
-                System.err.println("Unknown Line " + currentLine);
+                System.err.println("Unknown Line " + tokens.text());
             }
         }
 
@@ -265,21 +285,18 @@ public class CaseFileReader {
      *
      * <p>For example, argument "BASE_S 100" return "100".</p>
      *
-     * @param line
      * @param key
      * @return the value for the pair
      * @throws BadDataFileFormatException
      */
-    private String splitValueFromKey(String line, String key) throws BadDataFileFormatException {
+    private String splitValueFromKey(String key) throws BadDataFileFormatException {
         //Split the string on white space
-        line = line.trim();
-        String[] splits = line.split("\\s+");
+        String line = tokens.text();
+        String[] splits = line.split(WS_REG_EX);
         if(splits.length != 2) {
-            throw new BadDataFileFormatException(inputReader.sourceFile,
-                    inputReader.lineNum, "Expected key/value pair in " + line + ". Expected 2 items, found " + splits.length);
+            throw bad("Expected key/value pair in " + line + ". Expected 2 items, found " + splits.length);
         } else if(!splits[0].equals(key)) {
-            throw new BadDataFileFormatException(inputReader.sourceFile,
-                    inputReader.lineNum, "Expected key " + key + " in line "
+            throw bad("Expected key " + key + " in line "
                             + line + "Found key " + splits[0]);
         }
         return splits[1];
@@ -287,23 +304,23 @@ public class CaseFileReader {
 
     private void parseReserveRequirements(CaseFileData testConf) throws BadDataFileFormatException {
         testConf.reserveRequirements = Double.parseDouble(
-                             splitValueFromKey(currentLine, RESERVE_REQUIREMENTS));
+                             splitValueFromKey(RESERVE_REQUIREMENTS));
     }
-    
+
     private void parseBASE_S(CaseFileData testConf) throws BadDataFileFormatException {
         testConf.baseS = Double.parseDouble(
-                             splitValueFromKey(currentLine, BASE_S));
+                             splitValueFromKey(BASE_S));
     }
 
     private void parseBASE_V(CaseFileData testConf) throws BadDataFileFormatException {
         testConf.baseV = Double.parseDouble(
-                             splitValueFromKey(currentLine, BASE_V));
+                             splitValueFromKey(BASE_V));
     }
 
     // Max_day
     private void parseMaxDay(CaseFileData testConf) throws BadDataFileFormatException {
         testConf.iMaxDay = Integer.parseInt(
-                               splitValueFromKey(currentLine, MAX_DAY));
+                               splitValueFromKey(MAX_DAY));
     }
 
     /**
@@ -314,40 +331,36 @@ public class CaseFileReader {
      */
     private void parseRandomSeed(CaseFileData testConf) throws NumberFormatException, BadDataFileFormatException {
         testConf.RandomSeed = Long.parseLong(
-                                  splitValueFromKey(currentLine, RANDOM_SEED));
+                                  splitValueFromKey(RANDOM_SEED));
     }
-    
+
     /**
      * Parse the required reserve margin.
      * @param testConf
-     * @throws BadDataFileFormatException 
-     * @throws NumberFormatException 
+     * @throws BadDataFileFormatException
+     * @throws NumberFormatException
      */
     private void parseReserveMargin(CaseFileData testConf) throws NumberFormatException, BadDataFileFormatException{
-        testConf.capacityMargin = Double.parseDouble(splitValueFromKey(currentLine, CAP_MARGIN));
+        testConf.capacityMargin = Double.parseDouble(splitValueFromKey(CAP_MARGIN));
         testConf.capacityMargin/=100; //Convert the percentage in the file to a decimal.
     }
-    
+
     public void parseScucType(CaseFileData testConf) throws BadDataFileFormatException {
-        String type = splitValueFromKey(currentLine, SCUC_TYPE);
+        String type = splitValueFromKey(SCUC_TYPE);
         if(SCUC_DET.equals(type)){
             testConf.setSCUCType(SCUC.SCUC_DETERM);
         } else if(SCUC_STOC.equals(type)){
             testConf.setSCUCType(SCUC.SCUC_STOC);
         } else {
-            throw new BadDataFileFormatException(
-                    inputReader.sourceFile, inputReader.lineNum,
-                    "Unknown SCUC type " + type
-                    );
+            throw bad("Unknown SCUC type " + type);
         }
     }
-    
+
     private void parseLSEDataSource(CaseFileData testConf) throws BadDataFileFormatException {
-        String lseData = splitValueFromKey(currentLine, LSE_DATA_SOURCE);
+        String lseData = splitValueFromKey(LSE_DATA_SOURCE);
 
         if (lseData == null || "".equals(lseData)) {
-            throw new BadDataFileFormatException(inputReader.sourceFile, inputReader.lineNum,
-                "No LSE demand data source found in " + currentLine);
+            throw bad("No LSE demand data source found in " + tokens.text());
         }
 
         if (LSE_DATA_TESTCASE.equals(lseData)) {
@@ -355,18 +368,17 @@ public class CaseFileReader {
         } else if (LSE_DATA_LOADCASE.equals(lseData)) {
             testConf.setLSEDemandSource(CaseFileData.LSE_DEMAND_LOAD_CASE);
         } else {
-            throw new BadDataFileFormatException(inputReader.sourceFile, inputReader.lineNum,
-                    "Unknown LSE demand data source " + lseData);
+            throw bad("Unknown LSE demand data source " + lseData);
         }
     }
 
     /**
      * Parse the name of the LoadCase Control File.
      * @param testConf
-     * @throws BadDataFileFormatException 
+     * @throws BadDataFileFormatException
      */
     private void parseLoadCaseControlFile(CaseFileData testConf) throws BadDataFileFormatException{
-        testConf.loadCaseControlFile = splitValueFromKey(currentLine, LOAD_CASE_CONTROL);
+        testConf.loadCaseControlFile = splitValueFromKey(LOAD_CASE_CONTROL);
         testConf.adjustLoadControlFilePath(testCaseFile);
     }
 
@@ -378,141 +390,94 @@ public class CaseFileReader {
      */
     private void parseThreshholdProbability(CaseFileData testConf) throws NumberFormatException, BadDataFileFormatException {
         testConf.dThresholdProbability = Double.parseDouble(
-                                             splitValueFromKey(currentLine, THRESH_PROB));
+                                             splitValueFromKey(THRESH_PROB));
     }
 
     private void parseNodeData(CaseFileData testConf) throws BadDataFileFormatException {
-        testConf.nodeData = new Object[1][2];
-        move();
-
-        String[] splits = currentLine.split(WS_REG_EX);
-
-        if(splits.length != 2) {
-            throw new BadDataFileFormatException(inputReader.sourceFile, inputReader.lineNum, currentLine);
+        if(!move() || tokens.countTokens() != 2) {
+            throw bad(tokens.text());
         }
 
-        int  numNodes = Integer.parseInt(splits[0]);
+        int numNodes = nextInt();
+        double penaltyWeight = nextDouble();
         testConf.iNodeData = numNodes;
-
+        testConf.nodeData = new Object[1][2];
         testConf.nodeData[0][0] = numNodes;
-        testConf.nodeData[0][1] = Double.parseDouble(splits[1]);
+        testConf.nodeData[0][1] = penaltyWeight;
 
-        move();
         match(NODE_DATA_END);
     }
 
     private void parseBranchData(CaseFileData testConf) throws BadDataFileFormatException {
-        move();
+        final IZoneIndexProvider zoneIdxs = testConf.getZoneNames();
 
-        IZoneIndexProvider zoneIdxs = testConf.getZoneNames();
-        ArrayList<String> branchDataList = collectLines(BRANCH_DATA_END);
-
-        int iBranchNumber = branchDataList.size();
+        int iBranchNumber = countDataLines(BRANCH_DATA_END);
         testConf.branchData = new Object[iBranchNumber][5];
         testConf.iBranchData = iBranchNumber;
 
-        for (int i = 0; i < iBranchNumber; i++) {
-            String strBranch = (String) branchDataList.get(i);
-            int iBranchFields = 4;
-
-            //The columns are:
-            //Name  From    To  MaxCap  Reactance
-            //Idxs 0, 1, 2 are strings. Idxs 3 and 4 are floating point.
-            while (iBranchFields > 0) {
-                int iIndex = strBranch.lastIndexOf("\t");
-                if (iIndex < 0) {
-                    iIndex = strBranch.lastIndexOf(" ");
-                }
-
-                String strData = strBranch.substring(iIndex + 1);
-                strData = strData.trim();
-
-                if (iBranchFields > 2) {
-                    double dTemp = Double.parseDouble(strData);
-                    testConf.branchData[i][iBranchFields] = String.format("%1$15.4f", dTemp);
-                } else {
-
-                    if(!zoneIdxs.hasIndexForName(strData)) {
-                        unknownZoneName(strData);
-                    }
-
-                    int zidx = zoneIdxs.get(strData);
-                    testConf.branchData[i][iBranchFields] = zidx;
-                }
-
-                iBranchFields--;
-
-                if (iIndex > 0) {
-                    strBranch = strBranch.substring(0, iIndex);
-                }
-            }
-
-            if (strBranch.length() > 0) {
-                testConf.branchData[i][0] = strBranch;
-            }
+        //The columns are:
+        //Name  From    To  MaxCap  Reactance
+        //The name may have white space in it. From and To are zone names.
+        for (int i = 0; nextDataLine(BRANCH_DATA_END); i++) {
+            String name = leadingName(4);
+            int from = zone(zoneIdxs);
+            int to = zone(zoneIdxs);
+            double maxCap = nextDouble();
+            double reactance = nextDouble();
+
+            Object[] row = testConf.branchData[i];
+            row[0] = name;
+            row[1] = from;
+            row[2] = to;
+            row[3] = String.format(TABLE_FORMAT, maxCap);
+            row[4] = String.format(TABLE_FORMAT, reactance);
         }
     }
 
     /**
      *
-     * Collect all of the lines in the GenData section and create GenData
+     * Read the lines in the GenData section and create GenData
      * object from the fields.
      *
      * @param testConf
      * @throws BadDataFileFormatException
      */
     private void parseGenData(CaseFileData testConf) throws BadDataFileFormatException {
-        move();
-
-        IZoneIndexProvider zoneNames = testConf.getZoneNames();
-
-        ArrayList<String> genDataList = collectLines(GEN_DATA_END);
+        final IZoneIndexProvider zoneNames = testConf.getZoneNames();
 
-        int iGenNumber = genDataList.size();
+        int iGenNumber = countDataLines(GEN_DATA_END);
         testConf.genData = new GenData[iGenNumber];
         testConf.iGenData = iGenNumber;
 
-        for (int i = 0; i < iGenNumber; i++) {
-            String strGen = (String) genDataList.get(i);
-
-            //Split the line at white space.
-            String[] lineElems = strGen.split(WS_REG_EX);
-            if (lineElems.length != 9) {
-                throw new BadDataFileFormatException(inputReader.sourceFile, inputReader.lineNum, strGen);
-            }
-
-            Integer atBusIdx = zoneNames.get(lineElems[2]);
-            if(atBusIdx == null) {
-                throw new BadDataFileFormatException(
-                        inputReader.sourceFile,
-                        inputReader.lineNum,
-                        String.format("Unknown zone name %s.", lineElems[2])
-                        );
+        for (int i = 0; nextDataLine(GEN_DATA_END); i++) {
+            if (tokens.countTokens() != 9) {
+                throw bad(tokens.text());
             }
 
+            String name = tokens.nextToken();
             try {
+                int id = tokens.nextInt();
+                int atBus = zone(zoneNames);
                 testConf.genData[i] = new GenData(
-                    lineElems[0],//name
-                    Integer.parseInt(lineElems[1]),//id
-                    atBusIdx.intValue(),//atBus
-                    Double.parseDouble(lineElems[3]),//sCost
-                    Double.parseDouble(lineElems[4]),//a
-                    Double.parseDouble(lineElems[5]),//b
-                    Double.parseDouble(lineElems[6]),//capL
-                    Double.parseDouble(lineElems[7]),//capU
-                    Double.parseDouble(lineElems[8])//initMoney
+                    name,
+                    id,
+                    atBus,
+                    tokens.nextDouble(),//sCost
+                    tokens.nextDouble(),//a
+                    tokens.nextDouble(),//b
+                    tokens.nextDouble(),//capL
+                    tokens.nextDouble(),//capU
+                    tokens.nextDouble()//initMoney
                 );
             } catch(NumberFormatException nfe) {
-                throw new BadDataFileFormatException(inputReader.sourceFile,
-                        inputReader.lineNum, nfe);
+                throw new BadDataFileFormatException(sourceFile,
+                        tokens.getLineNumber(), nfe);
             }
         }
     }
 
     private void parseAlertGenCos(CaseFileData testConf) throws BadDataFileFormatException {
-        move();
-        ArrayList<String> alertGenCos = collectLines(ALERT_GEN_END);
-        testConf.setCanaryGenCo(alertGenCos);
+        testConf.setCanaryGenCo(collectLines(ALERT_GEN_END));
     }
 
     /**
@@ -523,293 +488,179 @@ public class CaseFileReader {
      * @throws BadDataFileFormatException
      */
     private void parseScucInputData(CaseFileData testConf) throws BadDataFileFormatException {
-        move();
-        ArrayList<String> scucData = collectLines(SCUC_INPUT_DATA_END);
-
-        for (String s : scucData) {
+        while (nextDataLine(SCUC_INPUT_DATA_END)) {
+            if (tokens.countTokens() < 11) {
+                throw bad("Problem in ScucInputData section. Expected 11 fields in " + tokens.text());
+            }
             try {
-                //Split the line at white space.
-                String[] lineElems = s.split(WS_REG_EX);
-                testConf.putScucData(lineElems[0],
-                        numRecog.stod(lineElems[1]),//PowerT0
-                        numRecog.stoi(lineElems[2]),//UnitOnT0
-                        numRecog.stoi(lineElems[3]),//MinUp
-                        numRecog.stoi(lineElems[4]),//MinDown
-                        numRecog.stod(lineElems[5]),//NominalRampUp
-                        numRecog.stod(lineElems[6]),//NominalRampDown
-                        numRecog.stod(lineElems[7]),//StartupRampLim
-                        numRecog.stod(lineElems[8]),//ShutdownRampLim
-                        numRecog.stoi(lineElems[9]),//Schedule
-                        numRecog.stoi(lineElems[10])//Schedule2
+                testConf.putScucData(tokens.nextToken(),
+                        scucDouble(),//PowerT0
+                        scucInt(),//UnitOnT0
+                        scucInt(),//MinUp
+                        scucInt(),//MinDown
+                        scucDouble(),//NominalRampUp
+                        scucDouble(),//NominalRampDown
+                        scucDouble(),//StartupRampLim
+                        scucDouble(),//ShutdownRampLim
+                        scucInt(),//Schedule
+                        scucInt()//Schedule2
                 );
             } catch (NumberFormatException nfe) {
-                throw new BadDataFileFormatException(inputReader.sourceFile,
-                        inputReader.lineNum,
-                        "Problem in ScucInputData section. " + nfe.getMessage());
+                throw bad("Problem in ScucInputData section. " + nfe.getMessage());
             }
         }
     }
 
+    /**
+     * The next token as an int. A decimal is truncated.
+     */
+    private int scucInt() {
+        try {
+            return tokens.nextInt();
+        } catch (NumberFormatException nfe) {
+            return numRecog.stoi(tokens.lastToken());
+        }
+    }
+
+    private double scucDouble() {
+        try {
+            return tokens.nextDouble();
+        } catch (NumberFormatException nfe) {
+            return numRecog.stod(tokens.lastToken()); //for its message.
+        }
+    }
+
+    /**
+     * The fixed demand section has three blocks of one line per LSE:
+     * Name ID atBus and the demands of hours 1-8, 9-16, then 17-24.
+     * @param testConf
+     * @throws BadDataFileFormatException
+     */
     private void parseLSEFixedDemand(CaseFileData testConf) throws BadDataFileFormatException {
-        move();
-        final ArrayList<String> LSEDataList = collectLines(LSE_DATA_FIXED_DEM_END);
         final IZoneIndexProvider zip = testConf.getZoneNames();
 
-        int iLSENumber = LSEDataList.size() / 3;
+        int iLSENumber = countDataLines(LSE_DATA_FIXED_DEM_END) / 3;
         testConf.lseSec1Data = new Object[iLSENumber][11];
         testConf.lseSec2Data = new Object[iLSENumber][11];
         testConf.lseSec3Data = new Object[iLSENumber][11];
         testConf.lseData = new Object[iLSENumber][27];
         testConf.iLSEData = iLSENumber;
 
-        //TODO: This entire section could stand an overhaul, or at least comments.
-        //Split each line on white space, and deal with each 'chunk' of the line
-        //directly.
-        for (int i = 0; i < iLSENumber * 3; i++) {
-            String strLSE = (String) LSEDataList.get(i);
-            int iLSEFields = 10;
-            int iLSEIndex = i % iLSENumber;
-
-            while (iLSEFields > 0) {
-                int iIndex = strLSE.lastIndexOf("\t");
-                if (iIndex < 0) {
-                    iIndex = strLSE.lastIndexOf(" ");
-                }
-
-                String strData = strLSE.substring(iIndex + 1);
-                strData = strData.trim();
-
-                if (i < iLSENumber) {
-                    if (iLSEFields > 2) {
-                        double dTemp = Double.parseDouble(strData);
-                        testConf.lseSec1Data[iLSEIndex][iLSEFields] = String.format("%1$15.4f", dTemp);
-                        testConf.lseData[iLSEIndex][iLSEFields] = String.format("%1$15.4f", dTemp);
-                    } else {
-                        //Special Cases:
-                        //when ILSE fields is 2, we need to lookup an index from the name
-                        if(iLSEFields == 2) {
-                            if(zip.hasIndexForName(strData)) {
-                                int zidx = zip.get(strData);
-                                testConf.lseSec1Data[iLSEIndex][iLSEFields] = zidx;
-                                testConf.lseData[iLSEIndex][iLSEFields] = zidx;
-                            } else {
-                                unknownZoneName(strData);
-                            }
-                        } else { //otherwise, it is just an Int.
-                            int id = Integer.parseInt(strData);
-                            testConf.lseSec1Data[iLSEIndex][iLSEFields] = id;
-                            testConf.lseData[iLSEIndex][iLSEFields] = id;
-                        }
-                    }
-                } else if ((i >= iLSENumber) && (i < 2 * iLSENumber)) { //Process columns 3 - 8
-                    if (iLSEFields > 2) {
-                        double dTemp = Double.parseDouble(strData);
-                        testConf.lseSec2Data[iLSEIndex][iLSEFields] = String.format("%1$15.4f", dTemp);
-                        testConf.lseData[iLSEIndex][iLSEFields + 8] = String.format("%1$15.4f", dTemp);
-                    } else {
-                      //Special Cases:
-                        //when ILSE fields is 2, we need to lookup an index from the name
-                        if(iLSEFields == 2) {
-                            if(zip.hasIndexForName(strData)) {
-                                int zidx = zip.get(strData);
-                                testConf.lseSec2Data[iLSEIndex][iLSEFields] = zidx;
-                            } else {
-                                unknownZoneName(strData);
-                            }
-                        } else {
-                            testConf.lseSec2Data[iLSEIndex][iLSEFields] = Integer.parseInt(strData);
-                        }
-                    }
-
-                } else if (i >= 2 * iLSENumber) {
-                    if (iLSEFields > 2) {
-                        double dTemp = Double.parseDouble(strData);
-                        testConf.lseSec3Data[iLSEIndex][iLSEFields] = String.format("%1$15.4f", dTemp);
-                        testConf.lseData[iLSEIndex][iLSEFields + 16] = String.format("%1$15.4f", dTemp);
-                    } else {
-                      //Special Cases:
-                        //when ILSE fields is 2, we need to lookup an index from the name
-                        if(iLSEFields == 2) {
-                            if(zip.hasIndexForName(strData)) {
-                                int zidx = zip.get(strData);
-                                testConf.lseSec3Data[iLSEIndex][iLSEFields] = zidx;
-                            } else {
-                                unknownZoneName(strData);
-                            }
-                        } else {
-                            testConf.lseSec3Data[iLSEIndex][iLSEFields] = Integer.parseInt(strData);
-                        }
-                    }
-                }
-
-                iLSEFields--;
-
-                if (iIndex > 0) {
-                    strLSE = strLSE.substring(0, iIndex);
-                }
+        for (int i = 0; nextDataLine(LSE_DATA_FIXED_DEM_END); i++) {
+            if (i >= iLSENumber * 3) {
+                continue; //not a whole block.
+            }
+            final int block = i / iLSENumber;
+            final int iLSEIndex = i % iLSENumber;
+
+            String name = leadingName(10);
+            int id = nextInt();
+            int zidx = zone(zip);
+
+            Object[] sec = block == 0 ? testConf.lseSec1Data[iLSEIndex]
+                    : block == 1 ? testConf.lseSec2Data[iLSEIndex]
+                    : testConf.lseSec3Data[iLSEIndex];
+            sec[0] = name;
+            sec[1] = id;
+            sec[2] = zidx;
+            if (block == 0) {
+                testConf.lseData[iLSEIndex][0] = name;
+                testConf.lseData[iLSEIndex][1] = id;
+                testConf.lseData[iLSEIndex][2] = zidx;
             }
 
-            if (i < iLSENumber) {
-                if (strLSE.length() > 0) {
-                    testConf.lseSec1Data[iLSEIndex][0] = strLSE;
-                    testConf.lseData[iLSEIndex][0] = strLSE;
-                }
-            } else if ((i >= iLSENumber) && (i < 2 * iLSENumber)) {
-                if (strLSE.length() > 0) {
-                    testConf.lseSec2Data[iLSEIndex][0] = strLSE;
-                }
-            } else if (i >= 2 * iLSENumber) {
-                if (strLSE.length() > 0) {
-                    testConf.lseSec3Data[iLSEIndex][0] = strLSE;
-                }
+            for (int h = 0; h < 8; h++) {
+                String s = String.format(TABLE_FORMAT, nextDouble());
+                sec[3 + h] = s;
+                testConf.lseData[iLSEIndex][3 + block * 8 + h] = s;
             }
         }
     }
 
+    /**
+     * The price sensitive section has 24 lines per LSE:
+     * Name ID atBus hour c d SLMax.
+     * @param testConf
+     * @throws BadDataFileFormatException
+     */
     private void parseLSEPSensDemand(CaseFileData testConf) throws BadDataFileFormatException {
-        move();
-        ArrayList<String> LSEPriceDemandDataList = collectLines(LSE_DATA_PRICE_SENS_DEM_END);
         final IZoneIndexProvider zip = testConf.getZoneNames();
 
-        int iLSEDemandNumber = LSEPriceDemandDataList.size() / 24;
+        int iLSEDemandNumber = countDataLines(LSE_DATA_PRICE_SENS_DEM_END) / 24;
         testConf.lsePriceSensitiveDemand = new Object[iLSEDemandNumber][24][7];
         testConf.iLSEData = iLSEDemandNumber;
 
-        for (int i = 0; i < iLSEDemandNumber; i++) {
-            for (int j = 0; j < 24; j++) {
-                String strLSEDemand = (String) LSEPriceDemandDataList.get(i * 24 + j);
-                int iDemandFields = 6;
-
-                while (iDemandFields > 0) {
-                    int iIndex = strLSEDemand.lastIndexOf("\t");
-                    if (iIndex < 0) {
-                        iIndex = strLSEDemand.lastIndexOf(" ");
-                    }
-
-                    String strData = strLSEDemand.substring(iIndex + 1);
-                    strData = strData.trim();
-
-                    if (iDemandFields > 3) {
-                        testConf.lsePriceSensitiveDemand[i][j][iDemandFields] = Double.parseDouble(strData);
-                    } else {
-                        if(iDemandFields == 2) { //TODO-XX fix special case.
-                            if (zip.hasIndexForName(strData)) {
-                                testConf.lsePriceSensitiveDemand[i][j][iDemandFields] = zip.get(strData);
-                            } else {
-                                unknownZoneName(strData);
-                            }
-                        } else {
-                            testConf.lsePriceSensitiveDemand[i][j][iDemandFields] = Integer.parseInt(strData);
-                        }
-                    }
-
-                    iDemandFields--;
-
-                    if (iIndex > 0) {
-                        strLSEDemand = strLSEDemand.substring(0, iIndex);
-                    }
-                }
-
-                if (strLSEDemand.length() > 0) {
-                    testConf.lsePriceSensitiveDemand[i][j][0] = strLSEDemand;
-                }
+        for (int k = 0; nextDataLine(LSE_DATA_PRICE_SENS_DEM_END); k++) {
+            if (k >= iLSEDemandNumber * 24) {
+                continue; //not a whole day.
             }
+            final int i = k / 24;
+            final int j = k % 24;
+
+            Object[] row = testConf.lsePriceSensitiveDemand[i][j];
+            row[0] = leadingName(6);
+            row[1] = nextInt();    //ID
+            row[2] = zone(zip);    //atBus
+            row[3] = nextInt();    //hour
+            row[4] = nextDouble(); //c
+            row[5] = nextDouble(); //d
+            row[6] = nextDouble(); //SLMax
         }
     }
 
+    /**
+     * The hybrid demand section has three blocks of one line per LSE:
+     * Name ID atBus and the flags of hours 1-8, 9-16, then 17-24. The ID
+     * and bus are taken from the first block.
+     * @param testConf
+     * @throws BadDataFileFormatException
+     */
     private void parseLSEHybDemand(CaseFileData testConf) throws BadDataFileFormatException {
-        move();
-        ArrayList<String> LSEHybridDemandDataList = collectLines(LSE_DATA_HYBRID_DEM_END);
+        final IZoneIndexProvider zip = testConf.getZoneNames();
 
-        int iLSENumber = LSEHybridDemandDataList.size() / 3;
+        int iLSENumber = countDataLines(LSE_DATA_HYBRID_DEM_END) / 3;
         testConf.lseHybridDemand = new Object[iLSENumber][27];
         testConf.iLSEData = iLSENumber;
 
-        for (int i = 0; i < iLSENumber * 3; i++) {
-            String strLSE = (String) LSEHybridDemandDataList.get(i);
-            int iLSEFields = 10;
-            int iLSEIndex = i % iLSENumber;
-
-            while (iLSEFields > 0) {
-                int iIndex = strLSE.lastIndexOf("\t");
-                if (iIndex < 0) {
-                    iIndex = strLSE.lastIndexOf(" ");
-                }
-
-                String strData = strLSE.substring(iIndex + 1);
-                strData = strData.trim();
-
-                if (i < iLSENumber) {
-                    if(iLSEFields == 2) {
-                        testConf.lseHybridDemand[iLSEIndex][iLSEFields] =
-                                testConf.getZoneNames().get(strData);
-                    } else if (iLSEFields > 0) {
-                        testConf.lseHybridDemand[iLSEIndex][iLSEFields] = Integer.parseInt(strData);
-                    }
-                } else if ((i >= iLSENumber) && (i < 2 * iLSENumber)) {
-                    if (iLSEFields > 2) {
-                        testConf.lseHybridDemand[iLSEIndex][iLSEFields + 8] = Integer.parseInt(strData);
-                    }
-                } else if (i >= 2 * iLSENumber) {
-                    if (iLSEFields > 2) {
-                        testConf.lseHybridDemand[iLSEIndex][iLSEFields + 16] = Integer.parseInt(strData);
-                    }
-                }
-
-                iLSEFields--;
-
-                if (iIndex > 0) {
-                    strLSE = strLSE.substring(0, iIndex);
-                }
+        for (int i = 0; nextDataLine(LSE_DATA_HYBRID_DEM_END); i++) {
+            if (i >= iLSENumber * 3) {
+                continue; //not a whole block.
             }
-
-            if (i < iLSENumber) {
-                if (strLSE.length() > 0) {
-                    testConf.lseHybridDemand[iLSEIndex][0] = strLSE;
-                }
-            } else if ((i >= iLSENumber) && (i < 2 * iLSENumber)) {
-                if (strLSE.length() > 0) {
-                    testConf.lseHybridDemand[iLSEIndex][0] = strLSE;
-                }
-            } else if (i >= 2 * iLSENumber) {
-                if (strLSE.length() > 0) {
-                    testConf.lseHybridDemand[iLSEIndex][0] = strLSE;
-                }
+            final int block = i / iLSENumber;
+            final int iLSEIndex = i % iLSENumber;
+
+            Object[] row = testConf.lseHybridDemand[iLSEIndex];
+            row[0] = leadingName(10);
+            if (block == 0) {
+                row[1] = nextInt();
+                row[2] = zip.get(tokens.nextToken());
+            } else {
+                tokens.skipToken();
+                tokens.skipToken();
+            }
+            for (int h = 0; h < 8; h++) {
+                row[3 + block * 8 + h] = nextInt();
             }
         }
     }
 
     private void parseGenLearningData(CaseFileData testConf) throws BadDataFileFormatException {
-        move();
-        ArrayList<String> genLearningDataList = collectLines(GEN_LEARNING_DATA_END);
-
-        int iGenNumber = genLearningDataList.size();
+        int iGenNumber = countDataLines(GEN_LEARNING_DATA_END);
         testConf.genLearningData = new double[iGenNumber][12];
         testConf.iGenData = iGenNumber;
 
-        for (int i = 0; i < iGenNumber; i++) {
-            String strGenLearning = (String) genLearningDataList.get(i);
-            int iGenLearningFields = 11;
-
-            while (iGenLearningFields >= 0) {
-                int iIndex = strGenLearning.lastIndexOf("\t");
-                if (iIndex < 0) {
-                    iIndex = strGenLearning.lastIndexOf(" ");
-                }
-
-                String strData = strGenLearning.substring(iIndex + 1);
-                strData = strData.trim();
-
-                double dTemp = Double.parseDouble(strData);
-                testConf.genLearningData[i][iGenLearningFields] = dTemp;
-
-                iGenLearningFields--;
-
-                if (iIndex >= 0) {
-                    strGenLearning = strGenLearning.substring(0, iIndex);
-                }
+        for (int i = 0; nextDataLine(GEN_LEARNING_DATA_END); i++) {
+            //the last 12 fields of the line.
+            int skip = tokens.countTokens() - 12;
+            if (skip < 0) {
+                throw bad("Expected 12 fields in " + tokens.text());
+            }
+            for (int k = 0; k < skip; k++) {
+                tokens.skipToken();
+            }
+            for (int k = 0; k < 12; k++) {
+                testConf.genLearningData[i][k] = nextDouble();
             }
-
         }
     }
 
@@ -834,46 +685,40 @@ public class CaseFileReader {
     }
 
     private void parseZoneNames(CaseFileData testConf) throws BadDataFileFormatException {
-        move();
-        ArrayList<String> zoneNames = collectLines(ZONE_NAMES_END);
-
         int idx = 1;
-        for(String zoneName : zoneNames) {
-            testConf.addZoneNameMapping(zoneName, idx);
+        while (nextDataLine(ZONE_NAMES_END)) {
+            testConf.addZoneNameMapping(tokens.text(), idx);
             idx++; //increment index for next zone.
         }
     }
 
     private void parseGenCoFuelType(CaseFileData testConf) throws BadDataFileFormatException {
-        move();
-        ArrayList<String> fuelTypes = collectLines(GEN_FUELTYPE_END);
-
-        for(String fuelType : fuelTypes) {
-            String[] p = fuelType.split(WS_REG_EX);
-            testConf.addFuelType(p[0],p[1]);
+        while (nextDataLine(GEN_FUELTYPE_END)) {
+            if (tokens.countTokens() < 2) {
+                throw bad("Expected a GenCo and a fuel type in " + tokens.text());
+            }
+            testConf.addFuelType(tokens.nextToken(), tokens.nextToken());
         }
     }
 
-    
-    private void parseGenCoCosts(CaseFileData testConf) throws BadDataFileFormatException {
-        move();
-        ArrayList<String> zoneNoLoads = collectLines(GEN_COST_END);
 
-        for(String noLoad : zoneNoLoads) {
-            String[] p = noLoad.split(WS_REG_EX);
-            if( p.length != 5 ){
+    private void parseGenCoCosts(CaseFileData testConf) throws BadDataFileFormatException {
+        while (nextDataLine(GEN_COST_END)) {
+            int n = tokens.countTokens();
+            if( n != 5 ){
                 throw new BadDataFileFormatException(
-                        "Expected 5 fields in '" + noLoad + "'. Found " + p.length + "."
+                        "Expected 5 fields in '" + tokens.text() + "'. Found " + n + "."
                         );
             }
             try{
-                testConf.addNoLoadCost(p[0], Double.parseDouble(p[1]));
-                testConf.addColdStartUpCost(p[0], Double.parseDouble(p[2]));
-                testConf.addHotStartUpCost(p[0], Double.parseDouble(p[3]));
-                testConf.addShutDownCost(p[0], Double.parseDouble(p[4]));
+                String genCo = tokens.nextToken();
+                testConf.addNoLoadCost(genCo, tokens.nextDouble());
+                testConf.addColdStartUpCost(genCo, tokens.nextDouble());
+                testConf.addHotStartUpCost(genCo, tokens.nextDouble());
+                testConf.addShutDownCost(genCo, tokens.nextDouble());
             } catch(Exception e) {
-                throw new BadDataFileFormatException(inputReader.sourceFile,
-                        inputReader.lineNum, currentLine, e);
+                throw new BadDataFileFormatException(sourceFile,
+                        tokens.getLineNumber(), tokens.text(), e);
             }
         }
     }
@@ -884,81 +729,117 @@ public class CaseFileReader {
      * @throws BadDataFileFormatException
      */
     private void unknownZoneName(String zoneName) throws BadDataFileFormatException {
-        throw new BadDataFileFormatException(
-                inputReader.sourceFile,
-                inputReader.lineNum,
-                String.format("Unknown zone name %s.", zoneName)
-                );
+        throw bad(String.format("Unknown zone name %s.", zoneName));
     }
 
-    private ArrayList<String> collectLines(String endMarker) throws BadDataFileFormatException {
-        ArrayList<String> lines = new ArrayList<String>();
+    /**
+     * An error on the current line.
+     */
+    private BadDataFileFormatException bad(String msg) {
+        return new BadDataFileFormatException(sourceFile, tokens.getLineNumber(), msg);
+    }
 
-        while(!endMarker.equals(currentLine)) {
-            if( !inputReader.hasNext() ) {
-                throw new BadDataFileFormatException("Unexpected end of file. Is a data section end marker missing?");
-            }
-            lines.add(currentLine);
-            move();
+    /**
+     * Move to the next line of a data section.
+     * @return false on the end marker of the section.
+     * @throws BadDataFileFormatException at the end of the input.
+     */
+    private boolean nextDataLine(String endMarker) throws BadDataFileFormatException {
+        if (!move()) {
+            throw new BadDataFileFormatException("Unexpected end of file. Is a data section end marker missing?");
         }
-
-        return lines;
+        return !tokens.is(endMarker);
     }
 
-
-
     /**
-     * A simple line reader which skips any line which
-     * starts with a comment delimiter.
+     * Count the lines of the data section that starts after the current
+     * line, so the arrays are made at their size. Comes back to the current
+     * line.
      */
-    private static class SimpleLineReader {
-
-        Scanner scanner;
-        int lineNum = 0;
-        File sourceFile = null;
-
-        public SimpleLineReader(File inputFile) throws FileNotFoundException {
-            scanner = new Scanner(inputFile);
-            this.sourceFile = inputFile;
+    private int countDataLines(String endMarker) throws BadDataFileFormatException {
+        final int offset = tokens.getLineStart();
+        final int lineNum = tokens.getLineNumber();
+        int n = 0;
+        while (nextDataLine(endMarker)) {
+            n++;
         }
+        tokens.seek(offset, lineNum);
+        tokens.nextLine();
+        return n;
+    }
 
-        public SimpleLineReader(Reader inputReader) {
-            scanner = new Scanner(inputReader);
+    private ArrayList<String> collectLines(String endMarker) throws BadDataFileFormatException {
+        ArrayList<String> lines = new ArrayList<String>();
+        while (nextDataLine(endMarker)) {
+            lines.add(tokens.text());
         }
+        return lines;
+    }
 
-        String nextLine() {
-            String line = "";
-            boolean scanMore = false;
-            do {
-                ++lineNum;
-                scanMore = false;
-                if(!scanner.hasNext()) {
-                    line = null;
-                    break;
-                }
-
-                line = scanner.nextLine();
-
-                line = line.trim();
-                if (line.length() == 0) {
-                    scanMore = true;
-                }
+    /**
+     * Read the name at the start of a data line followed by numFields
+     * fields. The name may have white space in it.
+     *
+     * As the fields are counted from the end of the line, a line with no
+     * name has its first field for name.
+     * @throws BadDataFileFormatException if there are less than numFields.
+     */
+    private String leadingName(int numFields) throws BadDataFileFormatException {
+        int nameTokens = tokens.countTokens() - numFields;
+        if (nameTokens < 0) {
+            throw bad("Expected " + numFields + " fields after the name in " + tokens.text());
+        } else if (nameTokens == 0) {
+            String name = tokens.nextToken();
+            tokens.rewind();
+            return name;
+        } else if (nameTokens == 1) {
+            return tokens.nextToken();
+        }
 
-                int iCommentIndex = line.indexOf("//");
-                if (iCommentIndex == 0) {
-                    scanMore = true;
-                }
-            } while(scanMore);
+        //cut the fields off the end of the line.
+        String text = tokens.text();
+        int end = text.length();
+        for (int k = 0; k < numFields; k++) {
+            while (text.charAt(end - 1) > ' ') {
+                end--;
+            }
+            while (text.charAt(end - 1) <= ' ') {
+                end--;
+            }
+        }
+        for (int k = 0; k < nameTokens; k++) {
+            tokens.skipToken();
+        }
+        return text.substring(0, end);
+    }
 
-            return line;
+    /**
+     * @return index of the zone named by the next token.
+     * @throws BadDataFileFormatException if there is no such zone.
+     */
+    private int zone(IZoneIndexProvider zoneIdxs) throws BadDataFileFormatException {
+        String zoneName = tokens.nextToken();
+        if (!zoneIdxs.hasIndexForName(zoneName)) {
+            unknownZoneName(zoneName);
         }
+        return zoneIdxs.get(zoneName);
+    }
 
-        boolean hasNext() {
-            return scanner.hasNext();
+    private int nextInt() throws BadDataFileFormatException {
+        try {
+            return tokens.nextInt();
+        } catch (NumberFormatException nfe) {
+            throw new BadDataFileFormatException(sourceFile, tokens.getLineNumber(),
+                    "Expected \"" + tokens.lastToken() + "\" to be an integer", nfe);
         }
+    }
 
-        void close() {
-            scanner.close();
+    private double nextDouble() throws BadDataFileFormatException {
+        try {
+            return tokens.nextDouble();
+        } catch (NumberFormatException nfe) {
+            throw new BadDataFileFormatException(sourceFile, tokens.getLineNumber(),
+                    "Expected \"" + tokens.lastToken() + "\" to be a decimal", nfe);
         }
     }
 }
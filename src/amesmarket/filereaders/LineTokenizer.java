@@ -0,0 +1,529 @@
+//FIXME: LICENSE
+package amesmarket.filereaders;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Splits a file into lines, and lines into white space separated tokens,
+ * reading the integers and decimals in place.
+ *
+ * A file is read into memory, and closed, then scanned byte by byte. No
+ * mapping keeps it open, so it can be replaced or deleted while the
+ * tokenizer is in use. Moving to the next
+ * line, counting and skipping tokens and reading numbers create no
+ * Strings; only {@link #line()}, {@link #text()} and {@link #nextToken()}
+ * do, for the headers and the error messages. The numbers are the ones
+ * Integer.parseInt and Double.parseDouble give for the same token, and
+ * they throw the same NumberFormatException.
+ *
+ * Lines end at '\n', "\r\n" or '\r'. Tokens end at white space (any byte up
+ * to ' ', as String.trim) and, when there is one, at the comment marker.
+ * Text is decoded with the platform charset, as a Scanner does.
+ *
+ * Usage: {@link #nextLine()} or {@link #nextNonBlankLine()}, then the token
+ * methods for that line.
+ */
+public class LineTokenizer {
+
+    private static final Charset CHARSET = Charset.defaultCharset();
+
+    /** Powers of ten a double holds exactly. */
+    private static final double[] POW10 = new double[23];
+    static {
+        POW10[0] = 1;
+        for (int i = 1; i < POW10.length; i++) {
+            POW10[i] = POW10[i - 1] * 10;
+        }
+    }
+
+    private final ByteBuffer buf;
+    private final int limit;
+    private byte[] commentMarker;
+
+    private int lineNum;
+    private int next;      //start of the next line
+    private int lineStart; //current line, without the line end
+    private int lineEnd;
+    private int dataEnd;   //end of the current line before any comment
+    private int p;         //token position in the current line
+    private int tokStart;  //last token read
+    private int tokEnd;
+
+    /**
+     * Tokenize a file.
+     */
+    public LineTokenizer(File f) throws IOException {
+        this(read(f, 0, -1));
+    }
+
+    /**
+     * Tokenize bytes in the platform charset.
+     */
+    public LineTokenizer(byte[] b) {
+        this.buf = ByteBuffer.wrap(b);
+        this.limit = b.length;
+    }
+
+    /**
+     * Tokenize part of a file, e.g. a range of lines found with
+     * {@link #getLineStart()} and {@link #getNextLineStart()}. Offsets are
+     * then relative to the start of the part; {@link #seek} sets the line
+     * numbers.
+     *
+     * @param offset of the part in the file.
+     * @param length of the part in bytes.
+     */
+    public static LineTokenizer of(File f, long offset, int length) throws IOException {
+        return new LineTokenizer(read(f, offset, length));
+    }
+
+    /**
+     * Read length bytes of a file from offset, or the rest of the file if
+     * length is negative.
+     */
+    private static byte[] read(File f, long offset, int length) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(f, "r");
+        try {
+            if (length < 0) {
+                long size = in.length() - offset;
+                if (size > Integer.MAX_VALUE) {
+                    throw new IOException(f.getPath() + " is too large to tokenize");
+                }
+                length = (int) Math.max(size, 0);
+            }
+            byte[] b = new byte[length];
+            in.seek(offset);
+            in.readFully(b);
+            return b;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Tokenize everything left in a stream. The stream is not closed.
+     */
+    public static LineTokenizer of(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] b = new byte[64 * 1024];
+        int n;
+        while ((n = in.read(b)) >= 0) {
+            out.write(b, 0, n);
+        }
+        return new LineTokenizer(out.toByteArray());
+    }
+
+    /**
+     * Tokenize everything left in a reader. The reader is not closed.
+     */
+    public static LineTokenizer of(Reader in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        char[] c = new char[16 * 1024];
+        int n;
+        while ((n = in.read(c)) >= 0) {
+            sb.append(c, 0, n);
+        }
+        return new LineTokenizer(sb.toString().getBytes(CHARSET));
+    }
+
+    /**
+     * @param marker start of the comments at the end of a line, or null
+     * if there are none. Only ASCII markers are supported.
+     */
+    public void setCommentMarker(String marker) {
+        commentMarker = marker == null || marker.isEmpty() ? null : marker.getBytes(CHARSET);
+    }
+
+    /**
+     * Move to the next line.
+     *
+     * @return false at the end of the input.
+     */
+    public boolean nextLine() {
+        if (next >= limit) {
+            return false;
+        }
+        lineNum++;
+        int i = next;
+        while (i < limit) {
+            byte c = buf.get(i);
+            if (c == '\n' || c == '\r') {
+                break;
+            }
+            i++;
+        }
+        lineStart = next;
+        lineEnd = i;
+        if (i < limit && buf.get(i) == '\r' && i + 1 < limit && buf.get(i + 1) == '\n') {
+            i++;
+        }
+        next = i + 1;
+        dataEnd = commentStart();
+        p = lineStart;
+        tokStart = tokEnd = lineStart;
+        return true;
+    }
+
+    /**
+     * Move to the next line that has a token.
+     *
+     * @return false at the end of the input.
+     */
+    public boolean nextNonBlankLine() {
+        while (nextLine()) {
+            if (hasMoreTokens()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private int commentStart() {
+        byte[] m = commentMarker;
+        if (m == null) {
+            return lineEnd;
+        }
+        for (int i = lineStart; i + m.length <= lineEnd; i++) {
+            int k = 0;
+            while (k < m.length && buf.get(i + k) == m[k]) {
+                k++;
+            }
+            if (k == m.length) {
+                return i;
+            }
+        }
+        return lineEnd;
+    }
+
+    /**
+     * @return number of the current line, from 1.
+     */
+    public int getLineNumber() {
+        return lineNum;
+    }
+
+    /**
+     * @return offset of the current line in the input, for {@link #seek}.
+     */
+    public int getLineStart() {
+        return lineStart;
+    }
+
+    /**
+     * @return offset of the line after the current one, which is where the
+     * current line ends with its line end.
+     */
+    public int getNextLineStart() {
+        return next;
+    }
+
+    /**
+     * Go to a line seen before. The next {@link #nextLine()} reads it.
+     *
+     * @param offset of the line, from {@link #getLineStart()}.
+     * @param lineNumber of the line, from {@link #getLineNumber()}.
+     */
+    public void seek(int offset, int lineNumber) {
+        if (offset < 0 || offset > limit) {
+            throw new IllegalArgumentException("Offset " + offset + " out of bounds");
+        }
+        next = offset;
+        lineNum = lineNumber - 1;
+        lineStart = lineEnd = dataEnd = p = tokStart = tokEnd = offset;
+    }
+
+    /**
+     * @return the current line, as it is in the input.
+     */
+    public String line() {
+        return string(lineStart, lineEnd);
+    }
+
+    /**
+     * @return the current line without the comment and the white space
+     * around it.
+     */
+    public String text() {
+        int s = lineStart;
+        int e = dataEnd;
+        while (s < e && isSpace(buf.get(s))) {
+            s++;
+        }
+        while (e > s && isSpace(buf.get(e - 1))) {
+            e--;
+        }
+        return string(s, e);
+    }
+
+    /**
+     * @return true if the line starts, after white space, with prefix.
+     */
+    public boolean startsWith(String prefix) {
+        byte[] b = prefix.getBytes(CHARSET);
+        int s = lineStart;
+        while (s < dataEnd && isSpace(buf.get(s))) {
+            s++;
+        }
+        if (dataEnd - s < b.length) {
+            return false;
+        }
+        for (int i = 0; i < b.length; i++) {
+            if (buf.get(s + i) != b[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true if the line, without the comment and the white space
+     * around it, is s.
+     */
+    public boolean is(String s) {
+        if (!startsWith(s)) {
+            return false;
+        }
+        int i = lineStart;
+        while (isSpace(buf.get(i))) {
+            i++;
+        }
+        for (i += s.getBytes(CHARSET).length; i < dataEnd; i++) {
+            if (!isSpace(buf.get(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Go back to the first token of the line.
+     */
+    public void rewind() {
+        p = lineStart;
+    }
+
+    /**
+     * @return true if the line has a token after the current one.
+     */
+    public boolean hasMoreTokens() {
+        skipSpace();
+        return p < dataEnd;
+    }
+
+    /**
+     * @return number of tokens in the whole line.
+     */
+    public int countTokens() {
+        int n = 0;
+        boolean inToken = false;
+        for (int i = lineStart; i < dataEnd; i++) {
+            boolean space = isSpace(buf.get(i));
+            if (!space && !inToken) {
+                n++;
+            }
+            inToken = !space;
+        }
+        return n;
+    }
+
+    /**
+     * Skip a token.
+     *
+     * @throws IllegalStateException if there is none.
+     */
+    public void skipToken() {
+        token();
+    }
+
+    /**
+     * @return the next token.
+     * @throws IllegalStateException if there is none.
+     */
+    public String nextToken() {
+        token();
+        return lastToken();
+    }
+
+    /**
+     * @return the token read last, for error messages.
+     */
+    public String lastToken() {
+        return string(tokStart, tokEnd);
+    }
+
+    /**
+     * @return the next token as an int.
+     * @throws NumberFormatException as Integer.parseInt would.
+     * @throws IllegalStateException if there is no token.
+     */
+    public int nextInt() {
+        token();
+        int i = tokStart;
+        boolean neg = false;
+        byte c = buf.get(i);
+        if (c == '-' || c == '+') {
+            neg = c == '-';
+            i++;
+        }
+        int n = tokEnd - i;
+        if (n == 0 || n > 9) {
+            return Integer.parseInt(lastToken()); //too long for the fast path, or no digits.
+        }
+        int v = 0;
+        for (; i < tokEnd; i++) {
+            c = buf.get(i);
+            if (c < '0' || c > '9') {
+                return Integer.parseInt(lastToken());
+            }
+            v = v * 10 + (c - '0');
+        }
+        return neg ? -v : v;
+    }
+
+    /**
+     * @return the next token as a double.
+     * @throws NumberFormatException as Double.parseDouble would.
+     * @throws IllegalStateException if there is no token.
+     */
+    public double nextDouble() {
+        token();
+        return parseDouble(buf, tokStart, tokEnd, CHARSET);
+    }
+
+    private void token() {
+        skipSpace();
+        if (p >= dataEnd) {
+            throw new IllegalStateException("No more tokens on line " + lineNum);
+        }
+        tokStart = p;
+        while (p < dataEnd && !isSpace(buf.get(p))) {
+            p++;
+        }
+        tokEnd = p;
+    }
+
+    private void skipSpace() {
+        while (p < dataEnd && isSpace(buf.get(p))) {
+            p++;
+        }
+    }
+
+    private String string(int start, int end) {
+        byte[] b = new byte[end - start];
+        for (int i = 0; i < b.length; i++) {
+            b[i] = buf.get(start + i);
+        }
+        return new String(b, CHARSET);
+    }
+
+    /**
+     * White space as String.trim sees it.
+     */
+    private static boolean isSpace(byte c) {
+        return (c & 0xff) <= ' ';
+    }
+
+    private static boolean isDigit(byte c) {
+        return c >= '0' && c <= '9';
+    }
+
+    /**
+     * Read the decimal in buf between start and end.
+     *
+     * Numbers with up to 15 significant digits and an exponent of at most
+     * 22 are converted with one multiplication or division of two exact
+     * doubles, which rounds correctly. Everything else goes through
+     * Double.parseDouble.
+     *
+     * @param cs charset to decode the text in for Double.parseDouble.
+     * @throws NumberFormatException as Double.parseDouble would.
+     */
+    public static double parseDouble(ByteBuffer buf, int start, int end, Charset cs) {
+        int i = start;
+        boolean neg = false;
+        if (i < end && (buf.get(i) == '-' || buf.get(i) == '+')) {
+            neg = buf.get(i) == '-';
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0; //significant digits in mantissa
+        int scale = 0;  //power of ten to multiply mantissa by
+        boolean seenDigit = false;
+        boolean seenDot = false;
+        for (; i < end; i++) {
+            byte c = buf.get(i);
+            if (isDigit(c)) {
+                seenDigit = true;
+                if (mantissa != 0 || c != '0') {
+                    digits++;
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (seenDot) {
+                    scale--;
+                }
+                if (digits > 15) {
+                    return slowDouble(buf, start, end, cs);
+                }
+            } else if (c == '.' && !seenDot) {
+                seenDot = true;
+            } else {
+                break;
+            }
+        }
+        if (!seenDigit) {
+            return slowDouble(buf, start, end, cs);
+        }
+        if (i < end) {
+            byte c = buf.get(i);
+            if (c != 'e' && c != 'E') {
+                return slowDouble(buf, start, end, cs);
+            }
+            i++;
+            boolean negExp = false;
+            if (i < end && (buf.get(i) == '-' || buf.get(i) == '+')) {
+                negExp = buf.get(i) == '-';
+                i++;
+            }
+            if (i == end || end - i > 3) {
+                return slowDouble(buf, start, end, cs);
+            }
+            int exp = 0;
+            for (; i < end; i++) {
+                c = buf.get(i);
+                if (!isDigit(c)) {
+                    return slowDouble(buf, start, end, cs);
+                }
+                exp = exp * 10 + (c - '0');
+            }
+            scale += negExp ? -exp : exp;
+        }
+        double v;
+        if (scale == 0) {
+            v = mantissa;
+        } else if (scale > 0 && scale < POW10.length) {
+            v = mantissa * POW10[scale];
+        } else if (scale < 0 && -scale < POW10.length) {
+            v = mantissa / POW10[-scale];
+        } else if (mantissa == 0) {
+            v = 0;
+        } else {
+            return slowDouble(buf, start, end, cs);
+        }
+        return neg ? -v : v;
+    }
+
+    private static double slowDouble(ByteBuffer buf, int start, int end, Charset cs) {
+        byte[] b = new byte[end - start];
+        for (int i = 0; i < b.length; i++) {
+            b[i] = buf.get(start + i);
+        }
+        return Double.parseDouble(new String(b, cs));
+    }
+}
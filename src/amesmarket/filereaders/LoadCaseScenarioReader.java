@@ -23,7 +23,9 @@ import static amesmarket.Support.trimAllStrings;
 
 
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -111,6 +113,18 @@ public class LoadCaseScenarioReader extends AbstractConfigFileReader<LoadProfile
 
     private LoadType expectedLoadType;
 
+    /**
+     * Cache of {@link #zoneLoadOrder()}, reset by each header.
+     */
+    private int[] zoneDest;
+
+    /**
+     * Start offset, line and end offset of each day in the file, if
+     * reading with {@link #readOnDemand(File, int)}.
+     */
+    private Map<Integer, int[]> dayIndex = null;
+    private int windowSize;
+
     /**
      * Create a load scenario reader using the giving lsc's information to validate
      * the scenario file. The lsc must not be null.
@@ -169,14 +183,29 @@ public class LoadCaseScenarioReader extends AbstractConfigFileReader<LoadProfile
 
         //loop and half
         while( true ) {
-            move(false);
-
-            //now that have moved, check the condition. currentLine will be
-            //null if the file ended.
-            if(currentLine == null)
+            //now that have moved, check the condition. false if the file ended.
+            if(!moveToData(false))
                 break;
 
-            readDayLoadProfile(slp);
+            if(dayIndex != null) {
+                //only remember where the day is.
+                final int start = tokens().getLineStart();
+                final int startLine = lineNum;
+                final int d = readDayLoadProfile().getDayNumber();
+                dayIndex.put(d, new int[] {start, startLine, tokens().getNextLineStart()});
+            } else {
+                slp.put(readDayLoadProfile());
+            }
+        }
+
+        if(dayIndex != null) {
+            slp = new LoadProfileCollection(slp.getCaseName(), slp.getScenarioNumber(),
+                    dayIndex.keySet(), new LoadProfileCollection.DayLoader() {
+                        @Override
+                        public DailyLoadProfile load(int day) throws BadDataFileFormatException {
+                            return readDay(day);
+                        }
+                    }, windowSize);
         }
 
         try{
@@ -195,6 +224,89 @@ public class LoadCaseScenarioReader extends AbstractConfigFileReader<LoadProfile
         return slp;
     }
 
+    /**
+     * Read the scenario from the specified file, or from the copy in the
+     * load case's {@link LoadScenarioCache} if the file has not changed
+     * since it was last read with the same settings.
+     *
+     * @param file input file to read from
+     * @return the scenario in the file.
+     * @throws BadDataFileFormatException
+     */
+    @Override
+    public LoadProfileCollection read(final File file) throws BadDataFileFormatException {
+        final LoadScenarioCache cache = loadControl.getScenarioCache();
+        if(file == null || cache == null || !cache.isEnabled()) {
+            return super.read(file);
+        }
+
+        final String settings = cacheSettings();
+        LoadProfileCollection slp = cache.get(file, settings, zoneIndexOrder, HOURS_PER_DAY);
+        if(slp == null) {
+            slp = super.read(file);
+            cache.put(file, settings, slp, zoneNameList, zoneLoadOrder());
+        }
+        return slp;
+    }
+
+    /**
+     * Read a complete scenario file, but only remember where the profile
+     * of each day is. The profile is read again when the scenario is asked
+     * for the day, and the scenario keeps at most windowSize days.
+     *
+     * The file is checked as {@link #read(File)} does. The reader then
+     * belongs to the scenario and must not be used for another file. It
+     * keeps only the offsets of the days, and reads the lines of a day
+     * from the file again when they are needed; the file is not held open
+     * in between.
+     *
+     * @param file input file to read from
+     * @param windowSize number of days to keep loaded.
+     * @return the scenario in the file.
+     * @throws BadDataFileFormatException
+     */
+    public LoadProfileCollection readOnDemand(final File file, int windowSize) throws BadDataFileFormatException {
+        this.dayIndex = new HashMap<Integer, int[]>();
+        this.windowSize = windowSize;
+        final LoadProfileCollection slp = super.read(file);
+        resume(null); //readDay reads the lines it needs.
+        return slp;
+    }
+
+    /**
+     * Read the profile of a day again, for {@link #readOnDemand(File, int)}.
+     */
+    private synchronized DailyLoadProfile readDay(int day) throws BadDataFileFormatException {
+        final int[] dayLines = dayIndex.get(day);
+        try {
+            resume(LineTokenizer.of(sourceFile, dayLines[0], dayLines[2] - dayLines[0]));
+        } catch(IOException ioe) {
+            throw new BadDataFileFormatException(sourceFile, dayLines[1], ioe);
+        }
+        try {
+            tokens().seek(0, dayLines[1]);
+            moveToData(true);
+            final DailyLoadProfile dlp = readDayLoadProfile();
+            if(dlp.getDayNumber() != day) {
+                throw new BadDataFileFormatException(sourceFile, dayLines[1],
+                        "Expected day " + day + ", found day " + dlp.getDayNumber()
+                        + "; the file changed after it was read");
+            }
+            return dlp;
+        } finally {
+            resume(null);
+        }
+    }
+
+    /**
+     * Everything besides the file that the scenario read depends on.
+     */
+    private String cacheSettings() {
+        return String.format("%b %s %d %d %d %s", isSplitScenarioDays, expectedLoadType,
+                expectedScenarioNumber, loadControl.getNumZones(), loadControl.getMaxDay(),
+                loadControl.getCaseName());
+    }
+
     /**
      * Read multiple profile files to construct a single load scenario.
      * @param files
@@ -228,19 +340,15 @@ public class LoadCaseScenarioReader extends AbstractConfigFileReader<LoadProfile
     /**
      * Read in the load profile for a single day.
      *
-     * When finished reading the day, the {@link DailyLoadProfile} will
-     * be added to the slp.
-     *
-     * @param slp
-     * @return
+     * @return the profile of the day.
      * @throws BadDataFileFormatException
      *
      * Breaks the {@link #move(boolean)} protocol with {@link #readLoadProfileData}.
      */
-    private void readDayLoadProfile(LoadProfileCollection slp)
+    private DailyLoadProfile readDayLoadProfile()
             throws BadDataFileFormatException {
         final int NUM_ZONES = loadControl.getNumZones();
-        final int LAST_ZONE_IDX = numTimeCols + NUM_ZONES;
+        final LineTokenizer tokens = tokens();
 
 
         int expectedDay = -1; //Day we should be reading for
@@ -248,23 +356,21 @@ public class LoadCaseScenarioReader extends AbstractConfigFileReader<LoadProfile
         final DailyLoadProfile dlp = new DailyLoadProfile(HOURS_PER_DAY);
 
         for(int h = 0; h < HOURS_PER_DAY; h++){
-            String[] lpElements = currentLine.split("\\s+");
-            trimAllStrings(lpElements);
-
-            if( !checkCorrectZoneCount(lpElements) ){
+            if( tokens.countTokens() != numTimeCols + NUM_ZONES ){
                 //TODO: Error message reported expected/found.
-                throw new BadDataFileFormatException(sourceFile, lineNum, "Wrong number elements in \"" + currentLine + "\"");
+                throw new BadDataFileFormatException(sourceFile, lineNum, "Wrong number elements in \"" + tokens.text() + "\"");
             }
 
             int day;
             int hour;
 
+            //the day, when there is one, comes before the hour.
             if(!isSplitScenarioDays)
-                day = stoi(lpElements[dayIdx]);
+                day = nextInt(tokens);
             else
                 day = this.dayNumber;
 
-            hour = stoi(lpElements[hourIdx]);
+            hour = nextInt(tokens);
 
             if(expectedDay == -1){
                 expectedDay = day; //set the expected day the first time through
@@ -276,20 +382,17 @@ public class LoadCaseScenarioReader extends AbstractConfigFileReader<LoadProfile
                 }
             }
 
+            //Convert each zone's load to a double, in the expected zone order.
+            final int[] zoneDest = zoneLoadOrder();
             double[] zoneLoads = new double[NUM_ZONES];
-
-            //Convert each zone's load to a double.
-            for(int zi = numTimeCols; zi < LAST_ZONE_IDX; zi++){
+            for(int zi = 0; zi < NUM_ZONES; zi++){
                 try{
-                    zoneLoads[zi - numTimeCols] //adjust for time coordinate columns
-                            = Double.parseDouble(lpElements[zi]);
+                    zoneLoads[zoneDest[zi]] = tokens.nextDouble();
                 }catch(NumberFormatException nfe){
-                    throw new BadDataFileFormatException(sourceFile, lineNum, lpElements[zi] + " must be a valid double");
+                    throw new BadDataFileFormatException(sourceFile, lineNum, tokens.lastToken() + " must be a valid double");
                 }
             }
 
-            zoneLoads = adjustZoneLoadOrder(zoneLoads);
-
             //Adjust to 0 indexed hours.
             //TODO-XXX: Does the rest of AMES expect 0 or 1 indexed hours.
             // I think it is 0, but need to verify/document somewhere.
@@ -301,31 +404,42 @@ public class LoadCaseScenarioReader extends AbstractConfigFileReader<LoadProfile
             // is an empty line at the end of the file and prevent
             // trying to read a day when there isn't another in the file.
             if( h < (HOURS_PER_DAY - 1))
-                move(true);
+                moveToData(true);
         }
 
         //Mark what day we just processed
         dlp.setDayNumber(expectedDay);
-        slp.put(dlp);
+        return dlp;
     }
 
     /**
-     * Reorder the zoneLoads according to the expected order in
-     * the TestCase file.
-     * @param zoneLoads
+     * Index, in the expected order of the TestCase file, of the zone in
+     * each column of the file. Looked up once per file instead of for
+     * every line.
      */
-    private double[] adjustZoneLoadOrder(double[] zoneLoads) {
-
-        double[] sorted = new double[zoneLoads.length];
-
-        for(int i = 0; i<zoneLoads.length; i++) {
-            String zName = zoneColumnName(i);
-            int destIdx = zoneIndexOrder.get(zName);
-
-            sorted[destIdx-1] = zoneLoads[i];
+    private int[] zoneLoadOrder() {
+        final int numZones = loadControl.getNumZones();
+        if (zoneDest == null || zoneDest.length != numZones) {
+            int[] dest = new int[numZones];
+            for(int i = 0; i<numZones; i++) {
+                String zName = zoneColumnName(i);
+                dest[i] = zoneIndexOrder.get(zName) - 1;
+            }
+            zoneDest = dest;
         }
+        return zoneDest;
+    }
 
-        return sorted;
+    /**
+     * Read the next token as an int, as {@link #stoi(String)} does.
+     */
+    private int nextInt(LineTokenizer tokens) throws BadDataFileFormatException {
+        try {
+            return tokens.nextInt();
+        } catch (NumberFormatException nfe) {
+            throw new BadDataFileFormatException(sourceFile, lineNum, "Expected \""
+                    + tokens.lastToken() + "\" to be an integer", nfe);
+        }
     }
 
     /**
@@ -535,6 +649,9 @@ public class LoadCaseScenarioReader extends AbstractConfigFileReader<LoadProfile
      */
     private void validateColumnDescriptions(String dataDesc) throws BadDataFileFormatException{
 
+        zoneDest = null;
+        zoneNameList.clear();
+
         //split on whitespace. Will handle not explicitly tab deliminated columns
         String[]  columnDescs = dataDesc.split("\\s+");
         trimAllStrings(columnDescs);
@@ -20,11 +20,9 @@
 package amesmarket.filereaders;
 
 import java.io.File;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.Scanner;
 
 import amesmarket.DailyLoadProfile;
 import amesmarket.LoadProfileCollection;
@@ -52,28 +50,32 @@ import amesmarket.LoadProfileCollection;
  */
 public class LoadProfileReader {
 
-    private final Scanner loadProfileReader;
+    private final LineTokenizer loadProfileReader;
+    private final InputStream loadProfileStream;
     private String currentLine = null;
 
     /**
      *
      * @param loadProfileFile
-     * @throws FileNotFoundException
+     * @throws IOException if the file could not be found or mapped.
      */
-    public LoadProfileReader(final File loadProfileFile) throws FileNotFoundException {
-        loadProfileReader = new Scanner(loadProfileFile);
+    public LoadProfileReader(final File loadProfileFile) throws IOException {
+        loadProfileReader = new LineTokenizer(loadProfileFile);
+        loadProfileStream = null;
     }
 
     /**
      *
      * @param loadProfileReader, may not be null.
      * @throws IllegalArgumentException if loadProfileReader is null.
+     * @throws IOException if the stream could not be read.
      */
-    public LoadProfileReader(final InputStream loadProfileStream) {
+    public LoadProfileReader(final InputStream loadProfileStream) throws IOException {
         if(loadProfileStream == null) {
             throw new IllegalArgumentException("Reader may not be null");
         }
-        this.loadProfileReader = new Scanner(loadProfileStream);
+        this.loadProfileReader = LineTokenizer.of(loadProfileStream);
+        this.loadProfileStream = loadProfileStream;
     }
 
     /**
@@ -111,13 +113,11 @@ public class LoadProfileReader {
         while( currentLine != null && !isDayMarker(currentLine)) {
             //if null, or Day <int> return
 
-            //else, split the line in to its parts, create double array and add it
-            String[] lineParts = currentLine.split("\\s+");
-
-            if(lineParts.length == expectedEntries) {
+            //else, read the line's parts in to a double array and add it
+            if(loadProfileReader.countTokens() == expectedEntries) {
                 double[] hourlyLoadProfileByLSE = new double[expectedEntries];
                 for(int i = 0; i < expectedEntries; i++) {
-                    hourlyLoadProfileByLSE[i] = Double.parseDouble(lineParts[i]);
+                    hourlyLoadProfileByLSE[i] = loadProfileReader.nextDouble();
                 }
 
                 loads.add(hourlyLoadProfileByLSE);
@@ -132,14 +132,15 @@ public class LoadProfileReader {
     }
 
     protected boolean isDayMarker(String s) {
-        return s.startsWith("Day");
+        return loadProfileReader.startsWith("Day");
     }
 
     protected int getDay(String s) {
-        String[] elems = s.split("\\s+"); //split on whitespace.
+        loadProfileReader.rewind();
+        loadProfileReader.skipToken();
 
         //if not 2 indexes error. FIXME
-        return Integer.parseInt(elems[1]);
+        return loadProfileReader.nextInt();
     }
 
     /**
@@ -150,18 +151,19 @@ public class LoadProfileReader {
     protected void move() {
         //TODO-X: Protocol for unexpected end of file?
         //FIXME-X: Strip Comments from the end of the line.
-        if(loadProfileReader.hasNextLine())
-            currentLine = loadProfileReader.nextLine().trim();
+        if(loadProfileReader.nextLine())
+            currentLine = loadProfileReader.text();
         else {
             currentLine = null;
         }
     }
 
     /**
-     * Closes the underlying {@link InputStream}.
+     * Closes the underlying {@link InputStream}, if there is one.
      * @throws IOException
      */
     public void close() throws IOException {
-        loadProfileReader.close();
+        if(loadProfileStream != null)
+            loadProfileStream.close();
     }
 }
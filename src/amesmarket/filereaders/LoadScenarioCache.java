@@ -0,0 +1,362 @@
+//FIXME: LICENSE
+package amesmarket.filereaders;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.DoubleBuffer;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import amesmarket.DailyLoadProfile;
+import amesmarket.LoadProfileCollection;
+
+/**
+ * Binary copies of the load scenario files, so a case that is run again
+ * reads its loads instead of parsing the text.
+ *
+ * Each scenario file has one cache file, written the first time the text
+ * is read. It holds:
+ * <ul>
+ * <li>a header: the path, length, modification time and CRC-32 of the
+ * text file, the reader
+ * settings it was read with, the case name, the scenario number, the zone
+ * names in the order of the file's columns and the day numbers,</li>
+ * <li>the loads, day x hour x zone doubles, in the file's zone order.</li>
+ * </ul>
+ * A cache file is only used if the text file still has the same length and
+ * was read with the same settings, and if it has the same modification time
+ * or, failing that, the same checksum; otherwise the text is parsed and the
+ * cache file written again. So the text is only read again on a hit when it
+ * was touched, not every time. Zones are put in the order of the TestCase
+ * each time the loads are read, as the reader does.
+ *
+ * Cache files are read into memory and closed, not mapped, so another run
+ * can always replace them.
+ *
+ * The cache is off unless -DLOAD_CACHE_DIR is set. Cache files are never
+ * removed, there is one per scenario file read.
+ */
+public class LoadScenarioCache {
+
+    private static final int MAGIC = 0x414d4c50; //AMLP
+    private static final int VERSION = 2;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final String SUFFIX = ".lpc";
+
+    /**
+     * Directory of the cache, or null if caching is off.
+     */
+    private final File dir;
+
+    private int hits;
+    private int misses;
+
+    /**
+     * A cache that is always empty.
+     */
+    public LoadScenarioCache() {
+        this.dir = null;
+    }
+
+    /**
+     * @param dir directory of the cache, created if needed.
+     */
+    public LoadScenarioCache(File dir) {
+        if (dir == null) {
+            throw new IllegalArgumentException("No cache directory");
+        }
+        this.dir = dir;
+    }
+
+    /**
+     * The cache set up by the LOAD_CACHE_DIR system property.
+     */
+    public static LoadScenarioCache fromProperties() {
+        String d = System.getProperty("LOAD_CACHE_DIR");
+        if (d == null || d.isEmpty()) {
+            return new LoadScenarioCache();
+        }
+        return new LoadScenarioCache(new File(d));
+    }
+
+    /**
+     * @return true if load scenarios are cached.
+     */
+    public boolean isEnabled() {
+        return dir != null;
+    }
+
+    /**
+     * Read the cached loads of source.
+     *
+     * @param source text file of the scenario.
+     * @param settings reader settings the loads must have been read with.
+     * @param zoneIndexOrder order of the zones in the TestCase.
+     * @param hoursPerDay
+     * @return the loads, or null if the cache has none for source, or they
+     * are out of date.
+     */
+    public LoadProfileCollection get(File source, String settings,
+            IZoneIndexProvider zoneIndexOrder, int hoursPerDay) {
+        if (dir == null) {
+            return null;
+        }
+        LoadProfileCollection lpc = null;
+        File f = entry(source);
+        if (f.isFile()) {
+            try {
+                lpc = read(f, source, settings, zoneIndexOrder, hoursPerDay);
+            } catch (IOException e) {
+                lpc = null; //rewritten by another run, most likely.
+            } catch (RuntimeException e) {
+                System.err.println("Ignoring bad load scenario cache " + f.getPath() + ": " + e);
+                lpc = null;
+            }
+        }
+        count(lpc != null);
+        return lpc;
+    }
+
+    /**
+     * Cache the loads read from source.
+     *
+     * @param source text file of the scenario.
+     * @param settings reader settings the loads were read with.
+     * @param lpc loads read from source.
+     * @param zoneNames zone names, in the order of the columns of source.
+     * @param zoneDest index of each column's zone in the loads.
+     */
+    public void put(File source, String settings, LoadProfileCollection lpc,
+            List<String> zoneNames, int[] zoneDest) {
+        if (dir == null) {
+            return;
+        }
+        try {
+            byte[] b = write(source, settings, lpc, zoneNames, zoneDest);
+            if (b == null) {
+                return; //some hours are missing, leave it to the text.
+            }
+            if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+                throw new IOException("Unable to create directory " + dir.getPath());
+            }
+            //write and rename, so other runs never read half an entry.
+            File tmp = File.createTempFile("put", ".tmp", dir);
+            FileOutputStream out = new FileOutputStream(tmp);
+            try {
+                out.write(b);
+            } finally {
+                out.close();
+            }
+            File f = entry(source);
+            if (!tmp.renameTo(f)) {
+                f.delete();
+                if (!tmp.renameTo(f)) {
+                    tmp.delete();
+                    throw new IOException("Unable to rename " + tmp.getPath());
+                }
+            }
+        } catch (IOException e) {
+            System.err.println("Unable to cache " + source.getPath() + ": " + e.getMessage());
+        }
+    }
+
+    private synchronized void count(boolean hit) {
+        if (hit) {
+            hits++;
+        } else {
+            misses++;
+        }
+    }
+
+    public synchronized int getHits() {
+        return hits;
+    }
+
+    public synchronized int getMisses() {
+        return misses;
+    }
+
+    private File entry(File source) {
+        String path = canonicalPath(source);
+        return new File(dir, source.getName() + "-"
+                + Integer.toHexString(path.hashCode()) + SUFFIX);
+    }
+
+    private static String canonicalPath(File f) {
+        try {
+            return f.getCanonicalPath();
+        } catch (IOException e) {
+            return f.getAbsolutePath();
+        }
+    }
+
+    private static LoadProfileCollection read(File f, File source, String settings,
+            IZoneIndexProvider zoneIndexOrder, int hoursPerDay) throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(readFully(f));
+        if (buf.getInt() != MAGIC || buf.getInt() != VERSION) {
+            return null;
+        }
+        if (!canonicalPath(source).equals(getString(buf))
+                || buf.getLong() != source.length()) {
+            return null;
+        }
+        long modified = buf.getLong();
+        long crc = buf.getLong();
+        if (!settings.equals(getString(buf))
+                || (modified != source.lastModified() && crc != checksum(source))) {
+            return null;
+        }
+        String caseName = getString(buf);
+        int scenarioNumber = buf.getInt();
+
+        int numZones = buf.getInt();
+        int[] zoneDest = new int[numZones];
+        for (int zi = 0; zi < numZones; zi++) {
+            String zName = getString(buf);
+            if (!zoneIndexOrder.hasIndexForName(zName)) {
+                return null; //the reader reports it.
+            }
+            zoneDest[zi] = zoneIndexOrder.get(zName) - 1;
+        }
+
+        int numDays = buf.getInt();
+        if (buf.getInt() != hoursPerDay) {
+            return null;
+        }
+        int[] days = new int[numDays];
+        for (int d = 0; d < numDays; d++) {
+            days[d] = buf.getInt();
+        }
+
+        LoadProfileCollection lpc = new LoadProfileCollection();
+        lpc.setCaseName(caseName);
+        lpc.setScenarioNumber(scenarioNumber);
+        DoubleBuffer loads = buf.asDoubleBuffer();
+        double[] row = new double[numZones];
+        for (int d = 0; d < numDays; d++) {
+            DailyLoadProfile dlp = new DailyLoadProfile(hoursPerDay);
+            for (int h = 0; h < hoursPerDay; h++) {
+                loads.get(row);
+                double[] zoneLoads = new double[numZones];
+                for (int zi = 0; zi < numZones; zi++) {
+                    zoneLoads[zoneDest[zi]] = row[zi];
+                }
+                dlp.setLoadByHour(h, zoneLoads);
+            }
+            dlp.setDayNumber(days[d]);
+            lpc.put(dlp);
+        }
+        return lpc;
+    }
+
+    private static byte[] write(File source, String settings, LoadProfileCollection lpc,
+            List<String> zoneNames, int[] zoneDest) throws IOException {
+        List<DailyLoadProfile> profiles = lpc.getAllProfiles();
+        final int numZones = zoneDest.length;
+        int hoursPerDay = profiles.isEmpty() ? 0 : profiles.get(0).getNumHours();
+        for (DailyLoadProfile dlp : profiles) {
+            if (dlp.getNumHours() != hoursPerDay) {
+                return null;
+            }
+            for (int h = 0; h < hoursPerDay; h++) {
+                if (dlp.getLoadByHour(h) == null) {
+                    return null;
+                }
+            }
+        }
+
+        byte[] path = canonicalPath(source).getBytes(UTF8);
+        byte[] set = settings.getBytes(UTF8);
+        byte[] caseName = lpc.getCaseName() == null ? new byte[0] : lpc.getCaseName().getBytes(UTF8);
+        byte[][] names = new byte[numZones][];
+        int size = 4 + 4                     //magic, version
+                + 4 + path.length + 8 + 8 + 8 //source
+                + 4 + set.length
+                + 4 + caseName.length + 4     //case name, scenario number
+                + 4 + 4 + 4;                  //zones, days, hours
+        for (int zi = 0; zi < numZones; zi++) {
+            names[zi] = zoneNames.get(zi).getBytes(UTF8);
+            size += 4 + names[zi].length;
+        }
+        size += 4 * profiles.size();
+        size += 8 * profiles.size() * hoursPerDay * numZones;
+
+        ByteBuffer buf = ByteBuffer.allocate(size);
+        buf.putInt(MAGIC);
+        buf.putInt(VERSION);
+        putBytes(buf, path);
+        buf.putLong(source.length());
+        buf.putLong(source.lastModified());
+        buf.putLong(checksum(source));
+        putBytes(buf, set);
+        putBytes(buf, caseName);
+        buf.putInt(lpc.getScenarioNumber());
+        buf.putInt(numZones);
+        for (byte[] n : names) {
+            putBytes(buf, n);
+        }
+        buf.putInt(profiles.size());
+        buf.putInt(hoursPerDay);
+        for (DailyLoadProfile dlp : profiles) {
+            buf.putInt(dlp.getDayNumber());
+        }
+        for (DailyLoadProfile dlp : profiles) {
+            for (int h = 0; h < hoursPerDay; h++) {
+                double[] zoneLoads = dlp.getLoadByHour(h);
+                for (int zi = 0; zi < numZones; zi++) {
+                    buf.putDouble(zoneLoads[zoneDest[zi]]);
+                }
+            }
+        }
+        return buf.array();
+    }
+
+    /**
+     * CRC-32 of the content of f.
+     */
+    static long checksum(File f) throws IOException {
+        CRC32 crc = new CRC32();
+        byte[] b = new byte[64 * 1024];
+        FileInputStream in = new FileInputStream(f);
+        try {
+            int n;
+            while ((n = in.read(b)) >= 0) {
+                crc.update(b, 0, n);
+            }
+        } finally {
+            in.close();
+        }
+        return crc.getValue();
+    }
+
+    private static byte[] readFully(File f) throws IOException {
+        RandomAccessFile in = new RandomAccessFile(f, "r");
+        try {
+            long size = in.length();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException(f.getPath() + " is too large");
+            }
+            byte[] b = new byte[(int) size];
+            in.readFully(b);
+            return b;
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void putBytes(ByteBuffer buf, byte[] b) {
+        buf.putInt(b.length);
+        buf.put(b);
+    }
+
+    private static String getString(ByteBuffer buf) {
+        byte[] b = new byte[buf.getInt()];
+        buf.get(b);
+        return new String(b, UTF8);
+    }
+}
@@ -240,6 +240,14 @@ public class AMESTest extends AbstractTestAMES {
         assertTrue(np.isFloatingPoint("123456789"));
         assertTrue(np.isFloatingPoint("3.5"));
         assertFalse(np.isFloatingPoint("hello"));
+        assertTrue(np.isFloatingPoint(" .5e-3 "));
+        assertTrue(np.isFloatingPoint("1.5f"));
+        assertTrue(np.isFloatingPoint("-Infinity"));
+        assertTrue(np.isFloatingPoint("0x1.8p1"));
+        assertFalse(np.isFloatingPoint("."));
+        assertFalse(np.isFloatingPoint("1e"));
+        assertFalse(np.isFloatingPoint("0x1.8"));
+        assertFalse(np.isFloatingPoint("1 2"));
 
         assertEquals(1, np.stod("+1"), TestConstants.DOUBLE_EQ);
         assertEquals(1, np.stod("1"), TestConstants.DOUBLE_EQ);
@@ -0,0 +1,121 @@
+/*
+ * FIXME: LICENSE
+ */
+package amesmarket;
+
+import static org.junit.Assert.*;
+
+import java.io.StringReader;
+
+import org.junit.Test;
+
+import amesmarket.filereaders.BadDataFileFormatException;
+import amesmarket.filereaders.CaseFileReader;
+
+/**
+ * The tables of a TestCase read in place must hold the numbers of the file,
+ * formatted as the GUI shows them.
+ */
+public class CaseFileValuesTest {
+
+    private static String testCase(String demandSource, boolean lseSections) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("LSEDemandSource ").append(demandSource).append('\n');
+        sb.append("#ZoneNamesStart\nz1\nz2\n#ZoneNamesEnd\n");
+        sb.append("#NodeDataStart\n  2\t0.05\n#NodeDataEnd\n");
+        sb.append("#BranchDataStart\n");
+        sb.append("// Name From To MaxCap X\n");
+        sb.append("  Branch1\tz1\tz2\t250.12345\t0.5\n");
+        sb.append("  Branch 2  z2  z1  1e3  .25\n");
+        sb.append("#BranchDataEnd\n");
+        sb.append("#GenDataStart\n");
+        sb.append("GenCo1 1 z1 0.0 14 0.005 0 110 1000000\n");
+        sb.append("GenCo2 2 z2 0.1 15 0.006 0 100 1000000\n");
+        sb.append("#GenDataEnd\n");
+        if (lseSections) {
+            sb.append("#LSEDataFixedDemandStart\n");
+            for (int s = 0; s < 3; s++) {
+                for (int l = 1; l <= 2; l++) {
+                    sb.append("LSE").append(l).append(' ').append(l).append(" z").append(l);
+                    for (int h = 0; h < 8; h++) {
+                        sb.append(' ').append(100 * l + 8 * s + h + 0.5);
+                    }
+                    sb.append('\n');
+                }
+            }
+            sb.append("#LSEDataFixedDemandEnd\n");
+            sb.append("#LSEDataPriceSensitiveDemandStart\n");
+            for (int l = 1; l <= 2; l++) {
+                for (int h = 0; h < 24; h++) {
+                    sb.append("LSE").append(l).append(' ').append(l).append(" z").append(l)
+                            .append(' ').append(h).append(' ').append(40 + h).append(" 0.1 ")
+                            .append(h / 4.0).append('\n');
+                }
+            }
+            sb.append("#LSEDataPriceSensitiveDemandEnd\n");
+            sb.append("#LSEDataHybridDemandStart\n");
+            for (int s = 0; s < 3; s++) {
+                for (int l = 1; l <= 2; l++) {
+                    sb.append("LSE").append(l).append(' ').append(l).append(" z").append(l);
+                    for (int h = 0; h < 8; h++) {
+                        sb.append(' ').append(1 + (h + s + l) % 3);
+                    }
+                    sb.append('\n');
+                }
+            }
+            sb.append("#LSEDataHybridDemandEnd\n");
+        }
+        return sb.toString();
+    }
+
+    private static CaseFileData read(String input) throws BadDataFileFormatException {
+        return new CaseFileReader().loadCaseFileData(new StringReader(input));
+    }
+
+    private static double number(Object o) {
+        return Double.parseDouble(o.toString());
+    }
+
+    @Test
+    public void testTables() throws BadDataFileFormatException {
+        CaseFileData cfd = read(testCase("TestCase", true));
+
+        assertEquals(2, cfd.iNodeData);
+        assertEquals(0.05, number(cfd.nodeData[0][1]), 0);
+
+        assertEquals(2, cfd.iBranchData);
+        assertEquals("Branch1", cfd.branchData[0][0]);
+        assertEquals("Branch 2", cfd.branchData[1][0]);
+        assertEquals(1, cfd.branchData[0][1]);
+        assertEquals(2, cfd.branchData[0][2]);
+        assertEquals(String.format("%1$15.4f", 250.12345), cfd.branchData[0][3]);
+        assertEquals(1000, number(cfd.branchData[1][3]), 0);
+        assertEquals(0.25, number(cfd.branchData[1][4]), 0);
+
+        assertEquals(2, cfd.genData.length);
+        assertEquals(0.006, cfd.genData[1].b, 0);
+
+        for (int i = 0; i < 2; i++) {
+            assertEquals("LSE" + (i + 1), cfd.lseData[i][0]);
+            assertEquals(i + 1, cfd.lseData[i][1]);
+            assertEquals(i + 1, cfd.lseData[i][2]);
+            for (int h = 0; h < 24; h++) {
+                assertEquals(100 * (i + 1) + h + 0.5, number(cfd.lseData[i][3 + h]), 0);
+                assertEquals(1 + (h % 8 + h / 8 + i + 1) % 3, cfd.lseHybridDemand[i][3 + h]);
+                assertEquals(h, cfd.lsePriceSensitiveDemand[i][h][3]);
+                assertEquals(h / 4.0, cfd.lsePriceSensitiveDemand[i][h][6]);
+            }
+            assertEquals(cfd.lseData[i][3 + 17], cfd.lseSec3Data[i][3 + 1]);
+        }
+    }
+
+    @Test
+    public void testLoadCaseDefaults() throws BadDataFileFormatException {
+        CaseFileData cfd = read(testCase("LoadCase", false));
+
+        assertEquals(2, cfd.iLSEData);
+        assertEquals(2, cfd.lseData[1][1]);
+        assertEquals(2, cfd.lseData[1][2]);
+        assertEquals(23, cfd.lsePriceSensitiveDemand[1][23][3]);
+    }
+}
@@ -0,0 +1,294 @@
+/*
+ * FIXME: LICENSE
+ */
+package amesmarket;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import cern.colt.matrix.DoubleMatrix2D;
+import cern.colt.matrix.impl.DenseDoubleMatrix2D;
+
+/**
+ * Compare the alternative DCOPFJ formulations against the original dense one
+ * on a small, congested 5 bus grid.
+ */
+public class DCOPFJTest {
+
+    /**
+     * Tolerance for comparing solutions of different formulations.
+     */
+    private static final double TOL = 1.0E-5;
+
+    // From  To  MaxCap  Reactance
+    private static final double[][] BRANCH_DATA = {
+        {1, 2, 250, 0.0281},
+        {1, 4, 150, 0.0304},
+        {1, 5, 400, 0.0064},
+        {2, 3, 350, 0.0108},
+        {3, 4, 240, 0.0297},
+        {4, 5, 240, 0.0297}
+    };
+
+    // a  b  capL  capU
+    private static final double[][] SUPPLY_OFFER = {
+        {14, 0.005, 0, 110},
+        {15, 0.006, 0, 100},
+        {25, 0.010, 0, 520},
+        {30, 0.012, 0, 200},
+        {10, 0.007, 0, 600}
+    };
+    private static final int[] GEN_NODES = {1, 1, 3, 4, 5};
+
+    // c  d  SLMax
+    private static final double[][] DEMAND_BID = {
+        {40, 0.05, 100},
+        {40, 0.05, 100},
+        {40, 0.05, 100}
+    };
+    private static final double[] LOAD = {350, 300, 250};
+    private static final int[] LSE_NODES = {2, 3, 4};
+
+    private final INIT init = new INIT();
+
+    private TransGrid makeGrid() {
+        double[][] nodeData = {{5, 0.05}};
+        return new TransGrid(nodeData, copy(BRANCH_DATA), 10, 10, init);
+    }
+
+    private DCOPFJ solve(TransGrid grid, int[] hybridFlags, boolean sparse) {
+        return solve(grid, hybridFlags, LOAD, sparse, null);
+    }
+
+    private DCOPFJ solve(TransGrid grid, int[] hybridFlags, double[] load,
+            boolean sparse, int[] warmActiveSet) {
+        return solve(grid, hybridFlags, load, sparse, warmActiveSet, null);
+    }
+
+    private DCOPFJ solve(TransGrid grid, int[] hybridFlags, double[] load,
+            boolean sparse, int[] warmActiveSet, QuadProgJSolver solver) {
+        return new DCOPFJ(copy(SUPPLY_OFFER), copy(DEMAND_BID), load.clone(),
+                hybridFlags, GEN_NODES, LSE_NODES, grid, 0, false, init, sparse,
+                warmActiveSet, solver);
+    }
+
+    private DCOPFJ solve(TransGrid grid, int[] hybridFlags, DCOPFJ.Formulation formulation) {
+        return new DCOPFJ(copy(SUPPLY_OFFER), copy(DEMAND_BID), LOAD.clone(),
+                hybridFlags, GEN_NODES, LSE_NODES, grid, 0, false, init, formulation,
+                null, null);
+    }
+
+    private DCOPFJ solveLazy(TransGrid grid, int[] hybridFlags, double[] load,
+            DCOPFJ.Formulation formulation, int[] warmActiveSet) {
+        return new DCOPFJ(copy(SUPPLY_OFFER), copy(DEMAND_BID), load.clone(),
+                hybridFlags, GEN_NODES, LSE_NODES, grid, 0, false, init, formulation,
+                true, warmActiveSet, null);
+    }
+
+    private static double[] scale(double[] a, double factor) {
+        double[] s = new double[a.length];
+        for (int i = 0; i < a.length; i++) {
+            s[i] = a[i] * factor;
+        }
+        return s;
+    }
+
+    private static double[][] copy(double[][] a) {
+        double[][] c = new double[a.length][];
+        for (int i = 0; i < a.length; i++) {
+            c[i] = a[i].clone();
+        }
+        return c;
+    }
+
+    private static void assertSameSolution(DCOPFJ exp, DCOPFJ act) {
+        assertTrue(exp.getIsSolutionFeasibleAndOptimal());
+        assertTrue(act.getIsSolutionFeasibleAndOptimal());
+        assertArrayEquals(exp.getCommitment(), act.getCommitment(), TOL);
+        assertArrayEquals(exp.getLMP(), act.getLMP(), TOL);
+        assertArrayEquals(exp.getBranchFlow(), act.getBranchFlow(), TOL);
+        assertArrayEquals(exp.getSLoad(), act.getSLoad(), TOL);
+        // total cost is a sum of O(1e4) terms, compare it relatively
+        assertEquals(exp.getMinTVC(), act.getMinTVC(),
+                TOL * Math.max(1, Math.abs(exp.getMinTVC())));
+    }
+
+    @Test
+    public void testSparseFixedDemand() {
+        TransGrid grid = makeGrid();
+        int[] fixed = {1, 1, 1};
+        assertSameSolution(solve(grid, fixed, false), solve(grid, fixed, true));
+    }
+
+    @Test
+    public void testSparsePriceSensitiveDemand() {
+        TransGrid grid = makeGrid();
+        int[] hybrid = {3, 1, 3};
+        assertSameSolution(solve(grid, hybrid, false), solve(grid, hybrid, true));
+    }
+
+    @Test
+    public void testPTDFFixedDemand() {
+        TransGrid grid = makeGrid();
+        int[] fixed = {1, 1, 1};
+        DCOPFJ dense = solve(grid, fixed, false);
+        DCOPFJ ptdf = solve(grid, fixed, DCOPFJ.Formulation.PTDF);
+        assertSameSolution(dense, ptdf);
+        assertArrayEquals(dense.getVoltAngle(), ptdf.getVoltAngle(), TOL);
+        assertArrayEquals(dense.getIneqMultiplier(), ptdf.getIneqMultiplier(), TOL);
+    }
+
+    @Test
+    public void testPTDFPriceSensitiveDemand() {
+        TransGrid grid = makeGrid();
+        int[] hybrid = {3, 1, 3};
+        assertSameSolution(solve(grid, hybrid, false),
+                solve(grid, hybrid, DCOPFJ.Formulation.PTDF));
+    }
+
+    /**
+     * Lazily added line limits give the solution of the full problem, here
+     * where some lines are overloaded without them.
+     */
+    @Test
+    public void testLazyLines() {
+        TransGrid grid = makeGrid();
+        int[] fixed = {1, 1, 1};
+        for (DCOPFJ.Formulation f : DCOPFJ.Formulation.values()) {
+            DCOPFJ full = solve(grid, fixed, f);
+            DCOPFJ lazy = solveLazy(grid, fixed, LOAD, f, null);
+            assertSameSolution(full, lazy);
+            assertArrayEquals(full.getIneqMultiplier(), lazy.getIneqMultiplier(), TOL);
+            assertTrue(lazy.getNumLazyRounds() > 1);
+            assertTrue(lazy.getNumMonitoredLines() < BRANCH_DATA.length);
+
+            // Seeded with the lines binding in the previous solve
+            DCOPFJ warm = solveLazy(grid, fixed, LOAD, f, lazy.getActiveSet());
+            assertSameSolution(full, warm);
+            assertEquals(1, warm.getNumLazyRounds());
+        }
+    }
+
+    @Test
+    public void testLazyLinesUncongested() {
+        TransGrid grid = makeGrid();
+        int[] hybrid = {3, 1, 3};
+        double[] load = scale(LOAD, 0.3);
+        DCOPFJ lazy = solveLazy(grid, hybrid, load, DCOPFJ.Formulation.PTDF, null);
+        assertSameSolution(solve(grid, hybrid, load, false, null), lazy);
+        assertEquals(1, lazy.getNumLazyRounds());
+        assertEquals(0, lazy.getNumMonitoredLines());
+    }
+
+    /**
+     * Warm-start the next 'hour' (5% more load) with the active set of the
+     * previous one. Same solution as a cold start, in fewer iterations.
+     */
+    @Test
+    public void testWarmStartFromPreviousHour() {
+        TransGrid grid = makeGrid();
+        int[] fixed = {1, 1, 1};
+        double[] nextLoad = scale(LOAD, 1.05);
+
+        DCOPFJ prev = solve(grid, fixed, LOAD, false, null);
+        DCOPFJ cold = solve(grid, fixed, nextLoad, false, null);
+        DCOPFJ warm = solve(grid, fixed, nextLoad, false, prev.getActiveSet());
+
+        assertSameSolution(cold, warm);
+        assertTrue(cold.getNumIterations() > 0);
+        assertTrue(warm.getNumIterations() < cold.getNumIterations());
+    }
+
+    /**
+     * A reused QuadProgJSolver factors G once for a sequence of hours with
+     * different loads, and gives the same solutions as fresh solves.
+     */
+    @Test
+    public void testSolverReusesFactorization() {
+        TransGrid grid = makeGrid();
+        int[] fixed = {1, 1, 1};
+        QuadProgJSolver solver = new QuadProgJSolver();
+
+        for (int h = 0; h < 4; h++) {
+            double[] load = scale(LOAD, 0.8 + 0.1 * h);
+            assertSameSolution(solve(grid, fixed, load, false, null),
+                    solve(grid, fixed, load, false, null, solver));
+        }
+        assertEquals(4, solver.getNumSolves());
+        assertEquals(1, solver.getNumFactorizations());
+    }
+
+    /**
+     * The factorization is not reused for a G that differs by less than the
+     * tolerance of DoubleMatrix2D.equals.
+     */
+    @Test
+    public void testFactorizationNeedsExactG() {
+        QuadProgJSolver solver = new QuadProgJSolver();
+        DoubleMatrix2D g = new DenseDoubleMatrix2D(new double[][] {{2, 0}, {0, 3}});
+        solver.factor(g);
+        solver.factor(g.copy());
+        assertEquals(1, solver.getNumFactorizations());
+
+        g.setQuick(1, 1, 3 + 1e-12);
+        solver.factor(g);
+        assertEquals(2, solver.getNumFactorizations());
+    }
+
+    /**
+     * QuadProgJFlat gives the same solutions as QuadProgJ, with and without
+     * warm starts, and factors G once for the same grid and offers.
+     */
+    @Test
+    public void testFlatSolver() {
+        TransGrid grid = makeGrid();
+        QuadProgJSolver flat = new QuadProgJSolver(true);
+        int[][] flags = {{1, 1, 1}, {3, 1, 3}};
+        for (int[] hybrid : flags) {
+            for (DCOPFJ.Formulation f : DCOPFJ.Formulation.values()) {
+                DCOPFJ exp = solve(grid, hybrid, f);
+                DCOPFJ act = new DCOPFJ(copy(SUPPLY_OFFER), copy(DEMAND_BID), LOAD.clone(),
+                        hybrid, GEN_NODES, LSE_NODES, grid, 0, false, init, f,
+                        null, flat);
+                assertSameSolution(exp, act);
+                assertArrayEquals(exp.getIneqMultiplier(), act.getIneqMultiplier(), TOL);
+                assertArrayEquals(exp.getActiveSet(), act.getActiveSet());
+                assertEquals(exp.getNumIterations(), act.getNumIterations());
+            }
+        }
+
+        int[] fixed = {1, 1, 1};
+        flat = new QuadProgJSolver(true);
+        DCOPFJ prev = solve(grid, fixed, LOAD, false, null, flat);
+        for (int h = 1; h < 4; h++) {
+            double[] load = scale(LOAD, 1 + 0.05 * h);
+            DCOPFJ warm = solve(grid, fixed, load, false, prev.getActiveSet(), flat);
+            assertSameSolution(solve(grid, fixed, load, false, null), warm);
+            prev = warm;
+        }
+        assertEquals(4, flat.getNumSolves());
+        assertEquals(1, flat.getNumFactorizations());
+    }
+
+    /**
+     * DCOPFJ works on copies of its inputs, so they can be shared between
+     * concurrent solves.
+     */
+    @Test
+    public void testInputsNotModified() {
+        double[][] supplyOffer = copy(SUPPLY_OFFER);
+        double[][] demandBid = copy(DEMAND_BID);
+        double[] load = LOAD.clone();
+        new DCOPFJ(supplyOffer, demandBid, load, new int[] {3, 1, 3}, GEN_NODES,
+                LSE_NODES, makeGrid(), 0, false, init);
+
+        for (int i = 0; i < SUPPLY_OFFER.length; i++) {
+            assertArrayEquals(SUPPLY_OFFER[i], supplyOffer[i], 0);
+        }
+        for (int j = 0; j < DEMAND_BID.length; j++) {
+            assertArrayEquals(DEMAND_BID[j], demandBid[j], 0);
+        }
+        assertArrayEquals(LOAD, load, 0);
+    }
+}
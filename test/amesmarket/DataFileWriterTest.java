@@ -0,0 +1,147 @@
+/*
+ * FIXME: LICENSE
+ */
+package amesmarket;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import amesmarket.extern.coopr.DataFileWriter;
+import amesmarket.filereaders.CaseFileReader;
+
+/**
+ * Check that the reference model written with the cached static sections
+ * is the same, byte for byte, as the one written before they were cached.
+ *
+ * 8BusReferenceModel.dat is the day 2 reference model of the 8 bus
+ * TestCase in DATA, written by the DataFileWriter that rendered every
+ * section on each write, with the text of its first line (the time it was
+ * written) cut off.
+ */
+public class DataFileWriterTest {
+
+    private static final File EXPECTED = new File("test/amesmarket/8BusReferenceModel.dat");
+
+    private static AMESMarket market;
+
+    @BeforeClass
+    public static void setUpMarket() throws Exception {
+        market = buildMarket(new File("DATA/8BusTestCase_8gen.dat"));
+    }
+
+    @Test
+    public void testFirstWrite() throws IOException {
+        assertEquals(readExpected(), withoutTime(new DataFileWriter().scenDatToString(market, 2, load(0.5), 48)));
+    }
+
+    @Test
+    public void testCachedSections() throws IOException {
+        DataFileWriter w = new DataFileWriter();
+        w.scenDatToString(market, 1, load(0.25), 48);
+        //the second write copies the sections rendered by the first.
+        assertEquals(readExpected(), withoutTime(w.scenDatToString(market, 2, load(0.5), 48)));
+    }
+
+    private static String readExpected() throws IOException {
+        byte[] b = new byte[(int) EXPECTED.length()];
+        FileInputStream in = new FileInputStream(EXPECTED);
+        try {
+            int n = 0;
+            while (n < b.length) {
+                n += in.read(b, n, b.length - n);
+            }
+        } finally {
+            in.close();
+        }
+        return new String(b, "UTF-8");
+    }
+
+    private static String withoutTime(String refModel) {
+        return refModel.substring(refModel.indexOf('\n'));
+    }
+
+    /**
+     * Two days of load for each LSE, with decimals that are not exact in
+     * binary.
+     */
+    private static double[][] load(double offset) {
+        double[][] load = new double[market.getNumLSEAgents()][48];
+        for (int i = 0; i < load.length; i++) {
+            for (int h = 0; h < 48; h++) {
+                load[i][h] = 100 + 10 * i + h + offset;
+            }
+        }
+        return load;
+    }
+
+    /**
+     * Set up a market from a TestCase the way the AMESFrame does, without
+     * the GUI.
+     */
+    private static AMESMarket buildMarket(File caseFile) throws Exception {
+        CaseFileData c = new CaseFileReader().loadCaseFileData(caseFile);
+
+        double[][] bus = {{number(c.nodeData[0][0]), number(c.nodeData[0][1])}};
+        double[][] branch = new double[c.branchData.length][c.branchData[0].length - 1];
+        for (int i = 0; i < branch.length; i++) {
+            for (int j = 0; j < branch[i].length; j++) {
+                branch[i][j] = number(c.branchData[i][j + 1]);
+            }
+        }
+        //the name comes first, the canary flag last.
+        double[][] gen = new double[c.genData.length][];
+        boolean[] canaries = new boolean[c.genData.length];
+        for (int i = 0; i < gen.length; i++) {
+            Object[] row = c.genData[i].asArray();
+            gen[i] = new double[row.length - 2];
+            for (int j = 0; j < gen[i].length; j++) {
+                gen[i][j] = number(row[j + 1]);
+            }
+            canaries[i] = Boolean.parseBoolean(row[row.length - 1].toString());
+        }
+        double[][] lse = new double[c.lseData.length][c.lseData[0].length - 1];
+        for (int i = 0; i < lse.length; i++) {
+            for (int j = 0; j < lse[i].length; j++) {
+                lse[i][j] = number(c.lseData[i][j + 1]);
+            }
+        }
+        double[][][] lsePrice = new double[c.lsePriceSensitiveDemand.length][24][c.lsePriceSensitiveDemand[0][0].length - 1];
+        for (int i = 0; i < lsePrice.length; i++) {
+            for (int h = 0; h < 24; h++) {
+                for (int j = 0; j < lsePrice[i][h].length; j++) {
+                    lsePrice[i][h][j] = number(c.lsePriceSensitiveDemand[i][h][j + 1]);
+                }
+            }
+        }
+        int[][] lseHybrid = new int[c.lseHybridDemand.length][c.lseHybridDemand[0].length - 1];
+        for (int i = 0; i < lseHybrid.length; i++) {
+            for (int j = 0; j < lseHybrid[i].length; j++) {
+                lseHybrid[i][j] = Integer.parseInt(c.lseHybridDemand[i][j + 1].toString());
+            }
+        }
+
+        AMESMarket m = new AMESMarket(false);
+        m.InitLearningParameters(c.genLearningData);
+        m.InitSimulationParameters(c.iMaxDay, true, c.dThresholdProbability, false,
+                c.dDailyNetEarningThreshold, false, c.iDailyNetEarningStartDay,
+                c.iDailyNetEarningDayLength, c.iStartDay, c.iCheckDayLength,
+                c.dActionProbability, false, c.iLearningCheckStartDay,
+                c.iLearningCheckDayLength, c.dLearningCheckDifference, false,
+                c.dGenPriceCap, c.dLSEPriceCap, c.RandomSeed, c);
+        m.InitDataFromGUI(c.baseS, c.baseV, bus, branch, gen, lse, lsePrice, lseHybrid,
+                canaries, c.getSCUCInputData(), c.getReserveRequirements());
+        m.setup();
+        m.buildModel();
+        return m;
+    }
+
+    private static double number(Object o) {
+        return Double.parseDouble(o.toString());
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * FIXME: LICENSE
+ */
+package amesmarket;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+
+import org.junit.Test;
+
+import amesmarket.extern.common.ExternalProcess;
+import amesmarket.extern.common.LineRingBuffer;
+
+/**
+ * Check the runner for external solver programs.
+ */
+public class ExternalProcessTest {
+
+    private static ExternalProcess sh(String script) {
+        return new ExternalProcess("sh", new ProcessBuilder("sh", "-c", script))
+                .setEcho(false);
+    }
+
+    /**
+     * A program that fills the stderr pipe before writing to stdout does not
+     * stall.
+     */
+    @Test
+    public void testChattyStderr() throws Exception {
+        ExternalProcess.Result res = sh(
+                "i=0; while [ $i -lt 20000 ]; do echo err$i 1>&2; i=$((i+1)); done;"
+                + " echo done; echo last 1>&2; exit 3").setDeadline(30000).run();
+        assertEquals(3, res.getExitCode());
+        String tail = res.getOutputTail();
+        // the two streams are drained separately, so only the order of the
+        // lines within each stream is kept.
+        assertTrue(tail, tail.contains("last"));
+        assertTrue(tail, tail.contains("err19999"));
+        assertFalse(tail, tail.contains("err100\n"));
+        assertTrue(res.getSolveMillis() >= 0);
+        res.parsed(System.nanoTime());
+        assertTrue(res.getParseMillis() >= 0);
+    }
+
+    @Test
+    public void testDeadline() throws Exception {
+        long start = System.currentTimeMillis();
+        try {
+            sh("echo started; sleep 10").setDeadline(300).run();
+            fail("expected the program to be killed");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("started"));
+        }
+        assertTrue(System.currentTimeMillis() - start < 9000);
+    }
+
+    @Test
+    public void testRingBuffer() {
+        LineRingBuffer buf = new LineRingBuffer(3);
+        assertEquals("", buf.toString());
+        buf.add("a");
+        buf.add("b");
+        assertEquals("a\nb\n", buf.toString());
+        buf.add("c");
+        buf.add("d");
+        buf.add("e");
+        assertEquals(5, buf.getNumLines());
+        assertEquals("... (2 lines dropped)\nc\nd\ne\n", buf.toString());
+    }
+}
@@ -0,0 +1,137 @@
+/*
+ * FIXME: LICENSE
+ */
+package amesmarket;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+import amesmarket.filereaders.LineTokenizer;
+
+/**
+ * Lines, tokens and numbers of the load scenario and control files.
+ */
+public class LineTokenizerTest {
+
+    private static final String TEXT =
+            "// Day Hour Zone1 Zone2\n"
+            + "\n"
+            + "Day 3\r\n"
+            + "  1\t1   350.5 -2e3 // first hour\r"
+            + "1 2 1234567890123456789 .5\n"
+            + "   \n"
+            + "End";
+
+    @Test
+    public void testLines() throws IOException {
+        LineTokenizer t = LineTokenizer.of(new StringReader(TEXT));
+        t.setCommentMarker("//");
+        assertTrue(t.nextLine());
+        assertEquals(0, t.countTokens());
+        assertEquals("// Day Hour Zone1 Zone2", t.line());
+        assertTrue(t.nextNonBlankLine());
+        assertEquals(3, t.getLineNumber());
+        assertTrue(t.startsWith("Day"));
+        assertEquals("Day 3", t.text());
+        t.skipToken();
+        assertEquals(3, t.nextInt());
+        assertFalse(t.hasMoreTokens());
+
+        assertTrue(t.nextNonBlankLine());
+        assertEquals(4, t.countTokens());
+        assertEquals("1\t1   350.5 -2e3", t.text());
+        assertEquals(1, t.nextInt());
+        assertEquals(1, t.nextInt());
+        assertEquals(350.5, t.nextDouble(), 0);
+        assertEquals(-2000, t.nextDouble(), 0);
+        assertFalse(t.hasMoreTokens());
+        t.rewind();
+        assertEquals("1", t.nextToken());
+
+        assertTrue(t.nextNonBlankLine());
+        assertEquals(5, t.getLineNumber());
+        t.skipToken();
+        t.skipToken();
+        assertEquals(1234567890123456789.0, t.nextDouble(), 0);
+        assertEquals(0.5, t.nextDouble(), 0);
+
+        assertTrue(t.nextNonBlankLine());
+        assertEquals("End", t.line());
+        assertFalse(t.nextLine());
+        assertFalse(t.nextNonBlankLine());
+    }
+
+    @Test
+    public void testFile() throws IOException {
+        File f = File.createTempFile("tokens", ".dat");
+        try {
+            FileWriter w = new FileWriter(f);
+            w.write(TEXT);
+            w.close();
+            LineTokenizer t = new LineTokenizer(f);
+            int lines = 0;
+            int start = 0;
+            int end = 0;
+            while (t.nextLine()) {
+                lines++;
+                if (lines == 4) {
+                    start = t.getLineStart();
+                }
+                if (lines == 5) {
+                    end = t.getNextLineStart();
+                }
+            }
+            assertEquals(7, lines);
+
+            //lines 4 and 5 only, numbered as in the file.
+            LineTokenizer part = LineTokenizer.of(f, start, end - start);
+            part.seek(0, 4);
+            assertTrue(part.nextLine());
+            assertEquals(4, part.getLineNumber());
+            assertEquals(1, part.nextInt());
+            assertTrue(part.nextLine());
+            assertEquals("1 2 1234567890123456789 .5", part.line());
+            assertFalse(part.nextLine());
+        } finally {
+            f.delete();
+        }
+    }
+
+    @Test
+    public void testBadNumbers() throws IOException {
+        LineTokenizer t = LineTokenizer.of(new StringReader("12x 3000000000 1.2.3"));
+        assertTrue(t.nextLine());
+        try {
+            t.nextInt();
+            fail();
+        } catch (NumberFormatException e) {
+            assertEquals("12x", t.lastToken());
+        }
+        try {
+            t.nextInt();
+            fail();
+        } catch (NumberFormatException e) {
+            assertEquals("3000000000", t.lastToken());
+        }
+        try {
+            t.nextDouble();
+            fail();
+        } catch (NumberFormatException e) {
+            assertEquals("1.2.3", t.lastToken());
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testNoMoreTokens() throws IOException {
+        LineTokenizer t = LineTokenizer.of(new StringReader("1\n2"));
+        assertTrue(t.nextLine());
+        t.skipToken();
+        t.skipToken();
+    }
+}
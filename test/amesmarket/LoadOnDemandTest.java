@@ -0,0 +1,121 @@
+/*
+ * FIXME: LICENSE
+ */
+package amesmarket;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import amesmarket.filereaders.BadDataFileFormatException;
+import amesmarket.filereaders.IZoneIndexProvider;
+
+/**
+ * Scenarios loaded a day at a time must have the loads of the scenarios
+ * loaded at once.
+ */
+public class LoadOnDemandTest {
+
+    private static final int DAYS = 5;
+
+    private final List<File> files = new ArrayList<File>();
+
+    @Before
+    public void setUp() throws IOException {
+        for (int sn = 1; sn <= 2; sn++) {
+            files.add(writeScenario("Scenario " + sn + " Load", 100 * sn));
+        }
+        files.add(writeScenario("Scenario 1 Wind", 1));
+    }
+
+    @After
+    public void tearDown() {
+        for (File f : files) {
+            f.delete();
+        }
+    }
+
+    private File writeScenario(String decl, int base) throws IOException {
+        File f = File.createTempFile("scenario", ".dat");
+        FileWriter w = new FileWriter(f);
+        w.write("AllOf : Base, " + decl + "\n");
+        w.write("Day Hour 1 2\n");
+        for (int d = 1; d <= DAYS; d++) {
+            for (int h = 1; h <= 24; h++) {
+                w.write(d + " " + h + " " + (base + d + h / 100.0) + " " + (2 * base + d) + "\n");
+            }
+            w.write("\n");
+        }
+        w.close();
+        return f;
+    }
+
+    private LoadCaseControl loadCase(int dayWindow) {
+        LoadCaseControl lcc = new LoadCaseControl("Base", 2, 2, DAYS,
+                new IZoneIndexProvider.DefaultIndexProvider(), 24);
+        lcc.setDayWindow(dayWindow);
+        for (int sn = 1; sn <= 2; sn++) {
+            lcc.setAllScenarioFilePaths(sn, files.get(sn - 1).getPath());
+        }
+        lcc.setAllScenarioWindFilePaths(1, files.get(2).getPath());
+        lcc.setAllScenarioProbabilities(1, 0.25);
+        lcc.setAllScenarioProbabilities(2, 0.75);
+        return lcc;
+    }
+
+    private static void assertSameLoads(LoadProfileCollection exp, LoadProfileCollection act) {
+        assertEquals(exp.getCaseName(), act.getCaseName());
+        assertEquals(exp.getScenarioNumber(), act.getScenarioNumber());
+        assertEquals(exp.probability(), act.probability(), 0);
+        //out of order, to load, drop and load again.
+        for (int d : new int[] {1, 2, 3, 5, 4, 1, 2, 5}) {
+            for (int h = 0; h < 24; h++) {
+                assertArrayEquals(exp.get(d).getLoadByHour(h), act.get(d).getLoadByHour(h), 0);
+            }
+        }
+        assertNull(act.get(DAYS + 1));
+        assertEquals(exp.peakTotalLoad(), act.peakTotalLoad(), 0);
+        assertEquals(exp.toString(), act.toString());
+    }
+
+    @Test
+    public void testSameLoads() throws BadDataFileFormatException {
+        LoadCaseControl all = loadCase(0);
+        LoadCaseControl onDemand = loadCase(2);
+        for (int sn = 1; sn <= 2; sn++) {
+            assertFalse(all.getLoadScenario(sn).isLoadedOnDemand());
+            assertTrue(onDemand.getLoadScenario(sn).isLoadedOnDemand());
+            assertSameLoads(all.getLoadScenario(sn), onDemand.getLoadScenario(sn));
+        }
+        assertSameLoads(all.getExpectedLoadProfiles(), onDemand.getExpectedLoadProfiles());
+    }
+
+    @Test
+    public void testScaled() throws BadDataFileFormatException {
+        LoadCaseControl all = loadCase(0);
+        LoadCaseControl onDemand = loadCase(1);
+        LoadProfileCollection lpc = onDemand.getLoadScenario(1);
+        lpc.get(3); //loaded before and after scaling.
+        all.getLoadScenario(1).scaleScenario(0.5);
+        lpc.scaleScenario(0.5);
+        assertSameLoads(all.getLoadScenario(1), lpc);
+        assertSameLoads(new LoadProfileCollection(all.getLoadScenario(1)),
+                new LoadProfileCollection(lpc));
+    }
+
+    @Test(expected = BadDataFileFormatException.class)
+    public void testBadFile() throws BadDataFileFormatException, IOException {
+        FileWriter w = new FileWriter(files.get(1), true);
+        w.write("6 1 x 1\n");
+        w.close();
+        loadCase(2).getLoadScenario(2);
+    }
+}
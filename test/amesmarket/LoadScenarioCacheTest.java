@@ -0,0 +1,144 @@
+/*
+ * FIXME: LICENSE
+ */
+package amesmarket;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import amesmarket.DailyLoadProfile.LoadType;
+import amesmarket.filereaders.BadDataFileFormatException;
+import amesmarket.filereaders.IZoneIndexProvider;
+import amesmarket.filereaders.LoadCaseScenarioReader;
+import amesmarket.filereaders.LoadScenarioCache;
+
+/**
+ * Load scenarios read through the binary cache must be the ones in the
+ * text file.
+ */
+public class LoadScenarioCacheTest {
+
+    private File dir;
+    private File scenFile;
+    private LoadCaseControl lcc;
+    private LoadScenarioCache cache;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("ames-load-cache", "");
+        assertTrue(dir.delete());
+        scenFile = File.createTempFile("scenario", ".dat");
+        writeScenario(0);
+        lcc = new LoadCaseControl("Base", 2, 1, 2, new IZoneIndexProvider.DefaultIndexProvider(), 24);
+        cache = new LoadScenarioCache(dir);
+        lcc.setScenarioCache(cache);
+    }
+
+    @After
+    public void tearDown() {
+        File[] fs = dir.listFiles();
+        if (fs != null) {
+            for (File f : fs) {
+                f.delete();
+            }
+        }
+        dir.delete();
+        scenFile.delete();
+    }
+
+    /**
+     * Two days, with the zones in reverse order.
+     */
+    private void writeScenario(double offset) throws IOException {
+        FileWriter w = new FileWriter(scenFile);
+        w.write("AllOf : Base, Scenario 1 Load\n");
+        w.write("Day Hour 2 1\n");
+        for (int d = 1; d <= 2; d++) {
+            for (int h = 1; h <= 24; h++) {
+                w.write(d + "\t" + h + "\t" + (200 + 10 * d + h + offset)
+                        + "\t" + (100 + 10 * d + h + offset) + "\n");
+            }
+        }
+        w.close();
+    }
+
+    private LoadProfileCollection read(LoadType type) throws BadDataFileFormatException {
+        LoadCaseScenarioReader r = new LoadCaseScenarioReader(lcc);
+        r.setExpectedScenarioNumber(1);
+        r.setLoadType(type);
+        return r.read(scenFile);
+    }
+
+    private void checkLoads(LoadProfileCollection lpc, double offset) {
+        assertEquals("Base", lpc.getCaseName());
+        assertEquals(1, lpc.getScenarioNumber());
+        for (int d = 1; d <= 2; d++) {
+            for (int h = 1; h <= 24; h++) {
+                double[] load = lpc.get(d).getLoadByHour(h - 1);
+                assertEquals(100 + 10 * d + h + offset, load[0], 0);
+                assertEquals(200 + 10 * d + h + offset, load[1], 0);
+            }
+        }
+    }
+
+    @Test
+    public void testHit() throws BadDataFileFormatException {
+        checkLoads(read(LoadType.LOAD), 0);
+        assertEquals(0, cache.getHits());
+        assertEquals(1, cache.getMisses());
+        checkLoads(read(LoadType.LOAD), 0);
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void testChangedSource() throws BadDataFileFormatException, IOException {
+        checkLoads(read(LoadType.LOAD), 0);
+        writeScenario(0.5);
+        checkLoads(read(LoadType.LOAD), 0.5);
+        assertEquals(0, cache.getHits());
+        checkLoads(read(LoadType.LOAD), 0.5);
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void testTouchedSource() throws BadDataFileFormatException {
+        checkLoads(read(LoadType.LOAD), 0);
+        //same text, another time: the checksum still matches.
+        assertTrue(scenFile.setLastModified(scenFile.lastModified() + 10000));
+        checkLoads(read(LoadType.LOAD), 0);
+        assertEquals(1, cache.getHits());
+    }
+
+    @Test
+    public void testSameLengthChange() throws BadDataFileFormatException, IOException {
+        checkLoads(read(LoadType.LOAD), 0);
+        long modified = scenFile.lastModified();
+        long length = scenFile.length();
+        writeScenario(1);
+        assertEquals(length, scenFile.length());
+        assertTrue(scenFile.setLastModified(modified + 10000));
+        checkLoads(read(LoadType.LOAD), 1);
+        assertEquals(0, cache.getHits());
+    }
+
+    @Test(expected = BadDataFileFormatException.class)
+    public void testChangedSettings() throws BadDataFileFormatException {
+        read(LoadType.LOAD);
+        read(LoadType.WIND); //the file says Load.
+    }
+
+    @Test
+    public void testDisabled() throws BadDataFileFormatException {
+        lcc.setScenarioCache(new LoadScenarioCache());
+        checkLoads(read(LoadType.LOAD), 0);
+        checkLoads(read(LoadType.LOAD), 0);
+        assertFalse(dir.exists());
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * FIXME: LICENSE
+ */
+package amesmarket;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import amesmarket.extern.coopr.PSSTWorker;
+
+/**
+ * Check the psst worker protocol, health checks and restarts against a
+ * shell script standing in for 'psst worker'.
+ */
+public class PSSTWorkerTest {
+
+    private static final File UC = new File("uc.dat");
+    private static final File DATA = new File("data.dat");
+    private static final File OUT = new File("out.dat");
+
+    /**
+     * Worker that answers PING, handles SCED requests with scedAction, and
+     * answers SCEDMEM requests with the two payloads separated by '|'.
+     */
+    private static PSSTWorker worker(String scedAction, long solveTimeout) {
+        String script = "while read cmd rest; do case $cmd in"
+                + " PING) echo PONG;;"
+                + " SCED) " + scedAction + ";;"
+                + " SCEDMEM) set -- $rest;"
+                + "  uc=$(dd bs=1 count=$1 2>/dev/null); data=$(dd bs=1 count=$2 2>/dev/null);"
+                + "  r=\"$uc|$data\"; n=$(printf '%s' \"$r\" | wc -c);"
+                + "  printf 'RESULT\\t%d\\n%s' $n \"$r\";;"
+                + " QUIT) exit 0;;"
+                + " esac; done";
+        return new PSSTWorker(new File("."), Arrays.asList("sh", "-c", script),
+                5000, solveTimeout);
+    }
+
+    @Test
+    public void testOneProcessForAllSolves() throws Exception {
+        PSSTWorker w = worker("echo OK", 5000);
+        try {
+            for (int d = 0; d < 3; d++) {
+                w.sced(UC, DATA, OUT);
+            }
+            assertTrue(w.ping());
+            assertEquals(1, w.getNumStarts());
+        } finally {
+            w.close();
+        }
+        assertFalse(w.ping());
+    }
+
+    /**
+     * The input and the results go through the pipe, and the next request
+     * still finds the stream in step.
+     */
+    @Test
+    public void testInMemoryExchange() throws Exception {
+        PSSTWorker w = worker("echo OK", 5000);
+        try {
+            assertEquals("GenCo1\n\t1\n\t0|param x := 1 ;",
+                    w.sced("GenCo1\n\t1\n\t0", "param x := 1 ;"));
+            assertEquals("a|b\nc", w.sced("a", "b\nc"));
+            // lengths are in bytes, not chars
+            assertEquals("Gen\u00e9|\u00b0C", w.sced("Gen\u00e9", "\u00b0C"));
+            assertEquals("a|b", w.sced("a", "b"));
+            w.sced(UC, DATA, OUT);
+            assertEquals(1, w.getNumStarts());
+        } finally {
+            w.close();
+        }
+    }
+
+    /**
+     * A worker that exits after each solve is started again for the next.
+     */
+    @Test
+    public void testRestartAfterExit() throws Exception {
+        PSSTWorker w = worker("echo OK; exit 1", 5000);
+        try {
+            w.sced(UC, DATA, OUT);
+            w.sced(UC, DATA, OUT);
+            assertEquals(2, w.getNumStarts());
+        } finally {
+            w.close();
+        }
+    }
+
+    @Test
+    public void testErrorResponse() throws Exception {
+        PSSTWorker w = worker("printf 'ERROR\\tno solution\\n'", 5000);
+        try {
+            w.sced(UC, DATA, OUT);
+            fail("expected the worker's error");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("no solution"));
+            assertEquals(1, w.getNumStarts());
+        } finally {
+            w.close();
+        }
+    }
+
+    /**
+     * A hung solve is killed, and retried once on a new worker.
+     */
+    @Test
+    public void testTimeout() throws Exception {
+        PSSTWorker w = worker("sleep 10", 200);
+        try {
+            w.sced(UC, DATA, OUT);
+            fail("expected a timeout");
+        } catch (IOException e) {
+            assertEquals(2, w.getNumStarts());
+        } finally {
+            w.close();
+        }
+    }
+}
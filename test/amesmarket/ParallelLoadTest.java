@@ -0,0 +1,109 @@
+/*
+ * FIXME: LICENSE
+ */
+package amesmarket;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import amesmarket.filereaders.BadDataFileFormatException;
+import amesmarket.filereaders.IZoneIndexProvider;
+
+/**
+ * Scenarios read all at once, on several threads, must be the ones read
+ * one at a time.
+ */
+public class ParallelLoadTest {
+
+    private static final int SCENARIOS = 6;
+    private static final int DAYS = 3;
+
+    private final List<File> files = new ArrayList<File>();
+
+    @Before
+    public void setUp() throws IOException {
+        for (int sn = 1; sn <= SCENARIOS; sn++) {
+            files.add(writeScenario("Scenario " + sn + " Load", 100 * sn));
+            files.add(writeScenario("Scenario " + sn + " Wind", sn));
+        }
+    }
+
+    @After
+    public void tearDown() {
+        for (File f : files) {
+            f.delete();
+        }
+    }
+
+    private File writeScenario(String decl, int base) throws IOException {
+        File f = File.createTempFile("scenario", ".dat");
+        FileWriter w = new FileWriter(f);
+        w.write("AllOf : Base, " + decl + "\n");
+        w.write("Day Hour 1 2\n");
+        for (int d = 1; d <= DAYS; d++) {
+            for (int h = 1; h <= 24; h++) {
+                w.write(d + " " + h + " " + (base + d + h / 100.0) + " " + (2 * base + d) + "\n");
+            }
+        }
+        w.close();
+        return f;
+    }
+
+    private LoadCaseControl loadCase() {
+        LoadCaseControl lcc = new LoadCaseControl("Base", 2, SCENARIOS, DAYS,
+                new IZoneIndexProvider.DefaultIndexProvider(), 24);
+        lcc.setDayWindow(0);
+        for (int sn = 1; sn <= SCENARIOS; sn++) {
+            lcc.setAllScenarioFilePaths(sn, files.get(2 * (sn - 1)).getPath());
+            lcc.setAllScenarioWindFilePaths(sn, files.get(2 * (sn - 1) + 1).getPath());
+            lcc.setAllScenarioProbabilities(sn, 1.0 / SCENARIOS);
+        }
+        return lcc;
+    }
+
+    @Test
+    public void testSameScenarios() throws BadDataFileFormatException {
+        LoadCaseControl serial = loadCase();
+        List<LoadProfileCollection> expected = new ArrayList<LoadProfileCollection>();
+        for (int sn = 1; sn <= SCENARIOS; sn++) {
+            expected.add(serial.getLoadScenario(sn));
+        }
+
+        LoadCaseControl parallel = loadCase();
+        parallel.readAllScenarios();
+        List<LoadProfileCollection> actual = parallel.getAllLoadScenarios();
+        assertEquals(SCENARIOS, actual.size());
+        for (int i = 0; i < SCENARIOS; i++) {
+            assertEquals(expected.get(i).getScenarioNumber(), actual.get(i).getScenarioNumber());
+            assertEquals(expected.get(i).probability(), actual.get(i).probability(), 0);
+            assertEquals(expected.get(i).toString(), actual.get(i).toString());
+        }
+    }
+
+    @Test
+    public void testErrorsPerFile() throws IOException {
+        for (int sn : new int[] {2, 5}) {
+            FileWriter w = new FileWriter(files.get(2 * (sn - 1)), true);
+            w.write("4 1 x 1\n");
+            w.close();
+        }
+        try {
+            loadCase().getAllLoadScenarios();
+            fail();
+        } catch (BadDataFileFormatException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Scenario 2: "));
+            assertTrue(e.getMessage(), e.getMessage().contains("Scenario 5: "));
+            assertFalse(e.getMessage(), e.getMessage().contains("Scenario 3: "));
+            assertTrue(e.getCause() instanceof BadDataFileFormatException);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * FIXME: LICENSE
+ */
+package amesmarket;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import amesmarket.PhaseEvent.Phase;
+
+/**
+ * Check what the listeners of the phase timings are told.
+ */
+public class PhaseEventTest {
+
+    /**
+     * Remembers the phases it is told of.
+     */
+    private static class Recorder implements PhaseEvent.Listener {
+        final List<Object[]> ended = new ArrayList<Object[]>();
+
+        @Override
+        public void phaseEnded(Phase phase, int day, int hour, long size,
+                long startNanos, long durationNanos) {
+            ended.add(new Object[] {phase, day, hour, size, startNanos, durationNanos});
+        }
+    }
+
+    private final Recorder recorder = new Recorder();
+
+    @After
+    public void tearDown() {
+        PhaseEvent.removeListener(recorder);
+    }
+
+    @Test
+    public void testListener() {
+        PhaseEvent.addListener(recorder);
+        assertTrue(PhaseEvent.isEnabled());
+        long start = PhaseEvent.begin();
+        assertTrue(start != PhaseEvent.NOT_TIMED);
+        PhaseEvent.end(Phase.SCUC, 3, 17, 5, start);
+
+        assertEquals(1, recorder.ended.size());
+        Object[] e = recorder.ended.get(0);
+        assertEquals(Phase.SCUC, e[0]);
+        assertEquals(3, e[1]);
+        assertEquals(17, e[2]);
+        assertEquals(5L, e[3]);
+        assertEquals(start, e[4]);
+        assertTrue((Long) e[5] >= 0);
+    }
+
+    @Test
+    public void testNotTimed() {
+        long start = PhaseEvent.begin();
+        PhaseEvent.addListener(recorder);
+        if (start == PhaseEvent.NOT_TIMED) {
+            //begun before anyone listened: not reported.
+            PhaseEvent.end(Phase.RT_SCED, 1, 0, 5, start);
+            assertTrue(recorder.ended.isEmpty());
+        }
+        //0 is a time nanoTime may give, and is reported.
+        PhaseEvent.end(Phase.RT_SCED, 1, 0, 5, 0);
+        assertEquals(1, recorder.ended.size());
+    }
+
+    @Test
+    public void testNoListener() {
+        PhaseEvent.addListener(recorder);
+        PhaseEvent.removeListener(recorder);
+        long start = PhaseEvent.begin();
+        PhaseEvent.end(Phase.SCUC, 1, 0, 5, start);
+        assertTrue(recorder.ended.isEmpty());
+    }
+}
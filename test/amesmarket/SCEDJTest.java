@@ -0,0 +1,255 @@
+/*
+ * FIXME: LICENSE
+ */
+package amesmarket;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Check the in-JVM SCED against DCOPFJ on the congested 5 bus grid of
+ * DCOPFJTest, and its cost accounting.
+ */
+public class SCEDJTest {
+
+    private static final double TOL = 1.0E-5;
+
+    // From  To  MaxCap  Reactance
+    private static final double[][] BRANCH_DATA = {
+        {1, 2, 250, 0.0281},
+        {1, 4, 150, 0.0304},
+        {1, 5, 400, 0.0064},
+        {2, 3, 350, 0.0108},
+        {3, 4, 240, 0.0297},
+        {4, 5, 240, 0.0297}
+    };
+
+    // a  b  capMin  capMax
+    private static final double[][] SUPPLY_OFFER = {
+        {14, 0.005, 0, 110},
+        {15, 0.006, 0, 100},
+        {25, 0.010, 0, 520},
+        {30, 0.012, 0, 200},
+        {10, 0.007, 0, 600}
+    };
+    private static final int[] GEN_NODES = {1, 1, 3, 4, 5};
+
+    // no-load  cold start  hot start  shutdown
+    private static final double[][] GEN_COSTS = {
+        {100, 500, 200, 50},
+        {100, 500, 200, 50},
+        {100, 500, 200, 50},
+        {100, 500, 200, 50},
+        {100, 500, 200, 50}
+    };
+    private static final int[] MIN_DOWN_TIME = {2, 2, 2, 2, 2};
+
+    private static final double[] LOAD = {350, 300, 250};
+    private static final int[] LSE_NODES = {2, 3, 4};
+
+    private static final int H = 3;
+
+    private final INIT init = new INIT();
+
+    private TransGrid makeGrid() {
+        double[][] nodeData = {{5, 0.05}};
+        double[][] branchData = new double[BRANCH_DATA.length][];
+        for (int n = 0; n < branchData.length; n++) {
+            branchData[n] = BRANCH_DATA[n].clone();
+        }
+        return new TransGrid(nodeData, branchData, 10, 10, init);
+    }
+
+    private static double[][] flatLoad() {
+        double[][] load = new double[LOAD.length][H];
+        for (int j = 0; j < LOAD.length; j++) {
+            for (int h = 0; h < H; h++) {
+                load[j][h] = LOAD[j];
+            }
+        }
+        return load;
+    }
+
+    private static double[][] scaledLoad(double[] scale) {
+        double[][] load = new double[LOAD.length][H];
+        for (int j = 0; j < LOAD.length; j++) {
+            for (int h = 0; h < H; h++) {
+                load[j][h] = LOAD[j] * scale[h];
+            }
+        }
+        return load;
+    }
+
+    private SCEDJ solve(TransGrid grid, int[][] commitment, int[] unitOnT0,
+            double reserve) throws AMESMarketException {
+        SCEDJ sced = new SCEDJ(grid, init.getBaseS(), GEN_NODES, LSE_NODES);
+        sced.setProblem(commitment, flatLoad(), SUPPLY_OFFER, GEN_COSTS,
+                unitOnT0, MIN_DOWN_TIME, reserve);
+        sced.solveOPF();
+        return sced;
+    }
+
+    /**
+     * Solve for the load, with the given ramp limits or without ramp limits
+     * if null.
+     */
+    private SCEDJ solve(double[][] load, double[][] rampLimits, double[] powerT0)
+            throws AMESMarketException {
+        SCEDJ sced = new SCEDJ(makeGrid(), init.getBaseS(), GEN_NODES, LSE_NODES);
+        sced.setProblem(allOn(), load, SUPPLY_OFFER, GEN_COSTS,
+                onT0(1), MIN_DOWN_TIME, 0);
+        if (rampLimits != null) {
+            sced.setRampLimits(rampLimits, powerT0);
+        }
+        sced.solveOPF();
+        return sced;
+    }
+
+    private static double[][] rampLimits(double ramp) {
+        double[][] ramps = new double[GEN_NODES.length][];
+        for (int i = 0; i < ramps.length; i++) {
+            ramps[i] = new double[] {ramp, ramp, 9999, 9999};
+        }
+        return ramps;
+    }
+
+    private static int[][] allOn() {
+        int[][] uc = new int[GEN_NODES.length][H];
+        for (int[] u : uc) {
+            Arrays.fill(u, 1);
+        }
+        return uc;
+    }
+
+    private static int[] onT0(int state) {
+        int[] onT0 = new int[GEN_NODES.length];
+        Arrays.fill(onT0, state);
+        return onT0;
+    }
+
+    /**
+     * All units committed and no reserve: the same problem as DCOPFJ's.
+     */
+    @Test
+    public void testMatchesDCOPFJ() throws AMESMarketException {
+        TransGrid grid = makeGrid();
+        SCEDJ sced = solve(grid, allOn(), onT0(1), 0);
+
+        double[][] so = new double[SUPPLY_OFFER.length][];
+        for (int i = 0; i < so.length; i++) {
+            so[i] = SUPPLY_OFFER[i].clone();
+        }
+        DCOPFJ opf = new DCOPFJ(so, new double[LOAD.length][3], LOAD.clone(),
+                new int[] {1, 1, 1}, GEN_NODES, LSE_NODES, grid, 0, false, init);
+        assertTrue(opf.getIsSolutionFeasibleAndOptimal());
+
+        for (int h = 0; h < H; h++) {
+            assertEquals(1, sced.getHasSolution()[h]);
+            assertArrayEquals(opf.getCommitment(), sced.getDailyCommitment()[h], TOL);
+            assertArrayEquals(opf.getLMP(), sced.getDailyLMP()[h], TOL);
+            assertArrayEquals(opf.getBranchFlow(), sced.getDailyBranchFlow()[h], TOL);
+        }
+    }
+
+    /**
+     * Units off in an hour produce nothing, and pay start up and shut down
+     * costs when their state changes.
+     */
+    @Test
+    public void testCommitmentAndCosts() throws AMESMarketException {
+        int[][] uc = allOn();
+        uc[0] = new int[] {0, 1, 1}; // started in hour 1
+        uc[1] = new int[] {1, 1, 0}; // shut down in hour 2
+        int[] unitOnT0 = onT0(1);
+        unitOnT0[0] = -10;           // off for 11 hours by hour 1: cold start
+
+        SCEDJ sced = solve(makeGrid(), uc, unitOnT0, 0);
+        for (int h = 0; h < H; h++) {
+            assertEquals(1, sced.getHasSolution()[h]);
+            double total = 0;
+            for (double p : sced.getDailyCommitment()[h]) {
+                total += p;
+            }
+            assertEquals(900, total, TOL);
+        }
+        assertEquals(0, sced.getDailyCommitment()[0][0], 0);
+        assertEquals(0, sced.getDailyCommitment()[2][1], 0);
+
+        assertEquals(0, sced.getProductionCost()[0][0], 0);
+        double p = sced.getDailyCommitment()[1][0];
+        assertEquals(100 + 14 * p + 0.005 * p * p, sced.getProductionCost()[1][0], TOL);
+
+        assertEquals(0, sced.getStartupCost()[0][0], 0);
+        assertEquals(500, sced.getStartupCost()[1][0], 0);
+        assertEquals(50, sced.getShutdownCost()[2][1], 0);
+        assertEquals(0, sced.getShutdownCost()[1][1], 0);
+        assertEquals(0, sced.getStartupCost()[0][2], 0);
+    }
+
+    /**
+     * The reserve requirement limits the total dispatch to the committed
+     * capacity minus the reserve.
+     */
+    @Test
+    public void testReserveRequirement() throws AMESMarketException {
+        // 1530 MW committed: 900 MW load leaves 630 MW of reserve
+        assertEquals(1, solve(makeGrid(), allOn(), onT0(1), 600).getHasSolution()[0]);
+        assertEquals(0, solve(makeGrid(), allOn(), onT0(1), 700).getHasSolution()[0]);
+    }
+
+    /**
+     * Ramp limits that do not bind give the same dispatch and LMPs as the
+     * hours solved one by one.
+     */
+    @Test
+    public void testCoupledMatchesHourly() throws AMESMarketException {
+        double[][] load = scaledLoad(new double[] {1.0, 0.6, 0.9});
+        SCEDJ hourly = solve(load, null, null);
+        SCEDJ coupled = solve(load, rampLimits(9999), new double[GEN_NODES.length]);
+
+        assertTrue(coupled.getNumDayIterations() > 0);
+        for (int h = 0; h < H; h++) {
+            assertEquals(1, coupled.getHasSolution()[h]);
+            assertArrayEquals(hourly.getDailyCommitment()[h], coupled.getDailyCommitment()[h], 1.0E-4);
+            assertArrayEquals(hourly.getDailyLMP()[h], coupled.getDailyLMP()[h], 1.0E-4);
+            assertArrayEquals(hourly.getDailyBranchFlow()[h], coupled.getDailyBranchFlow()[h], 1.0E-4);
+        }
+    }
+
+    /**
+     * Binding ramp limits, between the hours and from the output before hour 0.
+     */
+    @Test
+    public void testRampLimits() throws AMESMarketException {
+        double[][] load = scaledLoad(new double[] {1.0, 0.7, 0.9});
+        double ramp = 80;
+        double[] powerT0 = {110, 20, 300, 0, 450};
+        SCEDJ hourly = solve(load, null, null);
+        SCEDJ coupled = solve(load, rampLimits(ramp), powerT0);
+
+        double maxHourlyRamp = 0;
+        for (int h = 0; h < H; h++) {
+            assertEquals(1, coupled.getHasSolution()[h]);
+            double total = 0;
+            for (int i = 0; i < GEN_NODES.length; i++) {
+                double[] p = coupled.getDailyCommitment()[h];
+                double before = h == 0 ? powerT0[i] : coupled.getDailyCommitment()[h - 1][i];
+                assertTrue("GenCo" + (i + 1) + " hour " + h,
+                        Math.abs(p[i] - before) <= ramp + TOL);
+                total += p[i];
+                if (h > 0) {
+                    maxHourlyRamp = Math.max(maxHourlyRamp, Math.abs(
+                            hourly.getDailyCommitment()[h][i] - hourly.getDailyCommitment()[h - 1][i]));
+                }
+            }
+            assertEquals(900 * (h == 0 ? 1.0 : h == 1 ? 0.7 : 0.9), total, TOL);
+        }
+        assertTrue(maxHourlyRamp > ramp);
+
+        // Not enough ramp to follow the load
+        assertEquals(0, solve(load, rampLimits(10), powerT0).getHasSolution()[0]);
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * FIXME: LICENSE
+ */
+package amesmarket;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.Random;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import amesmarket.extern.coopr.SCEDResultsParser;
+import amesmarket.filereaders.BadDataFileFormatException;
+import amesmarket.filereaders.IZoneIndexProvider;
+
+/**
+ * Read SCED results files as SCED.py and psst write them.
+ */
+public class SCEDResultsParserTest {
+
+    private static final String RESULTS =
+            "//TIMESTAMP:2016-01-01 00:00:00\n"
+            + "LMP\n"
+            + "1 : 1 : 15.5\n"
+            + "2 : 1 : 16.25\n"
+            + "1 : 2 : -3.0e-2\n"
+            + "Bus2 : 2 : 1234567.125\n"
+            + "END_LMP\n"
+            + "GenCoResults\n"
+            + "GenCo2  \n"
+            + "Hour:  1\n"
+            + "\tPowerGenerated:  10.50\n"
+            + "\tProductionCost: 100.00\n"
+            + "\tStartupCost:   0.00\n"
+            + "\tShutdownCost:   0.00\n"
+            + "Hour:  2\n"
+            + "\tPowerGenerated:  20.25\n"
+            + "\tProductionCost: 200.00\n"
+            + "\tStartupCost:  50.00\n"
+            + "\tShutdownCost:   5.00\n"
+            + "GenCo1\n"
+            + "Hour:  2\n"
+            + "\tPowerGenerated:   7.00\n"
+            + "END_GenCoResults\n"
+            + "VOLTAGE_ANGLES\n"
+            + "Bus1 1 : 0.0\n"
+            + "Bus2 2 : -0.1234 // slack\n"
+            + "END_VOLTAGE_ANGLES\n"
+            + "DAILY_BRANCH_LMP\n"
+            + "END_DAILY_BRANCH_LMP\n"
+            + "\n"
+            + "DAILY_PRICE_SENSITIVE_DEMAND\n"
+            + "END_DAILY_PRICE_SENSITIVE_DEMAND\n"
+            + "HAS_SOLUTION\n"
+            + "1\t0\t\r\n"
+            + "END_HAS_SOLUTION\n";
+
+    private SCEDResultsParser parser;
+    private double[][] lmp, dispatch, production, startup, shutdown, angles;
+    private int[] hasSolution;
+
+    @Before
+    public void setUp() {
+        parser = new SCEDResultsParser(new IZoneIndexProvider.DefaultIndexProvider(true));
+        lmp = new double[2][2];
+        dispatch = new double[2][2];
+        production = new double[2][2];
+        startup = new double[2][2];
+        shutdown = new double[2][2];
+        angles = new double[2][3];
+        hasSolution = new int[2];
+        parser.setOutput(lmp, dispatch, production, startup, shutdown, angles, hasSolution);
+    }
+
+    @Test
+    public void testRead() throws BadDataFileFormatException {
+        parser.read(RESULTS);
+        checkResults();
+    }
+
+    @Test
+    public void testReadFile() throws IOException, BadDataFileFormatException {
+        File f = File.createTempFile("sced", ".dat");
+        try {
+            FileWriter w = new FileWriter(f);
+            w.write(RESULTS);
+            w.close();
+            parser.read(f);
+            checkResults();
+            //again, into the same buffer.
+            setUp();
+            parser.read(f);
+            checkResults();
+        } finally {
+            f.delete();
+        }
+    }
+
+    private void checkResults() {
+        assertEquals(15.5, lmp[0][0], 0);
+        assertEquals(16.25, lmp[0][1], 0);
+        assertEquals(-0.03, lmp[1][0], 0);
+        assertEquals(1234567.125, lmp[1][1], 0);
+        assertEquals(10.5, dispatch[0][1], 0);
+        assertEquals(20.25, dispatch[1][1], 0);
+        assertEquals(7.0, dispatch[1][0], 0);
+        assertEquals(0.0, dispatch[0][0], 0);
+        assertEquals(200.0, production[1][1], 0);
+        assertEquals(50.0, startup[1][1], 0);
+        assertEquals(5.0, shutdown[1][1], 0);
+        assertEquals(-0.1234, angles[1][2], 0);
+        assertArrayEquals(new int[] {1, 0}, hasSolution);
+    }
+
+    /**
+     * The values must be exactly the ones Double.parseDouble gives.
+     */
+    @Test
+    public void testNumbersAsParseDouble() throws BadDataFileFormatException {
+        Random r = new Random(42);
+        String[] formats = {"%s", "%.2f", "%6.2f", "%.17g", "%e", "%.3e", "%.15f", "%.0f"};
+        for (int n = 0; n < 2000; n++) {
+            double v;
+            switch (n % 4) {
+            case 0: v = r.nextDouble(); break;
+            case 1: v = (r.nextDouble() - 0.5) * 1e6; break;
+            case 2: v = r.nextGaussian() * Math.pow(10, r.nextInt(40) - 20); break;
+            default: v = r.nextInt(100000) / 100.0; break;
+            }
+            String s = String.format(Locale.US, formats[n % formats.length], v);
+            parser.read("LMP\n1 : 1 : " + s + "\nEND_LMP\n");
+            assertEquals(s, Double.doubleToLongBits(Double.parseDouble(s)),
+                    Double.doubleToLongBits(lmp[0][0]));
+        }
+        for (String s : new String[] {"0", "-0.0", "1e22", "1e23", "9007199254740993",
+                "123456789012345678", "4.9e-324", "1.7976931348623157E308", "Infinity"}) {
+            parser.read("LMP\n1 : 1 : " + s + "\nEND_LMP\n");
+            assertEquals(s, Double.doubleToLongBits(Double.parseDouble(s)),
+                    Double.doubleToLongBits(lmp[0][0]));
+        }
+    }
+
+    @Test(expected = BadDataFileFormatException.class)
+    public void testUnknownGenCo() throws BadDataFileFormatException {
+        IZoneIndexProvider.NamedIndexProvider names = new IZoneIndexProvider.NamedIndexProvider();
+        names.put("GenCo1", 0);
+        parser = new SCEDResultsParser(names);
+        parser.setOutput(lmp, dispatch, production, startup, shutdown, angles, hasSolution);
+        parser.read("GenCoResults\nGenCo7\nEND_GenCoResults\n");
+    }
+
+    @Test(expected = BadDataFileFormatException.class)
+    public void testShortHasSolution() throws BadDataFileFormatException {
+        parser.read("HAS_SOLUTION\n1\nEND_HAS_SOLUTION\n");
+    }
+
+    @Test(expected = BadDataFileFormatException.class)
+    public void testBadNumber() throws BadDataFileFormatException {
+        parser.read("LMP\n1 : 1 : 1.2.3\nEND_LMP\n");
+    }
+
+    @Test(expected = BadDataFileFormatException.class)
+    public void testMissingEnd() throws BadDataFileFormatException {
+        parser.read("LMP\n1 : 1 : 1.5\n");
+    }
+}
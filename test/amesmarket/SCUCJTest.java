@@ -0,0 +1,125 @@
+/*
+ * FIXME: LICENSE
+ */
+package amesmarket;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Check the in-JVM unit commitment on a small three unit system: a base
+ * unit, a mid merit unit and a peaker.
+ */
+public class SCUCJTest {
+
+    private static final double[] LOAD = {200, 350, 400, 250, 150, 150};
+
+    private static SCUCJ.Unit unit(int idx, double a, double capMin, double capMax,
+            int minUp, int minDown, int onT0, double powerT0) {
+        SCUCJ.Unit u = new SCUCJ.Unit("GenCo" + (idx + 1), idx);
+        u.a = a;
+        u.b = 0.001;
+        u.capMin = capMin;
+        u.capMax = capMax;
+        u.noLoadCost = 100;
+        u.coldStartCost = 500;
+        u.hotStartCost = 200;
+        u.shutdownCost = 50;
+        u.minUp = minUp;
+        u.minDown = minDown;
+        u.onT0 = onT0;
+        u.powerT0 = powerT0;
+        return u;
+    }
+
+    private static SCUCJ.Unit[] units() {
+        return new SCUCJ.Unit[] {
+            unit(0, 10, 50, 300, 4, 4, 5, 150),
+            unit(1, 20, 20, 150, 3, 2, -1, 0),
+            unit(2, 40, 10, 100, 1, 1, -24, 0)
+        };
+    }
+
+    /**
+     * Length of the on and off periods, counting the UnitOnT0 state.
+     */
+    private static void assertMinUpDown(SCUCJ.Unit u, int[] uc) {
+        int state = u.onT0 > 0 ? 1 : 0;
+        int run = Math.abs(u.onT0);
+        for (int h = 0; h < uc.length; h++) {
+            if (uc[h] == state) {
+                run++;
+                continue;
+            }
+            assertTrue(u.name + " hour " + h,
+                    run >= (state == 1 ? u.minUp : u.minDown));
+            state = uc[h];
+            run = 1;
+        }
+    }
+
+    @Test
+    public void testCoversLoadAndReserve() {
+        SCUCJ.Unit[] units = units();
+        double reserve = 50;
+        int[][] uc = SCUCJ.commit(units, LOAD, reserve);
+
+        for (int h = 0; h < LOAD.length; h++) {
+            double cap = 0;
+            for (int i = 0; i < units.length; i++) {
+                cap += uc[i][h] * units[i].capMax;
+            }
+            assertTrue("hour " + h, cap >= LOAD[h] + reserve);
+        }
+        assertEquals(0, SCUCJ.evaluate(units, uc, LOAD, reserve)[0], 1.0E-6);
+    }
+
+    @Test
+    public void testMinUpDownFromT0() {
+        SCUCJ.Unit[] units = units();
+        int[][] uc = SCUCJ.commit(units, LOAD, 0);
+
+        // GenCo2 has been off for 1 of its 2 minimum down hours
+        assertEquals(0, uc[1][0]);
+        for (int i = 0; i < units.length; i++) {
+            assertMinUpDown(units[i], uc[i]);
+        }
+    }
+
+    /**
+     * The base unit runs all day, the peaker only when the others cannot
+     * cover the load.
+     */
+    @Test
+    public void testPriorityOrder() {
+        SCUCJ.Unit[] units = units();
+        int[][] uc = SCUCJ.commit(units, LOAD, 0);
+
+        assertArrayEquals(new int[] {1, 1, 1, 1, 1, 1}, uc[0]);
+        assertEquals(0, uc[2][0]);
+        assertEquals(1, uc[1][2]);
+        assertEquals(0, uc[2][4]);
+        assertEquals(0, uc[2][5]);
+    }
+
+    /**
+     * The base unit alone has the capacity for hour 1, but cannot ramp up
+     * to it.
+     */
+    @Test
+    public void testRampLimits() {
+        double[] load = {100, 250};
+        SCUCJ.Unit[] units = units();
+        units[0].powerT0 = 100;
+        units[1].onT0 = -24;
+
+        int[][] uc = SCUCJ.commit(units, load, 0);
+        assertEquals(0, uc[1][1] + uc[2][1]);
+
+        units[0].rampUp = 50;
+        uc = SCUCJ.commit(units, load, 0);
+        assertEquals(1, uc[1][1] + uc[2][1]);
+        assertEquals(0, SCUCJ.evaluate(units, uc, load, 0)[0], 1.0E-6);
+    }
+}
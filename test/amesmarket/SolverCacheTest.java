@@ -0,0 +1,104 @@
+/*
+ * FIXME: LICENSE
+ */
+package amesmarket;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import amesmarket.extern.common.SolverCache;
+
+/**
+ * Check the keys, hits and eviction of the solver result cache.
+ */
+public class SolverCacheTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = File.createTempFile("ames-cache", "");
+        assertTrue(dir.delete());
+    }
+
+    @After
+    public void tearDown() {
+        File[] fs = dir.listFiles();
+        if (fs != null) {
+            for (File f : fs) {
+                f.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Test
+    public void testKeys() throws IOException {
+        File f = new File(dir.getParentFile(), dir.getName() + ".dat");
+        FileWriter w = new FileWriter(f);
+        w.write("param Demand := 1 2 3 ;\n");
+        w.close();
+        try {
+            assertEquals(new SolverCache.Key("sced").add("param Demand := 1 2 3 ;\n").toString(),
+                    new SolverCache.Key("sced").add(f).toString());
+        } finally {
+            f.delete();
+        }
+        assertFalse(new SolverCache.Key("sced").add("ab").add("c").toString().equals(
+                new SolverCache.Key("sced").add("a").add("bc").toString()));
+        assertFalse(new SolverCache.Key("sced").add("a").toString().equals(
+                new SolverCache.Key("scuc").add("a").toString()));
+        //the time DataFileWriter writes in a comment does not matter.
+        assertEquals(new SolverCache.Key("sced").add("# Written by AMES 01/01/2016 00:00:00\n\nparam\n").toString(),
+                new SolverCache.Key("sced").add("# Written by AMES 01/02/2016 12:00:00\n\nparam\n").toString());
+        assertFalse(new SolverCache.Key("sced").add("param 1\n").toString().equals(
+                new SolverCache.Key("sced").add("param 2\n").toString()));
+    }
+
+    @Test
+    public void testHitsAndMisses() {
+        SolverCache c = new SolverCache(dir, 1024 * 1024);
+        SolverCache.Key k = new SolverCache.Key("sced").add("input");
+        assertNull(c.get(k));
+        c.put(k, "LMP\n1 2 3\n");
+        assertEquals("LMP\n1 2 3\n", c.get(k));
+        assertEquals("LMP\n1 2 3\n", new SolverCache(dir, 1024 * 1024).get(k));
+        assertEquals(1, c.getHits());
+        assertEquals(1, c.getMisses());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEvicted() throws InterruptedException {
+        SolverCache c = new SolverCache(dir, 250);
+        SolverCache.Key a = new SolverCache.Key("sced").add("a");
+        SolverCache.Key b = new SolverCache.Key("sced").add("b");
+        SolverCache.Key d = new SolverCache.Key("sced").add("d");
+        String results = String.format("%100s", "x");
+        c.put(a, results);
+        new File(dir, a + ".res").setLastModified(System.currentTimeMillis() - 20000);
+        c.put(b, results);
+        new File(dir, b + ".res").setLastModified(System.currentTimeMillis() - 10000);
+        assertNotNull(c.get(a)); //a is now the most recently used.
+        c.put(d, results);
+        assertEquals(1, c.getEvictions());
+        assertNull(c.get(b));
+        assertNotNull(c.get(a));
+        assertNotNull(c.get(d));
+    }
+
+    @Test
+    public void testDisabled() {
+        SolverCache c = new SolverCache();
+        SolverCache.Key k = new SolverCache.Key("sced").add("input");
+        c.put(k, "results");
+        assertNull(c.get(k));
+        assertFalse(dir.exists());
+    }
+}
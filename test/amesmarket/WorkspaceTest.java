@@ -0,0 +1,53 @@
+/*
+ * FIXME: LICENSE
+ */
+package amesmarket;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+/**
+ * Check that the shared workspace keeps the usual paths and that private
+ * workspaces never share a directory.
+ */
+public class WorkspaceTest {
+
+    @Test
+    public void testSharedPaths() {
+        Workspace ws = new Workspace();
+        assertFalse(ws.isPrivate());
+        assertEquals(new File("RTSCED.dat"), ws.file("RTSCED.dat"));
+        assertEquals(Workspace.RESOURCES_DIR, ws.processDir(Workspace.RESOURCES_DIR));
+        assertNull(ws.processDir(null));
+    }
+
+    @Test
+    public void testPrivateWorkspaces() throws IOException {
+        File root = File.createTempFile("ames-ws", "");
+        assertTrue(root.delete());
+        try {
+            Workspace a = Workspace.createPrivate(root);
+            Workspace b = Workspace.createPrivate(root);
+            assertTrue(a.isPrivate());
+            assertFalse(a.getDir().equals(b.getDir()));
+            assertTrue(a.getDir().isDirectory());
+
+            File f = a.file(Workspace.SCENARIO_DATA + "/ReferenceModel.dat");
+            assertEquals(new File(a.getDir(), Workspace.SCENARIO_DATA + "/ReferenceModel.dat"), f);
+            assertEquals(a.getDir(), a.processDir(Workspace.RESOURCES_DIR));
+            assertEquals(a.getDir(), a.processDir(null));
+        } finally {
+            File[] runs = root.listFiles();
+            if (runs != null) {
+                for (File r : runs) {
+                    r.delete();
+                }
+            }
+            root.delete();
+        }
+    }
+}